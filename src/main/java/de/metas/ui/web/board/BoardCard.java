@@ -31,7 +31,7 @@ import lombok.Value;
  * #L%
  */
 
-@Builder
+@Builder(toBuilder = true)
 @Value
 public class BoardCard
 {
@@ -0,0 +1,173 @@
+package de.metas.ui.web.board;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.ui.web.board.json.events.JSONBoardChangedEvent;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * In memory index of a board's {@link BoardCard}s.
+ * <p>
+ * Each time the board changes, the index gets a new version and remembers the events which were sent for it,
+ * so a client which knows a version can fetch only the changes since that version.
+ */
+@ToString(of = { "boardId", "version" })
+final class BoardCardsIndex
+{
+	/**
+	 * Versions are unique across all boards and indexes, so a version of a discarded index will never match a new index.
+	 * Starting from current time makes sure that versions known by clients before a server restart will not match either.
+	 */
+	private static final AtomicLong nextVersion = new AtomicLong(System.currentTimeMillis());
+
+	private static final int MAX_EVENTS_HISTORY = 1000;
+
+	private final int boardId;
+	private final LinkedHashMap<Integer, BoardCard> cardsById = new LinkedHashMap<>();
+
+	private final long firstVersion;
+	private long version;
+	private final ArrayDeque<VersionedEvent> eventsHistory = new ArrayDeque<>();
+	/** Events up to this version were dropped from {@link #eventsHistory} */
+	private long discardedEventsVersion;
+
+	public BoardCardsIndex(final int boardId, @NonNull final List<BoardCard> cards)
+	{
+		this.boardId = boardId;
+		cards.forEach(card -> cardsById.put(card.getCardId(), card));
+
+		firstVersion = nextVersion.getAndIncrement();
+		version = firstVersion;
+		discardedEventsVersion = firstVersion;
+	}
+
+	public int getBoardId()
+	{
+		return boardId;
+	}
+
+	public synchronized long getVersion()
+	{
+		return version;
+	}
+
+	public synchronized ImmutableList<BoardCard> getCards()
+	{
+		return ImmutableList.copyOf(cardsById.values());
+	}
+
+	public synchronized ImmutableList<BoardCard> getCards(@NonNull final Collection<Integer> cardIds)
+	{
+		return cardIds.stream()
+				.map(cardsById::get)
+				.filter(card -> card != null)
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	@Nullable
+	public synchronized BoardCard getCardOrNull(final int cardId)
+	{
+		return cardsById.get(cardId);
+	}
+
+	public synchronized boolean containsCardId(final int cardId)
+	{
+		return cardsById.containsKey(cardId);
+	}
+
+	public synchronized void putCards(@NonNull final Collection<BoardCard> cards)
+	{
+		cards.forEach(card -> cardsById.put(card.getCardId(), card));
+	}
+
+	public synchronized void removeCard(final int cardId)
+	{
+		cardsById.remove(cardId);
+	}
+
+	/**
+	 * Replaces the given cards with the freshly retrieved ones. Cards which were not retrieved (e.g. no longer matching the board) are removed.
+	 *
+	 * @param cardIds the IDs of the cards which were requested to be retrieved
+	 * @param retrievedCards the cards which were actually retrieved
+	 */
+	public synchronized void replaceCards(@NonNull final Collection<Integer> cardIds, @NonNull final Collection<BoardCard> retrievedCards)
+	{
+		cardIds.forEach(cardsById::remove);
+		putCards(retrievedCards);
+	}
+
+	/** @return the new version */
+	public synchronized long recordEvents(@NonNull final List<JSONBoardChangedEvent> events)
+	{
+		version = nextVersion.getAndIncrement();
+
+		for (final JSONBoardChangedEvent event : events)
+		{
+			eventsHistory.addLast(VersionedEvent.of(version, event));
+		}
+		while (eventsHistory.size() > MAX_EVENTS_HISTORY)
+		{
+			discardedEventsVersion = eventsHistory.removeFirst().getVersion();
+		}
+
+		return version;
+	}
+
+	/**
+	 * @return the events which were recorded after given version or null if those events are no longer available
+	 *         (e.g. the version is too old or it belongs to another index), in which case the client shall reload the whole board.
+	 */
+	@Nullable
+	public synchronized ImmutableList<JSONBoardChangedEvent> getEventsAfterVersion(final long sinceVersion)
+	{
+		if (sinceVersion < discardedEventsVersion || sinceVersion > version)
+		{
+			return null;
+		}
+
+		return eventsHistory.stream()
+				.filter(event -> event.getVersion() > sinceVersion)
+				.map(VersionedEvent::getEvent)
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	@Value(staticConstructor = "of")
+	private static final class VersionedEvent
+	{
+		private final long version;
+		private final JSONBoardChangedEvent event;
+	}
+}
@@ -11,9 +11,14 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
 
 import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.ad.dao.cache.CacheInvalidateMultiRequest;
+import org.adempiere.ad.dao.cache.CacheInvalidateRequest;
 import org.adempiere.ad.expression.api.IExpressionEvaluator.OnVariableNotFound;
 import org.adempiere.ad.expression.api.IStringExpression;
 import org.adempiere.ad.expression.api.impl.CompositeStringExpression;
@@ -30,8 +35,10 @@ import org.adempiere.model.RecordZoomWindowFinder;
 import org.adempiere.util.NumberUtils;
 import org.adempiere.util.Services;
 import org.adempiere.util.collections.CollectionUtils;
+import org.adempiere.util.lang.impl.TableRecordReference;
 import org.compiere.model.I_AD_User;
 import org.compiere.util.CCache;
+import org.compiere.util.CacheMgt;
 import org.compiere.util.DB;
 import org.compiere.util.DisplayType;
 import org.compiere.util.Env;
@@ -40,9 +47,11 @@ import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import de.metas.currency.Amount;
@@ -60,6 +69,8 @@ import de.metas.ui.web.base.model.I_WEBUI_Board_Lane;
 import de.metas.ui.web.base.model.I_WEBUI_Board_RecordAssignment;
 import de.metas.ui.web.board.BoardCardFieldDescriptor.BoardFieldLoader;
 import de.metas.ui.web.board.BoardDescriptor.BoardDescriptorBuilder;
+import de.metas.ui.web.board.json.events.JSONBoardCardChangedEvent;
+import de.metas.ui.web.board.json.events.JSONBoardChangedEvent;
 import de.metas.ui.web.board.json.events.JSONBoardChangedEventsList;
 import de.metas.ui.web.board.json.events.JSONBoardChangedEventsList.JSONBoardChangedEventsListBuilder;
 import de.metas.ui.web.board.json.events.JSONBoardLaneChangedEvent;
@@ -85,9 +96,7 @@ import de.metas.ui.web.window.descriptor.sql.DocumentFieldValueLoader;
 import de.metas.ui.web.window.descriptor.sql.SqlDocumentEntityDataBindingDescriptor;
 import de.metas.ui.web.window.descriptor.sql.SqlDocumentFieldDataBindingDescriptor;
 import de.metas.ui.web.window.descriptor.sql.SqlLookupDescriptor;
-import lombok.EqualsAndHashCode;
 import lombok.NonNull;
-import lombok.ToString;
 
 /*
  * #%L
@@ -122,10 +131,126 @@ public class BoardDescriptorRepository
 	@Autowired
 	private WebsocketSender websocketSender;
 
+	/** If the gap around the moved card is smaller than this, the lane is renumbered before placing the card */
+	private static final int SEQNO_MIN_GAP = 8;
+
+	/**
+	 * Tables which, when changed, are affecting all cards of a board.
+	 * <p>
+	 * NOTE: {@link I_WEBUI_Board_RecordAssignment} changes are affecting only the cards of the assignment's board, see {@link #computeCardsIndexesToReset(CacheInvalidateMultiRequest, Function)}
+	 */
+	private static final ImmutableSet<String> TABLENAMES_ResetCardsIndexes = ImmutableSet.of(
+			I_WEBUI_Board.Table_Name,
+			I_WEBUI_Board_Lane.Table_Name,
+			I_WEBUI_Board_CardField.Table_Name);
+
+	/** Cards indexed by WEBUI_Board_ID. The indexes are discarded on cache reset (see {@link #onCacheReset(CacheInvalidateMultiRequest)}) */
+	private final ConcurrentHashMap<Integer, BoardCardsIndex> cardsIndexes = new ConcurrentHashMap<>();
+
 	private final CCache<Integer, BoardDescriptor> boardDescriptors = CCache.<Integer, BoardDescriptor> newCache(I_WEBUI_Board.Table_Name + "#BoardDescriptor", 50, 0)
 			.addResetForTableName(I_WEBUI_Board_Lane.Table_Name)
 			.addResetForTableName(I_WEBUI_Board_CardField.Table_Name);
 
+	@PostConstruct
+	private void postConstruct()
+	{
+		// NOTE: cache resets are also received when the board or the cards are changed on other nodes
+		CacheMgt.get().addCacheResetListener(this::onCacheReset);
+	}
+
+	private int onCacheReset(final CacheInvalidateMultiRequest multiRequest)
+	{
+		final CardsIndexesToReset toReset = computeCardsIndexesToReset(multiRequest, this::retrieveBoardIdsByAssignmentIds);
+		if (toReset.isAll())
+		{
+			final int count = cardsIndexes.size();
+			cardsIndexes.clear();
+			logger.debug("Discarded {} board cards indexes because of {}", count, multiRequest);
+			return count;
+		}
+		else
+		{
+			int count = 0;
+			for (final Integer boardId : toReset.getBoardIds())
+			{
+				if (cardsIndexes.remove(boardId) != null)
+				{
+					count++;
+				}
+			}
+			logger.debug("Discarded {} board cards indexes of boards {} because of {}", count, toReset.getBoardIds(), multiRequest);
+			return count;
+		}
+	}
+
+	/**
+	 * @param boardIdsByAssignmentIdRetriever retrieves the WEBUI_Board_ID of given WEBUI_Board_RecordAssignment_IDs; the assignments which no longer exist are missing from the result
+	 */
+	@VisibleForTesting
+	static CardsIndexesToReset computeCardsIndexesToReset(
+			@NonNull final CacheInvalidateMultiRequest multiRequest,
+			@NonNull final Function<Set<Integer>, Map<Integer, Integer>> boardIdsByAssignmentIdRetriever)
+	{
+		if (isResetCardsIndexes(multiRequest))
+		{
+			return CardsIndexesToReset.ALL;
+		}
+
+		final Set<Integer> assignmentIds = new LinkedHashSet<>();
+		for (final CacheInvalidateRequest request : multiRequest.getRequests())
+		{
+			if (!I_WEBUI_Board_RecordAssignment.Table_Name.equals(request.getTableNameEffective()))
+			{
+				continue;
+			}
+
+			final int assignmentId = request.getChildTableName() != null ? request.getChildRecordId() : request.getRootRecordId();
+			if (assignmentId < 0)
+			{
+				// all assignments were changed
+				return CardsIndexesToReset.ALL;
+			}
+			assignmentIds.add(assignmentId);
+		}
+		if (assignmentIds.isEmpty())
+		{
+			return CardsIndexesToReset.NONE;
+		}
+
+		final Map<Integer, Integer> boardIdsByAssignmentId = boardIdsByAssignmentIdRetriever.apply(assignmentIds);
+		if (!boardIdsByAssignmentId.keySet().containsAll(assignmentIds))
+		{
+			// some assignments were deleted, so we don't know to which board they belonged
+			return CardsIndexesToReset.ALL;
+		}
+
+		return CardsIndexesToReset.ofBoardIds(boardIdsByAssignmentId.values());
+	}
+
+	private Map<Integer, Integer> retrieveBoardIdsByAssignmentIds(final Set<Integer> assignmentIds)
+	{
+		return Services.get(IQueryBL.class)
+				.createQueryBuilderOutOfTrx(I_WEBUI_Board_RecordAssignment.class)
+				.addInArrayFilter(I_WEBUI_Board_RecordAssignment.COLUMN_WEBUI_Board_RecordAssignment_ID, assignmentIds)
+				.create()
+				.list(I_WEBUI_Board_RecordAssignment.class)
+				.stream()
+				.collect(ImmutableMap.toImmutableMap(I_WEBUI_Board_RecordAssignment::getWEBUI_Board_RecordAssignment_ID, I_WEBUI_Board_RecordAssignment::getWEBUI_Board_ID));
+	}
+
+	@VisibleForTesting
+	static boolean isResetCardsIndexes(final CacheInvalidateMultiRequest multiRequest)
+	{
+		if (multiRequest.isResetAll())
+		{
+			return true;
+		}
+
+		return multiRequest.getRequests()
+				.stream()
+				.anyMatch(request -> request.isAll() || TABLENAMES_ResetCardsIndexes.contains(request.getTableNameEffective()));
+	}
+
 	private void sendEvents(final BoardDescriptor board, final JSONBoardChangedEventsList events)
 	{
 		if (events.isEmpty())
@@ -133,9 +258,12 @@ public class BoardDescriptorRepository
 			return;
 		}
 
+		final long version = getCardsIndex(board.getBoardId()).recordEvents(events.getEvents());
+		final JSONBoardChangedEventsList versionedEvents = events.toBuilder().version(version).build();
+
 		final String websocketEndpoint = board.getWebsocketEndpoint();
-		websocketSender.convertAndSend(websocketEndpoint, events);
-		logger.trace("Notified WS {}: {}", websocketEndpoint, events);
+		websocketSender.convertAndSend(websocketEndpoint, versionedEvents);
+		logger.trace("Notified WS {}: {}", websocketEndpoint, versionedEvents);
 	}
 
 	public BoardDescriptor getBoardDescriptor(final int boardId)
@@ -324,29 +452,113 @@ public class BoardDescriptorRepository
 				.build();
 	}
 
+	private BoardCardsIndex getCardsIndex(final int boardId)
+	{
+		return cardsIndexes.computeIfAbsent(boardId, id -> new BoardCardsIndex(id, retrieveCards(id, ImmutableSet.of())));
+	}
+
 	public List<BoardCard> getCards(final int boardId)
 	{
-		final Set<Integer> onlyCardIds = ImmutableSet.of();
-		return retrieveCards(boardId, onlyCardIds);
+		return getCardsIndex(boardId).getCards();
 	}
 
 	public BoardCard getCard(final int boardId, final int cardId)
 	{
 		Preconditions.checkArgument(cardId >= 0, "cardId >= 0"); // zero is OK because we might have recordId=0
-		final Set<Integer> onlyCardIds = ImmutableSet.of(cardId);
 
-		return CollectionUtils.singleElement(retrieveCards(boardId, onlyCardIds));
+		final BoardCard card = getCardsIndex(boardId).getCardOrNull(cardId);
+		if (card == null)
+		{
+			throw new EntityNotFoundException("No card found")
+					.setParameter("boardId", boardId)
+					.setParameter("cardId", cardId);
+		}
+		return card;
 	}
 
 	public List<BoardCard> getCards(final int boardId, final Collection<Integer> cardIds)
 	{
 		Preconditions.checkArgument(!cardIds.isEmpty(), "cardIds shall not be empty");
-		return retrieveCards(boardId, cardIds);
+		return getCardsIndex(boardId).getCards(cardIds);
+	}
+
+	/** @return current cards version of given board */
+	public long getCardsVersion(final int boardId)
+	{
+		return getCardsIndex(boardId).getVersion();
+	}
+
+	/** @return the board changes since given version; if they are no longer available, the result will require a full reload */
+	public JSONBoardChangedEventsList getEventsSinceVersion(final int boardId, final long sinceVersion)
+	{
+		final BoardCardsIndex cardsIndex = getCardsIndex(boardId);
+		synchronized (cardsIndex)
+		{
+			final List<JSONBoardChangedEvent> events = cardsIndex.getEventsAfterVersion(sinceVersion);
+			return JSONBoardChangedEventsList.builder()
+					.events(events != null ? events : ImmutableList.of())
+					.version(cardsIndex.getVersion())
+					.fullReloadRequired(events == null)
+					.build();
+		}
+	}
+
+	/**
+	 * Refreshes the cards of changed documents and notifies the clients.
+	 * Called after the documents were changed and committed.
+	 */
+	public void notifyRecordsChanged(@NonNull final Set<TableRecordReference> recordRefs)
+	{
+		if (recordRefs.isEmpty())
+		{
+			return;
+		}
+
+		for (final BoardCardsIndex cardsIndex : cardsIndexes.values())
+		{
+			final int boardId = cardsIndex.getBoardId();
+			final BoardDescriptor board = getBoardDescriptor(boardId);
+			final String tableName = board.getTableName();
+
+			final Set<Integer> changedCardIds = recordRefs.stream()
+					.filter(recordRef -> tableName.equals(recordRef.getTableName()))
+					.map(TableRecordReference::getRecord_ID)
+					.filter(cardsIndex::containsCardId)
+					.collect(ImmutableSet.toImmutableSet());
+			if (changedCardIds.isEmpty())
+			{
+				continue;
+			}
+
+			cardsIndex.replaceCards(changedCardIds, retrieveCards(boardId, changedCardIds));
+
+			final JSONBoardChangedEventsListBuilder eventsCollector = JSONBoardChangedEventsList.builder();
+			changedCardIds.forEach(cardId -> eventsCollector.event(JSONBoardCardChangedEvent.of(boardId, cardId)));
+			sendEvents(board, eventsCollector.build());
+		}
+	}
+
+	private BoardCard retrieveCard(final int boardId, final int cardId)
+	{
+		final Set<Integer> onlyCardIds = ImmutableSet.of(cardId);
+		return CollectionUtils.singleElement(retrieveCards(boardId, onlyCardIds));
 	}
 
 	private int getLaneIdForCardId(final int boardId, final int cardId)
 	{
-		return getCard(boardId, cardId).getLaneId();
+		final I_WEBUI_Board_RecordAssignment assignment = Services.get(IQueryBL.class)
+				.createQueryBuilder(I_WEBUI_Board_RecordAssignment.class)
+				.addEqualsFilter(I_WEBUI_Board_RecordAssignment.COLUMN_WEBUI_Board_ID, boardId)
+				.addEqualsFilter(I_WEBUI_Board_RecordAssignment.COLUMN_Record_ID, cardId)
+				.create()
+				.firstOnly(I_WEBUI_Board_RecordAssignment.class);
+		if (assignment == null)
+		{
+			throw new EntityNotFoundException("No card found")
+					.setParameter("boardId", boardId)
+					.setParameter("cardId", cardId);
+		}
+		return assignment.getWEBUI_Board_Lane_ID();
 	}
 
 	private List<BoardCard> retrieveCards(final int boardId, final Collection<Integer> onlyCardIds)
@@ -669,7 +881,8 @@ public class BoardDescriptorRepository
 
 	private LaneCardsSequence retrieveCardIdsOrdered(final int boardId, final int laneId)
 	{
-		final List<Integer> cardIds = Services.get(IQueryBL.class)
+		final LaneCardsSequence cardIds = new LaneCardsSequence(laneId);
+		Services.get(IQueryBL.class)
 				.createQueryBuilder(I_WEBUI_Board_RecordAssignment.class)
 				.addEqualsFilter(I_WEBUI_Board_RecordAssignment.COLUMN_WEBUI_Board_ID, boardId)
 				.addEqualsFilter(I_WEBUI_Board_RecordAssignment.COLUMN_WEBUI_Board_Lane_ID, laneId)
@@ -678,59 +891,85 @@ public class BoardDescriptorRepository
 				.addColumn(I_WEBUI_Board_RecordAssignment.COLUMN_WEBUI_Board_RecordAssignment_ID)
 				.endOrderBy()
 				.create()
-				.listDistinct(I_WEBUI_Board_RecordAssignment.COLUMNNAME_Record_ID, Integer.class);
-		return new LaneCardsSequence(laneId, cardIds);
+				.list(I_WEBUI_Board_RecordAssignment.class)
+				.forEach(assignment -> cardIds.addCard(assignment.getRecord_ID(), assignment.getSeqNo()));
+		return cardIds;
 	}
 
-	private final void updateCardsOrder(final int boardId, final int laneId, final List<Integer> cardIds)
+	/**
+	 * Finds the SeqNo which places the given card at given position in lane.
+	 * <p>
+	 * The lane is locked until the current transaction ends, so concurrent moves to the same lane are serialized.
+	 * If the gap at that position is getting small, the whole lane is renumbered first, in current transaction.
+	 */
+	private int computeSeqNoForPosition(final int boardId, final int laneId, final int cardId, final int position)
 	{
-		final String sql = "UPDATE " + I_WEBUI_Board_RecordAssignment.Table_Name
-				+ " SET " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_SeqNo + "=?"
-				+ " WHERE " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_ID + "=?"
-				+ " AND " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_Lane_ID + "=?"
-				+ " AND " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_Record_ID + "=?";
-		PreparedStatement pstmt = null;
-		try
-		{
-			for (int newSeqNo = 0; newSeqNo < cardIds.size(); newSeqNo++)
-			{
-				final int cardId = cardIds.get(newSeqNo);
+		lockLane(laneId);
 
-				if (pstmt == null)
-				{
-					pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_ThreadInherited);
-				}
-				DB.setParameters(pstmt, new Object[] { newSeqNo, boardId, laneId, cardId });
-				pstmt.addBatch();
-			}
-
-			if (pstmt == null)
-			{
-				return;
-			}
-
-			pstmt.executeBatch();
-		}
-		catch (final SQLException ex)
+		LaneCardsSequence laneCardIds = retrieveCardIdsOrdered(boardId, laneId);
+		if (laneCardIds.getGapAround(cardId, position) < SEQNO_MIN_GAP)
 		{
-			throw DBException.wrapIfNeeded(ex);
+			renumberCards(boardId, laneId, ITrx.TRXNAME_ThreadInherited);
+			laneCardIds = retrieveCardIdsOrdered(boardId, laneId);
 		}
-		finally
+
+		final int seqNo = laneCardIds.computeSeqNoForPosition(cardId, position);
+		if (seqNo < 0)
 		{
-			DB.close(pstmt);
+			throw new AdempiereException("No SeqNo available for card")
+					.setParameter("boardId", boardId)
+					.setParameter("laneId", laneId)
+					.setParameter("cardId", cardId)
+					.setParameter("position", position);
 		}
+		return seqNo;
 	}
 
-	private final LaneCardsSequence changeCardsOrder(final int boardId, final int laneId, final Consumer<LaneCardsSequence> reorderCards)
+	/** Locks the given lane until the current transaction ends */
+	private static void lockLane(final int laneId)
 	{
-		final LaneCardsSequence orderedCardIdsOld = retrieveCardIdsOrdered(boardId, laneId);
-		final LaneCardsSequence orderedCardIdsNew = orderedCardIdsOld.copy();
-
-		reorderCards.accept(orderedCardIdsNew);
+		final String sql = "SELECT " + I_WEBUI_Board_Lane.COLUMNNAME_WEBUI_Board_Lane_ID
+				+ " FROM " + I_WEBUI_Board_Lane.Table_Name
+				+ " WHERE " + I_WEBUI_Board_Lane.COLUMNNAME_WEBUI_Board_Lane_ID + "=?"
+				+ " FOR UPDATE";
+		DB.getSQLValueEx(ITrx.TRXNAME_ThreadInherited, sql, laneId);
+	}
 
-		updateCardsOrder(boardId, laneId, orderedCardIdsNew.getCardIds());
+	private void updateCardSeqNo(final int boardId, final int cardId, final int laneId, final int seqNo)
+	{
+		final int countUpdate = Services.get(IQueryBL.class)
+				.createQueryBuilder(I_WEBUI_Board_RecordAssignment.class)
+				.addEqualsFilter(I_WEBUI_Board_RecordAssignment.COLUMN_WEBUI_Board_ID, boardId)
+				.addEqualsFilter(I_WEBUI_Board_RecordAssignment.COLUMN_Record_ID, cardId)
+				.create()
+				.updateDirectly()
+				.addSetColumnValue(I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_Lane_ID, laneId)
+				.addSetColumnValue(I_WEBUI_Board_RecordAssignment.COLUMNNAME_SeqNo, seqNo)
+				.execute();
+		if (countUpdate <= 0)
+		{
+			throw new AdempiereException("Card it's not part this Board")
+					.setParameter("boardId", boardId)
+					.setParameter("cardId", cardId);
+		}
+	}
 
-		return orderedCardIdsNew;
+	/** Spreads the SeqNos of given lane using {@link LaneCardsSequence#SEQNO_STEP}, preserving the current order. Only the cards whose SeqNo changes are updated. */
+	private static void renumberCards(final int boardId, final int laneId, final String trxName)
+	{
+		final String sql = "UPDATE " + I_WEBUI_Board_RecordAssignment.Table_Name + " a"
+				+ " SET " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_SeqNo + "=x.SeqNoNew"
+				+ " FROM ("
+				+ " SELECT " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_RecordAssignment_ID
+				+ ", ROW_NUMBER() OVER (ORDER BY " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_SeqNo + ", " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_RecordAssignment_ID + ") * ? AS SeqNoNew"
+				+ " FROM " + I_WEBUI_Board_RecordAssignment.Table_Name
+				+ " WHERE " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_ID + "=?"
+				+ " AND " + I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_Lane_ID + "=?"
+				+ ") x"
+				+ " WHERE a." + I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_RecordAssignment_ID + "=x." + I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_RecordAssignment_ID
+				+ " AND a." + I_WEBUI_Board_RecordAssignment.COLUMNNAME_SeqNo + " IS DISTINCT FROM x.SeqNoNew";
+		final int countUpdated = DB.executeUpdateEx(sql, new Object[] { LaneCardsSequence.SEQNO_STEP, boardId, laneId }, trxName);
+		logger.debug("Renumbered {} cards of boardId={}, laneId={}", countUpdated, boardId, laneId);
 	}
 
 	public BoardCard addCardForDocumentId(final int boardId, final int laneId, @NonNull final DocumentId documentId, final int position)
@@ -743,6 +982,7 @@ public class BoardDescriptorRepository
 		final JSONBoardChangedEventsListBuilder eventsCollector = JSONBoardChangedEventsList.builder();
 
 		Services.get(ITrxManager.class).run(ITrx.TRXNAME_ThreadInherited, () -> {
+			final int seqNo = computeSeqNoForPosition(boardId, laneId, cardId, position);
 			try
 			{
 				final I_WEBUI_Board_RecordAssignment assignment = InterfaceWrapperHelper.newInstance(I_WEBUI_Board_RecordAssignment.class);
@@ -750,7 +990,7 @@ public class BoardDescriptorRepository
 				assignment.setWEBUI_Board_ID(boardId);
 				assignment.setWEBUI_Board_Lane_ID(laneId);
 				assignment.setRecord_ID(cardId);
-				assignment.setSeqNo(Integer.MAX_VALUE); // will be updated later
+				assignment.setSeqNo(seqNo);
 				InterfaceWrapperHelper.save(assignment);
 			}
 			catch (final DBUniqueConstraintException ex)
@@ -761,11 +1001,12 @@ public class BoardDescriptorRepository
 						.setParameter("cardId", cardId);
 			}
 
-			final LaneCardsSequence orderedCardIds = changeCardsOrder(boardId, laneId, cardIds -> cardIds.addCardIdAtPosition(cardId, position));
+			final LaneCardsSequence orderedCardIds = retrieveCardIdsOrdered(boardId, laneId);
 			eventsCollector.event(JSONBoardLaneChangedEvent.of(boardId, laneId, orderedCardIds.getCardIds()));
 		});
 
-		final BoardCard card = getCard(boardId, cardId);
+		final BoardCard card = retrieveCard(boardId, cardId);
+		getCardsIndex(boardId).putCards(ImmutableList.of(card));
 
 		sendEvents(board, eventsCollector.build());
 		return card;
@@ -789,11 +1030,14 @@ public class BoardDescriptorRepository
 
 			if (deletedCount > 0)
 			{
-				final LaneCardsSequence orderedCardIds = changeCardsOrder(boardId, laneId, cardIds -> cardIds.removeCardId(cardId));
+				// NOTE: no need to renumber the remaining cards, their order is not affected
+				final LaneCardsSequence orderedCardIds = retrieveCardIdsOrdered(boardId, laneId);
 				eventsCollector.event(JSONBoardLaneChangedEvent.of(boardId, laneId, orderedCardIds.getCardIds()));
 			}
 		});
 
+		getCardsIndex(boardId).removeCard(cardId);
+
 		sendEvents(board, eventsCollector.build());
 	}
 
@@ -813,12 +1057,13 @@ public class BoardDescriptorRepository
 					if (request.getNewLaneId() > 0 && request.getNewLaneId() != oldLaneId)
 					{
 						final int newLaneId = request.getNewLaneId();
-						changeLane(boardId, cardId, newLaneId); // move card to new lane
+						final int newSeqNo = computeSeqNoForPosition(boardId, newLaneId, cardId, request.getNewPosition());
+						updateCardSeqNo(boardId, cardId, newLaneId, newSeqNo); // move card to new lane
 
-						final LaneCardsSequence oldLane_cardIds = changeCardsOrder(boardId, oldLaneId, cardIds -> cardIds.removeCardId(cardId)); // update cards order in old lane
+						final LaneCardsSequence oldLane_cardIds = retrieveCardIdsOrdered(boardId, oldLaneId);
 						eventsCollector.event(JSONBoardLaneChangedEvent.of(boardId, oldLane_cardIds.getLaneId(), oldLane_cardIds.getCardIds()));
 
-						final LaneCardsSequence newLane_cardIds = changeCardsOrder(boardId, newLaneId, cardIds -> cardIds.addCardIdAtPosition(cardId, request.getNewPosition())); // update cards order in new lane
+						final LaneCardsSequence newLane_cardIds = retrieveCardIdsOrdered(boardId, newLaneId);
 						eventsCollector.event(JSONBoardLaneChangedEvent.of(boardId, newLane_cardIds.getLaneId(), newLane_cardIds.getCardIds()));
 
 						laneIdEffective = newLaneId;
@@ -828,91 +1073,40 @@ public class BoardDescriptorRepository
 					if (!positionChanged && request.getNewPosition() >= 0)
 					{
 						final int newPosition = request.getNewPosition();
-						final LaneCardsSequence laneCardIds = changeCardsOrder(boardId, laneIdEffective, cardIds -> cardIds.addCardIdAtPosition(cardId, newPosition)); // update card's order
+						final int newSeqNo = computeSeqNoForPosition(boardId, laneIdEffective, cardId, newPosition);
+						updateCardSeqNo(boardId, cardId, laneIdEffective, newSeqNo); // update card's order
+
+						final LaneCardsSequence laneCardIds = retrieveCardIdsOrdered(boardId, laneIdEffective);
 						eventsCollector.event(JSONBoardLaneChangedEvent.of(boardId, laneCardIds.getLaneId(), laneCardIds.getCardIds()));
 
 						positionChanged = true;
 					}
 				});
 
-		final BoardCard card = getCard(boardId, cardId);
+		// NOTE: only the card's lane could change, the document did not change so there is no need to retrieve the card again
+		final BoardCardsIndex cardsIndex = getCardsIndex(boardId);
+		final BoardCard cardOld = cardsIndex.getCardOrNull(cardId);
+		final int laneId = getLaneIdForCardId(boardId, cardId);
+		final BoardCard card = cardOld != null ? cardOld.toBuilder().laneId(laneId).build() : retrieveCard(boardId, cardId);
+		cardsIndex.putCards(ImmutableList.of(card));
 
 		sendEvents(board, eventsCollector.build());
 		return card;
 	}
 
-	private void changeLane(final int boardId, final int cardId, final int newLaneId)
-	{
-		final int countUpdate = Services.get(IQueryBL.class)
-				.createQueryBuilder(I_WEBUI_Board_RecordAssignment.class)
-				.addEqualsFilter(I_WEBUI_Board_RecordAssignment.COLUMN_WEBUI_Board_ID, boardId)
-				.addEqualsFilter(I_WEBUI_Board_RecordAssignment.COLUMN_Record_ID, cardId)
-				.create()
-				.updateDirectly()
-				.addSetColumnValue(I_WEBUI_Board_RecordAssignment.COLUMNNAME_WEBUI_Board_Lane_ID, newLaneId)
-				.execute();
-		if (countUpdate <= 0)
-		{
-			throw new AdempiereException("Card it's not part this Board")
-					.setParameter("boardId", boardId)
-					.setParameter("cardId", cardId);
-		}
-	}
-
-	@EqualsAndHashCode
-	@ToString
-	private static final class LaneCardsSequence
+	@lombok.Value
+	@VisibleForTesting
+	static final class CardsIndexesToReset
 	{
-		private final int laneId;
-		private final List<Integer> cardIds;
+		public static final CardsIndexesToReset ALL = new CardsIndexesToReset(true, ImmutableSet.of());
+		public static final CardsIndexesToReset NONE = new CardsIndexesToReset(false, ImmutableSet.of());
 
-		public LaneCardsSequence(final int laneId, final List<Integer> cardIds)
+		public static CardsIndexesToReset ofBoardIds(final Collection<Integer> boardIds)
 		{
-			this.laneId = laneId;
-			this.cardIds = new ArrayList<>(cardIds);
+			return boardIds.isEmpty() ? NONE : new CardsIndexesToReset(false, ImmutableSet.copyOf(boardIds));
 		}
 
-		public LaneCardsSequence copy()
-		{
-			return new LaneCardsSequence(laneId, cardIds);
-		}
-
-		public int getLaneId()
-		{
-			return laneId;
-		}
-
-		private List<Integer> getCardIds()
-		{
-			return cardIds;
-		}
-
-		public void addCardIdAtPosition(final int cardId, final int position)
-		{
-			Preconditions.checkArgument(cardId > 0, "cardId > 0");
-
-			if (position < 0)
-			{
-				cardIds.remove((Object)cardId);
-				cardIds.add(cardId);
-			}
-			else if (position == Integer.MAX_VALUE || position > cardIds.size() - 1)
-			{
-				cardIds.remove((Object)cardId);
-				cardIds.add(cardId);
-			}
-			else
-			{
-				cardIds.remove((Object)cardId);
-				cardIds.add(position, cardId);
-			}
-		}
-
-		public void removeCardId(final int cardId)
-		{
-			Preconditions.checkArgument(cardId > 0, "cardId > 0");
-
-			cardIds.remove((Object)cardId);
-		}
+		private final boolean all;
+		private final ImmutableSet<Integer> boardIds;
 	}
 }
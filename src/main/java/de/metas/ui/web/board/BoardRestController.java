@@ -33,6 +33,7 @@ import de.metas.ui.web.board.json.JSONBoardCardAddRequest;
 import de.metas.ui.web.board.json.JSONBoardCardOrderBy;
 import de.metas.ui.web.board.json.JSONBoardLane;
 import de.metas.ui.web.board.json.JSONNewCardsViewLayout;
+import de.metas.ui.web.board.json.events.JSONBoardChangedEventsList;
 import de.metas.ui.web.config.WebConfig;
 import de.metas.ui.web.document.filter.json.JSONDocumentFilterDescriptor;
 import de.metas.ui.web.session.UserSession;
@@ -136,6 +137,8 @@ public class BoardRestController
 		final String adLanguage = userSession.getAD_Language();
 		final BoardDescriptor boardDescriptor = boardsRepo.getBoardDescriptor(boardId);
 
+		// NOTE: fetch the version before the cards, so in worst case the client will get some events which were already applied
+		final long version = boardsRepo.getCardsVersion(boardId);
 		final Multimap<Integer, JSONBoardCard> cardsByLaneId = boardsRepo.getCards(boardId)
 				.stream()
 				.map(card -> JSONBoardCard.of(card, adLanguage))
@@ -144,7 +147,8 @@ public class BoardRestController
 		final JSONBoardBuilder jsonBoard = JSONBoard.builder()
 				.boardId(boardId)
 				.caption(boardDescriptor.getCaption().translate(adLanguage))
-				.websocketEndpoint(boardDescriptor.getWebsocketEndpoint());
+				.websocketEndpoint(boardDescriptor.getWebsocketEndpoint())
+				.version(version);
 
 		boardDescriptor.getLanes()
 				.values().stream()
@@ -158,6 +162,15 @@ public class BoardRestController
 		return jsonBoard.build();
 	}
 
+	@GetMapping("/{boardId}/events")
+	@ApiOperation("gets the board changes since given version, i.e. the changes a client missed while it was disconnected")
+	public JSONBoardChangedEventsList getEvents(@PathVariable("boardId") final int boardId, @RequestParam("sinceVersion") final long sinceVersion)
+	{
+		userSession.assertLoggedIn();
+
+		return boardsRepo.getEventsSinceVersion(boardId, sinceVersion);
+	}
+
 	@PostMapping("/{boardId}/card")
 	public JSONBoardCard addCard(@PathVariable("boardId") final int boardId, @RequestBody final JSONBoardCardAddRequest request)
 	{
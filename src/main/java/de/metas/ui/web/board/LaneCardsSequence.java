@@ -0,0 +1,134 @@
+package de.metas.ui.web.board;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Cards of a board lane, ordered by SeqNo.
+ */
+@EqualsAndHashCode
+@ToString
+final class LaneCardsSequence
+{
+	/**
+	 * Card SeqNos are spread with this gap, so moving a card only updates the moved card's SeqNo.
+	 * The lane is renumbered only when there is (almost) no gap left at the card's new position.
+	 */
+	static final int SEQNO_STEP = 1024;
+
+	private final int laneId;
+	private final List<Integer> cardIds = new ArrayList<>();
+	/** SeqNos, having the same index as {@link #cardIds} */
+	private final List<Integer> seqNos = new ArrayList<>();
+
+	public LaneCardsSequence(final int laneId)
+	{
+		this.laneId = laneId;
+	}
+
+	public void addCard(final int cardId, final int seqNo)
+	{
+		cardIds.add(cardId);
+		seqNos.add(seqNo);
+	}
+
+	public int getLaneId()
+	{
+		return laneId;
+	}
+
+	public List<Integer> getCardIds()
+	{
+		return cardIds;
+	}
+
+	/** @return index, in the list without given card, where the card will be inserted */
+	private int getInsertIndex(final int cardId, final int position)
+	{
+		final int sizeWithoutCard = cardIds.contains(cardId) ? cardIds.size() - 1 : cardIds.size();
+		if (position < 0 || position >= sizeWithoutCard)
+		{
+			return sizeWithoutCard;
+		}
+		return position;
+	}
+
+	private List<Integer> getSeqNosWithoutCard(final int cardId)
+	{
+		final int cardIndex = cardIds.indexOf(cardId);
+		if (cardIndex < 0)
+		{
+			return seqNos;
+		}
+
+		final List<Integer> seqNosWithoutCard = new ArrayList<>(seqNos);
+		seqNosWithoutCard.remove(cardIndex);
+		return seqNosWithoutCard;
+	}
+
+	private long getPreviousSeqNo(final List<Integer> seqNosWithoutCard, final int insertIndex)
+	{
+		return insertIndex > 0 ? seqNosWithoutCard.get(insertIndex - 1) : 0;
+	}
+
+	private long getNextSeqNo(final List<Integer> seqNosWithoutCard, final int insertIndex)
+	{
+		return insertIndex < seqNosWithoutCard.size() ? seqNosWithoutCard.get(insertIndex) : getPreviousSeqNo(seqNosWithoutCard, insertIndex) + 2L * SEQNO_STEP;
+	}
+
+	/**
+	 * @return SeqNo which places given card at given position (negative or out of range position means last position)
+	 *         or -1 if there is no gap at that position
+	 */
+	public int computeSeqNoForPosition(final int cardId, final int position)
+	{
+		Preconditions.checkArgument(cardId > 0, "cardId > 0");
+
+		final List<Integer> seqNosWithoutCard = getSeqNosWithoutCard(cardId);
+		final int insertIndex = getInsertIndex(cardId, position);
+		final long previousSeqNo = getPreviousSeqNo(seqNosWithoutCard, insertIndex);
+		final long nextSeqNo = getNextSeqNo(seqNosWithoutCard, insertIndex);
+		if (nextSeqNo - previousSeqNo <= 1)
+		{
+			return -1;
+		}
+
+		final long seqNo = previousSeqNo + (nextSeqNo - previousSeqNo) / 2;
+		return seqNo <= Integer.MAX_VALUE ? (int)seqNo : -1;
+	}
+
+	/** @return the gap between the neighbors of given position */
+	public long getGapAround(final int cardId, final int position)
+	{
+		final List<Integer> seqNosWithoutCard = getSeqNosWithoutCard(cardId);
+		final int insertIndex = getInsertIndex(cardId, position);
+		return getNextSeqNo(seqNosWithoutCard, insertIndex) - getPreviousSeqNo(seqNosWithoutCard, insertIndex);
+	}
+}
@@ -42,4 +42,7 @@ public class JSONBoard
 	private final List<JSONBoardLane> lanes;
 	
 	private final String websocketEndpoint;
+
+	/** Cards version, to be used when asking for the changes since this version */
+	private final long version;
 }
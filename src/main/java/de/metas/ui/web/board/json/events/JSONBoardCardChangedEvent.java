@@ -0,0 +1,51 @@
+package de.metas.ui.web.board.json.events;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Fired when the card's document was changed, so the card shall be fetched again.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class JSONBoardCardChangedEvent extends JSONBoardChangedEvent
+{
+	public static final JSONBoardCardChangedEvent of(final int boardId, final int cardId)
+	{
+		return new JSONBoardCardChangedEvent(boardId, cardId);
+	}
+
+	private final int cardId;
+
+	private JSONBoardCardChangedEvent(final int boardId, final int cardId)
+	{
+		super(ChangeType.cardChanged, boardId);
+		this.cardId = cardId;
+	}
+}
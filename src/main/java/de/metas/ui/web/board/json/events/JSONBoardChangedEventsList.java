@@ -2,6 +2,7 @@ package de.metas.ui.web.board.json.events;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.google.common.collect.ImmutableList;
 
 import lombok.Builder;
@@ -32,12 +33,19 @@ import lombok.Value;
 
 @JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
 @Value
-@Builder
+@Builder(toBuilder = true)
 public final class JSONBoardChangedEventsList
 {
 	@Singular
 	private final ImmutableList<JSONBoardChangedEvent> events;
 
+	/** Board version after applying the events */
+	private final long version;
+
+	/** true if the events since requested version are no longer available and the client shall reload the whole board */
+	@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+	private final boolean fullReloadRequired;
+
 	public boolean isEmpty()
 	{
 		return events.isEmpty();
@@ -1,5 +1,7 @@
 package de.metas.ui.web.cache;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -53,6 +55,7 @@ public class ETagResponseEntityBuilder<T extends ETagAware, R>
 	private Supplier<JSONOptions> jsonOptions = () -> null;
 	private int cacheMaxAgeSec = 10;
 	private boolean includeLanguageInETag = false;
+	private final Map<String, String> etagAttributes = new LinkedHashMap<>();
 
 	private ETagResponseEntityBuilder(@NonNull final WebRequest request, @NonNull final T etagAware, @NonNull final Supplier<R> result)
 	{
@@ -79,12 +82,28 @@ public class ETagResponseEntityBuilder<T extends ETagAware, R>
 		return this;
 	}
 
+	/**
+	 * Adds an attribute to the ETag. Useful when the response depends on something else than the ETagAware's version (e.g. current user).
+	 */
+	public ETagResponseEntityBuilder<T, R> etagAttribute(@NonNull final String name, @NonNull final String value)
+	{
+		etagAttributes.put(name, value);
+		return this;
+	}
+
+	private ETagResponseEntityBuilder<T, R> etagAttributes(final Map<String, String> etagAttributes)
+	{
+		this.etagAttributes.putAll(etagAttributes);
+		return this;
+	}
+
 	public <R2> ETagResponseEntityBuilder<T, R2> map(@NonNull final Function<R, R2> resultMapper)
 	{
 		final Supplier<R> result = this.result;
 		final Supplier<R2> newResult = () -> resultMapper.apply(result.get());
 		return new ETagResponseEntityBuilder<>(request, etagAware, newResult)
 				.includeLanguageInETag(includeLanguageInETag)
+				.etagAttributes(etagAttributes)
 				.cacheMaxAge(this.cacheMaxAgeSec);
 	}
 
@@ -107,6 +126,10 @@ public class ETagResponseEntityBuilder<T extends ETagAware, R>
 	private ETag getETag()
 	{
 		ETag etag = etagAware.getETag();
+		if (!etagAttributes.isEmpty())
+		{
+			etag = etag.overridingAttributes(etagAttributes);
+		}
 		if (includeLanguageInETag)
 		{
 			final String adLanguage = getJSONOptions().getAD_Language();
@@ -50,7 +50,9 @@ import de.metas.ui.web.menu.MenuTreeRepository;
 import de.metas.ui.web.process.ProcessRestController;
 import de.metas.ui.web.session.UserSession;
 import de.metas.ui.web.view.IViewsRepository;
+import de.metas.ui.web.view.SharedViewRowIdsOrderedSelections;
 import de.metas.ui.web.view.SqlViewFactory;
+import de.metas.ui.web.view.SqlViewSelectionToDeleteHelper;
 import de.metas.ui.web.view.ViewProfileId;
 import de.metas.ui.web.view.ViewResult;
 import de.metas.ui.web.view.ViewRowOverridesHelper;
@@ -108,6 +110,9 @@ public class DebugRestController
 	@Autowired
 	@Lazy
 	private SqlViewFactory sqlViewFactory;
+	@Autowired
+	@Lazy
+	private SharedViewRowIdsOrderedSelections sharedViewSelections;
 
 	@Autowired
 	@Lazy
@@ -185,6 +190,18 @@ public class DebugRestController
 				.collect(GuavaCollectors.toImmutableList());
 	}
 
+	@GetMapping("/views/selectionsToDelete/stats")
+	public Map<String, Object> getViewSelectionsToDeleteStats()
+	{
+		return SqlViewSelectionToDeleteHelper.getStats();
+	}
+
+	@GetMapping("/views/sharedSelections/stats")
+	public Map<String, Object> getSharedViewSelectionsStats()
+	{
+		return sharedViewSelections.getStats();
+	}
+
 	@PostMapping("/viewDefaultProfile/{windowId}")
 	public void setDefaultViewProfile(@PathVariable("windowId") final String windowIdStr, @RequestBody final String profileIdStr)
 	{
@@ -200,6 +217,12 @@ public class DebugRestController
 				.collect(GuavaCollectors.toImmutableList());
 	}
 
+	@GetMapping("/documents/cacheStats")
+	public Map<String, Object> getDocumentsCacheStats()
+	{
+		return documentCollection.getCacheStats();
+	}
+
 	@RequestMapping(value = "/eventBus/postEvent", method = RequestMethod.GET)
 	public void postEvent(
 			@RequestParam(name = "topicName", defaultValue = "de.metas.event.GeneralNotifications") final String topicName //
@@ -405,4 +428,15 @@ public class DebugRestController
 		return websocketSender.getLoggedEvents(destinationFilter);
 	}
 
+	@GetMapping("websocketEvents/stats")
+	public Map<String, Object> getWebsocketEventsStats(@RequestParam(value = "reset", defaultValue = "false") final boolean reset)
+	{
+		final Map<String, Object> stats = websocketSender.getStats();
+		if (reset)
+		{
+			websocketSender.resetStats();
+		}
+		return stats;
+	}
+
 }
@@ -0,0 +1,282 @@
+package de.metas.ui.web.handlingunits;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.Services;
+import org.slf4j.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.handlingunits.HuId;
+import de.metas.logging.LogManager;
+import de.metas.ui.web.document.filter.DocumentFilter;
+import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverterContext;
+import de.metas.ui.web.exceptions.EntityNotFoundException;
+import de.metas.ui.web.handlingunits.HUIdsFilterHelper.HUIdsFilterData;
+import de.metas.ui.web.view.ViewId;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
+import de.metas.ui.web.window.model.DocumentQueryOrderBy;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * {@link HUEditorViewBuffer} which picks the {@link HUEditorViewBuffer_FullyCached} or the {@link HUEditorViewBuffer_HighVolume} strategy
+ * based on the estimated number of rows (top level rows and included rows).
+ * <p>
+ * When HUs are added and the estimated number of rows is exceeding the configured maximum,
+ * the fully cached rows are dropped and the buffer spills over to the database backed {@link HUEditorViewBuffer_HighVolume} strategy.
+ * The estimation is kept in sync with the top level HUs which were added and removed; an HU which is already in the buffer is not counted twice.
+ * Once switched to high volume, the buffer does not switch back.
+ */
+final class HUEditorViewBuffer_Adaptive implements HUEditorViewBuffer
+{
+	private static final Logger logger = LogManager.getLogger(HUEditorViewBuffer_Adaptive.class);
+
+	private static final String SYSCONFIG_FullyCachedMaxRows = "de.metas.ui.web.handlingunits.HUEditorViewBuffer.FullyCached.MaxRows";
+	private static final int DEFAULT_FullyCachedMaxRows = 500;
+
+	private final ViewId viewId;
+	private final HUEditorViewRepository huEditorRepo;
+	private final ImmutableList<DocumentFilter> filters;
+	private final ImmutableList<DocumentQueryOrderBy> orderBys;
+	private final SqlDocumentFilterConverterContext context;
+
+	private final int fullyCachedMaxRows;
+	/** top level HUs which are in the fully cached buffer; <code>null</code> if the buffer is high volume */
+	private Set<HuId> fullyCachedHUIds;
+	private long estimatedRowsCount;
+	private volatile HUEditorViewBuffer delegate;
+
+	HUEditorViewBuffer_Adaptive(
+			@NonNull final ViewId viewId,
+			@NonNull final HUEditorViewRepository huEditorRepo,
+			final List<DocumentFilter> stickyFilters,
+			final List<DocumentFilter> filters,
+			final List<DocumentQueryOrderBy> orderBys,
+			@NonNull final SqlDocumentFilterConverterContext context)
+	{
+		this.viewId = viewId;
+		this.huEditorRepo = huEditorRepo;
+		this.filters = filters != null ? ImmutableList.copyOf(filters) : ImmutableList.of();
+		this.orderBys = orderBys != null ? ImmutableList.copyOf(orderBys) : ImmutableList.of();
+		this.context = context;
+
+		fullyCachedMaxRows = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_FullyCachedMaxRows, DEFAULT_FullyCachedMaxRows);
+
+		final Set<HuId> initialHUIds = extractInitialHUIdsOrNull(stickyFilters);
+		estimatedRowsCount = initialHUIds != null ? estimateRowsCount(initialHUIds) : Integer.MAX_VALUE;
+		if (isHighVolume(estimatedRowsCount))
+		{
+			fullyCachedHUIds = null;
+			delegate = new HUEditorViewBuffer_HighVolume(viewId, huEditorRepo, stickyFilters, this.filters, this.orderBys, context);
+		}
+		else
+		{
+			fullyCachedHUIds = new HashSet<>(initialHUIds);
+			delegate = new HUEditorViewBuffer_FullyCached(viewId, huEditorRepo, stickyFilters, this.filters, this.orderBys, context);
+		}
+	}
+
+	/** @return initial top level HUs or <code>null</code> if the HUs are not restricted */
+	private static Set<HuId> extractInitialHUIdsOrNull(final List<DocumentFilter> stickyFilters)
+	{
+		final HUIdsFilterData huIdsFilterData = HUIdsFilterHelper.extractFilterDataOrNull(stickyFilters);
+		if (huIdsFilterData == null)
+		{
+			return null;
+		}
+
+		// null means no restrictions, so we might have a lot of HUs
+		return huIdsFilterData.getInitialHUIds();
+	}
+
+	private int estimateRowsCount(final Collection<HuId> topLevelHUIds)
+	{
+		if (topLevelHUIds.isEmpty())
+		{
+			return 0;
+		}
+		else if (topLevelHUIds.size() > fullyCachedMaxRows)
+		{
+			// no need to ask the database, we have more top level rows than allowed
+			return topLevelHUIds.size();
+		}
+		else
+		{
+			return huEditorRepo.estimateRowsCount(ImmutableSet.copyOf(topLevelHUIds));
+		}
+	}
+
+	private boolean isHighVolume(final long estimatedRowsCount)
+	{
+		return estimatedRowsCount > fullyCachedMaxRows;
+	}
+
+	private HUEditorViewBuffer getDelegate()
+	{
+		return delegate;
+	}
+
+	@VisibleForTesting
+	boolean isHighVolume()
+	{
+		return getDelegate() instanceof HUEditorViewBuffer_HighVolume;
+	}
+
+	@VisibleForTesting
+	synchronized long getEstimatedRowsCount()
+	{
+		return estimatedRowsCount;
+	}
+
+	@Override
+	public ViewId getViewId()
+	{
+		return viewId;
+	}
+
+	@Override
+	public List<DocumentFilter> getStickyFilters()
+	{
+		return getDelegate().getStickyFilters();
+	}
+
+	@Override
+	public long size()
+	{
+		return getDelegate().size();
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		getDelegate().invalidateAll();
+	}
+
+	@Override
+	public synchronized boolean addHUIds(final Collection<HuId> huIdsToAdd)
+	{
+		final boolean changed = getDelegate().addHUIds(huIdsToAdd);
+		if (!changed || fullyCachedHUIds == null)
+		{
+			return changed;
+		}
+
+		// count only the HUs which were not already in the buffer
+		final Set<HuId> newHUIds = huIdsToAdd.stream()
+				.filter(huId -> !fullyCachedHUIds.contains(huId))
+				.collect(ImmutableSet.toImmutableSet());
+		if (newHUIds.isEmpty())
+		{
+			return changed;
+		}
+
+		fullyCachedHUIds.addAll(newHUIds);
+		estimatedRowsCount += estimateRowsCount(newHUIds);
+		if (isHighVolume(estimatedRowsCount))
+		{
+			switchToHighVolume();
+		}
+
+		return changed;
+	}
+
+	private void switchToHighVolume()
+	{
+		// NOTE: the fully cached buffer's sticky filters are containing all the HUs which were added/removed meanwhile
+		final List<DocumentFilter> stickyFilters = getDelegate().getStickyFilters();
+		delegate = new HUEditorViewBuffer_HighVolume(viewId, huEditorRepo, stickyFilters, filters, orderBys, context);
+		fullyCachedHUIds = null;
+
+		logger.debug("Switched {} to high volume buffer because estimated rows count {} exceeds {}", viewId, estimatedRowsCount, fullyCachedMaxRows);
+	}
+
+	@Override
+	public synchronized boolean removeHUIds(final Collection<HuId> huIdsToRemove)
+	{
+		final boolean changed = getDelegate().removeHUIds(huIdsToRemove);
+		if (!changed || fullyCachedHUIds == null)
+		{
+			return changed;
+		}
+
+		if (fullyCachedHUIds.removeAll(huIdsToRemove))
+		{
+			// re-estimate the remaining HUs, because the removed ones might have changed since they were counted
+			estimatedRowsCount = estimateRowsCount(fullyCachedHUIds);
+		}
+
+		return changed;
+	}
+
+	@Override
+	public boolean containsAnyOfHUIds(final Collection<HuId> huIdsToCheck)
+	{
+		return getDelegate().containsAnyOfHUIds(huIdsToCheck);
+	}
+
+	@Override
+	public Stream<HUEditorRow> streamAllRecursive(final HUEditorRowFilter filter) throws UnsupportedOperationException
+	{
+		return getDelegate().streamAllRecursive(filter);
+	}
+
+	@Override
+	public boolean matchesAnyRowRecursive(final HUEditorRowFilter filter)
+	{
+		return getDelegate().matchesAnyRowRecursive(filter);
+	}
+
+	@Override
+	public Stream<HUEditorRow> streamByIdsExcludingIncludedRows(final HUEditorRowFilter filter)
+	{
+		return getDelegate().streamByIdsExcludingIncludedRows(filter);
+	}
+
+	@Override
+	public Stream<HUEditorRow> streamPage(final int firstRow, final int pageLength, final HUEditorRowFilter filter, final List<DocumentQueryOrderBy> orderBys)
+	{
+		return getDelegate().streamPage(firstRow, pageLength, filter, orderBys);
+	}
+
+	@Override
+	public HUEditorRow getById(final DocumentId rowId) throws EntityNotFoundException
+	{
+		return getDelegate().getById(rowId);
+	}
+
+	@Override
+	public String getSqlWhereClause(final DocumentIdsSelection rowIds)
+	{
+		return getDelegate().getSqlWhereClause(rowIds);
+	}
+}
@@ -4,12 +4,13 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.Services;
 import org.adempiere.util.collections.IteratorUtils;
 import org.adempiere.util.collections.PagedIterator.PageFetcher;
 import org.adempiere.util.lang.Mutables;
@@ -25,7 +26,6 @@ import de.metas.handlingunits.model.I_M_HU;
 import de.metas.ui.web.document.filter.DocumentFilter;
 import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverterContext;
 import de.metas.ui.web.exceptions.EntityNotFoundException;
-import de.metas.ui.web.handlingunits.HUIdsFilterHelper.HUIdsFilterData;
 import de.metas.ui.web.view.ViewEvaluationCtx;
 import de.metas.ui.web.view.ViewId;
 import de.metas.ui.web.view.ViewRowIdsOrderedSelection;
@@ -58,8 +58,11 @@ import lombok.NonNull;
 
 public class HUEditorViewBuffer_HighVolume implements HUEditorViewBuffer
 {
-	private static final int HIGHVOLUME_THRESHOLD = 100;
-	private static final int STREAM_ALL_MAX_SIZE_ALLOWED = 200;
+	private static final String SYSCONFIG_StreamAllMaxSize = "de.metas.ui.web.handlingunits.HUEditorViewBuffer.HighVolume.StreamAllMaxSize";
+	private static final int DEFAULT_StreamAllMaxSize = 200;
+
+	private static final String SYSCONFIG_RowsCacheSize = "de.metas.ui.web.handlingunits.HUEditorViewBuffer.HighVolume.RowsCacheSize";
+	private static final int DEFAULT_RowsCacheSize = 100;
 
 	private final ViewEvaluationCtx viewEvaluationCtx;
 
@@ -70,7 +73,8 @@ public class HUEditorViewBuffer_HighVolume implements HUEditorViewBuffer
 	private final SynchronizedMutable<ViewRowIdsOrderedSelection> defaultSelectionRef;
 	private final transient ConcurrentHashMap<ImmutableList<DocumentQueryOrderBy>, ViewRowIdsOrderedSelection> selectionsByOrderBys = new ConcurrentHashMap<>();
 
-	private final CCache<DocumentId, HUEditorRow> cache_huRowsById = CCache.newLRUCache(I_M_HU.Table_Name + "#HUEditorRows#by#Id", 100, 2);
+	private final int streamAllMaxSize;
+	private final CCache<DocumentId, HUEditorRow> cache_huRowsById;
 
 	HUEditorViewBuffer_HighVolume(
 			final ViewId viewId,
@@ -85,6 +89,11 @@ public class HUEditorViewBuffer_HighVolume implements HUEditorViewBuffer
 		this.huEditorRepo = huEditorRepo;
 		this.stickyFilters = ImmutableList.copyOf(stickyFilters);
 
+		final ISysConfigBL sysConfigBL = Services.get(ISysConfigBL.class);
+		streamAllMaxSize = sysConfigBL.getIntValue(SYSCONFIG_StreamAllMaxSize, DEFAULT_StreamAllMaxSize);
+		final int rowsCacheSize = sysConfigBL.getIntValue(SYSCONFIG_RowsCacheSize, DEFAULT_RowsCacheSize);
+		cache_huRowsById = CCache.newLRUCache(I_M_HU.Table_Name + "#HUEditorRows#by#Id", rowsCacheSize, 2);
+
 		final List<DocumentFilter> filtersAll = ImmutableList.copyOf(Iterables.concat(stickyFilters, filters));
 
 		defaultSelectionFactory = () -> huEditorRepo.createSelection(getViewEvaluationCtx(), viewId, filtersAll, orderBys, context);
@@ -206,12 +215,12 @@ public class HUEditorViewBuffer_HighVolume implements HUEditorViewBuffer
 	public Stream<HUEditorRow> streamAllRecursive(@NonNull final HUEditorRowFilter filter) throws UnsupportedOperationException
 	{
 		final ViewRowIdsOrderedSelection defaultSelection = getDefaultSelection();
-		if (defaultSelection.getSize() > STREAM_ALL_MAX_SIZE_ALLOWED)
+		if (defaultSelection.getSize() > streamAllMaxSize)
 		{
-			throw new UnsupportedOperationException("Streaming all rows when selection is bigger than " + STREAM_ALL_MAX_SIZE_ALLOWED + " is not allowed");
+			throw new UnsupportedOperationException("Streaming all rows when selection is bigger than " + streamAllMaxSize + " is not allowed");
 		}
 
-		return streamPage(0, STREAM_ALL_MAX_SIZE_ALLOWED, filter, defaultSelection.getOrderBys())
+		return streamPage(0, streamAllMaxSize, filter, defaultSelection.getOrderBys())
 				.flatMap(HUEditorRow::streamRecursive)
 				.map(HUEditorRow::cast)
 				.filter(HUEditorRowFilters.toPredicate(filter));
@@ -309,31 +318,4 @@ public class HUEditorViewBuffer_HighVolume implements HUEditorViewBuffer
 	{
 		return huEditorRepo.buildSqlWhereClause(getDefaultSelection(), rowIds);
 	}
-
-	public static boolean isHighVolume(final List<DocumentFilter> stickyFilters)
-	{
-		final HUIdsFilterData huIdsFilterData = HUIdsFilterHelper.extractFilterDataOrNull(stickyFilters);
-		if (huIdsFilterData == null)
-		{
-			return true;
-		}
-
-		final Set<HuId> huIds = huIdsFilterData.getInitialHUIds();
-		if (huIds == null)
-		{
-			// null means no restrictions, so we might have a lot of HUs
-			return true; // high volume
-		}
-		else if (huIds.isEmpty())
-		{
-			// no HUs will be allowed
-			return false; // not high volume
-		}
-		else
-		{
-			// consider high volume if it's above give threshold
-			return huIds.size() >= HIGHVOLUME_THRESHOLD;
-		}
-	}
-
 }
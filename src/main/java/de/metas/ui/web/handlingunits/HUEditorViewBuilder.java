@@ -294,13 +294,6 @@ public final class HUEditorViewBuilder
 		final List<DocumentFilter> stickyFilters = getStickyFilters();
 		final List<DocumentFilter> filters = getFilters();
 
-		if (HUEditorViewBuffer_HighVolume.isHighVolume(stickyFilters))
-		{
-			return new HUEditorViewBuffer_HighVolume(viewId, huEditorViewRepository, stickyFilters, filters, getOrderBys(), context);
-		}
-		else
-		{
-			return new HUEditorViewBuffer_FullyCached(viewId, huEditorViewRepository, stickyFilters, filters, getOrderBys(), context);
-		}
+		return new HUEditorViewBuffer_Adaptive(viewId, huEditorViewRepository, stickyFilters, filters, getOrderBys(), context);
 	}
 }
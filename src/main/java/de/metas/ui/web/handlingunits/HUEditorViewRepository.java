@@ -58,6 +58,11 @@ public interface HUEditorViewRepository
 	 */
 	HUEditorRow retrieveForHUId(HuId huId);
 
+	/**
+	 * @return estimated number of rows (top level rows and all their included rows) which would be created for given top level HUs
+	 */
+	int estimateRowsCount(Set<HuId> topLevelHUIds);
+
 	Set<HuId> retrieveHUIdsEffective(HUIdsFilterData huIdsFilter,
 			List<DocumentFilter> filters,
 			SqlDocumentFilterConverterContext context);
@@ -0,0 +1,239 @@
+package de.metas.ui.web.handlingunits;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.adempiere.ad.dao.IQueryBL;
+import org.adempiere.mm.attributes.api.IAttributeDAO;
+import org.adempiere.util.Services;
+import org.compiere.model.I_M_Attribute;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.handlingunits.HuId;
+import de.metas.handlingunits.IHandlingUnitsBL;
+import de.metas.handlingunits.attribute.Constants;
+import de.metas.handlingunits.model.I_M_HU;
+import de.metas.handlingunits.model.I_M_HU_Attribute;
+import de.metas.handlingunits.model.I_M_HU_Item;
+import de.metas.handlingunits.model.I_M_HU_Storage;
+import de.metas.handlingunits.model.X_M_HU_Item;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * The given top level HUs together with all their included HUs, storages and best before dates.
+ * <p>
+ * Everything is fetched level by level using a few set based queries, so building the {@link HUEditorRow}s of an HU editor
+ * does not need to query the database for each HU.
+ */
+final class HUForest
+{
+	public static HUForest load(@NonNull final Collection<I_M_HU> topLevelHUs, final boolean loadBestBeforeDates)
+	{
+		return new HUForest(topLevelHUs, loadBestBeforeDates);
+	}
+
+	private final ImmutableMap<HuId, I_M_HU> husById;
+	private final ImmutableListMultimap<HuId, I_M_HU> includedHUsByParentId;
+	private final ImmutableSet<HuId> aggregatedHUIds;
+	private final ImmutableListMultimap<HuId, I_M_HU_Storage> storagesByHUId;
+	private final ImmutableMap<HuId, Date> bestBeforeDatesByHUId;
+
+	private HUForest(final Collection<I_M_HU> topLevelHUs, final boolean loadBestBeforeDates)
+	{
+		final Map<HuId, I_M_HU> husById = new HashMap<>();
+		final ImmutableListMultimap.Builder<HuId, I_M_HU> includedHUsByParentId = ImmutableListMultimap.builder();
+		final ImmutableSet.Builder<HuId> aggregatedHUIds = ImmutableSet.builder();
+
+		final IHandlingUnitsBL handlingUnitsBL = Services.get(IHandlingUnitsBL.class);
+		for (final I_M_HU topLevelHU : topLevelHUs)
+		{
+			final HuId topLevelHUId = HuId.ofRepoId(topLevelHU.getM_HU_ID());
+			husById.put(topLevelHUId, topLevelHU);
+			if (handlingUnitsBL.isAggregateHU(topLevelHU))
+			{
+				aggregatedHUIds.add(topLevelHUId);
+			}
+		}
+
+		Set<HuId> parentHUIds = ImmutableSet.copyOf(husById.keySet());
+		while (!parentHUIds.isEmpty())
+		{
+			final ImmutableMap<Integer, I_M_HU_Item> itemsById = retrieveItems(parentHUIds);
+			if (itemsById.isEmpty())
+			{
+				break;
+			}
+
+			final ImmutableSet.Builder<HuId> includedHUIds = ImmutableSet.builder();
+			for (final I_M_HU includedHU : retrieveIncludedHUs(itemsById.keySet()))
+			{
+				final HuId includedHUId = HuId.ofRepoId(includedHU.getM_HU_ID());
+				if (husById.putIfAbsent(includedHUId, includedHU) != null)
+				{
+					continue; // shall not happen, but avoid endless loops on inconsistent data
+				}
+
+				final I_M_HU_Item parentItem = itemsById.get(includedHU.getM_HU_Item_Parent_ID());
+				includedHUsByParentId.put(HuId.ofRepoId(parentItem.getM_HU_ID()), includedHU);
+				if (X_M_HU_Item.ITEMTYPE_HUAggregate.equals(parentItem.getItemType()))
+				{
+					aggregatedHUIds.add(includedHUId);
+				}
+
+				includedHUIds.add(includedHUId);
+			}
+
+			parentHUIds = includedHUIds.build();
+		}
+
+		this.husById = ImmutableMap.copyOf(husById);
+		this.includedHUsByParentId = includedHUsByParentId.build();
+		this.aggregatedHUIds = aggregatedHUIds.build();
+		this.storagesByHUId = retrieveStorages(this.husById.keySet());
+		this.bestBeforeDatesByHUId = loadBestBeforeDates ? retrieveBestBeforeDates(this.husById.keySet()) : ImmutableMap.of();
+	}
+
+	private static ImmutableMap<Integer, I_M_HU_Item> retrieveItems(final Set<HuId> huIds)
+	{
+		return Services.get(IQueryBL.class).createQueryBuilderOutOfTrx(I_M_HU_Item.class)
+				.addInArrayFilter(I_M_HU_Item.COLUMNNAME_M_HU_ID, HuId.toRepoIds(huIds))
+				.addOnlyActiveRecordsFilter()
+				.create()
+				.stream(I_M_HU_Item.class)
+				.collect(ImmutableMap.toImmutableMap(I_M_HU_Item::getM_HU_Item_ID, item -> item));
+	}
+
+	/** @return active included HUs, in the same order as {@code IHandlingUnitsDAO.retrieveIncludedHUs} would return them */
+	private static List<I_M_HU> retrieveIncludedHUs(final Set<Integer> parentItemIds)
+	{
+		return Services.get(IQueryBL.class).createQueryBuilderOutOfTrx(I_M_HU.class)
+				.addInArrayFilter(I_M_HU.COLUMNNAME_M_HU_Item_Parent_ID, parentItemIds)
+				.addOnlyActiveRecordsFilter()
+				.orderBy()
+				.addColumn(I_M_HU.COLUMNNAME_M_HU_Item_Parent_ID)
+				.addColumn(I_M_HU.COLUMNNAME_M_HU_ID)
+				.endOrderBy()
+				.create()
+				.list(I_M_HU.class);
+	}
+
+	private static ImmutableListMultimap<HuId, I_M_HU_Storage> retrieveStorages(final Set<HuId> huIds)
+	{
+		if (huIds.isEmpty())
+		{
+			return ImmutableListMultimap.of();
+		}
+
+		return Services.get(IQueryBL.class).createQueryBuilderOutOfTrx(I_M_HU_Storage.class)
+				.addInArrayFilter(I_M_HU_Storage.COLUMNNAME_M_HU_ID, HuId.toRepoIds(huIds))
+				.orderBy()
+				.addColumn(I_M_HU_Storage.COLUMNNAME_M_HU_Storage_ID)
+				.endOrderBy()
+				.create()
+				.stream(I_M_HU_Storage.class)
+				.collect(ImmutableListMultimap.toImmutableListMultimap(storage -> HuId.ofRepoId(storage.getM_HU_ID()), storage -> storage));
+	}
+
+	private static ImmutableMap<HuId, Date> retrieveBestBeforeDates(final Set<HuId> huIds)
+	{
+		if (huIds.isEmpty())
+		{
+			return ImmutableMap.of();
+		}
+
+		final I_M_Attribute bestBeforeAttribute = Services.get(IAttributeDAO.class).retrieveAttributeByValue(Constants.ATTR_BestBeforeDate);
+		if (bestBeforeAttribute == null)
+		{
+			return ImmutableMap.of();
+		}
+
+		final Map<HuId, Date> bestBeforeDatesByHUId = new HashMap<>();
+		Services.get(IQueryBL.class).createQueryBuilderOutOfTrx(I_M_HU_Attribute.class)
+				.addInArrayFilter(I_M_HU_Attribute.COLUMNNAME_M_HU_ID, HuId.toRepoIds(huIds))
+				.addEqualsFilter(I_M_HU_Attribute.COLUMNNAME_M_Attribute_ID, bestBeforeAttribute.getM_Attribute_ID())
+				.create()
+				.stream(I_M_HU_Attribute.class)
+				.filter(huAttribute -> huAttribute.getValueDate() != null)
+				.forEach(huAttribute -> bestBeforeDatesByHUId.put(HuId.ofRepoId(huAttribute.getM_HU_ID()), huAttribute.getValueDate()));
+
+		return ImmutableMap.copyOf(bestBeforeDatesByHUId);
+	}
+
+	public ImmutableSet<HuId> getAllHUIds()
+	{
+		return husById.keySet();
+	}
+
+	/** @return true if the given HU is included in an aggregate item of it's parent */
+	public boolean isAggregatedHU(@NonNull final HuId huId)
+	{
+		return aggregatedHUIds.contains(huId);
+	}
+
+	public List<I_M_HU> getIncludedHUs(@NonNull final HuId huId)
+	{
+		return includedHUsByParentId.get(huId);
+	}
+
+	public List<I_M_HU_Storage> getStorages(@NonNull final HuId huId)
+	{
+		return storagesByHUId.get(huId);
+	}
+
+	/** @return the storage record if the given HU contains exactly one product, else null */
+	@Nullable
+	public I_M_HU_Storage getSingleProductStorageOrNull(@NonNull final HuId huId)
+	{
+		final List<I_M_HU_Storage> storages = getStorages(huId);
+		if (storages.size() != 1)
+		{
+			return null;
+		}
+		return storages.get(0);
+	}
+
+	@Nullable
+	public Date getBestBeforeDate(@NonNull final HuId huId)
+	{
+		return bestBeforeDatesByHUId.get(huId);
+	}
+
+	public ImmutableSet<Integer> getAllProductIds()
+	{
+		return storagesByHUId.values()
+				.stream()
+				.map(I_M_HU_Storage::getM_Product_ID)
+				.collect(ImmutableSet.toImmutableSet());
+	}
+}
@@ -6,9 +6,10 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -41,14 +42,13 @@ import de.metas.handlingunits.IHandlingUnitsBL;
 import de.metas.handlingunits.IHandlingUnitsDAO;
 import de.metas.handlingunits.exceptions.HUException;
 import de.metas.handlingunits.model.I_M_HU;
+import de.metas.handlingunits.model.I_M_HU_Item;
+import de.metas.handlingunits.model.I_M_HU_Storage;
 import de.metas.handlingunits.model.I_M_Locator;
 import de.metas.handlingunits.model.I_M_Warehouse;
 import de.metas.handlingunits.model.X_M_HU;
 import de.metas.handlingunits.model.X_M_HU_PI_Version;
 import de.metas.handlingunits.reservation.HUReservationService;
-import de.metas.handlingunits.storage.IHUProductStorage;
-import de.metas.handlingunits.storage.IHUStorage;
-import de.metas.handlingunits.storage.IHUStorageFactory;
 import de.metas.i18n.IMsgBL;
 import de.metas.logging.LogManager;
 import de.metas.order.OrderLineId;
@@ -71,7 +71,6 @@ import de.metas.ui.web.view.descriptor.SqlViewKeyColumnNamesMap;
 import de.metas.ui.web.view.descriptor.SqlViewRowIdsConverter;
 import de.metas.ui.web.view.descriptor.SqlViewSelectData;
 import de.metas.ui.web.view.descriptor.SqlViewSelectionQueryBuilder;
-import de.metas.ui.web.window.datatypes.DocumentId;
 import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
 import de.metas.ui.web.window.datatypes.WindowId;
 import de.metas.ui.web.window.datatypes.json.JSONLookupValue;
@@ -163,13 +162,7 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 	@Override
 	public List<HUEditorRow> retrieveHUEditorRows(@NonNull final Set<HuId> huIds, @NonNull final HUEditorRowFilter filter)
 	{
-		huReservationService.warmup(huIds);
-
-		final HuId topLevelHUId = null;
-		return retrieveTopLevelHUs(huIds, filter)
-				.stream()
-				.map(hu -> createHUEditorRow(hu, topLevelHUId))
-				.collect(GuavaCollectors.toImmutableList());
+		return createHUEditorRows(retrieveTopLevelHUs(huIds, filter));
 	}
 
 	@Override
@@ -183,8 +176,8 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 		// TODO: check if the huId is part of our collection
 
 		final I_M_HU hu = Services.get(IHandlingUnitsDAO.class).getByIdOutOfTrx(huId);
-		final HuId topLevelHUId = null; // assume given huId is a top level HU
-		return createHUEditorRow(hu, topLevelHUId);
+		// assume given huId is a top level HU
+		return createHUEditorRows(ImmutableList.of(hu)).get(0);
 	}
 
 	private static List<I_M_HU> retrieveTopLevelHUs(@NonNull final Collection<HuId> huIds, @NonNull final HUEditorRowFilter filter)
@@ -210,14 +203,39 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 				.list();
 	}
 
+	/**
+	 * Loads the whole HU forest of given top level HUs in bulk and then builds the rows in memory.
+	 */
+	private List<HUEditorRow> createHUEditorRows(final List<I_M_HU> topLevelHUs)
+	{
+		if (topLevelHUs.isEmpty())
+		{
+			return ImmutableList.of();
+		}
+
+		final boolean loadBestBeforeDates = showBestBeforeDate && attributesProvider != null;
+		final HUForest huForest = HUForest.load(topLevelHUs, loadBestBeforeDates);
+		huReservationService.warmup(huForest.getAllHUIds());
+
+		final LookupValuesCache lookupValues = new LookupValuesCache(huForest.getAllProductIds());
+
+		final HuId topLevelHUId = null;
+		return topLevelHUs
+				.stream()
+				.map(hu -> createHUEditorRow(hu, topLevelHUId, huForest, lookupValues))
+				.collect(GuavaCollectors.toImmutableList());
+	}
+
 	private HUEditorRow createHUEditorRow(
 			@NonNull final I_M_HU hu,
-			final HuId topLevelHUId)
+			final HuId topLevelHUId,
+			@NonNull final HUForest huForest,
+			@NonNull final LookupValuesCache lookupValues)
 	{
-		// final Stopwatch stopwatch = Stopwatch.createStarted();
+		final HuId huId = HuId.ofRepoId(hu.getM_HU_ID());
 
 		final IHandlingUnitsBL handlingUnitsBL = Services.get(IHandlingUnitsBL.class);
-		final boolean aggregatedTU = handlingUnitsBL.isAggregateHU(hu);
+		final boolean aggregatedTU = huForest.isAggregatedHU(huId);
 		final String huUnitTypeCode = handlingUnitsBL.getHU_UnitType(hu);
 		final HUEditorRowType huRecordType;
 		if (aggregatedTU)
@@ -228,14 +246,13 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 		{
 			huRecordType = HUEditorRowType.ofHU_UnitType(huUnitTypeCode);
 		}
-		final Optional<OrderLineId> orderLineIdWithReservation = huReservationService.getReservedForOrderLineId(HuId.ofRepoId(hu.getM_HU_ID()));
+		final Optional<OrderLineId> orderLineIdWithReservation = huReservationService.getReservedForOrderLineId(huId);
 
 		final String huUnitTypeDisplayName = huRecordType.getName();
 		final JSONLookupValue huUnitTypeLookupValue = JSONLookupValue.of(huUnitTypeCode, huUnitTypeDisplayName);
 
 		final JSONLookupValue huStatusDisplay = createHUStatusDisplayLookupValue(hu);
 		final boolean processed = rowProcessedPredicate.isProcessed(hu);
-		final HuId huId = HuId.ofRepoId(hu.getM_HU_ID());
 		final HUEditorRowId rowId = HUEditorRowId.ofHU(huId, topLevelHUId);
 
 		final HUEditorRow.Builder huEditorRow = HUEditorRow.builder(windowId)
@@ -258,24 +275,24 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 		// Acquire Best Before Date if required
 		if (showBestBeforeDate)
 		{
-			huEditorRow.setBestBeforeDate(extractBestBeforeDate(attributesProvider, rowId));
+			huEditorRow.setBestBeforeDate(huForest.getBestBeforeDate(huId));
 		}
 
 		//
 		// Locator
 		if (showLocator)
 		{
-			huEditorRow.setLocator(createLocatorLookupValue(hu.getM_Locator_ID()));
+			huEditorRow.setLocator(lookupValues.getLocator(hu.getM_Locator_ID()));
 		}
 
 		//
 		// Product/UOM/Qty if there is only one product stored
-		final IHUProductStorage singleProductStorage = getSingleProductStorage(hu);
+		final I_M_HU_Storage singleProductStorage = huForest.getSingleProductStorageOrNull(huId);
 		if (singleProductStorage != null)
 		{
 			huEditorRow
-					.setProduct(createProductLookupValue(singleProductStorage.getM_Product()))
-					.setUOM(createUOMLookupValue(singleProductStorage.getC_UOM()))
+					.setProduct(lookupValues.getProduct(singleProductStorage.getM_Product_ID()))
+					.setUOM(lookupValues.getUOM(singleProductStorage.getC_UOM_ID()))
 					.setQtyCU(singleProductStorage.getQty());
 		}
 
@@ -284,33 +301,28 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 		final HuId topLevelHUIdEffective = topLevelHUId != null ? topLevelHUId : huId;
 		if (aggregatedTU)
 		{
-			final IHUStorageFactory storageFactory = handlingUnitsBL.getStorageFactory();
-			storageFactory
-					.getStorage(hu)
-					.getProductStorages()
+			huForest.getStorages(huId)
 					.stream()
-					.map(huStorage -> createHUEditorRow(huId, topLevelHUIdEffective, huStorage, processed))
+					.map(huStorage -> createHUEditorRow(huId, topLevelHUIdEffective, hu, huStorage, processed, lookupValues))
 					.forEach(huEditorRow::addIncludedRow);
 
 		}
 		else if (X_M_HU_PI_Version.HU_UNITTYPE_LoadLogistiqueUnit.equals(huUnitTypeCode))
 		{
-			final IHandlingUnitsDAO handlingUnitsDAO = Services.get(IHandlingUnitsDAO.class);
-			handlingUnitsDAO.retrieveIncludedHUs(hu)
+			huForest.getIncludedHUs(huId)
 					.stream()
-					.map(includedHU -> createHUEditorRow(includedHU, topLevelHUIdEffective))
+					.map(includedHU -> createHUEditorRow(includedHU, topLevelHUIdEffective, huForest, lookupValues))
 					.forEach(huEditorRow::addIncludedRow);
 		}
 		else if (X_M_HU_PI_Version.HU_UNITTYPE_TransportUnit.equals(huUnitTypeCode))
 		{
-			final IHandlingUnitsDAO handlingUnitsDAO = Services.get(IHandlingUnitsDAO.class);
-			final IHUStorageFactory storageFactory = handlingUnitsBL.getStorageFactory();
-			handlingUnitsDAO.retrieveIncludedHUs(hu)
-					.stream()
-					.map(includedVHU -> storageFactory.getStorage(includedVHU))
-					.flatMap(vhuStorage -> vhuStorage.getProductStorages().stream())
-					.map(vhuProductStorage -> createHUEditorRow(huId, topLevelHUIdEffective, vhuProductStorage, processed))
-					.forEach(huEditorRow::addIncludedRow);
+			for (final I_M_HU includedVHU : huForest.getIncludedHUs(huId))
+			{
+				huForest.getStorages(HuId.ofRepoId(includedVHU.getM_HU_ID()))
+						.stream()
+						.map(vhuStorage -> createHUEditorRow(huId, topLevelHUIdEffective, includedVHU, vhuStorage, processed, lookupValues))
+						.forEach(huEditorRow::addIncludedRow);
+			}
 		}
 		else if (X_M_HU_PI_Version.HU_UNITTYPE_VirtualPI.equals(huUnitTypeCode))
 		{
@@ -321,12 +333,7 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 			throw new HUException("Unknown HU_UnitType=" + huUnitTypeCode + " for " + hu);
 		}
 
-		final HUEditorRow huEditorRowBuilt = huEditorRow.build();
-
-		// stopwatch.stop();
-		// System.out.println("createHUEditorRow: created " + huEditorRowBuilt + " in " + stopwatch);
-
-		return huEditorRowBuilt;
+		return huEditorRow.build();
 	}
 
 	private static final String extractPackingInfo(final I_M_HU hu, final HUEditorRowType huUnitType)
@@ -353,38 +360,22 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 		}
 	}
 
-	private IHUProductStorage getSingleProductStorage(final I_M_HU hu)
-	{
-		final IHUStorage huStorage = Services.get(IHandlingUnitsBL.class).getStorageFactory()
-				.getStorage(hu);
-
-		final I_M_Product product = huStorage.getSingleProductOrNull();
-		if (product == null)
-		{
-			return null;
-		}
-
-		final IHUProductStorage productStorage = huStorage.getProductStorage(product);
-		return productStorage;
-	}
-
 	private HUEditorRow createHUEditorRow(
 			final HuId parentHUId,
 			final HuId topLevelHUId,
-			@NonNull final IHUProductStorage huStorage,
-			final boolean processed)
+			@NonNull final I_M_HU hu,
+			@NonNull final I_M_HU_Storage huStorage,
+			final boolean processed,
+			@NonNull final LookupValuesCache lookupValues)
 	{
-		// final Stopwatch stopwatch = Stopwatch.createStarted();
-
-		final I_M_HU hu = huStorage.getM_HU();
 		final HuId huId = HuId.ofRepoId(hu.getM_HU_ID());
-		final I_M_Product product = huStorage.getM_Product();
+		final ProductId productId = ProductId.ofRepoId(huStorage.getM_Product_ID());
 		final HUEditorRowAttributesProvider attributesProviderEffective = !huId.equals(parentHUId) ? attributesProvider : null;
 
 		final Optional<OrderLineId> reservedForOrderLineId = huReservationService.getReservedForOrderLineId(huId);
 
-		final HUEditorRow huEditorRow = HUEditorRow.builder(windowId)
-				.setRowId(HUEditorRowId.ofHUStorage(huId, topLevelHUId, ProductId.ofRepoId(product.getM_Product_ID())))
+		return HUEditorRow.builder(windowId)
+				.setRowId(HUEditorRowId.ofHUStorage(huId, topLevelHUId, productId))
 				.setType(HUEditorRowType.HUStorage)
 				.setTopLevel(false)
 				.setProcessed(processed)
@@ -397,14 +388,11 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 				.setReservedForOrderLine(reservedForOrderLineId.orElse(null))
 				.setHUStatusDisplay(createHUStatusDisplayLookupValue(hu))
 				//
-				.setProduct(createProductLookupValue(product))
-				.setUOM(createUOMLookupValue(huStorage.getC_UOM()))
+				.setProduct(lookupValues.getProduct(productId.getRepoId()))
+				.setUOM(lookupValues.getUOM(huStorage.getC_UOM_ID()))
 				.setQtyCU(huStorage.getQty())
 				//
 				.build();
-
-		// System.out.println("createHUEditorRow: created " + huEditorRow + " (storage) in " + stopwatch);
-		return huEditorRow;
 	}
 
 	public JSONLookupValue createProductLookupValue(@Nullable final I_M_Product product)
@@ -470,16 +458,29 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 		return JSONLookupValue.of(huStatusKey, huStatusDisplayName);
 	}
 
-	private static Date extractBestBeforeDate(final HUEditorRowAttributesProvider attributesProvider, final HUEditorRowId rowId)
+	@Override
+	public int estimateRowsCount(@NonNull final Set<HuId> topLevelHUIds)
 	{
-		if (attributesProvider == null)
-		{
-			return null;
-		}
-
-		final DocumentId attributesKey = attributesProvider.createAttributeKey(rowId.getHuId());
-		final HUEditorRowAttributes attributes = attributesProvider.getAttributes(rowId.toDocumentId(), attributesKey);
-		return attributes.getBestBeforeDate().orElse(null);
+		if (topLevelHUIds.isEmpty())
+		{
+			return 0;
+		}
+
+		// NOTE: HU storage rows are not counted, so this is a lower bound
+		final String sql = "WITH RECURSIVE hus AS ("
+				+ "\n SELECT hu." + I_M_HU.COLUMNNAME_M_HU_ID
+				+ "\n FROM " + I_M_HU.Table_Name + " hu"
+				+ "\n WHERE hu." + I_M_HU.COLUMNNAME_M_HU_ID + " IN " + DB.buildSqlList(HuId.toRepoIds(topLevelHUIds))
+				+ "\n UNION ALL"
+				+ "\n SELECT child." + I_M_HU.COLUMNNAME_M_HU_ID
+				+ "\n FROM hus"
+				+ "\n INNER JOIN " + I_M_HU_Item.Table_Name + " item ON item." + I_M_HU_Item.COLUMNNAME_M_HU_ID + "=hus." + I_M_HU.COLUMNNAME_M_HU_ID
+				+ "\n INNER JOIN " + I_M_HU.Table_Name + " child ON child." + I_M_HU.COLUMNNAME_M_HU_Item_Parent_ID + "=item." + I_M_HU_Item.COLUMNNAME_M_HU_Item_ID
+				+ " AND child." + I_M_HU.COLUMNNAME_IsActive + "='Y'"
+				+ "\n)"
+				+ "\n SELECT COUNT(1) FROM hus";
+
+		return DB.getSQLValueEx(ITrx.TRXNAME_ThreadInherited, sql);
 	}
 
 	@Override
@@ -668,4 +669,37 @@ public class SqlHUEditorViewRepository implements HUEditorViewRepository
 		huReservationService.warmup(huIds);
 	}
 
+	/**
+	 * Product/UOM/Locator lookup values, memorized while building the rows of one HU forest.
+	 */
+	private final class LookupValuesCache
+	{
+		private final Map<Integer, JSONLookupValue> productsById = new HashMap<>();
+		private final Map<Integer, JSONLookupValue> uomsById = new HashMap<>();
+		private final Map<Integer, JSONLookupValue> locatorsById = new HashMap<>();
+
+		private LookupValuesCache(final Set<Integer> productIds)
+		{
+			if (!productIds.isEmpty())
+			{
+				// caches the products with one SQL query
+				InterfaceWrapperHelper.loadByRepoIdAwares(productIds.stream().map(ProductId::ofRepoId).collect(ImmutableSet.toImmutableSet()), I_M_Product.class);
+			}
+		}
+
+		public JSONLookupValue getProduct(final int productId)
+		{
+			return productsById.computeIfAbsent(productId, id -> createProductLookupValue(loadOutOfTrx(id, I_M_Product.class)));
+		}
+
+		public JSONLookupValue getUOM(final int uomId)
+		{
+			return uomsById.computeIfAbsent(uomId, id -> createUOMLookupValue(loadOutOfTrx(id, I_C_UOM.class)));
+		}
+
+		public JSONLookupValue getLocator(final int locatorId)
+		{
+			return locatorsById.computeIfAbsent(locatorId, SqlHUEditorViewRepository::createLocatorLookupValue);
+		}
+	}
 }
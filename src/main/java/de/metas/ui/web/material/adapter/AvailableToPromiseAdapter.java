@@ -2,8 +2,12 @@ package de.metas.ui.web.material.adapter;
 
 import static org.adempiere.model.InterfaceWrapperHelper.load;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.adempiere.ad.dao.IQueryBL;
@@ -12,10 +16,13 @@ import org.adempiere.util.Services;
 import org.compiere.model.I_C_UOM;
 import org.compiere.model.I_M_AttributeValue;
 import org.compiere.model.I_M_Product;
+import org.compiere.util.CCache;
 import org.springframework.stereotype.Service;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimaps;
 
 import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseQuery;
 import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseRepository;
@@ -56,6 +63,9 @@ public class AvailableToPromiseAdapter
 {
 	private final AvailableToPromiseRepository stockRepository;
 
+	/** Short living cache of the ATP groups for the predefined storage attribute keys, used by lookups which are queried on each keystroke */
+	private final CCache<ProductATPKey, ImmutableList<Group>> groupsByProductATPKey = CCache.newLRUCache("MD_Candidate#ATP#Groups#by#Product", 2000, 1);
+
 	public AvailableToPromiseAdapter(@NonNull final AvailableToPromiseRepository stockRepository)
 	{
 		this.stockRepository = stockRepository;
@@ -78,6 +88,56 @@ public class AvailableToPromiseAdapter
 		return clientResultBuilder.build();
 	}
 
+	/**
+	 * Retrieves the ATP groups of given products for the predefined storage attribute keys.
+	 *
+	 * The result is cached briefly per product, bpartner and date, so it's OK to call this method very often (e.g. on each typeahead keystroke).
+	 *
+	 * @return groups, in the order of given product IDs
+	 */
+	public List<Group> retrieveAvailableStockGroupsCached(
+			@NonNull final Collection<Integer> productIds,
+			final int bpartnerId,
+			@NonNull final LocalDateTime date)
+	{
+		final Map<Integer, List<Group>> groupsByProductId = new HashMap<>(productIds.size());
+		final Set<Integer> productIdsToRetrieve = new LinkedHashSet<>();
+		for (final Integer productId : productIds)
+		{
+			final List<Group> groups = groupsByProductATPKey.get(ProductATPKey.of(productId, bpartnerId, date));
+			if (groups != null)
+			{
+				groupsByProductId.put(productId, groups);
+			}
+			else
+			{
+				productIdsToRetrieve.add(productId);
+			}
+		}
+
+		if (!productIdsToRetrieve.isEmpty())
+		{
+			final AvailableToPromiseResultForWebui availableStock = retrieveAvailableStock(AvailableToPromiseQuery.builder()
+					.productIds(productIdsToRetrieve)
+					.storageAttributesKeys(getPredefinedStorageAttributeKeys())
+					.date(date)
+					.bpartnerId(bpartnerId)
+					.build());
+			final ImmutableListMultimap<Integer, Group> retrievedGroupsByProductId = Multimaps.index(availableStock.getGroups(), Group::getProductId);
+
+			for (final Integer productId : productIdsToRetrieve)
+			{
+				final ImmutableList<Group> groups = retrievedGroupsByProductId.get(productId);
+				groupsByProductATPKey.put(ProductATPKey.of(productId, bpartnerId, date), groups);
+				groupsByProductId.put(productId, groups);
+			}
+		}
+
+		return productIds.stream()
+				.flatMap(productId -> groupsByProductId.get(productId).stream())
+				.collect(ImmutableList.toImmutableList());
+	}
+
 	private Group createClientResultGroup(@NonNull final AvailableToPromiseResultGroup commonsResultGroup)
 	{
 		try
@@ -164,4 +224,12 @@ public class AvailableToPromiseAdapter
 	{
 		return stockRepository.getPredefinedStorageAttributeKeys();
 	}
+
+	@lombok.Value(staticConstructor = "of")
+	private static final class ProductATPKey
+	{
+		private final int productId;
+		private final int bpartnerId;
+		private final LocalDateTime date;
+	}
 }
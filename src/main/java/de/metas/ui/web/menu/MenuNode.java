@@ -2,6 +2,7 @@ package de.metas.ui.web.menu;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Consumer;
@@ -237,11 +238,20 @@ public final class MenuNode
 
 	public MenuNode deepCopy(final MenuNodeFilter filter)
 	{
-		final IPair<MenuNode, MenuNodeFilterResolution> nodeAndResolution = deepCopy0(filter);
+		final Comparator<MenuNode> childrenComparator = null; // keep the original order
+		return deepCopy(filter, childrenComparator);
+	}
+
+	/**
+	 * @param childrenComparator how to sort the copied children; if null, the original order is kept
+	 */
+	public MenuNode deepCopy(final MenuNodeFilter filter, final Comparator<MenuNode> childrenComparator)
+	{
+		final IPair<MenuNode, MenuNodeFilterResolution> nodeAndResolution = deepCopy0(filter, childrenComparator);
 		return nodeAndResolution == null ? null : nodeAndResolution.getLeft();
 	}
 
-	private IPair<MenuNode, MenuNodeFilterResolution> deepCopy0(final MenuNodeFilter filter)
+	private IPair<MenuNode, MenuNodeFilterResolution> deepCopy0(final MenuNodeFilter filter, final Comparator<MenuNode> childrenComparator)
 	{
 		//
 		// Get the resolution for this node:
@@ -257,7 +267,7 @@ public final class MenuNode
 		int countAcceptedChildren = 0;
 		for (final MenuNode child : children)
 		{
-			final IPair<MenuNode, MenuNodeFilterResolution> childCopyAndResolution = child.deepCopy0(filter);
+			final IPair<MenuNode, MenuNodeFilterResolution> childCopyAndResolution = child.deepCopy0(filter, childrenComparator);
 			if (childCopyAndResolution == null)
 			{
 				continue;
@@ -291,6 +301,11 @@ public final class MenuNode
 			return null;
 		}
 
+		if (childrenComparator != null)
+		{
+			childrenCopy.sort(childrenComparator);
+		}
+
 		final boolean matchedByFilter = resolution == MenuNodeFilterResolution.Accept;
 		final MenuNode thisCopy = new MenuNode(this, childrenCopy, matchedByFilter);
 		return ImmutablePair.of(thisCopy, resolution);
@@ -1,7 +1,8 @@
 package de.metas.ui.web.menu;
 
-import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -65,6 +66,8 @@ public final class MenuTree
 	private final ListMultimap<ArrayKey, MenuNode> nodesByTypeAndElementId;
 	private final ListMultimap<String, MenuNode> nodesByMainTableName;
 
+	private final MenuTreeSearchIndex searchIndex;
+
 	private MenuTree(final long version, final MenuNode rootNode)
 	{
 		super();
@@ -88,6 +91,8 @@ public final class MenuTree
 		nodesById = nodesByIdBuilder.build();
 		nodesByTypeAndElementId = nodesByTypeAndElementIdBuilder.build();
 		nodesByMainTableName = nodesByMainTableNameBuilder.build();
+
+		searchIndex = MenuTreeSearchIndex.of(rootNode);
 	}
 
 	private static final ArrayKey mkTypeAndElementIdKey(final MenuNodeType type, final DocumentId elementId)
@@ -228,6 +233,8 @@ public final class MenuTree
 	/**
 	 * Filters this node and its children recursively.
 	 *
+	 * The matching nodes are looked up in the tree's search index. In the returned copy, the children are sorted by their (best) rank, so the best matches come first.
+	 *
 	 * @param nameQuery
 	 * @param includeLeafsIfGroupAccepted
 	 *            <ul>
@@ -243,9 +250,22 @@ public final class MenuTree
 			throw new IllegalArgumentException("Invalid name query '" + nameQuery + "'");
 		}
 
-		final String nameQueryLC = nameQuery.toLowerCase();
-		logger.trace("Filtering using nameQueryLC={}", nameQueryLC);
+		final Map<String, Integer> ranksByMatchedNodeId = searchIndex.search(nameQuery);
+		logger.trace("Filtering using nameQuery={}: matched nodes and their ranks: {}", nameQuery, ranksByMatchedNodeId);
+
+		//
+		// Rank the groups by their best matching descendant
+		final Map<String, Integer> bestRanksByNodeId = new HashMap<>(ranksByMatchedNodeId);
+		for (final Map.Entry<String, Integer> e : ranksByMatchedNodeId.entrySet())
+		{
+			final int rank = e.getValue();
+			for (MenuNode parent = nodesById.get(e.getKey()).getParent(); parent != null; parent = parent.getParent())
+			{
+				bestRanksByNodeId.merge(parent.getId(), rank, Math::min);
+			}
+		}
 
+		final Comparator<MenuNode> childrenComparator = Comparator.comparing(node -> bestRanksByNodeId.getOrDefault(node.getId(), Integer.MAX_VALUE));
 		return getRootNode()
 				.deepCopy(node -> {
 					if (node.isRoot())
@@ -254,7 +274,7 @@ public final class MenuTree
 						return MenuNodeFilterResolution.Accept;
 					}
 
-					final boolean matches = matchesNameQuery(node, nameQueryLC);
+					final boolean matches = ranksByMatchedNodeId.containsKey(node.getId());
 					if (matches)
 					{
 						logger.trace("Filter: accept node because matches: {}", node);
@@ -263,8 +283,17 @@ public final class MenuTree
 
 					if (node.isGroupingNode())
 					{
-						logger.trace("Filter: accept node (if has children!) because does matches and it's a groupping node: {}", node);
-						return MenuNodeFilterResolution.AcceptIfHasChildren;
+						if (bestRanksByNodeId.containsKey(node.getId()))
+						{
+							logger.trace("Filter: accept node (if has children!) because does matches and it's a groupping node: {}", node);
+							return MenuNodeFilterResolution.AcceptIfHasChildren;
+						}
+						else
+						{
+							// NOTE: none of its descendants is matching, so it would be dropped anyways => don't walk it
+							logger.trace("Filter: reject grouping node because none of its descendants matches: {}", node);
+							return MenuNodeFilterResolution.Reject;
+						}
 					}
 					else if (includeLeafsIfGroupAccepted)
 					{
@@ -276,21 +305,7 @@ public final class MenuTree
 						logger.trace("Filter: reject node because does not match and it's leaf node: {}", node);
 						return MenuNodeFilterResolution.Reject;
 					}
-				});
-	}
-
-	private static final boolean matchesNameQuery(final MenuNode node, final String nameQueryLC)
-	{
-		final String captionNorm = stripDiacritics(node.getCaption().toLowerCase());
-		final String queryNorm = stripDiacritics(nameQueryLC);
-		return captionNorm.indexOf(queryNorm) >= 0;
-	}
-
-	private static final String stripDiacritics(final String string)
-	{
-		String s = Normalizer.normalize(string, Normalizer.Form.NFD);
-		s = s.replaceAll("[\\p{InCombiningDiacriticalMarks}]", "");
-		return s;
+				}, childrenComparator);
 	}
 
 	public MenuNode getRootNodeWithFavoritesOnly(@NonNull final MenuNodeFavoriteProvider menuNodeFavoriteProvider)
@@ -0,0 +1,129 @@
+package de.metas.ui.web.menu;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.adempiere.util.Check;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Menu captions in a given language, indexed by AD_Menu_ID.
+ *
+ * @see MenuTreeStructure#getCaptions(String)
+ */
+final class MenuTreeCaptions
+{
+	public static Builder builder(@NonNull final String adLanguage)
+	{
+		return new Builder(adLanguage);
+	}
+
+	private final String adLanguage;
+	private final ImmutableMap<Integer, NodeCaptions> captionsByMenuId;
+
+	private MenuTreeCaptions(final Builder builder)
+	{
+		adLanguage = builder.adLanguage;
+		captionsByMenuId = ImmutableMap.copyOf(builder.captionsByMenuId);
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.add("adLanguage", adLanguage)
+				.add("size", captionsByMenuId.size())
+				.toString();
+	}
+
+	public String getAD_Language()
+	{
+		return adLanguage;
+	}
+
+	/** @return node captions or null */
+	public NodeCaptions getByMenuId(final int adMenuId)
+	{
+		return captionsByMenuId.get(adMenuId);
+	}
+
+	@Value
+	public static final class NodeCaptions
+	{
+		private final String name;
+		private final String nameBrowse;
+		private final String nameNew;
+		private final String nameNewBreadcrumb;
+
+		/** @return caption (in menu) */
+		public String getCaption()
+		{
+			return !Check.isEmpty(nameBrowse, true) ? nameBrowse : name;
+		}
+
+		public String getCaptionBreadcrumb()
+		{
+			return name; // shall not be empty
+		}
+
+		/** @return caption (in menu) of the "new record" node */
+		public String getCaptionNew()
+		{
+			return !Check.isEmpty(nameNew, true) ? nameNew : "New " + getCaption();
+		}
+
+		public String getCaptionNewBreadcrumb()
+		{
+			return !Check.isEmpty(nameNewBreadcrumb, true) ? nameNewBreadcrumb : getCaptionBreadcrumb();
+		}
+	}
+
+	public static final class Builder
+	{
+		private final String adLanguage;
+		private final Map<Integer, NodeCaptions> captionsByMenuId = new HashMap<>();
+
+		private Builder(final String adLanguage)
+		{
+			this.adLanguage = adLanguage;
+		}
+
+		public MenuTreeCaptions build()
+		{
+			return new MenuTreeCaptions(this);
+		}
+
+		public Builder add(final int adMenuId, final String name, final String nameBrowse, final String nameNew, final String nameNewBreadcrumb)
+		{
+			captionsByMenuId.put(adMenuId, new NodeCaptions(name, nameBrowse, nameNew, nameNewBreadcrumb));
+			return this;
+		}
+	}
+}
@@ -1,23 +1,27 @@
 package de.metas.ui.web.menu;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 
-import org.adempiere.ad.security.IUserRolePermissions;
-import org.adempiere.ad.security.IUserRolePermissionsDAO;
-import org.adempiere.ad.security.UserRolePermissionsKey;
-import org.adempiere.ad.security.permissions.UserMenuInfo;
 import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.exceptions.AdempiereException;
-import org.adempiere.util.Check;
-import org.adempiere.util.Services;
+import org.adempiere.exceptions.DBException;
 import org.compiere.model.MTree;
 import org.compiere.model.MTreeNode;
 import org.compiere.model.X_AD_Menu;
+import org.compiere.util.DB;
+import org.compiere.util.DisplayType;
 import org.compiere.util.Env;
+import org.compiere.util.Language;
 import org.slf4j.Logger;
 
 import de.metas.logging.LogManager;
 import de.metas.ui.web.menu.MenuNode.MenuNodeType;
+import de.metas.ui.web.menu.MenuTreeStructure.StructureNode;
 import de.metas.ui.web.process.ProcessId;
 import de.metas.ui.web.window.datatypes.DocumentId;
 import lombok.NonNull;
@@ -44,6 +48,9 @@ import lombok.NonNull;
  * #L%
  */
 
+/**
+ * Loads the {@link MenuTreeStructure} and the {@link MenuTreeCaptions} of a given menu tree (AD_Tree_ID).
+ */
 final class MenuTreeLoader
 {
 	/* package */static MenuTreeLoader newInstance()
@@ -53,65 +60,107 @@ final class MenuTreeLoader
 
 	// services
 	private static final transient Logger logger = LogManager.getLogger(MenuTreeLoader.class);
-	private final transient IUserRolePermissionsDAO userRolePermissionsDAO = Services.get(IUserRolePermissionsDAO.class);
-
-	private static final int DEPTH_Root = 0;
-	private static final int DEPTH_RootChildren = 1;
 
-	private UserRolePermissionsKey _userRolePermissionsKey;
-	private IUserRolePermissions _userRolePermissions; // lazy
+	private int _adTreeId = -1;
 	private String _adLanguage;
-	private long _version = -1;
 
 	private MenuTreeLoader()
 	{
 		super();
 	}
 
-	public MenuTreeLoader setUserRolePermissionsKey(final UserRolePermissionsKey userRolePermissionsKey)
+	public MenuTreeLoader setAD_Tree_ID(final int adTreeId)
+	{
+		_adTreeId = adTreeId;
+		return this;
+	}
+
+	private int getAD_Tree_ID()
+	{
+		if (_adTreeId < 0)
+		{
+			throw new AdempiereException("Menu tree not found");
+		}
+		return _adTreeId;
+	}
+
+	public MenuTreeLoader setAD_Language(final String adLanguage)
 	{
-		_userRolePermissionsKey = userRolePermissionsKey;
+		_adLanguage = adLanguage;
 		return this;
 	}
 
 	@NonNull
-	private UserRolePermissionsKey getUserRolePermissionsKey()
+	private String getAD_Language()
 	{
-		return _userRolePermissionsKey;
+		return _adLanguage;
 	}
 
-	private IUserRolePermissions getUserRolePermissions()
+	/**
+	 * Loads the language independent structure, containing all the menu nodes, no matter which role can access them.
+	 * The nodes are carrying everything needed to check the role access in memory (see {@link MenuTreeStructure#computeAccessibleNodes(org.adempiere.ad.security.IUserRolePermissions)}).
+	 * The captions are loaded in base language and then lazily in the other languages.
+	 */
+	public MenuTreeStructure loadStructure()
 	{
-		if (_userRolePermissions == null)
+		final int adTreeId = getAD_Tree_ID();
+		final String baseAD_Language = Language.getBaseAD_Language();
+		logger.trace("Loading menu tree structure for AD_Tree_ID={}", adTreeId);
+
+		final MTreeNode rootNodeModel = retrieveRootNodeModel(adTreeId, baseAD_Language, true);
+		final Map<Integer, Boolean> activeByMenuId = retrieveActiveByMenuId(adTreeId);
+
+		final MenuTreeStructure.Builder structureBuilder = MenuTreeStructure.builder()
+				.setAD_Tree_ID(adTreeId)
+				.setCaptionsLoader((treeId, adLanguage) -> newInstance().setAD_Tree_ID(treeId).setAD_Language(adLanguage).loadCaptions());
+
+		final StructureNode rootNode = createStructureNodeRecursivelly(structureBuilder, rootNodeModel, activeByMenuId);
+		if (rootNode == null)
 		{
-			final UserRolePermissionsKey userRolePermissionsKey = getUserRolePermissionsKey();
-			_userRolePermissions = userRolePermissionsDAO.retrieveUserRolePermissions(userRolePermissionsKey);
+			throw new IllegalStateException("No root menu node available"); // shall not happen
 		}
-		return _userRolePermissions;
+
+		return structureBuilder
+				.setRootNode(rootNode)
+				.setBaseLanguageCaptions(createCaptions(rootNodeModel, baseAD_Language))
+				.build();
 	}
 
-	public MenuTree load()
+	/**
+	 * Loads the captions of all menu nodes, in given language.
+	 */
+	public MenuTreeCaptions loadCaptions()
 	{
-		if (logger.isTraceEnabled())
-		{
-			logger.trace("Loading menu tree for {}", getUserRolePermissions());
-		}
+		final int adTreeId = getAD_Tree_ID();
+		final String adLanguage = getAD_Language();
+		logger.trace("Loading menu tree captions for AD_Tree_ID={}, AD_Language={}", adTreeId, adLanguage);
 
-		final MTreeNode rootNodeModel = retrieveRootNodeModel();
-		final MenuNode rootNode = createMenuNodeRecursivelly(rootNodeModel, DEPTH_Root);
-		if (rootNode == null)
+		final MTreeNode rootNodeModel = retrieveRootNodeModel(adTreeId, adLanguage, true);
+		return createCaptions(rootNodeModel, adLanguage);
+	}
+
+	private static MenuTreeCaptions createCaptions(final MTreeNode rootNodeModel, final String adLanguage)
+	{
+		final MenuTreeCaptions.Builder captions = MenuTreeCaptions.builder(adLanguage);
+
+		final Enumeration<?> nodeModels = rootNodeModel.preorderEnumeration();
+		while (nodeModels.hasMoreElements())
 		{
-			throw new IllegalStateException("No root menu node available"); // shall not happen
+			final MTreeNode nodeModel = (MTreeNode)nodeModels.nextElement();
+			captions.add(nodeModel.getNode_ID(),
+					nodeModel.getName(),
+					nodeModel.getWEBUI_NameBrowse(),
+					nodeModel.getWEBUI_NameNew(),
+					nodeModel.getWEBUI_NameNewBreadcrumb());
 		}
 
-		final long version = getVersion();
-		return MenuTree.of(version, rootNode);
+		return captions.build();
 	}
 
-	private MenuNode createMenuNodeRecursivelly(final MTreeNode nodeModel, final int depth)
+	private StructureNode createStructureNodeRecursivelly(final MenuTreeStructure.Builder structureBuilder, final MTreeNode nodeModel, final Map<Integer, Boolean> activeByMenuId)
 	{
-		final MenuNode.Builder nodeBuilder = createMenuNodeBuilder(nodeModel, depth);
-		if (nodeBuilder == null)
+		final StructureNode node = createStructureNode(structureBuilder, nodeModel, activeByMenuId);
+		if (node == null)
 		{
 			logger.trace("Skip creating menu node for {}", nodeModel);
 			return null;
@@ -122,178 +171,117 @@ final class MenuTreeLoader
 		{
 			final MTreeNode childModel = (MTreeNode)childModels.nextElement();
 
-			final MenuNode childNode = createMenuNodeRecursivelly(childModel, depth + 1);
+			final StructureNode childNode = createStructureNodeRecursivelly(structureBuilder, childModel, activeByMenuId);
 			if (childNode == null)
 			{
 				continue;
 			}
 
-			if (childModel.isCreateNewRecord())
+			if (childModel.isCreateNewRecord() && childNode.getType() == MenuNodeType.Window)
 			{
-				final MenuNode childNodeNewRecord = createNewRecordNode(childNode, childModel.getWEBUI_NameNew(), childModel.getWEBUI_NameNewBreadcrumb());
-				if (childNodeNewRecord != null)
-				{
-					nodeBuilder.addChildToFirstsList(childNodeNewRecord);
-				}
+				final StructureNode childNodeNewRecord = structureBuilder.newNode(childNode.getAD_Menu_ID())
+						.setTypeWindow(MenuNodeType.NewRecord, childNode.getAD_Window_ID())
+						.setMainTableName(childNode.getMainTableName())
+						.setActive(childNode.isActive())
+						.build();
+				structureBuilder.addChild(node, childNodeNewRecord);
 			}
 
-			nodeBuilder.addChild(childNode);
+			structureBuilder.addChild(node, childNode);
 		}
 
-		return nodeBuilder.build();
+		return node;
 	}
 
-	private MenuNode.Builder createMenuNodeBuilder(final MTreeNode nodeModel, final int depth)
+	private StructureNode createStructureNode(final MenuTreeStructure.Builder structureBuilder, final MTreeNode nodeModel, final Map<Integer, Boolean> activeByMenuId)
 	{
-		final String captionBreadcrumb = nodeModel.getName(); // shall not be empty
-
-		String caption = nodeModel.getWEBUI_NameBrowse();
-		if (Check.isEmpty(caption, true))
-		{
-			caption = captionBreadcrumb;
-		}
-
-		final MenuNode.Builder builder = MenuNode.builder()
-				.setAD_Menu_ID(nodeModel.getNode_ID())
-				.setCaption(caption)
-				.setCaptionBreadcrumb(captionBreadcrumb)
-				.setMainTableName(nodeModel.getMainTableName());
+		final MenuTreeStructure.Builder.NodeBuilder builder = structureBuilder.newNode(nodeModel.getNode_ID())
+				.setMainTableName(nodeModel.getMainTableName())
+				// NOTE: the root node and the nodes which are not in AD_TreeNodeMM are considered active
+				.setActive(activeByMenuId.getOrDefault(nodeModel.getNode_ID(), Boolean.TRUE));
 
 		final String action = nodeModel.getImageIndiactor();
 		if (nodeModel.isSummary())
 		{
 			builder.setTypeGroup();
 		}
-		else if (depth == DEPTH_RootChildren)
-		{
-			logger.warn("Skip creating leaf nodes for root: {}", nodeModel);
-			return null;
-		}
 		else if (X_AD_Menu.ACTION_Window.equals(action))
 		{
-			final DocumentId elementId = DocumentId.of(nodeModel.getAD_Window_ID());
-			builder.setType(MenuNodeType.Window, elementId);
+			builder.setTypeWindow(MenuNodeType.Window, nodeModel.getAD_Window_ID());
 		}
 		else if (X_AD_Menu.ACTION_Process.equals(action))
 		{
-			final DocumentId elementId = ProcessId.ofAD_Process_ID(nodeModel.getAD_Process_ID()).toDocumentId();
-			builder.setType(MenuNodeType.Process, elementId);
+			final int adProcessId = nodeModel.getAD_Process_ID();
+			builder.setTypeProcess(MenuNodeType.Process, adProcessId, ProcessId.ofAD_Process_ID(adProcessId).toDocumentId());
 		}
 		else if (X_AD_Menu.ACTION_Report.equals(action))
 		{
-			final DocumentId elementId = ProcessId.ofAD_Process_ID(nodeModel.getAD_Process_ID()).toDocumentId();
-			builder.setType(MenuNodeType.Report, elementId);
+			final int adProcessId = nodeModel.getAD_Process_ID();
+			builder.setTypeProcess(MenuNodeType.Report, adProcessId, ProcessId.ofAD_Process_ID(adProcessId).toDocumentId());
 		}
 		else if (X_AD_Menu.ACTION_Board.equals(action))
 		{
-			final DocumentId elementId = DocumentId.of(nodeModel.getWEBUI_Board_ID());
-			builder.setType(MenuNodeType.Board, elementId);
+			builder.setTypeBoard(DocumentId.of(nodeModel.getWEBUI_Board_ID()));
 		}
 		else
 		{
 			return null;
 		}
 
-		return builder;
+		return builder.build();
 	}
 
-	private MenuNode createNewRecordNode(final MenuNode node, final String caption, String captionBreadcrumb)
+	/**
+	 * @param editable if true, all nodes are loaded, no matter if current context's role can access them (the access is checked per role, see {@link MenuTreeStructure#computeAccessibleNodes(org.adempiere.ad.security.IUserRolePermissions)}).
+	 *            If false, only the nodes accessible by current context's role are loaded.
+	 */
+	private static MTreeNode retrieveRootNodeModel(final int adTreeId, final String adLanguage, final boolean editable)
 	{
-		if (node.getType() != MenuNodeType.Window)
-		{
-			return null;
-		}
-
-		//
-		// Caption (in menu)
-		String captionEffective = caption;
-		if (Check.isEmpty(captionEffective, true))
-		{
-			captionEffective = "New " + node.getCaption();
-		}
-
-		//
-		// Caption (breadcrumb)
-		String captionBreadcrumbEffective = captionBreadcrumb;
-		if (Check.isEmpty(captionBreadcrumbEffective, true))
-		{
-			captionBreadcrumbEffective = node.getCaptionBreadcrumb();
-		}
-
-		return MenuNode.builder()
-				.setAD_Menu_ID(node.getAD_Menu_ID())
-				.setCaption(captionEffective)
-				.setCaptionBreadcrumb(captionBreadcrumbEffective)
-				.setType(MenuNodeType.NewRecord, node.getElementId())
-				.setMainTableName(node.getMainTableName())
-				.build();
-	}
-
-	private MTreeNode retrieveRootNodeModel()
-	{
-		final UserMenuInfo userMenuInfo = getUserMenuInfo();
-		final int adTreeId = userMenuInfo.getAD_Tree_ID();
-		if (adTreeId < 0)
-		{
-			throw new AdempiereException("Menu tree not found");
-		}
-
 		final MTree mTree = MTree.builder()
 				.setCtx(Env.getCtx())
 				.setTrxName(ITrx.TRXNAME_None)
 				.setAD_Tree_ID(adTreeId)
-				.setEditable(false)
+				.setEditable(editable)
 				.setClientTree(true)
-				.setLanguage(getAD_Language())
+				.setLanguage(adLanguage)
 				.build();
 
-		final MTreeNode rootNodeModel = mTree.getRoot();
-		int rootMenuIdEffective = userMenuInfo.getRoot_Menu_ID();
-		if (rootMenuIdEffective > 0)
+		return mTree.getRoot();
+	}
+
+	/**
+	 * @return for each AD_Menu_ID of given tree, true if both the menu entry and the tree node are active
+	 */
+	private static Map<Integer, Boolean> retrieveActiveByMenuId(final int adTreeId)
+	{
+		final String sql = "SELECT tn.Node_ID, tn.IsActive AS IsNodeActive, m.IsActive AS IsMenuActive"
+				+ " FROM AD_TreeNodeMM tn"
+				+ " INNER JOIN AD_Menu m ON (m.AD_Menu_ID=tn.Node_ID)"
+				+ " WHERE tn.AD_Tree_ID=?";
+		final Object[] sqlParams = new Object[] { adTreeId };
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
 		{
-			final MTreeNode rootNodeModelEffective = rootNodeModel.findNode(rootMenuIdEffective);
-			if (rootNodeModelEffective != null)
-			{
-				return rootNodeModelEffective;
-			}
-			else
+			pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_None);
+			DB.setParameters(pstmt, sqlParams);
+			rs = pstmt.executeQuery();
+
+			final Map<Integer, Boolean> activeByMenuId = new HashMap<>();
+			while (rs.next())
 			{
-				logger.warn("Cannot find Root_Menu_ID={} in {}", rootMenuIdEffective, mTree);
+				final boolean active = DisplayType.toBoolean(rs.getString("IsNodeActive")) && DisplayType.toBoolean(rs.getString("IsMenuActive"));
+				activeByMenuId.put(rs.getInt("Node_ID"), active);
 			}
+			return activeByMenuId;
 		}
-
-		return rootNodeModel;
-	}
-	
-	private UserMenuInfo getUserMenuInfo()
-	{
-		final IUserRolePermissions userRolePermissions = getUserRolePermissions();
-		if (!userRolePermissions.hasPermission(IUserRolePermissions.PERMISSION_MenuAvailable))
+		catch (final SQLException ex)
 		{
-			return UserMenuInfo.NONE;
+			throw new DBException(ex, sql, sqlParams);
 		}
-
-		return userRolePermissions.getMenuInfo();
-	}
-
-	public MenuTreeLoader setAD_Language(String adLanguage)
-	{
-		this._adLanguage = adLanguage;
-		return this;
-	}
-	
-	@NonNull
-	private String getAD_Language()
-	{
-		return _adLanguage;
-	}
-
-	private long getVersion()
-	{
-		if (_version < 0)
+		finally
 		{
-			_version = userRolePermissionsDAO.getCacheVersion();
+			DB.close(rs, pstmt);
 		}
-		return _version;
 	}
 }
@@ -1,5 +1,6 @@
 package de.metas.ui.web.menu;
 
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -8,22 +9,36 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
+
+import org.adempiere.ad.dao.cache.CacheInvalidateMultiRequest;
+import org.adempiere.ad.security.IUserRolePermissions;
 import org.adempiere.ad.security.IUserRolePermissionsDAO;
 import org.adempiere.ad.security.UserRolePermissionsKey;
+import org.adempiere.ad.security.permissions.UserMenuInfo;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.user.api.IUserMenuFavoritesDAO;
 import org.adempiere.util.Services;
+import org.compiere.model.I_AD_Menu;
+import org.compiere.model.I_AD_Tree;
+import org.compiere.model.I_AD_TreeNodeMM;
+import org.compiere.util.CacheMgt;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
 
 import de.metas.logging.LogManager;
 import de.metas.ui.web.session.UserSession;
+import lombok.NonNull;
+import lombok.Value;
 
 /*
  * #%L
@@ -55,17 +70,41 @@ public class MenuTreeRepository implements MenuNodeFavoriteProvider
 	@Autowired
 	private UserSession userSession;
 
-	private final LoadingCache<MenuTreeKey, MenuTree> menuTrees = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build(new CacheLoader<MenuTreeKey, MenuTree>()
-	{
+	/** When one of those tables is changed, the menu structures, captions and accesses are discarded */
+	private static final ImmutableSet<String> TABLENAMES_ResetMenuTrees = ImmutableSet.of(
+			I_AD_Menu.Table_Name,
+			I_AD_Menu.Table_Name + "_Trl",
+			I_AD_Tree.Table_Name,
+			I_AD_TreeNodeMM.Table_Name);
 
+	/** Language independent menu structures, containing all menu nodes, indexed by AD_Tree_ID */
+	private final LoadingCache<Integer, MenuTreeStructure> menuTreeStructures = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build(new CacheLoader<Integer, MenuTreeStructure>()
+	{
 		@Override
-		public MenuTree load(final MenuTreeKey key)
+		public MenuTreeStructure load(final Integer adTreeId)
 		{
 			return MenuTreeLoader
 					.newInstance()
-					.setUserRolePermissionsKey(key.getUserRolePermissionsKey())
-					.setAD_Language(key.getAD_Language())
-					.load();
+					.setAD_Tree_ID(adTreeId)
+					.loadStructure();
+		}
+	});
+
+	/** Which menu nodes can be accessed, indexed by user/role permissions key */
+	private final Cache<UserRolePermissionsKey, MenuTreeAccess> menuTreeAccesses = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build();
+
+	/**
+	 * Menu trees, shared by all user/role permissions which can access the same menu nodes.
+	 * NOTE: they are cheap to create from their structure, so we keep only the recently used ones.
+	 */
+	private final LoadingCache<MenuTreeKey, MenuTree> menuTrees = CacheBuilder.newBuilder().maximumSize(100).expireAfterAccess(30, TimeUnit.MINUTES).build(new CacheLoader<MenuTreeKey, MenuTree>()
+	{
+		@Override
+		public MenuTree load(final MenuTreeKey key)
+		{
+			final MenuTreeAccess access = key.getAccess();
+			final MenuNode rootNode = access.getStructure().createRootMenuNode(access.getRootMenuId(), access.getAccessibleNodes(), key.getAdLanguage());
+			return MenuTree.of(access.getVersion(), rootNode);
 		}
 	});
 
@@ -90,30 +129,8 @@ public class MenuTreeRepository implements MenuNodeFavoriteProvider
 	{
 		try
 		{
-			final MenuTreeKey key = new MenuTreeKey(userRolePermissionsKey, adLanguage);
-			MenuTree menuTree = menuTrees.get(key);
-
-			//
-			// If menuTree's version is not the current one, try re-acquiring it.
-			int retry = 3;
-			final long currentVersion = Services.get(IUserRolePermissionsDAO.class).getCacheVersion();
-			while (menuTree.getVersion() != currentVersion)
-			{
-				menuTrees.invalidate(key);
-				menuTree = menuTrees.get(key);
-
-				retry--;
-				if (retry <= 0)
-				{
-					break;
-				}
-			}
-			if (menuTree.getVersion() != currentVersion)
-			{
-				logger.warn("Could not acquire menu tree version {}. Returning what we got... \nmenuTree: {}\nkey={}", currentVersion, menuTree, key);
-			}
-
-			return menuTree;
+			final MenuTreeAccess access = getMenuTreeAccess(userRolePermissionsKey);
+			return menuTrees.get(new MenuTreeKey(access, adLanguage));
 		}
 		catch (final ExecutionException e)
 		{
@@ -121,11 +138,109 @@ public class MenuTreeRepository implements MenuNodeFavoriteProvider
 		}
 	}
 
-	public void cacheReset()
+	/**
+	 * @return menu tree access of given permissions. If the permissions version changed, the accessible nodes are computed again (in memory), but the menu structure is not reloaded.
+	 *         The menu structure is reloaded only when the menu was changed (see {@link #onCacheReset(CacheInvalidateMultiRequest)}).
+	 */
+	private MenuTreeAccess getMenuTreeAccess(final UserRolePermissionsKey userRolePermissionsKey) throws ExecutionException
+	{
+		final long currentVersion = Services.get(IUserRolePermissionsDAO.class).getCacheVersion();
+
+		final MenuTreeAccess access = menuTreeAccesses.getIfPresent(userRolePermissionsKey);
+		if (access != null && access.getVersion() == currentVersion && isCurrentStructure(access.getStructure()))
+		{
+			return access;
+		}
+
+		final MenuTreeAccess accessNew = computeMenuTreeAccess(userRolePermissionsKey, currentVersion);
+		if (access != null && access.isSameAccessAs(accessNew))
+		{
+			// Nothing changed for our permissions => keep using the same menu trees
+			final MenuTreeAccess accessRevalidated = access.withVersion(currentVersion);
+			menuTreeAccesses.put(userRolePermissionsKey, accessRevalidated);
+			return accessRevalidated;
+		}
+
+		logger.trace("Computed {} for {}", accessNew, userRolePermissionsKey);
+		menuTreeAccesses.put(userRolePermissionsKey, accessNew);
+		return accessNew;
+	}
+
+	private MenuTreeAccess computeMenuTreeAccess(final UserRolePermissionsKey userRolePermissionsKey, final long version) throws ExecutionException
+	{
+		final IUserRolePermissions userRolePermissions = Services.get(IUserRolePermissionsDAO.class).retrieveUserRolePermissions(userRolePermissionsKey);
+
+		final UserMenuInfo userMenuInfo = userRolePermissions.hasPermission(IUserRolePermissions.PERMISSION_MenuAvailable)
+				? userRolePermissions.getMenuInfo()
+				: UserMenuInfo.NONE;
+		final int adTreeId = userMenuInfo.getAD_Tree_ID();
+		if (adTreeId < 0)
+		{
+			throw new AdempiereException("Menu tree not found");
+		}
+
+		final MenuTreeStructure structure = menuTreeStructures.get(adTreeId);
+
+		// NOTE: evaluated in memory, so the menu tree is not loaded again when only the permissions were changed
+		final BitSet accessibleNodes = structure.computeAccessibleNodes(userRolePermissions);
+		return new MenuTreeAccess(version, structure, userMenuInfo.getRoot_Menu_ID(), accessibleNodes);
+	}
+
+	/** @return false if the structure was discarded in meantime (e.g. on cache reset) */
+	private boolean isCurrentStructure(final MenuTreeStructure structure)
+	{
+		return menuTreeStructures.getIfPresent(structure.getAD_Tree_ID()) == structure;
+	}
+
+	@PostConstruct
+	private void postConstruct()
+	{
+		// NOTE: cache resets are also received when the menu is changed on other nodes
+		CacheMgt.get().addCacheResetListener(this::onCacheReset);
+	}
+
+	private int onCacheReset(final CacheInvalidateMultiRequest multiRequest)
+	{
+		if (!isResetMenuTrees(multiRequest))
+		{
+			return 0;
+		}
+
+		final int count = (int)menuTreeStructures.size();
+		resetMenuTrees();
+		logger.debug("Discarded {} menu tree structures because of {}", count, multiRequest);
+		return count;
+	}
+
+	@VisibleForTesting
+	static boolean isResetMenuTrees(final CacheInvalidateMultiRequest multiRequest)
+	{
+		if (multiRequest.isResetAll())
+		{
+			return true;
+		}
+
+		return multiRequest.getRequests()
+				.stream()
+				.anyMatch(request -> request.isAll() || TABLENAMES_ResetMenuTrees.contains(request.getTableNameEffective()));
+	}
+
+	private void resetMenuTrees()
 	{
 		menuTrees.invalidateAll();
 		menuTrees.cleanUp();
 
+		menuTreeAccesses.invalidateAll();
+		menuTreeAccesses.cleanUp();
+
+		menuTreeStructures.invalidateAll();
+		menuTreeStructures.cleanUp();
+	}
+
+	public void cacheReset()
+	{
+		resetMenuTrees();
+
 		userMenuFavoritesByUserId.invalidateAll();
 		userMenuFavoritesByUserId.cleanUp();
 	}
@@ -180,14 +295,39 @@ public class MenuTreeRepository implements MenuNodeFavoriteProvider
 		return getUserMenuFavorites().isFavorite(menuNode);
 	}
 
+	/** Which menu nodes of a menu structure can be accessed */
+	@Value
+	private static final class MenuTreeAccess
+	{
+		/** permissions cache version, see {@link IUserRolePermissionsDAO#getCacheVersion()} */
+		private final long version;
+		private final MenuTreeStructure structure;
+		private final int rootMenuId;
+		/** NOTE: never changed */
+		private final BitSet accessibleNodes;
+
+		public boolean isSameAccessAs(@NonNull final MenuTreeAccess other)
+		{
+			return structure == other.structure
+					&& rootMenuId == other.rootMenuId
+					&& accessibleNodes.equals(other.accessibleNodes);
+		}
+
+		public MenuTreeAccess withVersion(final long version)
+		{
+			return this.version == version ? this : new MenuTreeAccess(version, structure, rootMenuId, accessibleNodes);
+		}
+	}
+
+	/** Menu tree key. The version of the access does not matter, so the trees are shared between all permissions with the same access. */
 	private static final class MenuTreeKey
 	{
-		private final UserRolePermissionsKey userRolePermissionsKey;
+		private final MenuTreeAccess access;
 		private final String adLanguage;
 
-		private MenuTreeKey(final UserRolePermissionsKey userRolePermissionsKey, final String adLanguage)
+		private MenuTreeKey(final MenuTreeAccess access, final String adLanguage)
 		{
-			this.userRolePermissionsKey = userRolePermissionsKey;
+			this.access = access;
 			this.adLanguage = adLanguage;
 		}
 
@@ -196,14 +336,16 @@ public class MenuTreeRepository implements MenuNodeFavoriteProvider
 		{
 			return MoreObjects.toStringHelper(this)
 					.add("adLanguage", adLanguage)
-					.addValue(userRolePermissionsKey)
+					.add("AD_Tree_ID", access.getStructure().getAD_Tree_ID())
+					.add("rootMenuId", access.getRootMenuId())
+					.add("accessibleNodesCount", access.getAccessibleNodes().cardinality())
 					.toString();
 		}
 
 		@Override
 		public int hashCode()
 		{
-			return Objects.hash(userRolePermissionsKey, adLanguage);
+			return Objects.hash(System.identityHashCode(access.getStructure()), access.getRootMenuId(), access.getAccessibleNodes(), adLanguage);
 		}
 
 		@Override
@@ -216,7 +358,7 @@ public class MenuTreeRepository implements MenuNodeFavoriteProvider
 			if (obj instanceof MenuTreeKey)
 			{
 				final MenuTreeKey other = (MenuTreeKey)obj;
-				return Objects.equals(userRolePermissionsKey, other.userRolePermissionsKey)
+				return access.isSameAccessAs(other.access)
 						&& Objects.equals(adLanguage, other.adLanguage);
 			}
 			else
@@ -225,12 +367,12 @@ public class MenuTreeRepository implements MenuNodeFavoriteProvider
 			}
 		}
 
-		public UserRolePermissionsKey getUserRolePermissionsKey()
+		public MenuTreeAccess getAccess()
 		{
-			return userRolePermissionsKey;
+			return access;
 		}
 
-		public String getAD_Language()
+		public String getAdLanguage()
 		{
 			return adLanguage;
 		}
@@ -0,0 +1,221 @@
+package de.metas.ui.web.menu;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Search index of a {@link MenuTree}'s node captions.
+ * <p>
+ * The captions are normalized (lower case, no diacritics) and split into tokens only once, when the index is created.
+ * The tokens are kept sorted, so the nodes having a token which starts with a given prefix are found by a range lookup.
+ */
+final class MenuTreeSearchIndex
+{
+	public static MenuTreeSearchIndex of(@NonNull final MenuNode rootNode)
+	{
+		return new MenuTreeSearchIndex(rootNode);
+	}
+
+	//
+	// Ranks (lower is better)
+	public static final int RANK_CaptionEquals = 0;
+	public static final int RANK_CaptionStartsWith = 1;
+	public static final int RANK_TokenStartsWith = 2;
+	public static final int RANK_CaptionContains = 3;
+	public static final int RANK_AllTokensMatch = 4;
+
+	private static final Pattern PATTERN_DiacriticalMarks = Pattern.compile("[\\p{InCombiningDiacriticalMarks}]");
+	private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/** indexed nodes (all nodes except root) */
+	private final ImmutableList<MenuNode> nodes;
+	/** normalized captions, by node index */
+	private final String[] captionsNorm;
+
+	/** node indexes by caption token */
+	private final NavigableMap<String, BitSet> nodeIndexesByToken = new TreeMap<>();
+
+	private MenuTreeSearchIndex(final MenuNode rootNode)
+	{
+		final ImmutableList.Builder<MenuNode> nodesBuilder = ImmutableList.builder();
+		final List<String> captionsNormList = new ArrayList<>();
+		rootNode.iterate(node -> {
+			if (node.isRoot())
+			{
+				return;
+			}
+
+			final int nodeIndex = captionsNormList.size();
+			final String captionNorm = normalize(node.getCaption());
+			nodesBuilder.add(node);
+			captionsNormList.add(captionNorm);
+			for (final String token : tokenize(captionNorm))
+			{
+				nodeIndexesByToken.computeIfAbsent(token, k -> new BitSet()).set(nodeIndex);
+			}
+		});
+
+		nodes = nodesBuilder.build();
+		captionsNorm = captionsNormList.toArray(new String[captionsNormList.size()]);
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.add("nodesCount", nodes.size())
+				.add("tokensCount", nodeIndexesByToken.size())
+				.toString();
+	}
+
+	/** @return lower case string, without diacritics */
+	public static String normalize(final String string)
+	{
+		final String stringLC = Strings.nullToEmpty(string).toLowerCase();
+		return PATTERN_DiacriticalMarks.matcher(Normalizer.normalize(stringLC, Normalizer.Form.NFD)).replaceAll("");
+	}
+
+	private static Set<String> tokenize(final String stringNorm)
+	{
+		final Set<String> tokens = new LinkedHashSet<>();
+		for (final String token : TOKEN_SEPARATORS.split(stringNorm))
+		{
+			if (!token.isEmpty())
+			{
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Searches the nodes whose caption is matching given query. A node is matching if:
+	 * <ul>
+	 * <li>its caption contains the whole query, or
+	 * <li>each token of the query is the prefix of one of its caption's tokens, in any order.
+	 * </ul>
+	 *
+	 * @return rank (see RANK_* constants) of each matching node, indexed by node ID
+	 */
+	public Map<String, Integer> search(final String query)
+	{
+		final String queryNorm = normalize(query).trim();
+		if (queryNorm.isEmpty())
+		{
+			return ImmutableMap.of();
+		}
+
+		final Map<String, Integer> ranksByNodeId = new HashMap<>();
+
+		//
+		// Nodes matching all query tokens (token prefix lookup)
+		final Set<String> queryTokens = tokenize(queryNorm);
+		final BitSet allTokensMatch = searchByTokenPrefixes(queryTokens);
+		final boolean singleTokenQuery = queryTokens.size() == 1 && queryTokens.contains(queryNorm);
+		for (int nodeIndex = allTokensMatch.nextSetBit(0); nodeIndex >= 0; nodeIndex = allTokensMatch.nextSetBit(nodeIndex + 1))
+		{
+			ranksByNodeId.put(nodes.get(nodeIndex).getId(), singleTokenQuery ? RANK_TokenStartsWith : RANK_AllTokensMatch);
+		}
+
+		//
+		// Nodes containing the whole query.
+		// NOTE: a flat scan of the pre-normalized captions, needed to also match inside words (e.g. compound words)
+		for (int nodeIndex = 0; nodeIndex < captionsNorm.length; nodeIndex++)
+		{
+			final String captionNorm = captionsNorm[nodeIndex];
+			final int rank;
+			if (captionNorm.equals(queryNorm))
+			{
+				rank = RANK_CaptionEquals;
+			}
+			else if (captionNorm.startsWith(queryNorm))
+			{
+				rank = RANK_CaptionStartsWith;
+			}
+			else if (allTokensMatch.get(nodeIndex))
+			{
+				continue; // already ranked
+			}
+			else if (captionNorm.indexOf(queryNorm) >= 0)
+			{
+				rank = RANK_CaptionContains;
+			}
+			else
+			{
+				continue;
+			}
+
+			ranksByNodeId.put(nodes.get(nodeIndex).getId(), rank);
+		}
+
+		return ranksByNodeId;
+	}
+
+	/** @return indexes of the nodes which have, for each query token, a caption token starting with it */
+	private BitSet searchByTokenPrefixes(final Set<String> queryTokens)
+	{
+		BitSet result = null;
+		for (final String queryToken : queryTokens)
+		{
+			final BitSet tokenResult = new BitSet(captionsNorm.length);
+			for (final BitSet nodeIndexes : nodeIndexesByToken.subMap(queryToken, true, queryToken + Character.MAX_VALUE, true).values())
+			{
+				tokenResult.or(nodeIndexes);
+			}
+
+			if (result == null)
+			{
+				result = tokenResult;
+			}
+			else
+			{
+				result.and(tokenResult);
+			}
+
+			if (result.isEmpty())
+			{
+				break;
+			}
+		}
+
+		return result != null ? result : new BitSet();
+	}
+}
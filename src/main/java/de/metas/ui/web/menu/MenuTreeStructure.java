@@ -0,0 +1,549 @@
+package de.metas.ui.web.menu;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import org.adempiere.ad.security.IUserRolePermissions;
+import org.slf4j.Logger;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+import de.metas.logging.LogManager;
+import de.metas.ui.web.menu.MenuNode.MenuNodeType;
+import de.metas.ui.web.menu.MenuTreeCaptions.NodeCaptions;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Structure of a menu tree (AD_Tree_ID), shared by all roles and languages.
+ * <p>
+ * It contains all the menu nodes, no matter which role can access them.
+ * Each node has an ordinal, so the nodes which are accessible by a given role can be kept as a {@link BitSet} (see {@link #computeAccessibleNodes(Predicate)}).
+ * The captions are loaded lazily, per language (see {@link #getCaptions(String)}).
+ */
+final class MenuTreeStructure
+{
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	private static final transient Logger logger = LogManager.getLogger(MenuTreeStructure.class);
+
+	private static final int DEPTH_Root = 0;
+	private static final int DEPTH_RootChildren = 1;
+
+	private final int adTreeId;
+	private final StructureNode rootNode;
+	/** all nodes, indexed by their ordinal */
+	private final ImmutableList<StructureNode> nodes;
+
+	private final MenuTreeCaptions baseLanguageCaptions;
+	private final CaptionsLoader captionsLoader;
+	private final Map<String, MenuTreeCaptions> captionsByLanguage = new ConcurrentHashMap<>();
+
+	@FunctionalInterface
+	public static interface CaptionsLoader
+	{
+		MenuTreeCaptions loadCaptions(int adTreeId, String adLanguage);
+	}
+
+	private MenuTreeStructure(final Builder builder)
+	{
+		adTreeId = builder.adTreeId;
+		rootNode = builder.rootNode;
+		if (rootNode == null)
+		{
+			throw new IllegalStateException("No root menu node available"); // shall not happen
+		}
+		nodes = ImmutableList.copyOf(builder.nodes);
+		rootNode.seal();
+
+		baseLanguageCaptions = builder.baseLanguageCaptions;
+		captionsLoader = builder.captionsLoader;
+		captionsByLanguage.put(baseLanguageCaptions.getAD_Language(), baseLanguageCaptions);
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.add("AD_Tree_ID", adTreeId)
+				.add("nodesCount", nodes.size())
+				.add("languages", captionsByLanguage.keySet())
+				.toString();
+	}
+
+	public int getAD_Tree_ID()
+	{
+		return adTreeId;
+	}
+
+	/** @return captions in given language; they are loaded when needed for the first time */
+	public MenuTreeCaptions getCaptions(@NonNull final String adLanguage)
+	{
+		return captionsByLanguage.computeIfAbsent(adLanguage, lang -> captionsLoader.loadCaptions(adTreeId, lang));
+	}
+
+	/**
+	 * @param isNodeAccessible tells if a node is accessible, without considering its children
+	 * @return ordinals of the accessible nodes. A grouping node is accessible if it's accessible itself and it has at least one accessible leaf.
+	 */
+	public BitSet computeAccessibleNodes(@NonNull final Predicate<StructureNode> isNodeAccessible)
+	{
+		final BitSet accessibleNodes = new BitSet(nodes.size());
+		computeAccessibleNodes(rootNode, isNodeAccessible, accessibleNodes);
+		accessibleNodes.set(rootNode.getOrdinal());
+		return accessibleNodes;
+	}
+
+	private static boolean computeAccessibleNodes(final StructureNode node, final Predicate<StructureNode> isNodeAccessible, final BitSet accessibleNodes)
+	{
+		if (!isNodeAccessible.test(node))
+		{
+			return false;
+		}
+
+		boolean accessible = false;
+		if (node.isGroupingNode())
+		{
+			for (final StructureNode child : node.getChildren())
+			{
+				// NOTE: don't stop on first accessible child, we need to compute all of them
+				accessible |= computeAccessibleNodes(child, isNodeAccessible, accessibleNodes);
+			}
+		}
+		else
+		{
+			accessible = true;
+		}
+
+		if (accessible)
+		{
+			accessibleNodes.set(node.getOrdinal());
+		}
+		return accessible;
+	}
+
+	/**
+	 * Computes the nodes which can be accessed by given permissions, in memory, without loading the menu tree again.
+	 *
+	 * @return ordinals of the accessible nodes, see {@link #computeAccessibleNodes(Predicate)}
+	 */
+	public BitSet computeAccessibleNodes(@NonNull final IUserRolePermissions permissions)
+	{
+		return computeAccessibleNodes(
+				adWindowId -> permissions.checkWindowAccess(adWindowId) != null,
+				adProcessId -> permissions.checkProcessAccess(adProcessId) != null);
+	}
+
+	/**
+	 * Filters the nodes the same way as a not editable {@link org.compiere.model.MTree} does: inactive menu entries and tree nodes are skipped,
+	 * windows and processes are accessible only if the role can access them.
+	 *
+	 * @param isWindowAccessible tells if an AD_Window_ID can be accessed
+	 * @param isProcessAccessible tells if an AD_Process_ID can be accessed
+	 */
+	public BitSet computeAccessibleNodes(@NonNull final IntPredicate isWindowAccessible, @NonNull final IntPredicate isProcessAccessible)
+	{
+		return computeAccessibleNodes(node -> isNodeAccessible(node, isWindowAccessible, isProcessAccessible));
+	}
+
+	private static boolean isNodeAccessible(final StructureNode node, final IntPredicate isWindowAccessible, final IntPredicate isProcessAccessible)
+	{
+		if (!node.isActive())
+		{
+			return false;
+		}
+
+		switch (node.getType())
+		{
+			case Window:
+			case NewRecord:
+				return isWindowAccessible.test(node.getAD_Window_ID());
+			case Process:
+			case Report:
+				return isProcessAccessible.test(node.getAD_Process_ID());
+			default:
+				// groups and boards: no role specific access
+				return true;
+		}
+	}
+
+	/**
+	 * Creates a new menu nodes hierarchy, containing only the accessible nodes.
+	 *
+	 * @param rootMenuId AD_Menu_ID of the effective root node or <code>-1</code> to start from structure's root
+	 * @param accessibleNodes accessible nodes, see {@link #computeAccessibleNodes(Predicate)}
+	 */
+	public MenuNode createRootMenuNode(final int rootMenuId, @NonNull final BitSet accessibleNodes, @NonNull final String adLanguage)
+	{
+		StructureNode effectiveRootNode = rootNode;
+		if (rootMenuId > 0)
+		{
+			final StructureNode node = nodes.stream()
+					.filter(n -> n.getAD_Menu_ID() == rootMenuId && n.getType() != MenuNodeType.NewRecord)
+					.findFirst()
+					.orElse(null);
+			if (node != null)
+			{
+				effectiveRootNode = node;
+			}
+			else
+			{
+				logger.warn("Cannot find Root_Menu_ID={} in {}", rootMenuId, this);
+			}
+		}
+
+		final MenuTreeCaptions captions = getCaptions(adLanguage);
+		final MenuNode menuNode = createMenuNodeRecursivelly(effectiveRootNode, DEPTH_Root, accessibleNodes, captions);
+		if (menuNode == null)
+		{
+			throw new IllegalStateException("No root menu node available"); // shall not happen
+		}
+		return menuNode;
+	}
+
+	private MenuNode createMenuNodeRecursivelly(final StructureNode node, final int depth, final BitSet accessibleNodes, final MenuTreeCaptions captions)
+	{
+		if (depth != DEPTH_Root && !accessibleNodes.get(node.getOrdinal()))
+		{
+			return null;
+		}
+		if (!node.isGroupingNode() && depth == DEPTH_RootChildren)
+		{
+			logger.warn("Skip creating leaf nodes for root: {}", node);
+			return null;
+		}
+
+		final MenuNode.Builder nodeBuilder = MenuNode.builder()
+				.setAD_Menu_ID(node.getAD_Menu_ID())
+				.setMainTableName(node.getMainTableName());
+		setCaptions(nodeBuilder, node, captions);
+		if (node.isGroupingNode())
+		{
+			nodeBuilder.setTypeGroup();
+		}
+		else
+		{
+			nodeBuilder.setType(node.getType(), node.getElementId());
+		}
+
+		for (final StructureNode child : node.getChildren())
+		{
+			final MenuNode childMenuNode = createMenuNodeRecursivelly(child, depth + 1, accessibleNodes, captions);
+			if (childMenuNode == null)
+			{
+				continue;
+			}
+
+			if (child.getType() == MenuNodeType.NewRecord)
+			{
+				nodeBuilder.addChildToFirstsList(childMenuNode);
+			}
+			else
+			{
+				nodeBuilder.addChild(childMenuNode);
+			}
+		}
+
+		return nodeBuilder.build();
+	}
+
+	private void setCaptions(final MenuNode.Builder nodeBuilder, final StructureNode node, final MenuTreeCaptions captions)
+	{
+		NodeCaptions nodeCaptions = captions.getByMenuId(node.getAD_Menu_ID());
+		if (nodeCaptions == null)
+		{
+			// fallback to base language (e.g. the node was not loaded in given language)
+			nodeCaptions = baseLanguageCaptions.getByMenuId(node.getAD_Menu_ID());
+		}
+		if (nodeCaptions == null)
+		{
+			nodeBuilder.setCaption(String.valueOf(node.getAD_Menu_ID()));
+			return;
+		}
+
+		if (node.getType() == MenuNodeType.NewRecord)
+		{
+			nodeBuilder.setCaption(nodeCaptions.getCaptionNew());
+			nodeBuilder.setCaptionBreadcrumb(nodeCaptions.getCaptionNewBreadcrumb());
+		}
+		else
+		{
+			nodeBuilder.setCaption(nodeCaptions.getCaption());
+			nodeBuilder.setCaptionBreadcrumb(nodeCaptions.getCaptionBreadcrumb());
+		}
+	}
+
+	/** Language independent menu node */
+	public static final class StructureNode
+	{
+		private final int ordinal;
+		private final int adMenuId;
+		private final MenuNodeType type;
+		private final DocumentId elementId;
+		private final int adWindowId;
+		private final int adProcessId;
+		private final String mainTableName;
+		/** true if both the menu entry and the tree node are active */
+		private final boolean active;
+
+		private final List<StructureNode> childrenFirst = new ArrayList<>();
+		private final List<StructureNode> childrenRest = new ArrayList<>();
+		private List<StructureNode> children; // set when sealed
+
+		private StructureNode(final Builder.NodeBuilder builder, final int ordinal)
+		{
+			this.ordinal = ordinal;
+			adMenuId = builder.adMenuId;
+			type = builder.type;
+			elementId = builder.elementId;
+			adWindowId = builder.adWindowId;
+			adProcessId = builder.adProcessId;
+			mainTableName = builder.mainTableName;
+			active = builder.active;
+		}
+
+		@Override
+		public String toString()
+		{
+			return MoreObjects.toStringHelper(this)
+					.omitNullValues()
+					.add("ordinal", ordinal)
+					.add("AD_Menu_ID", adMenuId)
+					.add("type", type)
+					.add("elementId", elementId)
+					.add("active", active ? null : Boolean.FALSE)
+					.toString();
+		}
+
+		private void seal()
+		{
+			children = ImmutableList.copyOf(Iterables.concat(childrenFirst, childrenRest));
+			childrenFirst.clear();
+			childrenRest.clear();
+			children.forEach(StructureNode::seal);
+		}
+
+		public int getOrdinal()
+		{
+			return ordinal;
+		}
+
+		public int getAD_Menu_ID()
+		{
+			return adMenuId;
+		}
+
+		public MenuNodeType getType()
+		{
+			return type;
+		}
+
+		public boolean isGroupingNode()
+		{
+			return type == MenuNodeType.Group;
+		}
+
+		public DocumentId getElementId()
+		{
+			return elementId;
+		}
+
+		/** @return AD_Window_ID (for window and new record nodes) or <code>-1</code> */
+		public int getAD_Window_ID()
+		{
+			return adWindowId;
+		}
+
+		/** @return AD_Process_ID (for process and report nodes) or <code>-1</code> */
+		public int getAD_Process_ID()
+		{
+			return adProcessId;
+		}
+
+		public String getMainTableName()
+		{
+			return mainTableName;
+		}
+
+		public boolean isActive()
+		{
+			return active;
+		}
+
+		private List<StructureNode> getChildren()
+		{
+			return children;
+		}
+	}
+
+	public static final class Builder
+	{
+		private int adTreeId = -1;
+		private StructureNode rootNode;
+		private final List<StructureNode> nodes = new ArrayList<>();
+		private MenuTreeCaptions baseLanguageCaptions;
+		private CaptionsLoader captionsLoader;
+
+		private Builder()
+		{
+		}
+
+		public MenuTreeStructure build()
+		{
+			return new MenuTreeStructure(this);
+		}
+
+		public Builder setAD_Tree_ID(final int adTreeId)
+		{
+			this.adTreeId = adTreeId;
+			return this;
+		}
+
+		public Builder setBaseLanguageCaptions(@NonNull final MenuTreeCaptions baseLanguageCaptions)
+		{
+			this.baseLanguageCaptions = baseLanguageCaptions;
+			return this;
+		}
+
+		public Builder setCaptionsLoader(@NonNull final CaptionsLoader captionsLoader)
+		{
+			this.captionsLoader = captionsLoader;
+			return this;
+		}
+
+		public NodeBuilder newNode(final int adMenuId)
+		{
+			return new NodeBuilder(adMenuId);
+		}
+
+		private StructureNode createNode(final NodeBuilder nodeBuilder)
+		{
+			final StructureNode node = new StructureNode(nodeBuilder, nodes.size());
+			nodes.add(node);
+			return node;
+		}
+
+		public Builder setRootNode(@NonNull final StructureNode rootNode)
+		{
+			this.rootNode = rootNode;
+			return this;
+		}
+
+		public Builder addChild(@NonNull final StructureNode parent, @NonNull final StructureNode child)
+		{
+			if (!parent.isGroupingNode())
+			{
+				throw new IllegalArgumentException("Only grouping nodes can have children");
+			}
+
+			if (child.getType() == MenuNodeType.NewRecord)
+			{
+				parent.childrenFirst.add(child);
+			}
+			else
+			{
+				parent.childrenRest.add(child);
+			}
+			return this;
+		}
+
+		public final class NodeBuilder
+		{
+			private final int adMenuId;
+			private MenuNodeType type;
+			private DocumentId elementId;
+			private int adWindowId = -1;
+			private int adProcessId = -1;
+			private String mainTableName;
+			private boolean active = true;
+
+			private NodeBuilder(final int adMenuId)
+			{
+				this.adMenuId = adMenuId;
+			}
+
+			public StructureNode build()
+			{
+				if (type == null)
+				{
+					throw new IllegalStateException("type not set for AD_Menu_ID=" + adMenuId);
+				}
+				return createNode(this);
+			}
+
+			public NodeBuilder setTypeGroup()
+			{
+				type = MenuNodeType.Group;
+				elementId = null;
+				return this;
+			}
+
+			public NodeBuilder setTypeWindow(final MenuNodeType type, final int adWindowId)
+			{
+				this.type = type;
+				this.adWindowId = adWindowId;
+				elementId = DocumentId.of(adWindowId);
+				return this;
+			}
+
+			public NodeBuilder setTypeProcess(final MenuNodeType type, final int adProcessId, @NonNull final DocumentId elementId)
+			{
+				this.type = type;
+				this.adProcessId = adProcessId;
+				this.elementId = elementId;
+				return this;
+			}
+
+			public NodeBuilder setTypeBoard(@NonNull final DocumentId elementId)
+			{
+				type = MenuNodeType.Board;
+				this.elementId = elementId;
+				return this;
+			}
+
+			public NodeBuilder setMainTableName(final String mainTableName)
+			{
+				this.mainTableName = mainTableName;
+				return this;
+			}
+
+			public NodeBuilder setActive(final boolean active)
+			{
+				this.active = active;
+				return this;
+			}
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package de.metas.ui.web.process;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.adempiere.ad.security.IUserRolePermissions;
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.adempiere.util.lang.IAutoCloseable;
+import org.compiere.util.Env;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.metas.logging.LogManager;
+import de.metas.ui.web.exceptions.EntityNotFoundException;
+import de.metas.ui.web.process.exceptions.ProcessExecutionException;
+import de.metas.ui.web.process.json.JSONProcessInstanceJobStatusEvent;
+import de.metas.ui.web.process.json.JSONProcessInstanceResult;
+import de.metas.ui.web.session.UserSession;
+import de.metas.ui.web.websocket.WebSocketConfig;
+import de.metas.ui.web.websocket.WebsocketSender;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Executes process instances in background, using a bounded executor, so long running processes are not blocking the servlet threads.
+ * <p>
+ * The number of queued and running processes is limited per user and per process, in order to protect the database connection pool.
+ * Each job status change is sent to the job's websocket endpoint (see {@link WebSocketConfig#buildProcessInstanceTopicName(DocumentId)}).
+ * Only the status is sent there. The result has to be polled, see {@link #getJob(DocumentId, int)}.
+ * <p>
+ * The worker threads are not bound to a request, so the process is executed with the context and the permissions captured when it was submitted.
+ */
+@Component
+public class AsyncProcessInstancesExecutor
+{
+	private static final Logger logger = LogManager.getLogger(AsyncProcessInstancesExecutor.class);
+
+	private static final long FINISHED_JOBS_RETENTION_MINUTES = 60;
+
+	private final WebsocketSender websocketSender;
+	private final Executor executor;
+	private final int maxJobsPerUser;
+	private final int maxJobsPerProcess;
+
+	/** Queued and running jobs, indexed by process instance ID */
+	private final ConcurrentHashMap<DocumentId, ProcessInstanceJob> activeJobs = new ConcurrentHashMap<>();
+	/** Finished jobs, indexed by process instance ID. They are kept for a while after they finished, so their results can be polled */
+	private final Cache<DocumentId, ProcessInstanceJob> finishedJobs;
+
+	/** queued and running jobs count, guarded by "this" */
+	private final Map<Integer, Integer> activeJobsCountByUserId = new HashMap<>();
+	/** queued and running jobs count, guarded by "this" */
+	private final Map<ProcessId, Integer> activeJobsCountByProcessId = new HashMap<>();
+
+	@Autowired
+	public AsyncProcessInstancesExecutor(
+			@NonNull final WebsocketSender websocketSender,
+			@Value("${metasfresh.webui.process.async.threads:4}") final int threads,
+			@Value("${metasfresh.webui.process.async.queueCapacity:50}") final int queueCapacity,
+			@Value("${metasfresh.webui.process.async.maxJobsPerUser:2}") final int maxJobsPerUser,
+			@Value("${metasfresh.webui.process.async.maxJobsPerProcess:4}") final int maxJobsPerProcess)
+	{
+		this(websocketSender, createExecutor(threads, queueCapacity), Ticker.systemTicker(), maxJobsPerUser, maxJobsPerProcess);
+	}
+
+	@VisibleForTesting
+	AsyncProcessInstancesExecutor(
+			@NonNull final WebsocketSender websocketSender,
+			@NonNull final Executor executor,
+			@NonNull final Ticker ticker,
+			final int maxJobsPerUser,
+			final int maxJobsPerProcess)
+	{
+		this.websocketSender = websocketSender;
+		this.executor = executor;
+		this.maxJobsPerUser = maxJobsPerUser;
+		this.maxJobsPerProcess = maxJobsPerProcess;
+
+		finishedJobs = CacheBuilder.newBuilder()
+				.ticker(ticker)
+				.expireAfterWrite(FINISHED_JOBS_RETENTION_MINUTES, TimeUnit.MINUTES)
+				.build();
+	}
+
+	private static ThreadPoolExecutor createExecutor(final int threads, final int queueCapacity)
+	{
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				threads, // corePoolSize
+				threads, // maximumPoolSize
+				1, TimeUnit.MINUTES, // keepAliveTime
+				new ArrayBlockingQueue<>(queueCapacity), // workQueue
+				CustomizableThreadFactory.builder()
+						.setDaemon(true)
+						.setThreadNamePrefix("webui-process-async")
+						.build());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Queues the process instance for execution.
+	 *
+	 * @param ctx context to be used while executing the process; a copy of it is taken right away
+	 * @param permissions permissions to be used while executing the process (see {@link UserSession#getCurrentPermissions()})
+	 * @param processExecution executes the process instance and returns it's result
+	 * @return the queued job
+	 * @throws ProcessExecutionException if the process instance was already started or too many processes are running
+	 */
+	public ProcessInstanceJob submit(
+			@NonNull final ProcessId processId,
+			@NonNull final DocumentId pinstanceId,
+			final int adUserId,
+			@NonNull final Properties ctx,
+			@NonNull final IUserRolePermissions permissions,
+			@NonNull final Callable<JSONProcessInstanceResult> processExecution)
+	{
+		if (finishedJobs.getIfPresent(pinstanceId) != null)
+		{
+			throw new ProcessExecutionException("Process instance was already started");
+		}
+
+		final ProcessInstanceJob job = new ProcessInstanceJob(processId, pinstanceId, adUserId);
+		if (activeJobs.putIfAbsent(pinstanceId, job) != null)
+		{
+			throw new ProcessExecutionException("Process instance was already started");
+		}
+
+		if (!acquireSlot(job))
+		{
+			activeJobs.remove(pinstanceId, job);
+			throw new ProcessExecutionException("Too many processes are running. Please try again later.");
+		}
+
+		// NOTE: the worker thread is not bound to current request, so we have to take a snapshot of current context
+		final Properties ctxCopy = Env.copyCtx(ctx);
+
+		// NOTE: fire the QUEUED status before queuing the job, else it could be sent after the RUNNING status
+		fireJobChanged(job);
+		try
+		{
+			executor.execute(() -> execute(job, ctxCopy, permissions, processExecution));
+		}
+		catch (final RejectedExecutionException ex)
+		{
+			releaseSlot(job);
+			activeJobs.remove(pinstanceId, job);
+
+			final String errorMessage = "Too many processes are running. Please try again later.";
+			job.markError(errorMessage);
+			fireJobChanged(job);
+			throw new ProcessExecutionException(errorMessage);
+		}
+
+		logger.debug("Queued {}", job);
+		return job;
+	}
+
+	private void execute(
+			final ProcessInstanceJob job,
+			final Properties ctx,
+			final IUserRolePermissions permissions,
+			final Callable<JSONProcessInstanceResult> processExecution)
+	{
+		try (final IAutoCloseable temporaryCtx = Env.switchContext(ctx);
+				final IAutoCloseable temporaryPermissions = UserSession.temporarySwitchPermissions(permissions))
+		{
+			job.markRunning();
+			fireJobChanged(job);
+
+			final JSONProcessInstanceResult result = processExecution.call();
+			job.markDone(result);
+		}
+		catch (final Throwable ex)
+		{
+			logger.warn("Failed executing {}", job, ex);
+			job.markError(AdempiereException.wrapIfNeeded(ex).getLocalizedMessage());
+		}
+		finally
+		{
+			// NOTE: the retention period starts now, when the job finished, no matter how long it was queued or running
+			finishedJobs.put(job.getPinstanceId(), job);
+			activeJobs.remove(job.getPinstanceId(), job);
+			releaseSlot(job);
+		}
+
+		fireJobChanged(job);
+	}
+
+	/**
+	 * @return job of given process instance
+	 * @throws EntityNotFoundException if the job does not exist, expired or it belongs to another user
+	 */
+	public ProcessInstanceJob getJob(@NonNull final DocumentId pinstanceId, final int adUserId)
+	{
+		ProcessInstanceJob job = activeJobs.get(pinstanceId);
+		if (job == null)
+		{
+			job = finishedJobs.getIfPresent(pinstanceId);
+		}
+		if (job == null || job.getAD_User_ID() != adUserId)
+		{
+			throw new EntityNotFoundException("No asynchronous execution found for process instance " + pinstanceId);
+		}
+		return job;
+	}
+
+	private synchronized boolean acquireSlot(final ProcessInstanceJob job)
+	{
+		final int userJobsCount = activeJobsCountByUserId.getOrDefault(job.getAD_User_ID(), 0);
+		final int processJobsCount = activeJobsCountByProcessId.getOrDefault(job.getProcessId(), 0);
+		if (maxJobsPerUser > 0 && userJobsCount >= maxJobsPerUser)
+		{
+			return false;
+		}
+		if (maxJobsPerProcess > 0 && processJobsCount >= maxJobsPerProcess)
+		{
+			return false;
+		}
+
+		activeJobsCountByUserId.put(job.getAD_User_ID(), userJobsCount + 1);
+		activeJobsCountByProcessId.put(job.getProcessId(), processJobsCount + 1);
+		return true;
+	}
+
+	private synchronized void releaseSlot(final ProcessInstanceJob job)
+	{
+		activeJobsCountByUserId.computeIfPresent(job.getAD_User_ID(), (adUserId, count) -> count > 1 ? count - 1 : null);
+		activeJobsCountByProcessId.computeIfPresent(job.getProcessId(), (processId, count) -> count > 1 ? count - 1 : null);
+	}
+
+	private void fireJobChanged(final ProcessInstanceJob job)
+	{
+		try
+		{
+			websocketSender.convertAndSend(WebSocketConfig.buildProcessInstanceTopicName(job.getPinstanceId()), JSONProcessInstanceJobStatusEvent.of(job.getStatus()));
+		}
+		catch (final Exception ex)
+		{
+			logger.warn("Failed sending websocket event for {}. Ignored.", job, ex);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package de.metas.ui.web.process;
+
+import com.google.common.base.MoreObjects;
+
+import de.metas.ui.web.process.json.JSONProcessInstanceResult;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Process instance which is executed asynchronously, by {@link AsyncProcessInstancesExecutor}.
+ * <p>
+ * The job is identified by the process instance ID.
+ */
+public final class ProcessInstanceJob
+{
+	public static enum Status
+	{
+		QUEUED, RUNNING, DONE, ERROR;
+
+		public boolean isFinished()
+		{
+			return this == DONE || this == ERROR;
+		}
+	}
+
+	private final ProcessId processId;
+	private final DocumentId pinstanceId;
+	private final int adUserId;
+
+	private volatile Status status = Status.QUEUED;
+	private volatile JSONProcessInstanceResult result;
+	private volatile String errorMessage;
+
+	/* package */ ProcessInstanceJob(@NonNull final ProcessId processId, @NonNull final DocumentId pinstanceId, final int adUserId)
+	{
+		this.processId = processId;
+		this.pinstanceId = pinstanceId;
+		this.adUserId = adUserId;
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.omitNullValues()
+				.add("processId", processId)
+				.add("pinstanceId", pinstanceId)
+				.add("AD_User_ID", adUserId)
+				.add("status", status)
+				.add("errorMessage", errorMessage)
+				.toString();
+	}
+
+	public ProcessId getProcessId()
+	{
+		return processId;
+	}
+
+	public DocumentId getPinstanceId()
+	{
+		return pinstanceId;
+	}
+
+	public int getAD_User_ID()
+	{
+		return adUserId;
+	}
+
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	/** @return process execution result or null if the process is not done */
+	public JSONProcessInstanceResult getResult()
+	{
+		return result;
+	}
+
+	/** @return error message or null if the process did not fail */
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	/* package */ void markRunning()
+	{
+		status = Status.RUNNING;
+	}
+
+	/* package */ void markDone(@NonNull final JSONProcessInstanceResult result)
+	{
+		this.result = result;
+		status = Status.DONE;
+	}
+
+	/* package */ void markError(final String errorMessage)
+	{
+		this.errorMessage = errorMessage;
+		status = Status.ERROR;
+	}
+}
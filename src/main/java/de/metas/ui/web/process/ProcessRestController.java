@@ -2,6 +2,7 @@ package de.metas.ui.web.process;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
@@ -32,6 +33,7 @@ import de.metas.ui.web.process.descriptor.ProcessDescriptor;
 import de.metas.ui.web.process.descriptor.WebuiRelatedProcessDescriptor;
 import de.metas.ui.web.process.json.JSONCreateProcessInstanceRequest;
 import de.metas.ui.web.process.json.JSONProcessInstance;
+import de.metas.ui.web.process.json.JSONProcessInstanceJob;
 import de.metas.ui.web.process.json.JSONProcessInstanceResult;
 import de.metas.ui.web.process.json.JSONProcessLayout;
 import de.metas.ui.web.session.UserSession;
@@ -92,6 +94,8 @@ public class ProcessRestController
 	private IViewsRepository viewsRepo;
 	@Autowired
 	private DocumentCollection documentsCollection;
+	@Autowired
+	private AsyncProcessInstancesExecutor asyncProcessInstancesExecutor;
 
 	private final ConcurrentHashMap<String, IProcessInstancesRepository> pinstancesRepositoriesByHandlerType = new ConcurrentHashMap<>();
 
@@ -252,6 +256,52 @@ public class ProcessRestController
 		final ProcessId processId = ProcessId.fromJson(processIdStr);
 		final DocumentId pinstanceId = DocumentId.of(pinstanceIdStr);
 
+		return executeProcess(processId, pinstanceId, Env.getCtx(), userSession.getAD_Language());
+	}
+
+	/**
+	 * Starts the process instance in background and returns right away.
+	 * The job status changes are sent to job's websocket endpoint. The result can also be polled, see {@link #getAsyncProcessResult(String, String)}.
+	 */
+	@RequestMapping(value = "/{processId}/{pinstanceId}/startAsync", method = RequestMethod.GET)
+	public JSONProcessInstanceJob startProcessAsync(
+			@PathVariable("processId") final String processIdStr //
+			, @PathVariable("pinstanceId") final String pinstanceIdStr //
+	)
+	{
+		userSession.assertLoggedIn();
+
+		final ProcessId processId = ProcessId.fromJson(processIdStr);
+		final DocumentId pinstanceId = DocumentId.of(pinstanceIdStr);
+
+		// NOTE: the process is executed in a thread which is not bound to this request,
+		// so the context and the permissions are captured here and the executor is switching to them while the process is executed.
+		final String adLanguage = userSession.getAD_Language();
+		final ProcessInstanceJob job = asyncProcessInstancesExecutor.submit(
+				processId,
+				pinstanceId,
+				userSession.getAD_User_ID(),
+				Env.getCtx(),
+				userSession.getUserRolePermissions(),
+				() -> executeProcess(processId, pinstanceId, Env.getCtx(), adLanguage));
+		return JSONProcessInstanceJob.of(job);
+	}
+
+	@RequestMapping(value = "/{processId}/{pinstanceId}/result", method = RequestMethod.GET)
+	public JSONProcessInstanceJob getAsyncProcessResult(
+			@PathVariable("processId") final String processIdStr //
+			, @PathVariable("pinstanceId") final String pinstanceIdStr //
+	)
+	{
+		userSession.assertLoggedIn();
+
+		final DocumentId pinstanceId = DocumentId.of(pinstanceIdStr);
+		final ProcessInstanceJob job = asyncProcessInstancesExecutor.getJob(pinstanceId, userSession.getAD_User_ID());
+		return JSONProcessInstanceJob.of(job);
+	}
+
+	private JSONProcessInstanceResult executeProcess(final ProcessId processId, final DocumentId pinstanceId, final Properties ctx, final String adLanguage)
+	{
 		final IProcessInstancesRepository instancesRepository = getRepository(processId);
 
 		return Execution.prepareNewExecution()
@@ -259,8 +309,8 @@ public class ProcessRestController
 				.execute(() -> {
 					return instancesRepository.forProcessInstanceWritable(pinstanceId, NullDocumentChangesCollector.instance, processInstance -> {
 						final ProcessInstanceResult result = processInstance.startProcess(ProcessExecutionContext.builder()
-								.ctx(Env.getCtx())
-								.adLanguage(userSession.getAD_Language())
+								.ctx(ctx)
+								.adLanguage(adLanguage)
 								.viewsRepo(viewsRepo)
 								.documentsCollection(documentsCollection)
 								.build());
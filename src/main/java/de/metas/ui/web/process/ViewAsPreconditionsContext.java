@@ -6,8 +6,6 @@ import java.util.Objects;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.model.InterfaceWrapperHelper;
 import org.adempiere.util.Check;
-import org.adempiere.util.Functions;
-import org.adempiere.util.Functions.MemoizingFunction;
 import org.adempiere.util.lang.impl.TableRecordReference;
 import org.slf4j.Logger;
 
@@ -25,6 +23,7 @@ import de.metas.ui.web.window.datatypes.WindowId;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 
 /*
  * #%L
@@ -78,7 +77,9 @@ public class ViewAsPreconditionsContext implements WebuiPreconditionsContext
 	private final ViewRowIdsSelection parentViewRowIdsSelection;
 	private final ViewRowIdsSelection childViewRowIdsSelection;
 
-	private final MemoizingFunction<Class<?>, SelectedModelsList> _selectedModelsSupplier = Functions.memoizingFirstCall(this::retrieveSelectedModels);
+	/** selected models, loaded on first call. NOTE: guarded by "this" because the preconditions might be checked concurrently */
+	@NonFinal
+	private SelectedModelsList _selectedModels;
 
 	@Builder
 	private ViewAsPreconditionsContext(
@@ -163,7 +164,16 @@ public class ViewAsPreconditionsContext implements WebuiPreconditionsContext
 	@Override
 	public <T> List<T> getSelectedModels(final Class<T> modelClass)
 	{
-		return _selectedModelsSupplier.apply(modelClass).getModels(modelClass);
+		return getSelectedModelsList(modelClass).getModels(modelClass);
+	}
+
+	private synchronized SelectedModelsList getSelectedModelsList(final Class<?> modelClass)
+	{
+		if (_selectedModels == null)
+		{
+			_selectedModels = retrieveSelectedModels(modelClass);
+		}
+		return _selectedModels;
 	}
 
 	@Override
@@ -97,6 +97,7 @@ import lombok.NonNull;
 	private final transient IADProcessDAO adProcessDAO = Services.get(IADProcessDAO.class);
 
 	private final CCache<ProcessId, ProcessDescriptor> processDescriptorsByProcessId = CCache.newLRUCache(I_AD_Process.Table_Name + "#Descriptors#by#AD_Process_ID", 200, 0);
+	private final ProcessPreconditionsEvaluator preconditionsEvaluator = new ProcessPreconditionsEvaluator();
 
 	public Stream<WebuiRelatedProcessDescriptor> streamDocumentRelatedProcesses(final WebuiPreconditionsContext preconditionsContext, final IUserRolePermissions userRolePermissions)
 	{
@@ -117,20 +118,34 @@ import lombok.NonNull;
 					.collect(GuavaCollectors.distinctBy(RelatedProcessDescriptor::getProcessId));
 		}
 
+		// NOTE: we are collecting the descriptors first, so all preconditions are submitted to be checked concurrently before the caller asks for the first resolution
+		final ProcessPreconditionsEvaluator.Evaluation preconditionsEvaluation = preconditionsEvaluator.newEvaluation(preconditionsContext);
 		return relatedProcessDescriptors
 				.filter(relatedProcess -> relatedProcess.isExecutionGranted(userRolePermissions)) // only those which can be executed by current user permissions
-				.map(relatedProcess -> toWebuiRelatedProcessDescriptor(relatedProcess, preconditionsContext));
+				.map(relatedProcess -> toWebuiRelatedProcessDescriptor(relatedProcess, preconditionsContext, preconditionsEvaluation))
+				.collect(ImmutableList.toImmutableList())
+				.stream();
 	}
 
-	private WebuiRelatedProcessDescriptor toWebuiRelatedProcessDescriptor(@NonNull final RelatedProcessDescriptor relatedProcessDescriptor, @NonNull final IProcessPreconditionsContext preconditionsContext)
+	/* package */ void cacheReset()
+	{
+		preconditionsEvaluator.cacheReset();
+	}
+
+	private WebuiRelatedProcessDescriptor toWebuiRelatedProcessDescriptor(
+			@NonNull final RelatedProcessDescriptor relatedProcessDescriptor,
+			@NonNull final IProcessPreconditionsContext preconditionsContext,
+			@NonNull final ProcessPreconditionsEvaluator.Evaluation preconditionsEvaluation)
 	{
 		final ProcessId processId = ProcessId.ofAD_Process_ID(relatedProcessDescriptor.getProcessId());
 		final ProcessDescriptor processDescriptor = getProcessDescriptor(processId);
-		final ProcessPreconditionsResolutionSupplier preconditionsResolutionSupplier = ProcessPreconditionsResolutionSupplier.builder()
-				.preconditionsContext(preconditionsContext)
-				.processPreconditionsCheckers(relatedProcessDescriptor.getProcessPreconditionsCheckers())
-				.processDescriptor(processDescriptor)
-				.build();
+		final Supplier<ProcessPreconditionsResolution> preconditionsResolutionSupplier = preconditionsEvaluation.submit(
+				processId,
+				ProcessPreconditionsResolutionSupplier.builder()
+						.preconditionsContext(preconditionsContext)
+						.processPreconditionsCheckers(relatedProcessDescriptor.getProcessPreconditionsCheckers())
+						.processDescriptor(processDescriptor)
+						.build());
 
 		return WebuiRelatedProcessDescriptor.builder()
 				.processId(processDescriptor.getProcessId())
@@ -115,6 +115,7 @@ public class ADProcessInstancesRepository implements IProcessInstancesRepository
 	{
 		processInstances.invalidateAll();
 		processInstances.cleanUp();
+		processDescriptorFactory.cacheReset();
 	}
 
 	@Override
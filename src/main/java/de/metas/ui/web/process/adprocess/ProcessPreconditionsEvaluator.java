@@ -0,0 +1,255 @@
+package de.metas.ui.web.process.adprocess;
+
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.service.ISysConfigBL;
+import org.adempiere.util.Services;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.adempiere.util.lang.IAutoCloseable;
+import org.compiere.util.Env;
+import org.slf4j.Logger;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.metas.logging.LogManager;
+import de.metas.process.IProcessPreconditionsContext;
+import de.metas.process.ProcessPreconditionsResolution;
+import de.metas.ui.web.cache.ETag;
+import de.metas.ui.web.process.ProcessId;
+import de.metas.ui.web.process.ViewAsPreconditionsContext;
+import de.metas.ui.web.view.ViewId;
+import de.metas.ui.web.view.ViewRowIdsSelection;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Evaluates the process preconditions of view related processes:
+ * <ul>
+ * <li>the resolutions are cached per view, view data version, row selection and process. So when the user is clicking back and forth through the view rows, the preconditions are not checked again.
+ * The view data version is changing when the view rows are invalidated, so the cached resolutions are not used anymore.
+ * <li>the preconditions of all processes are checked concurrently. Checks which are not done within the time budget are considered rejected for current request
+ * (their resolution will be cached when they are done) and they are reported as slow.
+ * </ul>
+ * Preconditions of processes which are not related to views are checked as before, in the current thread, when needed.
+ */
+final class ProcessPreconditionsEvaluator
+{
+	private static final Logger logger = LogManager.getLogger(ProcessPreconditionsEvaluator.class);
+
+	/** How long (millis) to wait for the concurrently checked preconditions of one request */
+	private static final String SYSCONFIG_TimeBudgetMillis = "de.metas.ui.web.process.adprocess.ProcessPreconditionsEvaluator.TimeBudgetMillis";
+	private static final int DEFAULT_TimeBudgetMillis = 2000;
+	/** Preconditions checks which are taking longer than that (millis) are logged as slow */
+	private static final String SYSCONFIG_SlowCheckMillis = "de.metas.ui.web.process.adprocess.ProcessPreconditionsEvaluator.SlowCheckMillis";
+	private static final int DEFAULT_SlowCheckMillis = 200;
+
+	/** Executor used to check the preconditions concurrently. If the queue is full, the preconditions are checked in the calling thread. */
+	private static final ThreadPoolExecutor executor = createExecutor();
+
+	private final Cache<ResolutionKey, ProcessPreconditionsResolution> resolutionsCache = CacheBuilder.newBuilder()
+			.maximumSize(5000)
+			.expireAfterWrite(5, TimeUnit.MINUTES)
+			.build();
+
+	private static ThreadPoolExecutor createExecutor()
+	{
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				4, // corePoolSize
+				4, // maximumPoolSize
+				1, TimeUnit.MINUTES, // keepAliveTime
+				new ArrayBlockingQueue<>(200), // workQueue
+				CustomizableThreadFactory.builder()
+						.setDaemon(true)
+						.setThreadNamePrefix("webui-process-preconditions")
+						.build());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Starts a new evaluation. All preconditions submitted to it are sharing the same time budget.
+	 */
+	public Evaluation newEvaluation(@NonNull final IProcessPreconditionsContext preconditionsContext)
+	{
+		return new Evaluation(preconditionsContext);
+	}
+
+	/* package */ void cacheReset()
+	{
+		resolutionsCache.invalidateAll();
+	}
+
+	public final class Evaluation
+	{
+		private final IProcessPreconditionsContext preconditionsContext;
+		/** not null if the preconditions can be cached and checked concurrently */
+		private final ViewAsPreconditionsContext viewPreconditionsContext;
+		private final ETag viewDataETag;
+
+		private Properties ctx; // lazy
+		private Stopwatch stopwatch; // lazy
+		private final long timeBudgetMillis;
+		private final long slowCheckMillis;
+
+		private Evaluation(@NonNull final IProcessPreconditionsContext preconditionsContext)
+		{
+			this.preconditionsContext = preconditionsContext;
+
+			// NOTE: only the view based preconditions are checked concurrently, because documents are not thread safe
+			viewPreconditionsContext = ViewAsPreconditionsContext.castOrNull(preconditionsContext);
+			viewDataETag = viewPreconditionsContext != null ? viewPreconditionsContext.getView().getDataETagOrNull() : null;
+
+			final ISysConfigBL sysConfigBL = Services.get(ISysConfigBL.class);
+			timeBudgetMillis = sysConfigBL.getIntValue(SYSCONFIG_TimeBudgetMillis, DEFAULT_TimeBudgetMillis);
+			slowCheckMillis = sysConfigBL.getIntValue(SYSCONFIG_SlowCheckMillis, DEFAULT_SlowCheckMillis);
+		}
+
+		/**
+		 * @param resolutionSupplier checks the process preconditions
+		 * @return supplier of the process preconditions resolution; it blocks until the resolution is known or the evaluation's time budget is exceeded
+		 */
+		public Supplier<ProcessPreconditionsResolution> submit(
+				@NonNull final ProcessId processId,
+				@NonNull final Supplier<ProcessPreconditionsResolution> resolutionSupplier)
+		{
+			if (viewPreconditionsContext == null || viewDataETag == null)
+			{
+				return resolutionSupplier;
+			}
+
+			final ResolutionKey key = ResolutionKey.of(processId, viewPreconditionsContext, viewDataETag);
+			final ProcessPreconditionsResolution cachedResolution = resolutionsCache.getIfPresent(key);
+			if (cachedResolution != null)
+			{
+				return () -> cachedResolution;
+			}
+
+			final Properties ctx = getCtx();
+			final CompletableFuture<ProcessPreconditionsResolution> future = new CompletableFuture<>();
+			final Runnable check = () -> {
+				try (final IAutoCloseable temporaryCtx = Env.switchContext(ctx))
+				{
+					future.complete(checkAndCache(key, resolutionSupplier));
+				}
+				catch (final Throwable ex)
+				{
+					future.completeExceptionally(ex);
+				}
+			};
+
+			try
+			{
+				executor.execute(check);
+			}
+			catch (final RejectedExecutionException ex)
+			{
+				// executor is busy => check it in the calling thread, when needed
+				return () -> checkAndCache(key, resolutionSupplier);
+			}
+
+			return () -> awaitResolution(processId, future);
+		}
+
+		private Properties getCtx()
+		{
+			if (ctx == null)
+			{
+				ctx = Env.copyCtx(Env.getCtx());
+				stopwatch = Stopwatch.createStarted();
+			}
+			return ctx;
+		}
+
+		private ProcessPreconditionsResolution checkAndCache(final ResolutionKey key, final Supplier<ProcessPreconditionsResolution> resolutionSupplier)
+		{
+			final Stopwatch checkStopwatch = Stopwatch.createStarted();
+			final ProcessPreconditionsResolution resolution = resolutionSupplier.get();
+			final long checkMillis = checkStopwatch.stop().elapsed(TimeUnit.MILLISECONDS);
+			if (checkMillis >= slowCheckMillis)
+			{
+				logger.warn("Slow preconditions check for {}: took {}ms (preconditionsContext={})", key.getProcessId(), checkMillis, preconditionsContext);
+			}
+
+			resolutionsCache.put(key, resolution);
+			return resolution;
+		}
+
+		private ProcessPreconditionsResolution awaitResolution(final ProcessId processId, final CompletableFuture<ProcessPreconditionsResolution> future)
+		{
+			final long remainingMillis = Math.max(0, timeBudgetMillis - stopwatch.elapsed(TimeUnit.MILLISECONDS));
+			try
+			{
+				return future.get(remainingMillis, TimeUnit.MILLISECONDS);
+			}
+			catch (final TimeoutException ex)
+			{
+				logger.warn("Preconditions check for {} exceeded the time budget of {}ms. Considering it rejected for now (preconditionsContext={})", processId, timeBudgetMillis, preconditionsContext);
+				return ProcessPreconditionsResolution.rejectWithInternalReason("preconditions check exceeded the time budget");
+			}
+			catch (final ExecutionException ex)
+			{
+				throw AdempiereException.wrapIfNeeded(ex.getCause());
+			}
+			catch (final InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw AdempiereException.wrapIfNeeded(ex);
+			}
+		}
+	}
+
+	@Value
+	private static final class ResolutionKey
+	{
+		public static ResolutionKey of(final ProcessId processId, final ViewAsPreconditionsContext viewPreconditionsContext, final ETag viewDataETag)
+		{
+			return new ResolutionKey(
+					processId,
+					viewPreconditionsContext.getView().getViewId(),
+					viewDataETag,
+					viewPreconditionsContext.getViewRowIdsSelection(),
+					viewPreconditionsContext.getParentViewRowIdsSelection(),
+					viewPreconditionsContext.getChildViewRowIdsSelection());
+		}
+
+		private final ProcessId processId;
+		private final ViewId viewId;
+		private final ETag viewDataETag;
+		private final ViewRowIdsSelection viewRowIdsSelection;
+		private final ViewRowIdsSelection parentViewRowIdsSelection;
+		private final ViewRowIdsSelection childViewRowIdsSelection;
+	}
+}
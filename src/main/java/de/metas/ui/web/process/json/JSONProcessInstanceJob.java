@@ -0,0 +1,63 @@
+package de.metas.ui.web.process.json;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import de.metas.ui.web.process.ProcessInstanceJob;
+import de.metas.ui.web.websocket.WebSocketConfig;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Status of an asynchronously executed process instance.
+ * It's returned when the process is started and when the result is polled. Each time the status changes, a {@link JSONProcessInstanceJobStatusEvent} is sent to {@link #websocketEndpoint}.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+@Value
+public final class JSONProcessInstanceJob
+{
+	public static JSONProcessInstanceJob of(@NonNull final ProcessInstanceJob job)
+	{
+		return new JSONProcessInstanceJob(
+				job.getPinstanceId().toJson(),
+				job.getStatus(),
+				WebSocketConfig.buildProcessInstanceTopicName(job.getPinstanceId()),
+				job.getResult(),
+				job.getErrorMessage());
+	}
+
+	private final String pinstanceId;
+	private final ProcessInstanceJob.Status status;
+	private final String websocketEndpoint;
+
+	/** process execution result, when status is DONE */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private final JSONProcessInstanceResult result;
+
+	/** error message, when status is ERROR */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private final String error;
+}
@@ -0,0 +1,48 @@
+package de.metas.ui.web.process.json;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+
+import de.metas.ui.web.process.ProcessInstanceJob;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+/**
+ * Event sent to {@link JSONProcessInstanceJob#getWebsocketEndpoint()} each time the job status changes.
+ * <p>
+ * It contains only the status, because anybody who knows the process instance ID could subscribe to that topic. The result has to be polled.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+@Value
+public final class JSONProcessInstanceJobStatusEvent
+{
+	public static JSONProcessInstanceJobStatusEvent of(@NonNull final ProcessInstanceJob.Status status)
+	{
+		return new JSONProcessInstanceJobStatusEvent(status);
+	}
+
+	private final ProcessInstanceJob.Status status;
+}
@@ -166,11 +166,12 @@ public class WindowQuickInputRestController
 
 				try
 				{
+					// NOTE: bind a copy because the quick input is kept after the root document's read lock is released
 					return QuickInput.builder()
 							.setQuickInputDescriptor(quickInputDescriptor)
 							.setRootDocumentPath(rootDocument.getDocumentPath())
 							.build()
-							.bindRootDocument(rootDocument)
+							.bindRootDocument(rootDocument.copy(CopyMode.CheckInReadonly, NullDocumentChangesCollector.instance))
 							.assertTargetWritable();
 				}
 				catch (Exception ex)
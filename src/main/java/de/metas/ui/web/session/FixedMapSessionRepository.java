@@ -12,7 +12,6 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.session.ExpiringSession;
 import org.springframework.session.MapSession;
 import org.springframework.session.MapSessionRepository;
-import org.springframework.session.SessionRepository;
 import org.springframework.session.events.SessionCreatedEvent;
 import org.springframework.session.events.SessionDeletedEvent;
 import org.springframework.session.events.SessionExpiredEvent;
@@ -53,7 +52,7 @@ import lombok.ToString;
  *
  */
 @ToString(of = { "defaultMaxInactiveInterval" })
-/* package */class FixedMapSessionRepository implements SessionRepository<ExpiringSession>
+/* package */class FixedMapSessionRepository implements PurgeableSessionRepository
 {
 	private static final Logger logger = LogManager.getLogger(FixedMapSessionRepository.class);
 
@@ -135,6 +134,7 @@ import lombok.ToString;
 		return result;
 	}
 
+	@Override
 	public void purgeExpiredSessionsNoFail()
 	{
 		try
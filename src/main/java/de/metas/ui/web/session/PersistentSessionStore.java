@@ -0,0 +1,57 @@
+package de.metas.ui.web.session;
+
+import java.util.Set;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Stores serialized sessions outside of the JVM, so they survive restarts and can be shared between nodes.
+ */
+/* package */ interface PersistentSessionStore
+{
+	/**
+	 * Saves (inserts or updates) the given session data.
+	 *
+	 * @param expiresAtMillis when the session expires; {@link Long#MAX_VALUE} if it never expires
+	 */
+	void save(String sessionId, long lastAccessedTimeMillis, long expiresAtMillis, byte[] sessionData);
+
+	/** Updates only the last accessed time and the expiration time, leaving the session data as is */
+	void touch(String sessionId, long lastAccessedTimeMillis, long expiresAtMillis);
+
+	/** @return persisted session or null */
+	PersistedSession getByIdOrNull(String sessionId);
+
+	/** @return true if the session was deleted */
+	boolean delete(String sessionId);
+
+	/** @return IDs of the deleted sessions, which expired before given time */
+	Set<String> deleteExpiredSessions(long nowMillis);
+
+	@lombok.Value
+	public static final class PersistedSession
+	{
+		private final byte[] sessionData;
+		private final long lastAccessedTimeMillis;
+	}
+}
@@ -0,0 +1,34 @@
+package de.metas.ui.web.session;
+
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.SessionRepository;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * {@link SessionRepository} which is able to purge it's expired sessions when asked (i.e. periodically, see {@link SessionConfig}).
+ */
+/* package */ interface PurgeableSessionRepository extends SessionRepository<ExpiringSession>
+{
+	void purgeExpiredSessionsNoFail();
+}
@@ -52,15 +52,25 @@ public class SessionConfig
 	@Value("${metasfresh.session.checkExpiredSessionsRateInMinutes:10}")
 	private int checkExpiredSessionsRateInMinutes;
 
+	/** Where to keep the sessions: {@value #SESSION_STORE_Memory} (default) or {@value #SESSION_STORE_Database} */
+	@Value("${metasfresh.session.store:" + SESSION_STORE_Memory + "}")
+	private String sessionStore;
+	private static final String SESSION_STORE_Memory = "memory";
+	private static final String SESSION_STORE_Database = "database";
+
+	@Value("${metasfresh.session.memoryTier.maxSize:5000}")
+	private int memoryTierMaxSize;
+	@Value("${metasfresh.session.memoryTier.expireAfterSeconds:60}")
+	private int memoryTierExpireAfterSeconds;
+	@Value("${metasfresh.session.touchIntervalSeconds:60}")
+	private int touchIntervalSeconds;
+
 	@Bean
 	public SessionRepository<ExpiringSession> sessionRepository(
 			final SessionProperties properties,
 			final ApplicationEventPublisher applicationEventPublisher)
 	{
-		final FixedMapSessionRepository sessionRepository = FixedMapSessionRepository.builder()
-				.applicationEventPublisher(applicationEventPublisher)
-				.defaultMaxInactiveInterval(properties.getTimeout())
-				.build();
+		final PurgeableSessionRepository sessionRepository = createSessionRepository(properties, applicationEventPublisher);
 		logger.info("Using session repository: {}", sessionRepository);
 
 		if (checkExpiredSessionsRateInMinutes > 0)
@@ -78,6 +88,34 @@ public class SessionConfig
 		return sessionRepository;
 	}
 
+	private PurgeableSessionRepository createSessionRepository(
+			final SessionProperties properties,
+			final ApplicationEventPublisher applicationEventPublisher)
+	{
+		if (SESSION_STORE_Database.equals(sessionStore))
+		{
+			return TieredSessionRepository.builder()
+					.persistentStore(SqlPersistentSessionStore.newInstance())
+					.applicationEventPublisher(applicationEventPublisher)
+					.defaultMaxInactiveInterval(properties.getTimeout())
+					.memoryTierMaxSize(memoryTierMaxSize)
+					.memoryTierExpireAfterSeconds(memoryTierExpireAfterSeconds)
+					.touchIntervalSeconds(touchIntervalSeconds)
+					.build();
+		}
+		else if (SESSION_STORE_Memory.equals(sessionStore))
+		{
+			return FixedMapSessionRepository.builder()
+					.applicationEventPublisher(applicationEventPublisher)
+					.defaultMaxInactiveInterval(properties.getTimeout())
+					.build();
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown metasfresh.session.store: " + sessionStore);
+		}
+	}
+
 	@Bean(BEANNAME_SessionScheduledExecutorService)
 	public ScheduledExecutorService sessionScheduledExecutorService()
 	{
@@ -0,0 +1,225 @@
+package de.metas.ui.web.session;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.exceptions.DBException;
+import org.compiere.util.DB;
+
+import com.google.common.collect.ImmutableSet;
+
+import lombok.NonNull;
+import lombok.ToString;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Stores the sessions in <code>T_WEBUI_Session</code> table, which is indexed by expiration time.
+ * The table is technical: it's created by the <code>T_WEBUI_Session</code> migration script
+ * and, because that script is not applied by the regular metasfresh migration, it's also created on startup if missing (see {@link #newInstance()}).
+ * <p>
+ * NOTE: the SQL parameters are set explicitly, with the JDBC setter matching the column type, instead of relying on {@link DB#setParameters(PreparedStatement, Object[])}.
+ */
+@ToString
+/* package */ final class SqlPersistentSessionStore implements PersistentSessionStore
+{
+	private static final String Table_Name = "T_WEBUI_Session";
+	private static final String COLUMNNAME_Session_ID = "Session_ID";
+	private static final String COLUMNNAME_LastAccessedTimeMillis = "LastAccessedTimeMillis";
+	private static final String COLUMNNAME_ExpiresAtMillis = "ExpiresAtMillis";
+	private static final String COLUMNNAME_SessionData = "SessionData";
+
+	/**
+	 * Creates the store and makes sure the <code>T_WEBUI_Session</code> table exists.
+	 * The database user needs the privilege to create the table in case it's missing.
+	 */
+	public static SqlPersistentSessionStore newInstance()
+	{
+		final SqlPersistentSessionStore store = new SqlPersistentSessionStore();
+		store.createTableIfNotExists();
+		return store;
+	}
+
+	private SqlPersistentSessionStore()
+	{
+	}
+
+	/**
+	 * Creates the table and its index, if they don't already exist. Shall be kept in sync with the <code>T_WEBUI_Session</code> migration script.
+	 */
+	private void createTableIfNotExists()
+	{
+		DB.executeUpdateEx("CREATE TABLE IF NOT EXISTS " + Table_Name + " ("
+				+ "\n " + COLUMNNAME_Session_ID + " VARCHAR(255) NOT NULL"
+				+ "\n, " + COLUMNNAME_LastAccessedTimeMillis + " BIGINT NOT NULL"
+				+ "\n, " + COLUMNNAME_ExpiresAtMillis + " BIGINT NOT NULL"
+				+ "\n, " + COLUMNNAME_SessionData + " BYTEA NOT NULL"
+				+ "\n, CONSTRAINT " + Table_Name + "_Key PRIMARY KEY (" + COLUMNNAME_Session_ID + ")"
+				+ "\n)",
+				ITrx.TRXNAME_None);
+
+		DB.executeUpdateEx("CREATE INDEX IF NOT EXISTS " + Table_Name + "_" + COLUMNNAME_ExpiresAtMillis
+				+ " ON " + Table_Name + " (" + COLUMNNAME_ExpiresAtMillis + ")",
+				ITrx.TRXNAME_None);
+	}
+
+	@Override
+	public void save(@NonNull final String sessionId, final long lastAccessedTimeMillis, final long expiresAtMillis, @NonNull final byte[] sessionData)
+	{
+		final String sql = "INSERT INTO " + Table_Name + " ("
+				+ COLUMNNAME_Session_ID
+				+ ", " + COLUMNNAME_LastAccessedTimeMillis
+				+ ", " + COLUMNNAME_ExpiresAtMillis
+				+ ", " + COLUMNNAME_SessionData
+				+ ") VALUES (?, ?, ?, ?)"
+				+ "\n ON CONFLICT (" + COLUMNNAME_Session_ID + ") DO UPDATE SET "
+				+ COLUMNNAME_LastAccessedTimeMillis + "=EXCLUDED." + COLUMNNAME_LastAccessedTimeMillis
+				+ ", " + COLUMNNAME_ExpiresAtMillis + "=EXCLUDED." + COLUMNNAME_ExpiresAtMillis
+				+ ", " + COLUMNNAME_SessionData + "=EXCLUDED." + COLUMNNAME_SessionData;
+		executeUpdate(sql, new Object[] { sessionId, lastAccessedTimeMillis, expiresAtMillis, "<" + sessionData.length + " bytes>" }, pstmt -> {
+			pstmt.setString(1, sessionId);
+			pstmt.setLong(2, lastAccessedTimeMillis);
+			pstmt.setLong(3, expiresAtMillis);
+			pstmt.setBytes(4, sessionData);
+		});
+	}
+
+	@Override
+	public void touch(@NonNull final String sessionId, final long lastAccessedTimeMillis, final long expiresAtMillis)
+	{
+		final String sql = "UPDATE " + Table_Name + " SET "
+				+ COLUMNNAME_LastAccessedTimeMillis + "=?"
+				+ ", " + COLUMNNAME_ExpiresAtMillis + "=?"
+				+ " WHERE " + COLUMNNAME_Session_ID + "=?";
+		executeUpdate(sql, new Object[] { lastAccessedTimeMillis, expiresAtMillis, sessionId }, pstmt -> {
+			pstmt.setLong(1, lastAccessedTimeMillis);
+			pstmt.setLong(2, expiresAtMillis);
+			pstmt.setString(3, sessionId);
+		});
+	}
+
+	@Override
+	public PersistedSession getByIdOrNull(@NonNull final String sessionId)
+	{
+		final String sql = "SELECT " + COLUMNNAME_SessionData + ", " + COLUMNNAME_LastAccessedTimeMillis
+				+ " FROM " + Table_Name
+				+ " WHERE " + COLUMNNAME_Session_ID + "=?";
+		final Object[] sqlParams = new Object[] { sessionId };
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_None);
+			pstmt.setString(1, sessionId);
+			rs = pstmt.executeQuery();
+			if (!rs.next())
+			{
+				return null;
+			}
+
+			return new PersistedSession(rs.getBytes(COLUMNNAME_SessionData), rs.getLong(COLUMNNAME_LastAccessedTimeMillis));
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex, sql, sqlParams);
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
+	}
+
+	@Override
+	public boolean delete(@NonNull final String sessionId)
+	{
+		final String sql = "DELETE FROM " + Table_Name + " WHERE " + COLUMNNAME_Session_ID + "=?";
+		final int count = executeUpdate(sql, new Object[] { sessionId }, pstmt -> pstmt.setString(1, sessionId));
+		return count > 0;
+	}
+
+	@Override
+	public Set<String> deleteExpiredSessions(final long nowMillis)
+	{
+		// NOTE: uses the ExpiresAtMillis index, so we don't have to scan all sessions.
+		// Also, when running more nodes, only one of them will get a given expired session ID.
+		final String sql = "DELETE FROM " + Table_Name
+				+ " WHERE " + COLUMNNAME_ExpiresAtMillis + "<?"
+				+ " RETURNING " + COLUMNNAME_Session_ID;
+		final Object[] sqlParams = new Object[] { nowMillis };
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_None);
+			pstmt.setLong(1, nowMillis);
+			rs = pstmt.executeQuery();
+
+			final ImmutableSet.Builder<String> sessionIds = ImmutableSet.builder();
+			while (rs.next())
+			{
+				sessionIds.add(rs.getString(COLUMNNAME_Session_ID));
+			}
+			return sessionIds.build();
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex, sql, sqlParams);
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
+	}
+
+	/**
+	 * @param sqlParamsForLogging SQL parameters, used only for error reporting
+	 * @return number of affected rows
+	 */
+	private static int executeUpdate(final String sql, final Object[] sqlParamsForLogging, final SqlParametersSetter sqlParametersSetter)
+	{
+		PreparedStatement pstmt = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_None);
+			sqlParametersSetter.setParameters(pstmt);
+			return pstmt.executeUpdate();
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex, sql, sqlParamsForLogging);
+		}
+		finally
+		{
+			DB.close(pstmt);
+		}
+	}
+
+	@FunctionalInterface
+	private static interface SqlParametersSetter
+	{
+		void setParameters(PreparedStatement pstmt) throws SQLException;
+	}
+}
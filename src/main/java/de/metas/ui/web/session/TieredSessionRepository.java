@@ -0,0 +1,352 @@
+package de.metas.ui.web.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.slf4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.MapSession;
+import org.springframework.session.events.SessionCreatedEvent;
+import org.springframework.session.events.SessionDeletedEvent;
+import org.springframework.session.events.SessionExpiredEvent;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.metas.logging.LogManager;
+import de.metas.ui.web.session.PersistentSessionStore.PersistedSession;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.ToString;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Session repository which keeps a bounded number of sessions in memory and all sessions in a {@link PersistentSessionStore}.
+ * <p>
+ * Sessions survive restarts and can be shared between more nodes.
+ * The in-memory entries are short lived, so a session which was changed on another node will be picked up after at most <code>memoryTierExpireAfterSeconds</code>.
+ * That interval is counted from the moment the entry was loaded from persistent store (or created), i.e. saving the session does not extend it,
+ * else a session which is used continuously on one node would never see the changes done by other nodes.
+ * <p>
+ * To avoid writing to the persistent store on each request, a session is written only when its attributes changed
+ * or, if only the last accessed time changed, at most once per <code>touchIntervalSeconds</code>.
+ * The session is serialized only if the hash of its attributes changed or when it's time to persist the last accessed time.
+ */
+@ToString(of = { "persistentStore", "defaultMaxInactiveInterval", "touchIntervalMillis" })
+/* package */ class TieredSessionRepository implements PurgeableSessionRepository
+{
+	private static final Logger logger = LogManager.getLogger(TieredSessionRepository.class);
+
+	private final PersistentSessionStore persistentStore;
+	private final Cache<String, MemoryTierEntry> memoryTier;
+	private final Ticker ticker;
+	private final long memoryTierExpireAfterNanos;
+
+	private final ApplicationEventPublisher applicationEventPublisher;
+	private final Integer defaultMaxInactiveInterval;
+	private final long touchIntervalMillis;
+
+	@Builder
+	private TieredSessionRepository(
+			@NonNull final PersistentSessionStore persistentStore,
+			@NonNull final ApplicationEventPublisher applicationEventPublisher,
+			@Nullable final Integer defaultMaxInactiveInterval,
+			final int memoryTierMaxSize,
+			final int memoryTierExpireAfterSeconds,
+			final int touchIntervalSeconds,
+			@Nullable final Ticker ticker)
+	{
+		this.persistentStore = persistentStore;
+		this.applicationEventPublisher = applicationEventPublisher;
+		this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
+		this.touchIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(touchIntervalSeconds, 0));
+
+		this.ticker = ticker != null ? ticker : Ticker.systemTicker();
+		this.memoryTierExpireAfterNanos = TimeUnit.SECONDS.toNanos(memoryTierExpireAfterSeconds > 0 ? memoryTierExpireAfterSeconds : 60);
+
+		// NOTE: expiring after access only frees the memory of not used sessions;
+		// the staleness of used sessions is checked against MemoryTierEntry.loadedAtNanos (see getSession)
+		memoryTier = CacheBuilder.newBuilder()
+				.maximumSize(memoryTierMaxSize > 0 ? memoryTierMaxSize : 1000)
+				.expireAfterAccess(memoryTierExpireAfterNanos, TimeUnit.NANOSECONDS)
+				.ticker(this.ticker)
+				.build();
+	}
+
+	@Override
+	public ExpiringSession createSession()
+	{
+		final ExpiringSession result = new MapSession();
+		if (defaultMaxInactiveInterval != null)
+		{
+			result.setMaxInactiveIntervalInSeconds(defaultMaxInactiveInterval);
+		}
+
+		// Fire event
+		applicationEventPublisher.publishEvent(new SessionCreatedEvent(this, result.getId()));
+
+		return result;
+	}
+
+	@Override
+	public void save(final ExpiringSession session)
+	{
+		final String sessionId = session.getId();
+		final int attributesHash = computeAttributesHash(session);
+		final long lastAccessedTime = session.getLastAccessedTime();
+
+		final MemoryTierEntry memoryTierEntry = memoryTier.getIfPresent(sessionId);
+		final boolean touchDue = memoryTierEntry != null && lastAccessedTime - memoryTierEntry.getPersistedLastAccessedTime() >= touchIntervalMillis;
+
+		//
+		// Quick path: the attributes did not change and the last accessed time does not have to be persisted yet
+		// => no need to serialize the session
+		if (memoryTierEntry != null && memoryTierEntry.getAttributesHash() == attributesHash && !touchDue)
+		{
+			memoryTier.put(sessionId, new MemoryTierEntry(new MapSession(session), attributesHash, memoryTierEntry.getSessionDataHash(), memoryTierEntry.getPersistedLastAccessedTime(), memoryTierEntry.getLoadedAtNanos()));
+			return;
+		}
+
+		//
+		// Serialize the session and save it only if the serialized data changed.
+		// NOTE: we also get here when the touch is due, in case some attribute was changed without changing its hash code (e.g. a mutable attribute without value based hashCode).
+		final byte[] sessionData = serializeWithoutLastAccessedTime(session);
+		final int sessionDataHash = Arrays.hashCode(sessionData);
+		final long persistedLastAccessedTime;
+		if (memoryTierEntry == null || memoryTierEntry.getSessionDataHash() != sessionDataHash)
+		{
+			persistentStore.save(sessionId, lastAccessedTime, computeExpiresAtMillis(session), sessionData);
+			persistedLastAccessedTime = lastAccessedTime;
+		}
+		else if (touchDue)
+		{
+			persistentStore.touch(sessionId, lastAccessedTime, computeExpiresAtMillis(session));
+			persistedLastAccessedTime = lastAccessedTime;
+		}
+		else
+		{
+			persistedLastAccessedTime = memoryTierEntry.getPersistedLastAccessedTime();
+		}
+
+		// NOTE: keep the original load time, so the session is re-read from persistent store after memoryTierExpireAfterSeconds, even if it's saved on each request
+		final long loadedAtNanos = memoryTierEntry != null ? memoryTierEntry.getLoadedAtNanos() : ticker.read();
+		memoryTier.put(sessionId, new MemoryTierEntry(new MapSession(session), attributesHash, sessionDataHash, persistedLastAccessedTime, loadedAtNanos));
+	}
+
+	/**
+	 * Computes a cheap hash of session's attributes and max inactive interval, used to detect if the session has to be serialized again.
+	 * <p>
+	 * NOTE: session scoped beans (e.g. {@link InternalUserSessionData}) are changed in place, so we rely on their value based hashCode.
+	 */
+	private static int computeAttributesHash(final ExpiringSession session)
+	{
+		int hash = session.getMaxInactiveIntervalInSeconds();
+		for (final String attributeName : session.getAttributeNames())
+		{
+			hash += attributeName.hashCode() ^ Objects.hashCode(session.getAttribute(attributeName));
+		}
+		return hash;
+	}
+
+	private long computeExpiresAtMillis(final ExpiringSession session)
+	{
+		final int maxInactiveIntervalInSeconds = session.getMaxInactiveIntervalInSeconds();
+		if (maxInactiveIntervalInSeconds < 0)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		// NOTE: we add the touch interval because the last accessed time from persistent store can be behind with at most that interval
+		return session.getLastAccessedTime() + TimeUnit.SECONDS.toMillis(maxInactiveIntervalInSeconds) + touchIntervalMillis;
+	}
+
+	@Override
+	public ExpiringSession getSession(final String id)
+	{
+		MemoryTierEntry memoryTierEntry = memoryTier.getIfPresent(id);
+		if (memoryTierEntry == null || isStale(memoryTierEntry))
+		{
+			memoryTierEntry = loadFromPersistentStore(id);
+			if (memoryTierEntry == null)
+			{
+				// e.g. deleted by another node
+				memoryTier.invalidate(id);
+				return null;
+			}
+			memoryTier.put(id, memoryTierEntry);
+		}
+
+		final ExpiringSession saved = memoryTierEntry.getSession();
+		if (saved.isExpired())
+		{
+			final boolean expired = true;
+			deleteAndFireEvent(saved.getId(), expired);
+			return null;
+		}
+
+		return new MapSession(saved);
+	}
+
+	private boolean isStale(final MemoryTierEntry memoryTierEntry)
+	{
+		return ticker.read() - memoryTierEntry.getLoadedAtNanos() >= memoryTierExpireAfterNanos;
+	}
+
+	private MemoryTierEntry loadFromPersistentStore(final String sessionId)
+	{
+		final PersistedSession persistedSession = persistentStore.getByIdOrNull(sessionId);
+		if (persistedSession == null)
+		{
+			return null;
+		}
+
+		final byte[] sessionData = persistedSession.getSessionData();
+		final MapSession session;
+		try
+		{
+			session = deserialize(sessionData);
+		}
+		catch (final Exception ex)
+		{
+			// e.g. the session was saved by an incompatible version
+			logger.warn("Failed loading session {} from {}. Considering it missing.", sessionId, persistentStore, ex);
+			return null;
+		}
+
+		final long lastAccessedTime = persistedSession.getLastAccessedTimeMillis();
+		session.setLastAccessedTime(lastAccessedTime);
+
+		return new MemoryTierEntry(session, computeAttributesHash(session), Arrays.hashCode(sessionData), lastAccessedTime, ticker.read());
+	}
+
+	@Override
+	public void delete(final String id)
+	{
+		final boolean expired = false;
+		deleteAndFireEvent(id, expired);
+	}
+
+	private void deleteAndFireEvent(final String id, boolean expired)
+	{
+		final boolean deletedFromMemory = memoryTier.getIfPresent(id) != null;
+		memoryTier.invalidate(id);
+		final boolean deletedFromPersistentStore = persistentStore.delete(id);
+
+		// Fire event
+		if (deletedFromMemory || deletedFromPersistentStore)
+		{
+			fireDeletedEvent(id, expired);
+		}
+	}
+
+	private void fireDeletedEvent(final String id, final boolean expired)
+	{
+		if (expired)
+		{
+			applicationEventPublisher.publishEvent(new SessionExpiredEvent(this, id));
+		}
+		else
+		{
+			applicationEventPublisher.publishEvent(new SessionDeletedEvent(this, id));
+		}
+	}
+
+	@Override
+	public void purgeExpiredSessionsNoFail()
+	{
+		try
+		{
+			purgeExpiredSessions();
+		}
+		catch (final Throwable ex)
+		{
+			logger.warn("Failed purging expired sessions. Ignored.", ex);
+		}
+	}
+
+	public void purgeExpiredSessions()
+	{
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+
+		final Set<String> expiredSessionIds = persistentStore.deleteExpiredSessions(System.currentTimeMillis());
+		for (final String sessionId : expiredSessionIds)
+		{
+			memoryTier.invalidate(sessionId);
+			fireDeletedEvent(sessionId, true /* expired */);
+		}
+
+		logger.debug("Purged {} expired sessions in {}", expiredSessionIds.size(), stopwatch);
+	}
+
+	private static byte[] serializeWithoutLastAccessedTime(final ExpiringSession session)
+	{
+		// NOTE: we reset the last accessed time in order to have the same bytes for the same attributes.
+		// The last accessed time is persisted separately.
+		final MapSession sessionToSerialize = new MapSession(session);
+		sessionToSerialize.setLastAccessedTime(sessionToSerialize.getCreationTime());
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(sessionToSerialize);
+		}
+		catch (final IOException ex)
+		{
+			throw new AdempiereException("Failed serializing session " + session.getId(), ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static MapSession deserialize(final byte[] sessionData) throws IOException, ClassNotFoundException
+	{
+		try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(sessionData)))
+		{
+			return (MapSession)in.readObject();
+		}
+	}
+
+	@lombok.Value
+	private static final class MemoryTierEntry
+	{
+		private final MapSession session;
+		private final int attributesHash;
+		private final int sessionDataHash;
+		private final long persistedLastAccessedTime;
+		/** when this entry was loaded from persistent store or created, see {@link Ticker#read()} */
+		private final long loadedAtNanos;
+	}
+}
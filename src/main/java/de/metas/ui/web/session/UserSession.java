@@ -7,6 +7,7 @@ import java.util.Properties;
 import org.adempiere.ad.security.IUserRolePermissions;
 import org.adempiere.ad.security.UserRolePermissionsKey;
 import org.adempiere.util.Check;
+import org.adempiere.util.lang.IAutoCloseable;
 import org.compiere.Adempiere;
 import org.compiere.util.Env;
 import org.compiere.util.Evaluatee;
@@ -126,14 +127,44 @@ public class UserSession
 	/**
 	 * Gets current permissions.
 	 *
+	 * If permissions were set by {@link #temporarySwitchPermissions(IUserRolePermissions)} in current thread, those are returned.
+	 *
 	 * @return permissions; never returns null
 	 * @throws NotLoggedInException
 	 */
 	public static IUserRolePermissions getCurrentPermissions()
 	{
+		final IUserRolePermissions temporaryPermissions = temporaryPermissionsHolder.get();
+		if (temporaryPermissions != null)
+		{
+			return temporaryPermissions;
+		}
+
 		return getCurrent().getUserRolePermissions();
 	}
 
+	/**
+	 * Sets the permissions to be returned by {@link #getCurrentPermissions()} in current thread, until the returned closeable is closed.
+	 *
+	 * To be used by threads which are not bound to a request but which are working on behalf of a user (e.g. asynchronous process execution).
+	 * The permissions shall be fetched in the request thread.
+	 */
+	public static IAutoCloseable temporarySwitchPermissions(@NonNull final IUserRolePermissions permissions)
+	{
+		final IUserRolePermissions previousPermissions = temporaryPermissionsHolder.get();
+		temporaryPermissionsHolder.set(permissions);
+		return () -> {
+			if (previousPermissions != null)
+			{
+				temporaryPermissionsHolder.set(previousPermissions);
+			}
+			else
+			{
+				temporaryPermissionsHolder.remove();
+			}
+		};
+	}
+
 	/** @return true if we are running in a webui thread (i.e. NOT a background daemon thread) */
 	public static boolean isWebuiThread()
 	{
@@ -146,6 +177,9 @@ public class UserSession
 
 	private static UserSession _staticUserSession = null;
 
+	/** Permissions set by {@link #temporarySwitchPermissions(IUserRolePermissions)} */
+	private static final ThreadLocal<IUserRolePermissions> temporaryPermissionsHolder = new ThreadLocal<>();
+
 	@Autowired
 	private InternalUserSessionData _data; // session scoped
 
@@ -2,6 +2,8 @@ package de.metas.ui.web.upload;
 
 import java.io.IOException;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.compiere.model.I_AD_Image;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -72,7 +74,8 @@ public class ImageRestController
 	public ResponseEntity<byte[]> getImage(@PathVariable final int imageId,
 			@RequestParam(name = "maxWidth", required = false, defaultValue = "-1") final int maxWidth,
 			@RequestParam(name = "maxHeight", required = false, defaultValue = "-1") final int maxHeight,
-			final WebRequest request)
+			final WebRequest request,
+			final HttpServletRequest httpRequest)
 	{
 		userSession.assertLoggedIn();
 
@@ -80,7 +83,7 @@ public class ImageRestController
 				.includeLanguageInETag()
 				.cacheMaxAge(userSession.getHttpCacheMaxAge())
 				.jsonOptions(() -> newJSONOptions())
-				.toResponseEntity((responseBuilder, webuiImage) -> webuiImage.toResponseEntity(responseBuilder));
+				.toResponseEntity((responseBuilder, webuiImage) -> webuiImage.toResponseEntity(responseBuilder, httpRequest));
 	}
 
 	public WebuiImage getWebuiImage(final int imageId, final int maxWidth, final int maxHeight)
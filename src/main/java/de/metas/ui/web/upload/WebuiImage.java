@@ -1,5 +1,9 @@
 package de.metas.ui.web.upload;
 
+import java.io.File;
+
+import javax.servlet.http.HttpServletRequest;
+
 import org.compiere.model.MImage;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -36,18 +40,29 @@ import lombok.NonNull;
 
 public final class WebuiImage implements ETagAware
 {
-	static final WebuiImage of(final MImage adImage, final int maxWidth, final int maxHeight)
+	static final WebuiImage of(final MImage adImage, final int maxWidth, final int maxHeight, final WebuiImageRenditionsRepository renditionsRepo)
 	{
-		return new WebuiImage(adImage, maxWidth, maxHeight);
+		return new WebuiImage(adImage, maxWidth, maxHeight, renditionsRepo);
 	}
 
+	//
+	// Tomcat sendfile support (see Tomcat's "Advanced IO" documentation)
+	private static final String TOMCAT_SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String TOMCAT_SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String TOMCAT_SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String TOMCAT_SENDFILE_END = "org.apache.tomcat.sendfile.end";
+	/** Smaller renditions are served from memory. Same threshold as Tomcat's DefaultServlet (sendfileSize). */
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+	private final WebuiImageRenditionsRepository renditionsRepo;
 	private final MImage adImage;
 	private final int maxWidth;
 	private final int maxHeight;
 	private final ETag etag;
 
-	private WebuiImage(@NonNull final MImage adImage, final int maxWidth, final int maxHeight)
+	private WebuiImage(@NonNull final MImage adImage, final int maxWidth, final int maxHeight, @NonNull final WebuiImageRenditionsRepository renditionsRepo)
 	{
+		this.renditionsRepo = renditionsRepo;
 		this.adImage = adImage;
 		this.maxWidth = maxWidth > 0 ? maxWidth : 0;
 		this.maxHeight = maxHeight > 0 ? maxHeight : 0;
@@ -77,7 +92,7 @@ public final class WebuiImage implements ETagAware
 
 	public byte[] getImageData()
 	{
-		return adImage.getScaledImageData(maxWidth, maxHeight);
+		return renditionsRepo.getRenditionData(adImage, maxWidth, maxHeight);
 	}
 
 	public int getAdClientId()
@@ -101,10 +116,39 @@ public final class WebuiImage implements ETagAware
 	}
 
 	public ResponseEntity<byte[]> toResponseEntity(@NonNull final ResponseEntity.BodyBuilder responseBuilder)
+	{
+		return prepareResponse(responseBuilder)
+				.body(getImageData());
+	}
+
+	/**
+	 * Same as {@link #toResponseEntity(org.springframework.http.ResponseEntity.BodyBuilder)},
+	 * but if the servlet container supports it, bigger images are sent by the container directly from the rendition file (zero-copy).
+	 */
+	public ResponseEntity<byte[]> toResponseEntity(@NonNull final ResponseEntity.BodyBuilder responseBuilder, @NonNull final HttpServletRequest httpRequest)
+	{
+		if (Boolean.TRUE.equals(httpRequest.getAttribute(TOMCAT_SENDFILE_SUPPORT)))
+		{
+			final File file = renditionsRepo.getRenditionFileOrNull(adImage, maxWidth, maxHeight);
+			final long length = file != null ? file.length() : 0;
+			if (length >= SENDFILE_MIN_SIZE)
+			{
+				httpRequest.setAttribute(TOMCAT_SENDFILE_FILENAME, file.getAbsolutePath());
+				httpRequest.setAttribute(TOMCAT_SENDFILE_START, 0L);
+				httpRequest.setAttribute(TOMCAT_SENDFILE_END, length);
+				return prepareResponse(responseBuilder)
+						.contentLength(length)
+						.build();
+			}
+		}
+
+		return toResponseEntity(responseBuilder);
+	}
+
+	private ResponseEntity.BodyBuilder prepareResponse(final ResponseEntity.BodyBuilder responseBuilder)
 	{
 		return responseBuilder
 				.contentType(MediaType.parseMediaType(getContentType()))
-				.header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + getImageName() + "\"")
-				.body(getImageData());
+				.header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + getImageName() + "\"");
 	}
 }
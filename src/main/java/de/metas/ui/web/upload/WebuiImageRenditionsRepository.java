@@ -0,0 +1,562 @@
+package de.metas.ui.web.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.compiere.model.MImage;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import de.metas.logging.LogManager;
+import de.metas.printing.esb.base.util.Check;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Scaled image renditions cache.
+ * <p>
+ * The renditions are identified by image ID, image's Updated timestamp and the max width/height, so they never have to be invalidated.
+ * The requested max width/height are snapped to the configured sizes, so the number of renditions per image is bounded.
+ * The renditions are kept:
+ * <ul>
+ * <li>in memory, up to a configured total size
+ * <li>on disk, one file per rendition, up to a configured total size. The least recently used files are deleted first.
+ * The files can be served directly by the servlet container (see {@link WebuiImage}).
+ * When a new rendition of an updated image is stored, the renditions of the older image versions are deleted.
+ * </ul>
+ * If no renditions directory is configured, a private temporary directory is created for this instance and it's deleted on shutdown.
+ * A configured directory shall not be shared with instances which are connected to another database, because the files are identified by AD_Image_ID.
+ */
+@Component
+public class WebuiImageRenditionsRepository implements InitializingBean, DisposableBean
+{
+	private static final transient Logger logger = LogManager.getLogger(WebuiImageRenditionsRepository.class);
+
+	private static final String PROPERTY_RenditionsDir = "metasfresh.webui.image.renditions.dir";
+	@Value("${" + PROPERTY_RenditionsDir + ":}")
+	private String renditionsDirPath;
+
+	@Value("${metasfresh.webui.image.renditions.memoryMaxBytes:33554432}")
+	private long memoryMaxBytes;
+
+	@Value("${metasfresh.webui.image.renditions.diskMaxBytes:536870912}")
+	private long diskMaxBytes;
+
+	/** Allowed max width/height values. The requested sizes are snapped to them, see {@link #snapSize(int, int[])} */
+	private static final String DEFAULT_Sizes = "16,32,48,64,100,128,200,256,400,512,800,1024,1600,2048";
+	@Value("${metasfresh.webui.image.renditions.sizes:" + DEFAULT_Sizes + "}")
+	private String sizesStr;
+
+	/** Thumbnail sizes (e.g. "100x100,200x200") which are generated when an image is uploaded */
+	@Value("${metasfresh.webui.image.renditions.thumbnailSizes:100x100,200x200}")
+	private String thumbnailSizesStr;
+
+	private static final String RENDITION_FILE_SUFFIX = ".img";
+	/** When the disk tier is full, the least recently used files are deleted until this ratio of the max size is reached */
+	private static final double DISK_TRIM_RATIO = 0.8;
+
+	private File renditionsDir; // null if the disk tier is not available
+	private boolean renditionsDirTemporary;
+	private final AtomicLong diskUsedBytes = new AtomicLong();
+	private Cache<RenditionKey, byte[]> renditionsInMemory;
+	private int[] sizes;
+	private List<int[]> thumbnailSizes;
+
+	/** Executor used to generate the thumbnails in background. If the queue is full, the thumbnails are not generated. */
+	private static final ThreadPoolExecutor thumbnailsExecutor = createThumbnailsExecutor();
+
+	private static ThreadPoolExecutor createThumbnailsExecutor()
+	{
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				1, // corePoolSize
+				1, // maximumPoolSize
+				1, TimeUnit.MINUTES, // keepAliveTime
+				new ArrayBlockingQueue<>(100), // workQueue
+				CustomizableThreadFactory.builder()
+						.setDaemon(true)
+						.setThreadNamePrefix("webui-image-thumbnails")
+						.build());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		renditionsInMemory = CacheBuilder.newBuilder()
+				.maximumWeight(memoryMaxBytes)
+				.<RenditionKey, byte[]> weigher((key, data) -> data.length)
+				.build();
+
+		renditionsDirTemporary = Check.isEmpty(renditionsDirPath, true);
+		renditionsDir = renditionsDirTemporary ? createTemporaryRenditionsDirOrNull() : checkCreateRenditionsDirOrNull(renditionsDirPath);
+		if (renditionsDir != null)
+		{
+			diskUsedBytes.set(trimDirectory(renditionsDir.toPath(), diskMaxBytes, diskMaxBytes));
+		}
+		logger.info("Image renditions directory: {} (temporary={}, usedBytes={}, maxBytes={})", renditionsDir, renditionsDirTemporary, diskUsedBytes.get(), diskMaxBytes);
+
+		sizes = parseAllowedSizes(sizesStr);
+		if (sizes.length == 0)
+		{
+			logger.warn("No valid image rendition sizes configured: '{}'. Using the default ones: {}", sizesStr, DEFAULT_Sizes);
+			sizes = parseAllowedSizes(DEFAULT_Sizes);
+		}
+		thumbnailSizes = parseSizes(thumbnailSizesStr);
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (renditionsDir == null || !renditionsDirTemporary)
+		{
+			return;
+		}
+
+		try (final DirectoryStream<Path> files = Files.newDirectoryStream(renditionsDir.toPath()))
+		{
+			files.forEach(file -> deleteFile(file.toFile()));
+		}
+		catch (final IOException ex)
+		{
+			logger.warn("Failed listing {}. Ignored.", renditionsDir, ex);
+		}
+
+		if (!renditionsDir.delete())
+		{
+			logger.warn("Cannot delete {}. Ignored.", renditionsDir);
+		}
+	}
+
+	private static File createTemporaryRenditionsDirOrNull()
+	{
+		try
+		{
+			// NOTE: each instance gets its own directory, so instances which are connected to different databases are not sharing the renditions
+			return Files.createTempDirectory("metasfresh-webui-image_renditions").toFile();
+		}
+		catch (final IOException ex)
+		{
+			logger.warn("Cannot create temporary directory. Image renditions will be kept only in memory. To configure it, please set '{}' property.", PROPERTY_RenditionsDir, ex);
+			return null;
+		}
+	}
+
+	private static File checkCreateRenditionsDirOrNull(final String renditionsDirPath)
+	{
+		final File renditionsDir = new File(renditionsDirPath);
+		if (!renditionsDir.exists() && !renditionsDir.mkdirs())
+		{
+			logger.warn("Cannot create {}. Image renditions will be kept only in memory. Please check the '{}' property.", renditionsDir, PROPERTY_RenditionsDir);
+			return null;
+		}
+
+		return renditionsDir;
+	}
+
+	@VisibleForTesting
+	static int[] parseAllowedSizes(final String sizesStr)
+	{
+		final List<Integer> sizes = new ArrayList<>();
+		for (final String sizeStr : Splitter.on(',').trimResults().omitEmptyStrings().split(Check.isEmpty(sizesStr, true) ? "" : sizesStr))
+		{
+			try
+			{
+				final int size = Integer.parseInt(sizeStr);
+				if (size > 0)
+				{
+					sizes.add(size);
+				}
+				else
+				{
+					logger.warn("Invalid image rendition size '{}'. Ignored.", sizeStr);
+				}
+			}
+			catch (final NumberFormatException ex)
+			{
+				logger.warn("Invalid image rendition size '{}'. Ignored.", sizeStr);
+			}
+		}
+
+		return sizes.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+	}
+
+	private static List<int[]> parseSizes(final String sizesStr)
+	{
+		final ImmutableList.Builder<int[]> sizes = ImmutableList.builder();
+		for (final String sizeStr : Splitter.on(',').trimResults().omitEmptyStrings().split(Check.isEmpty(sizesStr, true) ? "" : sizesStr))
+		{
+			final List<String> widthAndHeight = Splitter.on('x').trimResults().splitToList(sizeStr);
+			if (widthAndHeight.size() != 2)
+			{
+				logger.warn("Invalid thumbnail size '{}'. Ignored.", sizeStr);
+				continue;
+			}
+
+			try
+			{
+				sizes.add(new int[] { Integer.parseInt(widthAndHeight.get(0)), Integer.parseInt(widthAndHeight.get(1)) });
+			}
+			catch (final NumberFormatException ex)
+			{
+				logger.warn("Invalid thumbnail size '{}'. Ignored.", sizeStr);
+			}
+		}
+		return sizes.build();
+	}
+
+	/**
+	 * Snaps the requested max width/height to the greatest allowed size which is not greater than it.
+	 * If the requested size is smaller than all allowed sizes, the smallest allowed size is used.
+	 *
+	 * @param size requested max width/height; zero or negative means not constrained
+	 * @param allowedSizes allowed sizes, sorted ascending
+	 * @return snapped size or zero if not constrained
+	 */
+	@VisibleForTesting
+	static int snapSize(final int size, @NonNull final int[] allowedSizes)
+	{
+		if (size <= 0)
+		{
+			return 0;
+		}
+		if (allowedSizes.length == 0)
+		{
+			return size;
+		}
+
+		final int index = Arrays.binarySearch(allowedSizes, size);
+		if (index >= 0)
+		{
+			return allowedSizes[index];
+		}
+
+		final int insertionPoint = -index - 1;
+		return insertionPoint > 0 ? allowedSizes[insertionPoint - 1] : allowedSizes[0];
+	}
+
+	private RenditionKey createKey(final MImage adImage, final int maxWidth, final int maxHeight)
+	{
+		return RenditionKey.of(adImage, snapSize(maxWidth, sizes), snapSize(maxHeight, sizes));
+	}
+
+	/**
+	 * @return scaled image data, from memory, from disk or freshly scaled
+	 */
+	public byte[] getRenditionData(@NonNull final MImage adImage, final int maxWidth, final int maxHeight)
+	{
+		final RenditionKey key = createKey(adImage, maxWidth, maxHeight);
+		try
+		{
+			return renditionsInMemory.get(key, () -> loadOrCreateRendition(key, adImage));
+		}
+		catch (final ExecutionException ex)
+		{
+			throw AdempiereException.wrapIfNeeded(ex.getCause());
+		}
+	}
+
+	/**
+	 * @return file containing the scaled image data or <code>null</code> if the disk tier is not available
+	 */
+	public File getRenditionFileOrNull(@NonNull final MImage adImage, final int maxWidth, final int maxHeight)
+	{
+		if (renditionsDir == null)
+		{
+			return null;
+		}
+
+		final RenditionKey key = createKey(adImage, maxWidth, maxHeight);
+		final File file = getRenditionFile(key);
+		if (file.exists())
+		{
+			markRecentlyUsed(file);
+		}
+		else
+		{
+			getRenditionData(adImage, maxWidth, maxHeight); // will also store it on disk
+		}
+
+		return file.exists() ? file : null;
+	}
+
+	/**
+	 * Generates the configured thumbnail sizes of given image, in background.
+	 */
+	public void generateThumbnailsAsync(@NonNull final MImage adImage)
+	{
+		if (thumbnailSizes.isEmpty())
+		{
+			return;
+		}
+
+		try
+		{
+			thumbnailsExecutor.execute(() -> generateThumbnails(adImage));
+		}
+		catch (final RejectedExecutionException ex)
+		{
+			// executor is busy => the thumbnails will be created when they are requested
+			logger.debug("Skip generating thumbnails for {} because executor is busy", adImage);
+		}
+	}
+
+	private void generateThumbnails(final MImage adImage)
+	{
+		for (final int[] size : thumbnailSizes)
+		{
+			try
+			{
+				getRenditionData(adImage, size[0], size[1]);
+			}
+			catch (final Exception ex)
+			{
+				logger.warn("Failed generating {}x{} thumbnail for {}. Ignored.", size[0], size[1], adImage, ex);
+			}
+		}
+	}
+
+	private byte[] loadOrCreateRendition(final RenditionKey key, final MImage adImage) throws IOException
+	{
+		final File file = renditionsDir != null ? getRenditionFile(key) : null;
+		if (file != null && file.exists())
+		{
+			markRecentlyUsed(file);
+			return Files.readAllBytes(file.toPath());
+		}
+
+		final byte[] scaledData = adImage.getScaledImageData(key.getMaxWidth(), key.getMaxHeight());
+		final byte[] data = scaledData != null ? scaledData : new byte[0];
+		if (file != null)
+		{
+			storeRendition(key, file, data);
+		}
+		return data;
+	}
+
+	private void storeRendition(final RenditionKey key, final File file, final byte[] data)
+	{
+		final long previousLength = file.length(); // zero if the file does not exist
+		try
+		{
+			// write to a temporary file first, so the file is never served partially
+			final Path tempFile = Files.createTempFile(renditionsDir.toPath(), file.getName(), ".tmp");
+			Files.write(tempFile, data);
+			Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (final IOException ex)
+		{
+			logger.warn("Failed storing rendition {} to {}. Ignored.", key, file, ex);
+			return;
+		}
+
+		diskUsedBytes.addAndGet(data.length - previousLength);
+		deleteOutdatedRenditions(key);
+
+		if (diskUsedBytes.get() > diskMaxBytes)
+		{
+			trimDiskTier();
+		}
+	}
+
+	private void deleteOutdatedRenditions(final RenditionKey key)
+	{
+		final String currentPrefix = key.getImagePrefix() + key.getUpdatedMillis() + "-";
+		try (final DirectoryStream<Path> files = Files.newDirectoryStream(renditionsDir.toPath(), key.getImagePrefix() + "*" + RENDITION_FILE_SUFFIX))
+		{
+			for (final Path file : files)
+			{
+				if (!file.getFileName().toString().startsWith(currentPrefix))
+				{
+					final long length = Files.size(file);
+					if (Files.deleteIfExists(file))
+					{
+						diskUsedBytes.addAndGet(-length);
+					}
+				}
+			}
+		}
+		catch (final IOException ex)
+		{
+			logger.warn("Failed deleting outdated renditions of AD_Image_ID={}. Ignored.", key.getAdImageId(), ex);
+		}
+	}
+
+	private synchronized void trimDiskTier()
+	{
+		// NOTE: check again, maybe another thread already trimmed it
+		if (diskUsedBytes.get() <= diskMaxBytes)
+		{
+			return;
+		}
+
+		final long usedBytes = trimDirectory(renditionsDir.toPath(), diskMaxBytes, (long)(diskMaxBytes * DISK_TRIM_RATIO));
+		diskUsedBytes.set(usedBytes);
+	}
+
+	/**
+	 * If the total size of the rendition files exceeds <code>maxBytes</code>, the least recently used ones are deleted until their total size is not greater than <code>trimToBytes</code>.
+	 * Leftover temporary files are deleted too.
+	 *
+	 * @return total size of the remaining rendition files
+	 */
+	@VisibleForTesting
+	static long trimDirectory(@NonNull final Path dir, final long maxBytes, final long trimToBytes)
+	{
+		final List<File> files = new ArrayList<>();
+		long usedBytes = 0;
+		try (final DirectoryStream<Path> paths = Files.newDirectoryStream(dir))
+		{
+			for (final Path path : paths)
+			{
+				final File file = path.toFile();
+				if (!file.isFile())
+				{
+					continue;
+				}
+				if (!file.getName().endsWith(RENDITION_FILE_SUFFIX))
+				{
+					// temporary file which is older than a minute => it was left by a failed or interrupted write
+					if (file.lastModified() < System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1))
+					{
+						deleteFile(file);
+					}
+					continue;
+				}
+
+				files.add(file);
+				usedBytes += file.length();
+			}
+		}
+		catch (final IOException ex)
+		{
+			logger.warn("Failed listing {}. Ignored.", dir, ex);
+			return usedBytes;
+		}
+
+		if (usedBytes <= maxBytes)
+		{
+			return usedBytes;
+		}
+
+		files.sort(Comparator.comparing(File::lastModified));
+		for (final File file : files)
+		{
+			if (usedBytes <= trimToBytes)
+			{
+				break;
+			}
+
+			final long length = file.length();
+			if (deleteFile(file))
+			{
+				usedBytes -= length;
+			}
+		}
+
+		logger.debug("Trimmed {} to {} bytes", dir, usedBytes);
+		return usedBytes;
+	}
+
+	private static boolean deleteFile(final File file)
+	{
+		try
+		{
+			return Files.deleteIfExists(file.toPath());
+		}
+		catch (final IOException ex)
+		{
+			logger.warn("Failed deleting {}. Ignored.", file, ex);
+			return false;
+		}
+	}
+
+	/** Updates file's last modified timestamp, so the least recently used files are deleted first when the disk tier is full */
+	private static void markRecentlyUsed(final File file)
+	{
+		if (!file.setLastModified(System.currentTimeMillis()))
+		{
+			logger.trace("Cannot update last modified timestamp of {}. Ignored.", file);
+		}
+	}
+
+	private File getRenditionFile(final RenditionKey key)
+	{
+		return new File(renditionsDir, key.toFilename());
+	}
+
+	@lombok.Value
+	private static final class RenditionKey
+	{
+		public static RenditionKey of(final MImage adImage, final int maxWidth, final int maxHeight)
+		{
+			return new RenditionKey(
+					adImage.getAD_Image_ID(),
+					adImage.getUpdated().getTime(),
+					maxWidth > 0 ? maxWidth : 0,
+					maxHeight > 0 ? maxHeight : 0);
+		}
+
+		private final int adImageId;
+		private final long updatedMillis;
+		private final int maxWidth;
+		private final int maxHeight;
+
+		/** @return file name prefix of all renditions of this image */
+		public String getImagePrefix()
+		{
+			return adImageId + "-";
+		}
+
+		public String toFilename()
+		{
+			return getImagePrefix() + updatedMillis + "-" + maxWidth + "x" + maxHeight + RENDITION_FILE_SUFFIX;
+		}
+	}
+}
@@ -10,6 +10,7 @@ import org.adempiere.util.FileUtils;
 import org.compiere.model.MImage;
 import org.compiere.util.Env;
 import org.compiere.util.MimeType;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -42,6 +43,9 @@ import de.metas.ui.web.exceptions.EntityNotFoundException;
 public class WebuiImageService
 {
 	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss");
+
+	@Autowired
+	private WebuiImageRenditionsRepository renditionsRepo;
 	
 	public int uploadImage(final MultipartFile file) throws IOException
 	{
@@ -56,6 +60,8 @@ public class WebuiImageService
 		// TODO: introduce adImage.setTemporary(true);
 		InterfaceWrapperHelper.save(adImage);
 
+		renditionsRepo.generateThumbnailsAsync(adImage);
+
 		return adImage.getAD_Image_ID();
 	}
 
@@ -91,7 +97,7 @@ public class WebuiImageService
 			throw new EntityNotFoundException("Image id not found: " + imageId);
 		}
 
-		return WebuiImage.of(adImage, maxWidth, maxHeight);
+		return WebuiImage.of(adImage, maxWidth, maxHeight, renditionsRepo);
 	}
 
 }
@@ -3,12 +3,18 @@ package de.metas.ui.web.view;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
@@ -16,6 +22,7 @@ import javax.annotation.Nullable;
 import org.adempiere.ad.trx.api.ITrxManager;
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.util.NumberUtils;
+import org.adempiere.service.ISysConfigBL;
 import org.adempiere.util.Services;
 import org.adempiere.util.lang.ExtendedMemorizingSupplier;
 import org.adempiere.util.lang.impl.TableRecordReference;
@@ -23,6 +30,7 @@ import org.compiere.util.CCache;
 import org.compiere.util.Evaluatee;
 import org.slf4j.Logger;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
@@ -32,11 +40,12 @@ import com.google.common.collect.Iterables;
 import de.metas.i18n.ITranslatableString;
 import de.metas.i18n.ImmutableTranslatableString;
 import de.metas.logging.LogManager;
+import de.metas.ui.web.cache.ETag;
 import de.metas.ui.web.document.filter.DocumentFilter;
 import de.metas.ui.web.document.filter.DocumentFilterDescriptorsProvider;
 import de.metas.ui.web.document.filter.json.JSONDocumentFilter;
 import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverterContext;
-import de.metas.ui.web.exceptions.EntityNotFoundException;
+import de.metas.ui.web.view.ViewPagePrefetcher.PageKey;
 import de.metas.ui.web.view.event.ViewChangesCollector;
 import de.metas.ui.web.view.json.JSONViewDataType;
 import de.metas.ui.web.window.datatypes.DocumentId;
@@ -92,6 +101,21 @@ public final class DefaultView implements IEditableView
 
 	private static final Logger logger = LogManager.getLogger(DefaultView.class);
 
+	//
+	// Rows cache sizing
+	private static final int ROWS_CACHE_MIN_SIZE = 100;
+	private static final int ROWS_CACHE_MAX_SIZE = 5000;
+	/** How many pages shall fit in rows cache */
+	private static final int ROWS_CACHE_PAGES = 3;
+	private static final int ROWS_CACHE_EXPIRE_MINUTES = 2;
+
+	/** Views with up to this many rows are ordered in memory instead of creating a new ordered selection in database */
+	private static final String SYSCONFIG_InMemoryOrderingMaxRows = "de.metas.ui.web.view.DefaultView.InMemoryOrdering.MaxRows";
+	private static final int DEFAULT_InMemoryOrderingMaxRows = 10000;
+	/** How many ordered selections shall be kept in database for one view. The least recently used ones are deleted. */
+	private static final String SYSCONFIG_MaxOrderedSelections = "de.metas.ui.web.view.DefaultView.MaxOrderedSelections";
+	private static final int DEFAULT_MaxOrderedSelections = 5;
+
 	private final IViewDataRepository viewDataRepository;
 
 	private final ViewId viewId;
@@ -121,7 +145,20 @@ public final class DefaultView implements IEditableView
 
 	//
 	// Caching
-	private final transient CCache<DocumentId, IViewRow> cache_rowsById;
+	private final transient Object cache_rowsById_lock = new Object();
+	/** Rows cache. It's re-created with a bigger capacity when needed, see {@link #ensureRowsCacheCapacity(long, int)} */
+	private transient volatile CCache<DocumentId, IViewRow> cache_rowsById;
+	private transient int cache_rowsById_capacity;
+	/** Incremented each time the rows are invalidated, in order to discard prefetched pages which might be stale. It's also used as view's data ETag. */
+	private final AtomicInteger cacheGeneration = new AtomicInteger(0);
+
+	//
+	// Page prefetching
+	private final ViewPagePrefetcher pagePrefetcher = ViewPagePrefetcher.newInstance();
+
+	//
+	// In memory ordering (for small views)
+	private final AtomicReference<InMemoryOrderedViewRowIds> inMemoryOrderingRef = new AtomicReference<>();
 
 	private final IViewInvalidationAdvisor viewInvalidationAdvisor;
 
@@ -161,18 +198,17 @@ public final class DefaultView implements IEditableView
 						ImmutableList.copyOf(Iterables.concat(stickyFilters, filters)),
 						applySecurityRestrictions,
 						context);
+				defaultSelection.onMaterialized(this::onDefaultSelectionMaterialized);
 
-				return new ViewRowIdsOrderedSelections(defaultSelection);
+				final int maxOrderedSelections = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_MaxOrderedSelections, DEFAULT_MaxOrderedSelections);
+				return new ViewRowIdsOrderedSelections(defaultSelection, maxOrderedSelections, viewDataRepository::scheduleDeleteSelections);
 			});
 		}
 
 		//
 		// Cache
-		cache_rowsById = CCache.newLRUCache( //
-				viewDataRepository.getTableName() + "#rowById#viewId=" + viewId.getViewId() // cache name
-				, 100 // maxSize
-				, 2 // expireAfterMinutes
-		);
+		cache_rowsById = createRowsCache(ROWS_CACHE_MIN_SIZE);
+		cache_rowsById_capacity = ROWS_CACHE_MIN_SIZE;
 
 		logger.debug("View created: {}", this);
 	}
@@ -186,7 +222,7 @@ public final class DefaultView implements IEditableView
 			// NOTE: keep it short
 			_toString = MoreObjects.toStringHelper(this)
 					.omitNullValues()
-					.add("viewId", defaultSelection.getViewId())
+					.add("viewId", viewId)
 					.add("tableName", viewDataRepository.getTableName())
 					.add("parentViewId", parentViewId)
 					.add("defaultSelection", defaultSelection)
@@ -253,6 +289,30 @@ public final class DefaultView implements IEditableView
 		return defaultSelection.getSize();
 	}
 
+	@Override
+	public boolean isSizeEstimated()
+	{
+		final ViewRowIdsOrderedSelection defaultSelection = selectionsRef.get().getDefaultSelection();
+		return defaultSelection.isSizeEstimated();
+	}
+
+	/** Called from a background thread when the exact size is known (or when the materialization failed), so the frontend will reload the view */
+	private void onDefaultSelectionMaterialized()
+	{
+		if (closed.get())
+		{
+			return;
+		}
+
+		_toString = null;
+
+		// the selection rows were replaced, so the pages served so far (and their ETags) are no longer valid
+		invalidateAll();
+
+		ViewChangesCollector.getCurrentOrAutoflush()
+				.collectFullyChanged(this);
+	}
+
 	@Override
 	public List<DocumentQueryOrderBy> getDefaultOrderBys()
 	{
@@ -313,16 +373,72 @@ public final class DefaultView implements IEditableView
 		logger.debug("View closed with reason={}: {}", reason, this);
 	}
 
+	private CCache<DocumentId, IViewRow> createRowsCache(final int capacity)
+	{
+		return CCache.newLRUCache( //
+				viewDataRepository.getTableName() + "#rowById#viewId=" + viewId.getViewId() // cache name
+				, capacity // maxSize
+				, ROWS_CACHE_EXPIRE_MINUTES // expireAfterMinutes
+		);
+	}
+
+	/**
+	 * Makes sure the rows cache is big enough to hold a few pages, but not bigger than the view itself.
+	 *
+	 * @param selectionSize view size
+	 * @param pageLength requested page length
+	 */
+	private void ensureRowsCacheCapacity(final long selectionSize, final int pageLength)
+	{
+		final int capacity = computeRowsCacheCapacity(selectionSize, pageLength);
+		if (capacity <= cache_rowsById_capacity)
+		{
+			return;
+		}
+
+		synchronized (cache_rowsById_lock)
+		{
+			if (capacity <= cache_rowsById_capacity)
+			{
+				return;
+			}
+
+			// NOTE: the cache's capacity cannot be changed, so we are creating a new one.
+			// The rows which were cached so far are lost, but that happens only a few times, while the client increases the page length.
+			cache_rowsById = createRowsCache(capacity);
+			cache_rowsById_capacity = capacity;
+			logger.debug("Rows cache capacity increased to {} for {}", capacity, this);
+		}
+	}
+
+	@VisibleForTesting
+	static int computeRowsCacheCapacity(final long selectionSize, final int pageLength)
+	{
+		final long capacity = Math.min(
+				(long)pageLength * ROWS_CACHE_PAGES, // a few pages
+				selectionSize); // ...but no more than we have
+		return (int)Math.max(ROWS_CACHE_MIN_SIZE, Math.min(capacity, ROWS_CACHE_MAX_SIZE));
+	}
+
 	@Override
 	public void invalidateAll()
 	{
 		cache_rowsById.clear();
+		invalidatePrefetchedPageAndInMemoryOrdering();
 	}
 
 	@Override
 	public void invalidateRowById(final DocumentId rowId)
 	{
 		cache_rowsById.remove(rowId);
+		invalidatePrefetchedPageAndInMemoryOrdering();
+	}
+
+	private void invalidatePrefetchedPageAndInMemoryOrdering()
+	{
+		cacheGeneration.incrementAndGet();
+		pagePrefetcher.invalidate();
+		inMemoryOrderingRef.set(null);
 	}
 
 	@Override
@@ -333,6 +449,7 @@ public final class DefaultView implements IEditableView
 		viewDataRepository.scheduleDeleteSelections(selections.getSelectionIds());
 
 		invalidateAll();
+		viewDataRepository.invalidateSharedSelections();
 
 		ViewChangesCollector.getCurrentOrAutoflush()
 				.collectFullyChanged(this);
@@ -356,13 +473,49 @@ public final class DefaultView implements IEditableView
 	{
 		assertNotClosed();
 
+		final InMemoryOrderedViewRowIds inMemoryOrdering = getInMemoryOrderingOrNull(orderBys);
+		if (inMemoryOrdering != null)
+		{
+			final List<DocumentId> rowIds = inMemoryOrdering.getRowIds(orderBys, firstRow, pageLength);
+
+			ensureRowsCacheCapacity(inMemoryOrdering.getDefaultSelection().getSize(), pageLength);
+			final List<IViewRow> rows = getOrRetrieveByIds(rowIds);
+
+			return ViewResult.builder()
+					.view(this)
+					.firstRow(firstRow)
+					.pageLength(pageLength)
+					.orderBys(ImmutableList.copyOf(orderBys))
+					.rows(rows)
+					.columnInfos(extractViewResultColumns(rows))
+					.build();
+		}
+
 		final ViewEvaluationCtx evalCtx = getViewEvaluationCtx();
 		final ViewRowIdsOrderedSelection orderedSelection = getOrderedSelection(orderBys);
 
-		final List<IViewRow> rows = viewDataRepository.retrievePage(evalCtx, orderedSelection, firstRow, pageLength);
+		final PageKey pageKey = PageKey.of(orderedSelection.getSelectionId(), firstRow, pageLength);
+
+		List<IViewRow> rows = pagePrefetcher.getPrefetchedPageOrNull(pageKey, cacheGeneration.get());
+		if (rows == null)
+		{
+			rows = viewDataRepository.retrievePage(evalCtx, orderedSelection, firstRow, pageLength);
+		}
 
 		// Add to cache
-		rows.forEach(row -> cache_rowsById.put(row.getId(), row));
+		ensureRowsCacheCapacity(orderedSelection.getSize(), pageLength);
+		final CCache<DocumentId, IViewRow> cache = cache_rowsById;
+		rows.forEach(row -> cache.put(row.getId(), row));
+
+		//
+		// If the client is paging sequentially, prefetch the next page
+		pagePrefetcher.onPageServed(pageKey, orderedSelection.getSize(), cacheGeneration::get, nextPageKey -> {
+			if (closed.get())
+			{
+				return null;
+			}
+			return viewDataRepository.retrievePage(evalCtx, orderedSelection, nextPageKey.getFirstRow(), nextPageKey.getPageLength());
+		});
 
 		return ViewResult.builder()
 				.view(this)
@@ -420,6 +573,18 @@ public final class DefaultView implements IEditableView
 	{
 		assertNotClosed();
 
+		final InMemoryOrderedViewRowIds inMemoryOrdering = getInMemoryOrderingOrNull(orderBys);
+		if (inMemoryOrdering != null)
+		{
+			return ViewResult.builder()
+					.view(this)
+					.firstRow(firstRow)
+					.pageLength(pageLength)
+					.orderBys(ImmutableList.copyOf(orderBys))
+					.rowIds(inMemoryOrdering.getRowIds(orderBys, firstRow, pageLength))
+					.build();
+		}
+
 		final ViewEvaluationCtx evalCtx = getViewEvaluationCtx();
 		final ViewRowIdsOrderedSelection orderedSelection = getOrderedSelection(orderBys);
 
@@ -434,6 +599,21 @@ public final class DefaultView implements IEditableView
 				.build();
 	}
 
+	@Override
+	public void forEachRowId(final int fetchSize, @NonNull final Consumer<DocumentId> rowIdConsumer)
+	{
+		assertNotClosed();
+
+		final ViewRowIdsOrderedSelection defaultSelection = selectionsRef.get().getDefaultSelection();
+		viewDataRepository.forEachRowId(getViewEvaluationCtx(), defaultSelection, fetchSize, rowIdConsumer);
+	}
+
+	@Override
+	public ETag getDataETagOrNull()
+	{
+		return ETag.of(cacheGeneration.get());
+	}
+
 	@Override
 	public IViewRow getById(final DocumentId rowId)
 	{
@@ -449,7 +629,67 @@ public final class DefaultView implements IEditableView
 	private final IViewRow retrieveRowById(final DocumentId rowId)
 	{
 		final ViewEvaluationCtx evalCtx = getViewEvaluationCtx();
-		return viewDataRepository.retrieveById(evalCtx, getViewId(), rowId);
+		return viewDataRepository.retrieveById(evalCtx, getDefaultSelectionViewId(), rowId);
+	}
+
+	/**
+	 * @return the ID of the default selection. Usually it's the same as view's ID, but the selection might also be shared with other identical views.
+	 */
+	private ViewId getDefaultSelectionViewId()
+	{
+		return selectionsRef.get().getDefaultSelection().getViewId();
+	}
+
+	/**
+	 * Same as {@link #getDefaultSelectionViewId()} but it also waits until all rows of the default selection are materialized.
+	 * To be used when all view rows are needed, and not only the rows which were already shown to the user.
+	 */
+	private ViewId getMaterializedDefaultSelectionViewId()
+	{
+		final ViewRowIdsOrderedSelection defaultSelection = selectionsRef.get().getDefaultSelection();
+		defaultSelection.awaitMaterialized();
+		return defaultSelection.getViewId();
+	}
+
+	/**
+	 * @return in memory ordering if the view is small enough and the requested ordering is not the default one; else null
+	 */
+	private InMemoryOrderedViewRowIds getInMemoryOrderingOrNull(final List<DocumentQueryOrderBy> orderBys)
+	{
+		if (orderBys == null || orderBys.isEmpty())
+		{
+			return null;
+		}
+		if (!viewDataRepository.isInMemoryOrderingSupported())
+		{
+			return null;
+		}
+
+		final ViewRowIdsOrderedSelection defaultSelection = selectionsRef.get().getDefaultSelection();
+		if (Objects.equals(defaultSelection.getOrderBys(), orderBys))
+		{
+			return null;
+		}
+		if (defaultSelection.isSizeEstimated())
+		{
+			return null; // not all rows are known yet
+		}
+
+		final int maxRows = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_InMemoryOrderingMaxRows, DEFAULT_InMemoryOrderingMaxRows);
+		if (defaultSelection.getSize() > maxRows)
+		{
+			return null;
+		}
+
+		final InMemoryOrderedViewRowIds inMemoryOrdering = inMemoryOrderingRef.get();
+		if (inMemoryOrdering != null && inMemoryOrdering.getDefaultSelection() == defaultSelection)
+		{
+			return inMemoryOrdering;
+		}
+
+		final InMemoryOrderedViewRowIds newInMemoryOrdering = new InMemoryOrderedViewRowIds(viewDataRepository, getViewEvaluationCtx(), defaultSelection);
+		inMemoryOrderingRef.set(newInMemoryOrdering);
+		return newInMemoryOrdering;
 	}
 
 	private ViewRowIdsOrderedSelection getOrderedSelection(final List<DocumentQueryOrderBy> orderBys)
@@ -463,7 +703,7 @@ public final class DefaultView implements IEditableView
 	@Override
 	public String getSqlWhereClause(final DocumentIdsSelection rowIds, final SqlOptions sqlOpts)
 	{
-		return viewDataRepository.getSqlWhereClause(getViewId(), getAllFilters(), rowIds, sqlOpts);
+		return viewDataRepository.getSqlWhereClause(getMaterializedDefaultSelectionViewId(), getAllFilters(), rowIds, sqlOpts);
 	}
 
 	@Override
@@ -506,27 +746,54 @@ public final class DefaultView implements IEditableView
 			throw new UnsupportedOperationException("Streaming all rows is not supported");
 		}
 
-		// NOTE: we get/retrive one by one because we assume the "selected documents" were recently retrieved,
-		// and the records recently retrieved have a big chance to be cached.
-		return rowIds.stream()
-				.distinct()
-				.map(rowId -> {
-					try
-					{
-						return getOrRetrieveById(rowId);
-					}
-					catch (final EntityNotFoundException e)
-					{
-						return null;
-					}
-				})
-				.filter(row -> row != null);
+		// NOTE: we assume the "selected documents" were recently retrieved, so they have a big chance to be cached.
+		final List<DocumentId> rowIdsOrdered = rowIds.stream().distinct().collect(ImmutableList.toImmutableList());
+		return getOrRetrieveByIds(rowIdsOrdered).stream();
+	}
+
+	/**
+	 * Gets given rows from cache. The ones which are not cached are retrieved in one go.
+	 *
+	 * @return rows, in given order; rows which were not found are skipped
+	 */
+	private List<IViewRow> getOrRetrieveByIds(final List<DocumentId> rowIdsOrdered)
+	{
+		final CCache<DocumentId, IViewRow> cache = cache_rowsById;
+		final Map<DocumentId, IViewRow> rowsById = new HashMap<>(rowIdsOrdered.size());
+		final List<DocumentId> rowIdsToRetrieve = new ArrayList<>();
+		for (final DocumentId rowId : rowIdsOrdered)
+		{
+			final IViewRow row = cache.get(rowId);
+			if (row != null)
+			{
+				rowsById.put(rowId, row);
+			}
+			else
+			{
+				rowIdsToRetrieve.add(rowId);
+			}
+		}
+
+		if (!rowIdsToRetrieve.isEmpty())
+		{
+			viewDataRepository.retrieveByIds(getViewEvaluationCtx(), getDefaultSelectionViewId(), DocumentIdsSelection.of(rowIdsToRetrieve))
+					.forEach(row -> {
+						cache.put(row.getId(), row);
+						rowsById.put(row.getId(), row);
+					});
+		}
+
+		// NOTE: rows which were not found are skipped
+		return rowIdsOrdered.stream()
+				.map(rowsById::get)
+				.filter(row -> row != null)
+				.collect(ImmutableList.toImmutableList());
 	}
 
 	@Override
 	public <T> List<T> retrieveModelsByIds(final DocumentIdsSelection rowIds, final Class<T> modelClass)
 	{
-		return viewDataRepository.retrieveModelsByIds(getViewId(), rowIds, modelClass);
+		return viewDataRepository.retrieveModelsByIds(getMaterializedDefaultSelectionViewId(), rowIds, modelClass);
 	}
 
 	@Override
@@ -539,7 +806,12 @@ public final class DefaultView implements IEditableView
 		}
 
 		// Invalidate local rowsById cache
-		rowIds.forEach(cache_rowsById::remove);
+		final CCache<DocumentId, IViewRow> cache = cache_rowsById;
+		rowIds.forEach(cache::remove);
+		invalidatePrefetchedPageAndInMemoryOrdering();
+
+		// Make sure new views are not reusing our selection because it might be staled
+		viewDataRepository.invalidateSharedSelections();
 
 		// Collect event
 		// TODO: check which rowIds are contained in this view and fire events only for those
@@ -614,14 +886,22 @@ public final class DefaultView implements IEditableView
 	{
 		@Getter
 		private final ViewRowIdsOrderedSelection defaultSelection;
-		private final ConcurrentHashMap<ImmutableList<DocumentQueryOrderBy>, ViewRowIdsOrderedSelection> selectionsByOrderBys = new ConcurrentHashMap<>();
-
-		public ViewRowIdsOrderedSelections(@NonNull final ViewRowIdsOrderedSelection defaultSelection)
+		private final int maxOrderedSelections;
+		private final Consumer<Set<String>> evictedSelectionIdsConsumer;
+		/** Ordered selections, in access order */
+		private final LinkedHashMap<ImmutableList<DocumentQueryOrderBy>, ViewRowIdsOrderedSelection> selectionsByOrderBys = new LinkedHashMap<>(16, 0.75f, true);
+
+		public ViewRowIdsOrderedSelections(
+				@NonNull final ViewRowIdsOrderedSelection defaultSelection,
+				final int maxOrderedSelections,
+				@NonNull final Consumer<Set<String>> evictedSelectionIdsConsumer)
 		{
 			this.defaultSelection = defaultSelection;
+			this.maxOrderedSelections = maxOrderedSelections > 0 ? maxOrderedSelections : 1;
+			this.evictedSelectionIdsConsumer = evictedSelectionIdsConsumer;
 		}
 
-		public ViewRowIdsOrderedSelection computeIfAbsent(final List<DocumentQueryOrderBy> orderBys, @NonNull final ViewRowIdsOrderedSelectionFactory factory)
+		public synchronized ViewRowIdsOrderedSelection computeIfAbsent(final List<DocumentQueryOrderBy> orderBys, @NonNull final ViewRowIdsOrderedSelectionFactory factory)
 		{
 			if (orderBys == null || orderBys.isEmpty())
 			{
@@ -633,14 +913,33 @@ public final class DefaultView implements IEditableView
 				return defaultSelection;
 			}
 
-			return selectionsByOrderBys.computeIfAbsent(ImmutableList.copyOf(orderBys), orderBysImmutable -> factory.create(defaultSelection, orderBysImmutable));
+			final ViewRowIdsOrderedSelection selection = selectionsByOrderBys.computeIfAbsent(ImmutableList.copyOf(orderBys), orderBysImmutable -> factory.create(defaultSelection, orderBysImmutable));
+			evictLeastRecentlyUsed();
+			return selection;
+		}
+
+		private void evictLeastRecentlyUsed()
+		{
+			if (selectionsByOrderBys.size() <= maxOrderedSelections)
+			{
+				return;
+			}
+
+			final Set<String> evictedSelectionIds = new HashSet<>();
+			for (final Iterator<ViewRowIdsOrderedSelection> it = selectionsByOrderBys.values().iterator(); it.hasNext() && selectionsByOrderBys.size() > maxOrderedSelections;)
+			{
+				evictedSelectionIds.add(it.next().getSelectionId());
+				it.remove();
+			}
+
+			evictedSelectionIdsConsumer.accept(evictedSelectionIds);
 		}
 
-		public Set<String> getSelectionIds()
+		public synchronized Set<String> getSelectionIds()
 		{
 			final ImmutableSet.Builder<String> selectionIds = ImmutableSet.builder();
 			selectionIds.add(defaultSelection.getSelectionId());
-			for (final ViewRowIdsOrderedSelection selection : new ArrayList<>(selectionsByOrderBys.values()))
+			for (final ViewRowIdsOrderedSelection selection : selectionsByOrderBys.values())
 			{
 				selectionIds.add(selection.getSelectionId());
 			}
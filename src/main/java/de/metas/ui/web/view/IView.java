@@ -2,6 +2,7 @@ package de.metas.ui.web.view;
 
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
@@ -13,6 +14,7 @@ import com.google.common.collect.ImmutableList;
 
 import de.metas.i18n.ITranslatableString;
 import de.metas.process.RelatedProcessDescriptor;
+import de.metas.ui.web.cache.ETag;
 import de.metas.ui.web.document.filter.DocumentFilter;
 import de.metas.ui.web.exceptions.EntityNotFoundException;
 import de.metas.ui.web.process.view.ViewActionDescriptorsList;
@@ -94,6 +96,12 @@ public interface IView
 
 	long size();
 
+	/** @return true if {@link #size()} is just an estimation, e.g. because the view's rows are still loaded in background or loading them failed */
+	default boolean isSizeEstimated()
+	{
+		return false;
+	}
+
 	default void close(final ViewCloseReason reason)
 	{
 		// nothing
@@ -134,6 +142,38 @@ public interface IView
 		return getPage(firstRow, pageLength, orderBys);
 	}
 
+	/**
+	 * Iterates all row IDs of this view, in default order.
+	 * <p>
+	 * The default implementation is fetching the row IDs page by page. Views backed by a database selection shall read them in chunks which are selected after the previous chunk's last row (keyset pagination),
+	 * and without keeping the database cursor open while the consumer is called.
+	 *
+	 * @param fetchSize how many row IDs to fetch at once
+	 */
+	default void forEachRowId(final int fetchSize, @NonNull final Consumer<DocumentId> rowIdConsumer)
+	{
+		final List<DocumentQueryOrderBy> orderBys = ImmutableList.of(); // default
+		for (int firstRow = 0;; firstRow += fetchSize)
+		{
+			final List<DocumentId> rowIds = getPageWithRowIdsOnly(firstRow, fetchSize, orderBys).getRowIds();
+			rowIds.forEach(rowIdConsumer);
+			if (rowIds.size() < fetchSize)
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return ETag which is changed each time view's selection or rows are changed, or <code>null</code> if this view does not track its changes.
+	 *         It's used to answer page requests with "304 Not Modified" without fetching the page.
+	 */
+	@Nullable
+	default ETag getDataETagOrNull()
+	{
+		return null;
+	}
+
 	IViewRow getById(DocumentId rowId) throws EntityNotFoundException;
 
 	LookupValuesList getFilterParameterDropdown(String filterId, String filterParameterName, Evaluatee ctx);
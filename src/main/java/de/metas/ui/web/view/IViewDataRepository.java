@@ -3,6 +3,7 @@ package de.metas.ui.web.view;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.adempiere.exceptions.DBException;
 
@@ -56,17 +57,52 @@ public interface IViewDataRepository
 
 	IViewRow retrieveById(ViewEvaluationCtx viewEvalCtx, ViewId viewId, DocumentId rowId);
 
+	/**
+	 * Retrieves given rows using as few queries as possible.
+	 * 
+	 * @return rows which were found, in selection's order; rows which were not found are skipped
+	 */
+	List<IViewRow> retrieveByIds(ViewEvaluationCtx viewEvalCtx, ViewId viewId, DocumentIdsSelection rowIds);
+
 	List<IViewRow> retrievePage(ViewEvaluationCtx viewEvalCtx, ViewRowIdsOrderedSelection orderedSelection, int firstRow, int pageLength) throws DBException;
 
 	List<DocumentId> retrieveRowIdsByPage(ViewEvaluationCtx viewEvalCtx, ViewRowIdsOrderedSelection orderedSelection, int firstRow, int pageLength);
 
+	/**
+	 * Iterates all row IDs of given selection, in selection's order.
+	 * The row IDs are read in chunks of <code>fetchSize</code>, each chunk using a short read which is finished before the consumer is called.
+	 */
+	void forEachRowId(ViewEvaluationCtx viewEvalCtx, ViewRowIdsOrderedSelection orderedSelection, int fetchSize, Consumer<DocumentId> rowIdConsumer);
+
 	<T> List<T> retrieveModelsByIds(ViewId viewId, DocumentIdsSelection rowIds, Class<T> modelClass);
 
+	/**
+	 * @return true if the view rows can be ordered in memory, using the keys retrieved by {@link #retrieveFieldOrderingKeysByRowId(ViewEvaluationCtx, ViewRowIdsOrderedSelection, String)}
+	 */
+	boolean isInMemoryOrderingSupported();
+
+	/**
+	 * @return the order bys which are actually applied in database (e.g. one field might be ordered by more columns)
+	 */
+	List<DocumentQueryOrderBy> getEffectiveOrderBys(List<DocumentQueryOrderBy> orderBys);
+
+	/**
+	 * @return for all rows of given selection, the keys to be used when ordering by given field in memory;
+	 *         ordering ascending by those keys (<code>null</code>s last) shall give the same result as ordering ascending by field in database;
+	 *         the map might contain <code>null</code> values
+	 */
+	Map<DocumentId, Object> retrieveFieldOrderingKeysByRowId(ViewEvaluationCtx viewEvalCtx, ViewRowIdsOrderedSelection selection, String fieldName);
+
 	ViewRowIdsOrderedSelection createOrderedSelectionFromSelection(final ViewEvaluationCtx viewEvalCtx, ViewRowIdsOrderedSelection fromSelection, List<DocumentQueryOrderBy> orderBys);
 
 	void deleteSelection(ViewId viewId);
 
 	void scheduleDeleteSelections(Set<String> viewIds);
 
+	/**
+	 * Called when some records of this view were changed, so the shared selections (if any) shall not be handed out to new views anymore.
+	 */
+	void invalidateSharedSelections();
+
 	ViewRowIdsOrderedSelection createOrderedSelection(ViewEvaluationCtx viewEvalCtx, ViewId viewId, List<DocumentFilter> filters, boolean applySecurityRestrictions, SqlDocumentFilterConverterContext context);
 }
@@ -0,0 +1,163 @@
+package de.metas.ui.web.view;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import org.adempiere.exceptions.AdempiereException;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.model.DocumentQueryOrderBy;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Orders the row IDs of a small view in memory, so we don't have to materialize a new ordered selection in database each time the user orders by another column.
+ * <p>
+ * The keys needed for ordering are retrieved once per field and then kept for the lifetime of this object,
+ * so this object shall be discarded when the view's rows were changed.
+ * Those keys are computed by database from field's ORDER BY expression, so the resulting order is the same as when ordering in database
+ * (i.e. lookups are ordered by display value, using database's collation).
+ *
+ * @author metas-dev <dev@metasfresh.com>
+ *
+ */
+final class InMemoryOrderedViewRowIds
+{
+	private static final int MAX_ORDERINGS_TO_KEEP = 5;
+
+	private final IViewDataRepository viewDataRepository;
+	private final ViewEvaluationCtx viewEvalCtx;
+	private final ViewRowIdsOrderedSelection defaultSelection;
+
+	/** Row IDs in default selection's order */
+	private final Supplier<ImmutableList<DocumentId>> defaultOrderedRowIdsSupplier;
+	private final ConcurrentHashMap<String, Map<DocumentId, Object>> orderingKeysByFieldName = new ConcurrentHashMap<>();
+	private final Cache<ImmutableList<DocumentQueryOrderBy>, ImmutableList<DocumentId>> orderedRowIdsByOrderBys = CacheBuilder.newBuilder()
+			.maximumSize(MAX_ORDERINGS_TO_KEEP)
+			.build();
+
+	public InMemoryOrderedViewRowIds(
+			@NonNull final IViewDataRepository viewDataRepository,
+			@NonNull final ViewEvaluationCtx viewEvalCtx,
+			@NonNull final ViewRowIdsOrderedSelection defaultSelection)
+	{
+		this.viewDataRepository = viewDataRepository;
+		this.viewEvalCtx = viewEvalCtx;
+		this.defaultSelection = defaultSelection;
+		this.defaultOrderedRowIdsSupplier = Suppliers.memoize(this::retrieveDefaultOrderedRowIds);
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.add("defaultSelection", defaultSelection)
+				.add("fieldNames", orderingKeysByFieldName.keySet())
+				.toString();
+	}
+
+	public ViewRowIdsOrderedSelection getDefaultSelection()
+	{
+		return defaultSelection;
+	}
+
+	/**
+	 * @return the row IDs of given page
+	 */
+	public List<DocumentId> getRowIds(final List<DocumentQueryOrderBy> orderBys, final int firstRow, final int pageLength)
+	{
+		final List<DocumentId> rowIds = getOrderedRowIds(orderBys);
+		if (firstRow >= rowIds.size())
+		{
+			return ImmutableList.of();
+		}
+
+		final int lastRowExclusive = (int)Math.min((long)firstRow + pageLength, rowIds.size());
+		return rowIds.subList(firstRow, lastRowExclusive);
+	}
+
+	private ImmutableList<DocumentId> getOrderedRowIds(final List<DocumentQueryOrderBy> orderBys)
+	{
+		try
+		{
+			return orderedRowIdsByOrderBys.get(ImmutableList.copyOf(orderBys), () -> sortRowIds(orderBys));
+		}
+		catch (final ExecutionException ex)
+		{
+			throw AdempiereException.wrapIfNeeded(ex.getCause());
+		}
+	}
+
+	private ImmutableList<DocumentId> sortRowIds(final List<DocumentQueryOrderBy> orderBys)
+	{
+		final List<DocumentQueryOrderBy> orderBysEffective = viewDataRepository.getEffectiveOrderBys(orderBys);
+
+		Comparator<DocumentId> comparator = null;
+		for (final DocumentQueryOrderBy orderBy : orderBysEffective)
+		{
+			final Comparator<DocumentId> orderByComparator = orderBy.asComparator(this::getFieldOrderingKey);
+			comparator = comparator != null ? comparator.thenComparing(orderByComparator) : orderByComparator;
+		}
+
+		final ImmutableList<DocumentId> defaultOrderedRowIds = defaultOrderedRowIdsSupplier.get();
+		if (comparator == null)
+		{
+			return defaultOrderedRowIds;
+		}
+
+		// NOTE: sorting is stable, so rows with equal values are kept in default order
+		final List<DocumentId> rowIds = new ArrayList<>(defaultOrderedRowIds);
+		rowIds.sort(comparator);
+		return ImmutableList.copyOf(rowIds);
+	}
+
+	private Object getFieldOrderingKey(final DocumentId rowId, final String fieldName)
+	{
+		return orderingKeysByFieldName
+				.computeIfAbsent(fieldName, k -> viewDataRepository.retrieveFieldOrderingKeysByRowId(viewEvalCtx, defaultSelection, fieldName))
+				.get(rowId);
+	}
+
+	private ImmutableList<DocumentId> retrieveDefaultOrderedRowIds()
+	{
+		final int size = (int)defaultSelection.getSize();
+		if (size <= 0)
+		{
+			return ImmutableList.of();
+		}
+
+		return ImmutableList.copyOf(viewDataRepository.retrieveRowIdsByPage(viewEvalCtx, defaultSelection, 0, size));
+	}
+}
@@ -0,0 +1,343 @@
+package de.metas.ui.web.view;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.ad.trx.api.OnTrxMissingPolicy;
+import org.adempiere.util.Services;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import de.metas.logging.LogManager;
+import de.metas.ui.web.document.filter.DocumentFilter;
+import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverterContext;
+import de.metas.ui.web.view.descriptor.SqlViewBinding;
+import de.metas.ui.web.window.datatypes.WindowId;
+import de.metas.ui.web.window.model.DocumentQueryOrderBy;
+import lombok.Builder;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Allows identical views (same view binding, filters, security context and ordering) which are created within a short time frame
+ * to share the same materialized default selection (i.e. <code>T_WEBUI_ViewSelection</code> rows) instead of creating one for each view.
+ * <p>
+ * Shared selections are reference counted and they are deleted only after the last view which uses them was closed.
+ * A shared selection is not handed out to new views anymore after it got too old or after some records of its table were changed.
+ *
+ * @author metas-dev <dev@metasfresh.com>
+ *
+ */
+@Component
+public class SharedViewRowIdsOrderedSelections
+{
+	private static final Logger logger = LogManager.getLogger(SharedViewRowIdsOrderedSelections.class);
+
+	private final long maxShareAgeMillis;
+
+	private final ConcurrentHashMap<SharedSelectionKey, SharedSelection> shareableSelectionsByKey = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, SharedSelection> sharedSelectionsById = new ConcurrentHashMap<>();
+
+	//
+	// Statistics
+	private final AtomicLong countCreated = new AtomicLong(0);
+	private final AtomicLong countAcquired = new AtomicLong(0);
+	private final AtomicLong countDeleted = new AtomicLong(0);
+
+	public SharedViewRowIdsOrderedSelections(@Value("${metasfresh.webui.view.sharedSelections.maxAgeSeconds:10}") final int maxShareAgeSeconds)
+	{
+		this.maxShareAgeMillis = maxShareAgeSeconds * 1000L;
+		logger.info("Sharing view selections for {} seconds", maxShareAgeSeconds > 0 ? maxShareAgeSeconds : "(disabled)");
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.add("maxShareAgeMillis", maxShareAgeMillis)
+				.add("shareableSelectionsCount", shareableSelectionsByKey.size())
+				.add("sharedSelectionsCount", sharedSelectionsById.size())
+				.toString();
+	}
+
+	/**
+	 * @return true if a selection can be shared in current context.
+	 *         Selections which are created in a transaction are not shared because the transaction might be rolled back.
+	 */
+	public boolean isSharingAllowed()
+	{
+		if (maxShareAgeMillis <= 0)
+		{
+			return false;
+		}
+
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		final ITrx currentTrx = trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone);
+		return trxManager.isNull(currentTrx);
+	}
+
+	/**
+	 * Gets a recently created selection for given key or creates a new one.
+	 * The caller is responsible for releasing the selection (see {@link #releaseSelections(Set)}) when it's no longer needed.
+	 *
+	 * @param selectionFactory creates the selection for given selection ID
+	 */
+	public ViewRowIdsOrderedSelection getOrCreate(
+			@NonNull final SharedSelectionKey key,
+			@NonNull final Function<ViewId, ViewRowIdsOrderedSelection> selectionFactory)
+	{
+		while (true)
+		{
+			final long now = System.currentTimeMillis();
+			final SharedSelection sharedSelection = shareableSelectionsByKey.compute(key, (k, existingSharedSelection) -> {
+				if (existingSharedSelection != null && existingSharedSelection.isShareable(now, maxShareAgeMillis))
+				{
+					return existingSharedSelection;
+				}
+				return new SharedSelection(key, ViewId.random(key.getWindowId()), selectionFactory.andThen(this::onSelectionCreated), now);
+			});
+
+			if (!sharedSelection.acquire())
+			{
+				continue; // was released meanwhile => retry
+			}
+			sharedSelectionsById.put(sharedSelection.getSelectionId(), sharedSelection);
+
+			final ViewRowIdsOrderedSelection selection;
+			try
+			{
+				selection = sharedSelection.getSelection();
+			}
+			catch (final RuntimeException ex)
+			{
+				shareableSelectionsByKey.remove(key, sharedSelection);
+				releaseSelection(sharedSelection);
+				throw ex;
+			}
+
+			countAcquired.incrementAndGet();
+			return selection;
+		}
+	}
+
+	private ViewRowIdsOrderedSelection onSelectionCreated(final ViewRowIdsOrderedSelection selection)
+	{
+		countCreated.incrementAndGet();
+		logger.trace("Created shared selection: {}", selection);
+		return selection;
+	}
+
+	/**
+	 * Releases the shared selections from given set.
+	 *
+	 * @return selection IDs which can be deleted, i.e. selections which are not shared or which are no longer used by any view
+	 */
+	public Set<String> releaseSelections(@NonNull final Set<String> selectionIds)
+	{
+		final Set<String> selectionIdsToDelete = new LinkedHashSet<>();
+		for (final String selectionId : selectionIds)
+		{
+			final SharedSelection sharedSelection = sharedSelectionsById.get(selectionId);
+			if (sharedSelection == null)
+			{
+				selectionIdsToDelete.add(selectionId);
+			}
+			else if (releaseSelection(sharedSelection))
+			{
+				selectionIdsToDelete.add(selectionId);
+			}
+		}
+		return selectionIdsToDelete;
+	}
+
+	/** @return true if the selection is no longer used */
+	private boolean releaseSelection(final SharedSelection sharedSelection)
+	{
+		if (!sharedSelection.release())
+		{
+			return false;
+		}
+
+		shareableSelectionsByKey.remove(sharedSelection.getKey(), sharedSelection);
+		sharedSelectionsById.remove(sharedSelection.getSelectionId(), sharedSelection);
+		countDeleted.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Stops handing out the selections of given table, because some of its records were changed.
+	 * The views which already use those selections are not affected.
+	 */
+	public void stopSharingByTableName(@NonNull final String tableName)
+	{
+		shareableSelectionsByKey.keySet().removeIf(key -> tableName.equals(key.getTableName()));
+	}
+
+	public Map<String, Object> getStats()
+	{
+		return ImmutableMap.<String, Object> builder()
+				.put("maxShareAgeMillis", maxShareAgeMillis)
+				.put("shareableSelectionsCount", shareableSelectionsByKey.size())
+				.put("sharedSelectionsCount", sharedSelectionsById.size())
+				.put("countCreated", countCreated.get())
+				.put("countAcquired", countAcquired.get())
+				.put("countDeleted", countDeleted.get())
+				.build();
+	}
+
+	@lombok.Value
+	@Builder
+	public static class SharedSelectionKey
+	{
+		/** view binding; compared by identity, so a selection is never shared between different bindings */
+		@NonNull
+		private final SqlViewBinding viewBinding;
+		@NonNull
+		private final WindowId windowId;
+		@NonNull
+		private final ImmutableList<DocumentFilter> filters;
+		@NonNull
+		private final ImmutableList<DocumentQueryOrderBy> orderBys;
+		private final boolean applySecurityRestrictions;
+		@NonNull
+		private final String permissionsKey;
+		@NonNull
+		private final String adLanguage;
+		@NonNull
+		private final SqlDocumentFilterConverterContext filterConverterContext;
+
+		public String getTableName()
+		{
+			return viewBinding.getTableName();
+		}
+
+		public static class SharedSelectionKeyBuilder
+		{
+			public SharedSelectionKeyBuilder filters(final List<DocumentFilter> filters)
+			{
+				this.filters = ImmutableList.copyOf(filters);
+				return this;
+			}
+
+			public SharedSelectionKeyBuilder orderBys(final List<DocumentQueryOrderBy> orderBys)
+			{
+				this.orderBys = orderBys != null ? ImmutableList.copyOf(orderBys) : ImmutableList.of();
+				return this;
+			}
+		}
+	}
+
+	private static final class SharedSelection
+	{
+		private final SharedSelectionKey key;
+		private final ViewId selectionViewId;
+		private final long createdMillis;
+		private final Supplier<ViewRowIdsOrderedSelection> selectionSupplier;
+
+		/** Number of views using this selection; -1 means the selection was released and it shall not be used anymore */
+		private int refCount = 0;
+
+		private SharedSelection(
+				final SharedSelectionKey key,
+				final ViewId selectionViewId,
+				final Function<ViewId, ViewRowIdsOrderedSelection> selectionFactory,
+				final long createdMillis)
+		{
+			this.key = key;
+			this.selectionViewId = selectionViewId;
+			this.createdMillis = createdMillis;
+			this.selectionSupplier = Suppliers.memoize(() -> selectionFactory.apply(selectionViewId));
+		}
+
+		@Override
+		public String toString()
+		{
+			return MoreObjects.toStringHelper(this)
+					.add("selectionId", getSelectionId())
+					.add("refCount", refCount)
+					.toString();
+		}
+
+		public SharedSelectionKey getKey()
+		{
+			return key;
+		}
+
+		public String getSelectionId()
+		{
+			return selectionViewId.getViewId();
+		}
+
+		public boolean isShareable(final long now, final long maxShareAgeMillis)
+		{
+			return now - createdMillis <= maxShareAgeMillis;
+		}
+
+		/** NOTE: the selection is created by first caller; the others are waiting for it */
+		public ViewRowIdsOrderedSelection getSelection()
+		{
+			return selectionSupplier.get();
+		}
+
+		public synchronized boolean acquire()
+		{
+			if (refCount < 0)
+			{
+				return false;
+			}
+			refCount++;
+			return true;
+		}
+
+		/** @return true if this selection is no longer used */
+		public synchronized boolean release()
+		{
+			if (refCount <= 0)
+			{
+				return false;
+			}
+			refCount--;
+			if (refCount == 0)
+			{
+				refCount = -1;
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -4,11 +4,15 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
 
 import org.adempiere.ad.dao.IQueryBL;
 import org.adempiere.ad.dao.impl.TypedSqlQueryFilter;
@@ -25,6 +29,7 @@ import org.slf4j.Logger;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 
 import de.metas.logging.LogManager;
 import de.metas.ui.web.document.filter.DocumentFilter;
@@ -34,6 +39,7 @@ import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverterContext;
 import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverters;
 import de.metas.ui.web.document.filter.sql.SqlParamsCollector;
 import de.metas.ui.web.exceptions.EntityNotFoundException;
+import de.metas.ui.web.view.SharedViewRowIdsOrderedSelections.SharedSelectionKey;
 import de.metas.ui.web.view.ViewRow.DefaultRowType;
 import de.metas.ui.web.view.descriptor.SqlAndParams;
 import de.metas.ui.web.view.descriptor.SqlViewBinding;
@@ -41,6 +47,7 @@ import de.metas.ui.web.view.descriptor.SqlViewKeyColumnNamesMap;
 import de.metas.ui.web.view.descriptor.SqlViewRowFieldBinding;
 import de.metas.ui.web.view.descriptor.SqlViewRowFieldBinding.SqlViewRowFieldLoader;
 import de.metas.ui.web.view.descriptor.SqlViewSelectData;
+import de.metas.ui.web.view.descriptor.SqlViewSelectionQueryBuilder;
 import de.metas.ui.web.window.datatypes.DocumentId;
 import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
 import de.metas.ui.web.window.datatypes.WindowId;
@@ -77,6 +84,8 @@ class SqlViewDataRepository implements IViewDataRepository
 {
 	private static final Logger logger = LogManager.getLogger(SqlViewDataRepository.class);
 
+	private static final int MAX_ROW_IDS_PER_QUERY = 500;
+
 	private final String tableName;
 	private final String tableAlias;
 	private final SqlViewKeyColumnNamesMap keyColumnNamesMap;
@@ -92,8 +101,14 @@ class SqlViewDataRepository implements IViewDataRepository
 
 	private final SqlDocumentFilterConverter filterConverters;
 
-	SqlViewDataRepository(@NonNull final SqlViewBinding sqlBindings)
+	private final SqlViewBinding sqlBindings;
+	private final SharedViewRowIdsOrderedSelections sharedSelections;
+
+	SqlViewDataRepository(@NonNull final SqlViewBinding sqlBindings, @Nullable final SharedViewRowIdsOrderedSelections sharedSelections)
 	{
+		this.sqlBindings = sqlBindings;
+		this.sharedSelections = sharedSelections;
+
 		tableName = sqlBindings.getTableName();
 		tableAlias = sqlBindings.getTableAlias();
 		keyColumnNamesMap = sqlBindings.getSqlViewKeyColumnNamesMap();
@@ -180,6 +195,30 @@ class SqlViewDataRepository implements IViewDataRepository
 			final boolean applySecurityRestrictions,
 			final SqlDocumentFilterConverterContext context)
 	{
+		//
+		// Try sharing the selection with identical views which were just created.
+		// NOTE: views with included rows are not shared because some of their helpers are querying the selection lines by viewId.
+		if (sharedSelections != null && !hasIncludedRows && sharedSelections.isSharingAllowed())
+		{
+			final SharedSelectionKey sharedSelectionKey = SharedSelectionKey.builder()
+					.viewBinding(sqlBindings)
+					.windowId(viewId.getWindowId())
+					.filters(filters)
+					.orderBys(defaultOrderBys)
+					.applySecurityRestrictions(applySecurityRestrictions)
+					.permissionsKey(viewEvalCtx.getPermissionsKey().toPermissionsKeyString())
+					.adLanguage(viewEvalCtx.getAD_Language())
+					.filterConverterContext(context)
+					.build();
+
+			return sharedSelections.getOrCreate(sharedSelectionKey, selectionViewId -> viewRowIdsOrderedSelectionFactory.createOrderedSelection(viewEvalCtx,
+					selectionViewId,
+					filters,
+					defaultOrderBys,
+					applySecurityRestrictions,
+					context));
+		}
+
 		return viewRowIdsOrderedSelectionFactory.createOrderedSelection(viewEvalCtx,
 				viewId,
 				filters,
@@ -188,6 +227,62 @@ class SqlViewDataRepository implements IViewDataRepository
 				context);
 	}
 
+	@Override
+	public boolean isInMemoryOrderingSupported()
+	{
+		return keyColumnNamesMap.isSingleKey() && !hasIncludedRows;
+	}
+
+	@Override
+	public List<DocumentQueryOrderBy> getEffectiveOrderBys(final List<DocumentQueryOrderBy> orderBys)
+	{
+		return orderBys.stream()
+				.flatMap(sqlBindings::flatMapEffectiveFieldNames)
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	@Override
+	public Map<DocumentId, Object> retrieveFieldOrderingKeysByRowId(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection selection, final String fieldName)
+	{
+		selection.awaitMaterialized();
+
+		final SqlAndParams sqlAndParams = SqlViewSelectionQueryBuilder.newInstance(sqlBindings)
+				.buildSqlRetrieveFieldOrderingRanksFromSelection(viewEvalCtx, selection.getSelectionId(), fieldName);
+		final int rankColumnIndex = keyColumnNamesMap.getKeyPartsCount() + 1;
+
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sqlAndParams.getSql(), ITrx.TRXNAME_ThreadInherited);
+			DB.setParameters(pstmt, sqlAndParams.getSqlParams());
+			rs = pstmt.executeQuery();
+
+			final Map<DocumentId, Object> ranksByRowId = new HashMap<>();
+			while (rs.next())
+			{
+				final DocumentId rowId = keyColumnNamesMap.retrieveRowId(rs, null/* sqlColumnPrefix */, false/* useKeyColumnNames */);
+				if (rowId == null)
+				{
+					continue;
+				}
+
+				final long rank = rs.getLong(rankColumnIndex);
+				ranksByRowId.put(rowId, rs.wasNull() ? null : rank);
+			}
+			return ranksByRowId;
+		}
+		catch (final SQLException | DBException e)
+		{
+			throw DBException.wrapIfNeeded(e)
+					.setSqlIfAbsent(sqlAndParams.getSql(), sqlAndParams.getSqlParams());
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
+	}
+
 	@Override
 	public ViewRowIdsOrderedSelection createOrderedSelectionFromSelection(final ViewEvaluationCtx viewEvalCtx,
 			final ViewRowIdsOrderedSelection fromSelection,
@@ -205,7 +300,23 @@ class SqlViewDataRepository implements IViewDataRepository
 	@Override
 	public void scheduleDeleteSelections(final Set<String> viewIds)
 	{
-		viewRowIdsOrderedSelectionFactory.scheduleDeleteSelections(viewIds);
+		// Shared selections are deleted only when they are no longer used by any view
+		final Set<String> viewIdsToDelete = sharedSelections != null ? sharedSelections.releaseSelections(viewIds) : viewIds;
+		if (viewIdsToDelete.isEmpty())
+		{
+			return;
+		}
+
+		viewRowIdsOrderedSelectionFactory.scheduleDeleteSelections(viewIdsToDelete);
+	}
+
+	@Override
+	public void invalidateSharedSelections()
+	{
+		if (sharedSelections != null)
+		{
+			sharedSelections.stopSharingByTableName(tableName);
+		}
 	}
 
 	@Override
@@ -254,6 +365,76 @@ class SqlViewDataRepository implements IViewDataRepository
 		}
 	}
 
+	@Override
+	public List<IViewRow> retrieveByIds(final ViewEvaluationCtx viewEvalCtx, final ViewId viewId, final DocumentIdsSelection rowIds)
+	{
+		if (rowIds.isEmpty())
+		{
+			return ImmutableList.of();
+		}
+		else if (rowIds.isAll())
+		{
+			throw new IllegalArgumentException("Retrieving all rows is not supported");
+		}
+
+		//
+		// Composed keys: fallback to fetching one by one
+		if (!keyColumnNamesMap.isSingleKey())
+		{
+			final ImmutableList.Builder<IViewRow> rows = ImmutableList.builder();
+			for (final DocumentId rowId : rowIds.toSet())
+			{
+				try
+				{
+					rows.add(retrieveById(viewEvalCtx, viewId, rowId));
+				}
+				catch (final EntityNotFoundException ex)
+				{
+					// skip it
+				}
+			}
+			return rows.build();
+		}
+
+		final ImmutableList.Builder<IViewRow> rows = ImmutableList.builder();
+		for (final List<DocumentId> rowIdsChunk : Iterables.partition(rowIds.toSet(), MAX_ROW_IDS_PER_QUERY))
+		{
+			rows.addAll(retrieveByIdsChunk(viewEvalCtx, viewId, DocumentIdsSelection.of(rowIdsChunk)));
+		}
+		return rows.build();
+	}
+
+	private List<IViewRow> retrieveByIdsChunk(final ViewEvaluationCtx viewEvalCtx, final ViewId viewId, final DocumentIdsSelection rowIds)
+	{
+		logger.debug("Getting rows by IDs: rowIds={} - {}", rowIds, this);
+
+		final SqlAndParams sqlAndParams = sqlViewSelect.selectByIds()
+				.viewEvalCtx(viewEvalCtx)
+				.viewId(viewId)
+				.rowIds(rowIds)
+				.build();
+
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sqlAndParams.getSql(), ITrx.TRXNAME_ThreadInherited);
+			DB.setParameters(pstmt, sqlAndParams.getSqlParams());
+
+			rs = pstmt.executeQuery();
+			return loadViewRows(rs, viewEvalCtx, viewId, -1/* limit */);
+		}
+		catch (final SQLException | DBException e)
+		{
+			throw DBException.wrapIfNeeded(e)
+					.setSqlIfAbsent(sqlAndParams.getSql(), sqlAndParams.getSqlParams());
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
+	}
+
 	private final ImmutableList<IViewRow> loadViewRows(final ResultSet rs,
 			final ViewEvaluationCtx viewEvalCtx,
 			final ViewId viewId,
@@ -461,6 +642,9 @@ class SqlViewDataRepository implements IViewDataRepository
 		logger.debug("Getting page: firstRow={}, pageLength={} - {}", firstRow, pageLength, this);
 		logger.debug("Using: {}", orderedSelection);
 
+		// make sure the requested rows were already materialized
+		orderedSelection.awaitMaterialized(firstRow + pageLength);
+
 		final ViewId viewId = orderedSelection.getViewId();
 		final SqlAndParams sqlAndParams = sqlViewSelect.selectByPage()
 				.viewEvalCtx(viewEvalCtx)
@@ -501,6 +685,9 @@ class SqlViewDataRepository implements IViewDataRepository
 		logger.debug("Getting page: firstRow={}, pageLength={} - {}", firstRow, pageLength, this);
 		logger.debug("Using: {}", orderedSelection);
 
+		// make sure the requested rows were already materialized
+		orderedSelection.awaitMaterialized(firstRow + pageLength);
+
 		final ViewId viewId = orderedSelection.getViewId();
 		final SqlAndParams sqlAndParams = sqlViewSelect.selectRowIdsByPage()
 				.viewEvalCtx(viewEvalCtx)
@@ -544,6 +731,92 @@ class SqlViewDataRepository implements IViewDataRepository
 		}
 	}
 
+	@Override
+	public void forEachRowId(
+			final ViewEvaluationCtx viewEvalCtx,
+			final ViewRowIdsOrderedSelection orderedSelection,
+			final int fetchSize,
+			@NonNull final Consumer<DocumentId> rowIdConsumer)
+	{
+		logger.debug("Iterating all row IDs: fetchSize={} - {}", fetchSize, this);
+		logger.debug("Using: {}", orderedSelection);
+
+		orderedSelection.awaitMaterialized();
+
+		// NOTE: we read the row IDs chunk by chunk (keyset pagination over selection's SeqNo), each chunk using a short read,
+		// and we pass them to consumer only after the read finished, so no cursor/transaction is kept open while the consumer is working (e.g. writing the response).
+		final ViewId viewId = orderedSelection.getViewId();
+		final int chunkSize = fetchSize > 0 ? fetchSize : 500;
+		int lastSeqNo = 0;
+		while (true)
+		{
+			final SqlAndParams sqlAndParams = sqlViewSelect.selectRowIdsAfterSeqNo()
+					.viewEvalCtx(viewEvalCtx)
+					.viewId(viewId)
+					.afterSeqNo(lastSeqNo)
+					.limit(chunkSize)
+					.build();
+			final RowIdsChunk chunk = retrieveRowIdsChunk(sqlAndParams);
+
+			chunk.getRowIds().forEach(rowIdConsumer);
+
+			if (chunk.getRowsCount() < chunkSize)
+			{
+				break;
+			}
+			lastSeqNo = chunk.getLastSeqNo();
+		}
+	}
+
+	private RowIdsChunk retrieveRowIdsChunk(final SqlAndParams sqlAndParams)
+	{
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sqlAndParams.getSql(), ITrx.TRXNAME_ThreadInherited);
+			DB.setParameters(pstmt, sqlAndParams.getSqlParams());
+			rs = pstmt.executeQuery();
+
+			final String adLanguage = null; // N/A, not important
+			final List<DocumentId> rowIds = new ArrayList<>();
+			int rowsCount = 0;
+			int lastSeqNo = 0;
+			while (rs.next())
+			{
+				rowsCount++;
+				lastSeqNo = rs.getInt(SqlViewSelectData.COLUMNNAME_Paging_SeqNo_OneBased);
+
+				final DocumentId rowId = retrieveRowId(rs, adLanguage);
+				if (rowId == null)
+				{
+					continue;
+				}
+				rowIds.add(rowId);
+			}
+
+			return new RowIdsChunk(rowIds, rowsCount, lastSeqNo);
+		}
+		catch (final SQLException | DBException e)
+		{
+			throw DBException.wrapIfNeeded(e)
+					.setSqlIfAbsent(sqlAndParams.getSql(), sqlAndParams.getSqlParams());
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
+	}
+
+	@lombok.Value
+	private static final class RowIdsChunk
+	{
+		private final List<DocumentId> rowIds;
+		/** how many selection rows were read, including the ones without a row ID */
+		private final int rowsCount;
+		private final int lastSeqNo;
+	}
+
 	private List<IViewRow> retrieveRowLines(final ViewEvaluationCtx viewEvalCtx, final ViewId viewId, final DocumentIdsSelection rowIds)
 	{
 		logger.debug("Getting row lines: rowId={} - {}", rowIds, this);
@@ -90,6 +90,7 @@ public class SqlViewFactory implements IViewFactory
 
 	private final DocumentDescriptorFactory documentDescriptorFactory;
 	private final DocumentReferencesService documentReferencesService;
+	private final SharedViewRowIdsOrderedSelections sharedSelections;
 
 	private final ImmutableMap<WindowId, SqlDocumentFilterConverterDecorator> windowId2SqlDocumentFilterConverterDecorator;
 	private final ImmutableMap<WindowId, IViewInvalidationAdvisor> viewInvalidationAdvisorsByWindowId;
@@ -118,10 +119,12 @@ public class SqlViewFactory implements IViewFactory
 			@NonNull final List<SqlViewCustomizer> viewCustomizers,
 			@NonNull final List<DefaultViewProfileIdProvider> defaultViewProfileIdProviders,
 			@NonNull final List<SqlDocumentFilterConverterDecorator> converterDecorators,
-			@NonNull final List<IViewInvalidationAdvisor> viewInvalidationAdvisors)
+			@NonNull final List<IViewInvalidationAdvisor> viewInvalidationAdvisors,
+			@NonNull final SharedViewRowIdsOrderedSelections sharedSelections)
 	{
 		this.documentDescriptorFactory = documentDescriptorFactory;
 		this.documentReferencesService = documentReferencesService;
+		this.sharedSelections = sharedSelections;
 
 		this.windowId2SqlDocumentFilterConverterDecorator = makeDecoratorsMapAndHandleDuplicates(converterDecorators);
 		logger.info("Filter converter decorators: {}", windowId2SqlDocumentFilterConverterDecorator);
@@ -281,7 +284,7 @@ public class SqlViewFactory implements IViewFactory
 		final SqlViewBindingKey sqlViewBindingKey = new SqlViewBindingKey(windowId, viewType.getRequiredFieldCharacteristic(), profileId);
 
 		final SqlViewBinding sqlViewBinding = getViewBinding(sqlViewBindingKey);
-		final IViewDataRepository viewDataRepository = new SqlViewDataRepository(sqlViewBinding);
+		final IViewDataRepository viewDataRepository = new SqlViewDataRepository(sqlViewBinding, sharedSelections);
 
 		final DefaultView.Builder viewBuilder = DefaultView.builder(viewDataRepository)
 				.setViewId(request.getViewId())
@@ -3,16 +3,27 @@ package de.metas.ui.web.view;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.adempiere.ad.security.IUserRolePermissions;
 import org.adempiere.ad.security.IUserRolePermissionsDAO;
 import org.adempiere.ad.security.UserRolePermissionsKey;
 import org.adempiere.ad.security.permissions.WindowMaxQueryRecordsConstraint;
 import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.ad.trx.api.ITrxManager;
+import org.adempiere.ad.trx.api.OnTrxMissingPolicy;
 import org.adempiere.exceptions.DBException;
+import org.adempiere.service.ISysConfigBL;
 import org.adempiere.util.Services;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
 import org.compiere.util.DB;
 import org.slf4j.Logger;
 
@@ -20,6 +31,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableSet;
 
 import de.metas.logging.LogManager;
+import de.metas.ui.web.base.model.I_T_WEBUI_ViewSelection;
 import de.metas.ui.web.document.filter.DocumentFilter;
 import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverterContext;
 import de.metas.ui.web.view.descriptor.SqlAndParams;
@@ -64,6 +76,19 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 
 	private static final Logger logger = LogManager.getLogger(SqlViewRowIdsOrderedSelectionFactory.class);
 
+	/**
+	 * If greater than zero, the view selections are created progressively: only the first rows are inserted synchronously and the remaining ones in background.
+	 * Not applied for views with grouping or when running in a transaction.
+	 */
+	private static final String SYSCONFIG_ProgressiveFirstChunkSize = "de.metas.ui.web.view.SqlViewRowIdsOrderedSelectionFactory.Progressive.FirstChunkSize";
+	private static final int DEFAULT_ProgressiveFirstChunkSize = 0; // disabled
+
+	/** Executor used to materialize the remaining rows of progressively created selections. If the queue is full, the rows are materialized synchronously. */
+	private static final ThreadPoolExecutor materializationExecutor = createMaterializationExecutor();
+
+	/** Progressively created selections which are still materialized in background, indexed by selectionId */
+	private static final ConcurrentHashMap<String, ViewRowIdsOrderedSelectionMaterialization> pendingMaterializations = new ConcurrentHashMap<>();
+
 	private final SqlViewBinding viewBinding;
 
 	private SqlViewRowIdsOrderedSelectionFactory(@NonNull final SqlViewBinding viewBinding)
@@ -71,6 +96,21 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 		this.viewBinding = viewBinding;
 	}
 
+	private static ThreadPoolExecutor createMaterializationExecutor()
+	{
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				2, // corePoolSize
+				2, // maximumPoolSize
+				1, TimeUnit.MINUTES, // keepAliveTime
+				new ArrayBlockingQueue<>(100), // workQueue
+				CustomizableThreadFactory.builder()
+						.setDaemon(true)
+						.setThreadNamePrefix("webui-views-materialization")
+						.build());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
 	private SqlViewSelectionQueryBuilder newSqlViewSelectionQueryBuilder()
 	{
 		return SqlViewSelectionQueryBuilder.newInstance(viewBinding);
@@ -97,6 +137,12 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 				.or(WindowMaxQueryRecordsConstraint.DEFAULT)
 				.getMaxQueryRecordsPerRole();
 
+		final int firstChunkSize = getProgressiveFirstChunkSize(queryLimit);
+		if (firstChunkSize > 0)
+		{
+			return createOrderedSelectionProgressively(viewEvalCtx, viewId, filters, orderBys, applySecurityRestrictions, context, queryLimit, firstChunkSize);
+		}
+
 		//
 		//
 		final SqlCreateSelection sqlCreates = newSqlViewSelectionQueryBuilder()
@@ -132,9 +178,139 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 				.build();
 	}
 
+	/**
+	 * @return how many rows shall be inserted synchronously when creating the selection progressively or zero if the selection shall be fully created right away
+	 */
+	private int getProgressiveFirstChunkSize(final int queryLimit)
+	{
+		if (newSqlViewSelectionQueryBuilder().hasGroupingFields())
+		{
+			return 0;
+		}
+
+		// In a transaction the background thread would not see the uncommitted data and the selection would not be rolled back together with the transaction
+		final ITrxManager trxManager = Services.get(ITrxManager.class);
+		if (!trxManager.isNull(trxManager.getThreadInheritedTrx(OnTrxMissingPolicy.ReturnTrxNone)))
+		{
+			return 0;
+		}
+
+		final int firstChunkSize = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_ProgressiveFirstChunkSize, DEFAULT_ProgressiveFirstChunkSize);
+		if (firstChunkSize <= 0)
+		{
+			return 0;
+		}
+		if (queryLimit > 0 && firstChunkSize >= queryLimit)
+		{
+			return 0;
+		}
+
+		return firstChunkSize;
+	}
+
+	/**
+	 * Inserts the first <code>firstChunkSize</code> rows and materializes the remaining ones in background.
+	 * Until then, the selection's size is estimated (see {@link ViewRowIdsOrderedSelection#isSizeEstimated()}).
+	 */
+	private ViewRowIdsOrderedSelection createOrderedSelectionProgressively(
+			final ViewEvaluationCtx viewEvalCtx,
+			final ViewId viewId,
+			final List<DocumentFilter> filters,
+			final List<DocumentQueryOrderBy> orderBys,
+			final boolean applySecurityRestrictions,
+			final SqlDocumentFilterConverterContext context,
+			final int queryLimit,
+			final int firstChunkSize)
+	{
+		final SqlViewSelectionQueryBuilder viewQueryBuilder = newSqlViewSelectionQueryBuilder()
+				.applySecurityRestrictions(applySecurityRestrictions);
+
+		//
+		// Insert the first chunk
+		final long firstChunkRowsCount;
+		{
+			final SqlAndParams sqlCreateFirstChunk = viewQueryBuilder.buildSqlCreateSelectionRange(viewEvalCtx, viewId, filters, orderBys, 0, firstChunkSize, context);
+			final Stopwatch stopwatch = Stopwatch.createStarted();
+			firstChunkRowsCount = DB.executeUpdateEx(sqlCreateFirstChunk.getSql(), sqlCreateFirstChunk.getSqlParamsArray(), ITrx.TRXNAME_ThreadInherited);
+			logger.trace("Created selection's first chunk {}, rowsCount={}, duration={}", viewId, firstChunkRowsCount, stopwatch);
+		}
+
+		final ViewRowIdsOrderedSelection.Builder selectionBuilder = ViewRowIdsOrderedSelection.builder()
+				.setViewId(viewId)
+				.setSize(firstChunkRowsCount)
+				.setOrderBys(orderBys)
+				.setQueryLimit(queryLimit);
+		if (firstChunkRowsCount < firstChunkSize)
+		{
+			// all rows were inserted
+			return selectionBuilder.build();
+		}
+
+		//
+		// Materialize all rows in background.
+		// NOTE: we are not inserting just the remaining rows (i.e. OFFSET firstChunkSize) because that query would run in another snapshot than the first chunk,
+		// so rows which were inserted, deleted or re-ordered in meantime would be duplicated or missing.
+		// Instead, in one transaction, we are replacing the first chunk with the full selection, so the readers will see either the first chunk or the full selection.
+		final SqlAndParams sqlCreateAll = viewQueryBuilder.buildSqlCreateSelectionRange(viewEvalCtx, viewId, filters, orderBys, 0, queryLimit > 0 ? queryLimit : Integer.MAX_VALUE, context);
+		final CompletableFuture<Long> sizeFuture = new CompletableFuture<>();
+		final String selectionId = viewId.getViewId();
+		final ViewRowIdsOrderedSelectionMaterialization materialization = ViewRowIdsOrderedSelectionMaterialization.of(firstChunkRowsCount, sizeFuture);
+		pendingMaterializations.put(selectionId, materialization);
+
+		final Runnable materializeAllRows = () -> {
+			try
+			{
+				final Stopwatch stopwatch = Stopwatch.createStarted();
+				final long rowsCount = replaceSelectionRowsInNewTrx(selectionId, sqlCreateAll);
+				logger.trace("Created selection's all rows {}, rowsCount={}, duration={}", viewId, rowsCount, stopwatch);
+
+				pendingMaterializations.remove(selectionId);
+				sizeFuture.complete(rowsCount);
+			}
+			catch (final Exception ex)
+			{
+				// the transaction was rolled back, so the selection remains with the first chunk only
+				logger.warn("Failed materializing the remaining rows of {}. The selection is truncated to the first {} rows.", viewId, firstChunkRowsCount, ex);
+
+				pendingMaterializations.remove(selectionId);
+				sizeFuture.completeExceptionally(ex);
+			}
+		};
+
+		try
+		{
+			materializationExecutor.execute(materializeAllRows);
+		}
+		catch (final RejectedExecutionException ex)
+		{
+			// materialization executor is busy => materialize synchronously
+			materializeAllRows.run();
+		}
+
+		return selectionBuilder
+				.setMaterialization(materialization)
+				.build();
+	}
+
+	/**
+	 * Deletes the selection rows and inserts them again using given SQL, in one new transaction.
+	 *
+	 * @return number of inserted rows
+	 */
+	private static long replaceSelectionRowsInNewTrx(final String selectionId, final SqlAndParams sqlCreateSelection)
+	{
+		final String sqlDelete = "DELETE FROM " + I_T_WEBUI_ViewSelection.Table_Name + " WHERE " + I_T_WEBUI_ViewSelection.COLUMNNAME_UUID + "=?";
+		return Services.get(ITrxManager.class).call(ITrx.TRXNAME_None, () -> {
+			DB.executeUpdateEx(sqlDelete, new Object[] { selectionId }, ITrx.TRXNAME_ThreadInherited);
+			return (long)DB.executeUpdateEx(sqlCreateSelection.getSql(), sqlCreateSelection.getSqlParamsArray(), ITrx.TRXNAME_ThreadInherited);
+		});
+	}
+
 	@Override
 	public ViewRowIdsOrderedSelection createOrderedSelectionFromSelection(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection fromSelection, final List<DocumentQueryOrderBy> orderBys)
 	{
+		fromSelection.awaitMaterialized();
+
 		final WindowId windowId = fromSelection.getWindowId();
 		final String fromSelectionId = fromSelection.getSelectionId();
 		final ViewId newViewId = ViewId.random(windowId);
@@ -183,6 +359,8 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 			throw new IllegalArgumentException("Cannot add ALL to selection");
 		}
 
+		selection.awaitMaterialized();
+
 		//
 		// Add
 		boolean hasChanges = false;
@@ -224,6 +402,8 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 			return selection;
 		}
 
+		selection.awaitMaterialized();
+
 		//
 		// Delete
 		{
@@ -261,6 +441,8 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 			return false;
 		}
 
+		selection.awaitMaterialized();
+
 		final SqlAndParams sqlCount = newSqlViewSelectionQueryBuilder().buildSqlCount(selection.getSelectionId(), rowIds);
 		final int count = DB.getSQLValueEx(ITrx.TRXNAME_ThreadInherited, sqlCount.getSql(), sqlCount.getSqlParamsArray());
 		return count > 0;
@@ -270,6 +452,8 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 	public void deleteSelection(@NonNull final ViewId viewId)
 	{
 		final String selectionId = viewId.getViewId();
+		awaitPendingMaterialization(selectionId);
+
 		final SqlViewSelectionQueryBuilder viewQueryBuilder = newSqlViewSelectionQueryBuilder();
 
 		// Delete selection lines
@@ -290,7 +474,32 @@ public class SqlViewRowIdsOrderedSelectionFactory implements ViewRowIdsOrderedSe
 	@Override
 	public void scheduleDeleteSelections(final Set<String> viewIds)
 	{
-		SqlViewSelectionToDeleteHelper.scheduleDeleteSelections(viewIds);
+		// Selections which are still materialized in background are scheduled after the materialization is done,
+		// else the rows which are inserted after the scheduled delete was executed would never be deleted.
+		final Set<String> viewIdsToDeleteNow = new HashSet<>();
+		for (final String viewId : viewIds)
+		{
+			final ViewRowIdsOrderedSelectionMaterialization materialization = pendingMaterializations.get(viewId);
+			if (materialization != null)
+			{
+				materialization.onDone(() -> SqlViewSelectionToDeleteHelper.scheduleDeleteSelections(ImmutableSet.of(viewId)));
+			}
+			else
+			{
+				viewIdsToDeleteNow.add(viewId);
+			}
+		}
+
+		SqlViewSelectionToDeleteHelper.scheduleDeleteSelections(viewIdsToDeleteNow);
+	}
+
+	private static void awaitPendingMaterialization(final String selectionId)
+	{
+		final ViewRowIdsOrderedSelectionMaterialization materialization = pendingMaterializations.get(selectionId);
+		if (materialization != null)
+		{
+			materialization.await();
+		}
 	}
 
 	public static Set<DocumentId> retrieveRowIdsForLineIds(
@@ -1,12 +1,22 @@
 package de.metas.ui.web.view;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.adempiere.ad.trx.api.ITrx;
 import org.compiere.util.DB;
 import org.slf4j.Logger;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+
 import de.metas.logging.LogManager;
 import de.metas.ui.web.base.model.I_T_WEBUI_ViewSelection;
 import de.metas.ui.web.base.model.I_T_WEBUI_ViewSelectionLine;
@@ -40,6 +50,19 @@ public class SqlViewSelectionToDeleteHelper
 {
 	private static final Logger logger = LogManager.getLogger(SqlViewSelectionToDeleteHelper.class);
 
+	/** How many view IDs to schedule in one INSERT statement (one SQL parameter per view ID) */
+	private static final int SCHEDULE_MAX_VIEW_IDS_PER_STATEMENT = 1000;
+	/** How many scheduled selections are deleted by one executor tag */
+	private static final int DELETE_SELECTIONS_PER_BATCH = 100;
+	/** How many rows are deleted by one DELETE statement, to keep the locks short */
+	private static final int DELETE_ROWS_PER_CHUNK = 5000;
+	/** Max duration of one {@link #deleteScheduledSelections()} run. The remaining backlog will be deleted on next run. */
+	private static final long DELETE_MAX_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private static final AtomicLong totalSelectionsDeleted = new AtomicLong();
+	private static final AtomicLong totalRowsDeleted = new AtomicLong();
+	private static final AtomicReference<Map<String, Object>> lastRunStats = new AtomicReference<>(ImmutableMap.of());
+
 	public static void scheduleDeleteSelections(final Set<String> viewIds)
 	{
 		if (viewIds.isEmpty())
@@ -47,35 +70,19 @@ public class SqlViewSelectionToDeleteHelper
 			return;
 		}
 
+		// NOTE: we are sending the view IDs as SQL parameters instead of building huge SQLs with literals
 		final String sqlInsertInto = "INSERT INTO " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name + "("
 				+ I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_View_UUID
-				+ ")";
+				+ ") VALUES ";
 
-		StringBuilder sql = new StringBuilder();
-		sql.append(sqlInsertInto);
-		int counter = 0;
-		for (String viewId : viewIds)
-		{
-			counter++;
-			if (counter > 1)
-				sql.append(" UNION ");
-			sql.append("SELECT ");
-			sql.append(DB.TO_STRING(viewId));
-
-			if (counter >= 1000)
-			{
-				DB.executeUpdateEx(sql.toString(), ITrx.TRXNAME_None);
-				sql = new StringBuilder();
-				sql.append(sqlInsertInto);
-				counter = 0;
-			}
-		}
-		if (counter > 0)
+		int countScheduled = 0;
+		for (final List<String> viewIdsChunk : Iterables.partition(viewIds, SCHEDULE_MAX_VIEW_IDS_PER_STATEMENT))
 		{
-			DB.executeUpdateEx(sql.toString(), ITrx.TRXNAME_None);
+			final String sql = sqlInsertInto + String.join(",", Collections.nCopies(viewIdsChunk.size(), "(?)"));
+			countScheduled += DB.executeUpdateEx(sql, viewIdsChunk.toArray(), ITrx.TRXNAME_None);
 		}
 
-		logger.debug("{} view selections scheduled to be deleted");
+		logger.debug("{} view selections scheduled to be deleted", countScheduled);
 	}
 
 	public static void deleteScheduledSelectionsNoFail()
@@ -90,58 +97,129 @@ public class SqlViewSelectionToDeleteHelper
 		}
 	}
 
+	/**
+	 * Deletes the scheduled selections in batches of {@value #DELETE_SELECTIONS_PER_BATCH} selections, each one deleted in chunks of {@value #DELETE_ROWS_PER_CHUNK} rows.
+	 * Stops after {@link #DELETE_MAX_DURATION_MILLIS}, the remaining selections being deleted on next run.
+	 */
 	public static void deleteScheduledSelections()
 	{
-		//
-		// Tag scheduled IDs
-		final String executorId = UUID.randomUUID().toString();
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		int countSelections = 0;
+		long countRows = 0;
+
+		while (stopwatch.elapsed(TimeUnit.MILLISECONDS) < DELETE_MAX_DURATION_MILLIS)
 		{
-			final String sql = "UPDATE " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name + " SET "
-					+ I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + "=?"
-					+ " WHERE " + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + " IS NULL";
-			final int count = DB.executeUpdateEx(sql, new Object[] { executorId }, ITrx.TRXNAME_None);
-			if (count <= 0)
+			//
+			// Tag a batch of scheduled IDs
+			final String executorId = UUID.randomUUID().toString();
+			final int countTagged = tagScheduledSelections(executorId, DELETE_SELECTIONS_PER_BATCH);
+			if (countTagged <= 0)
 			{
-				return;
+				break;
 			}
+			countSelections += countTagged;
 
-			logger.trace("Tagged {} selectionIds to be deleted", count);
-		}
+			//
+			// Delete from T_WEBUI_ViewSelectionLine and T_WEBUI_ViewSelection
+			countRows += deleteInChunks(I_T_WEBUI_ViewSelectionLine.Table_Name, I_T_WEBUI_ViewSelectionLine.COLUMNNAME_UUID, executorId);
+			countRows += deleteInChunks(I_T_WEBUI_ViewSelection.Table_Name, I_T_WEBUI_ViewSelection.COLUMNNAME_UUID, executorId);
 
-		//
-		// Delete from T_WEBUI_ViewSelectionLine
-		{
-			final String sql = "DELETE FROM " + I_T_WEBUI_ViewSelectionLine.Table_Name + " t "
-					+ "\n WHERE EXISTS (SELECT 1 FROM " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name + " s "
-					+ "\n       WHERE "
-					+ "\n           s." + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_View_UUID + "=t." + I_T_WEBUI_ViewSelectionLine.COLUMNNAME_UUID
-					+ "\n           AND s." + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + "=?"
-					+ "\n )";
-			final int count = DB.executeUpdateEx(sql, new Object[] { executorId }, ITrx.TRXNAME_None);
-			logger.trace("Deleted {} rows from {}", count, I_T_WEBUI_ViewSelectionLine.Table_Name);
+			//
+			// Delete scheduled IDs
+			{
+				final String sql = "DELETE FROM " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name
+						+ " WHERE " + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + "=?";
+				final int count = DB.executeUpdateEx(sql, new Object[] { executorId }, ITrx.TRXNAME_None);
+				logger.trace("Deleted {} rows from {}", count, I_T_WEBUI_ViewSelection_ToDelete.Table_Name);
+			}
 		}
 
-		//
-		// Delete from T_WEBUI_ViewSelection
+		stopwatch.stop();
+		updateStats(countSelections, countRows, stopwatch);
+	}
+
+	private static int tagScheduledSelections(final String executorId, final int limit)
+	{
+		final String sql = "UPDATE " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name + " SET "
+				+ I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + "=?"
+				+ " WHERE " + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_View_UUID + " IN ("
+				+ "SELECT " + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_View_UUID
+				+ " FROM " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name
+				+ " WHERE " + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + " IS NULL"
+				+ " LIMIT ?"
+				+ ")"
+				// NOTE: also check it here, because the subquery might see rows which were tagged by a concurrent executor in meantime
+				+ " AND " + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + " IS NULL";
+		final int count = DB.executeUpdateEx(sql, new Object[] { executorId, limit }, ITrx.TRXNAME_None);
+		logger.trace("Tagged {} selectionIds to be deleted", count);
+		return count;
+	}
+
+	/**
+	 * Deletes the rows of the selections tagged with given executor, in chunks of {@value #DELETE_ROWS_PER_CHUNK} rows.
+	 *
+	 * @return how many rows were deleted
+	 */
+	private static long deleteInChunks(final String tableName, final String uuidColumnName, final String executorId)
+	{
+		final String sql = "DELETE FROM " + tableName
+				+ "\n WHERE ctid = ANY(ARRAY("
+				+ "\n   SELECT t.ctid FROM " + tableName + " t"
+				+ "\n   WHERE t." + uuidColumnName + " IN ("
+				+ "\n       SELECT s." + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_View_UUID + " FROM " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name + " s"
+				+ "\n       WHERE s." + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + "=?"
+				+ "\n   )"
+				+ "\n   LIMIT ?"
+				+ "\n ))";
+		final Object[] sqlParams = new Object[] { executorId, DELETE_ROWS_PER_CHUNK };
+
+		long countTotal = 0;
+		int count;
+		do
 		{
-			final String sql = "DELETE FROM " + I_T_WEBUI_ViewSelection.Table_Name + " t "
-					+ "\n WHERE EXISTS (SELECT 1 FROM " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name + " s "
-					+ "\n       WHERE "
-					+ "\n           s." + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_View_UUID + "=t." + I_T_WEBUI_ViewSelection.COLUMNNAME_UUID
-					+ "\n           AND s." + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + "=?"
-					+ "\n )";
-			final int count = DB.executeUpdateEx(sql, new Object[] { executorId }, ITrx.TRXNAME_None);
-			logger.trace("Deleted {} rows from {}", count, I_T_WEBUI_ViewSelection.Table_Name);
+			count = DB.executeUpdateEx(sql, sqlParams, ITrx.TRXNAME_None);
+			countTotal += count;
 		}
+		while (count >= DELETE_ROWS_PER_CHUNK);
+
+		logger.trace("Deleted {} rows from {}", countTotal, tableName);
+		return countTotal;
+	}
 
-		//
-		// Delete scheduled IDs
+	private static void updateStats(final int countSelections, final long countRows, final Stopwatch stopwatch)
+	{
+		totalSelectionsDeleted.addAndGet(countSelections);
+		totalRowsDeleted.addAndGet(countRows);
+
+		final long durationMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+		final long rowsPerSecond = durationMillis > 0 ? countRows * 1000 / durationMillis : countRows;
+		final int backlog = retrieveBacklogSize();
+
+		lastRunStats.set(ImmutableMap.<String, Object> builder()
+				.put("selectionsDeleted", countSelections)
+				.put("rowsDeleted", countRows)
+				.put("durationMillis", durationMillis)
+				.put("rowsPerSecond", rowsPerSecond)
+				.put("backlog", backlog)
+				.build());
+
+		if (countSelections > 0)
 		{
-			final String sql = "DELETE FROM " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name
-					+ " WHERE " + I_T_WEBUI_ViewSelection_ToDelete.COLUMNNAME_Executor_UUID + "=?";
-			final int count = DB.executeUpdateEx(sql, new Object[] { executorId }, ITrx.TRXNAME_None);
-			logger.trace("Deleted {} rows from {}", count, I_T_WEBUI_ViewSelection_ToDelete.Table_Name);
+			logger.info("Deleted {} view selections ({} rows) in {} ({} rows/sec). Remaining backlog: {} view selections", countSelections, countRows, stopwatch, rowsPerSecond, backlog);
 		}
+	}
+
+	private static int retrieveBacklogSize()
+	{
+		return DB.getSQLValueEx(ITrx.TRXNAME_None, "SELECT COUNT(1) FROM " + I_T_WEBUI_ViewSelection_ToDelete.Table_Name);
+	}
 
+	public static Map<String, Object> getStats()
+	{
+		return ImmutableMap.<String, Object> builder()
+				.put("totalSelectionsDeleted", totalSelectionsDeleted.get())
+				.put("totalRowsDeleted", totalRowsDeleted.get())
+				.put("lastRun", lastRunStats.get())
+				.build();
 	}
 }
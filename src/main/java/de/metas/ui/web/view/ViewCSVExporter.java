@@ -0,0 +1,291 @@
+package de.metas.ui.web.view;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.util.lang.MutableInt;
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+import de.metas.logging.LogManager;
+import de.metas.ui.web.view.descriptor.ViewLayout;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
+import de.metas.ui.web.window.datatypes.json.JSONLookupValue;
+import de.metas.ui.web.window.descriptor.DocumentLayoutElementDescriptor;
+import lombok.Builder;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Exports view rows as CSV, directly to the given output stream.
+ * <p>
+ * Compared to {@link ViewExcelExporter}, this exporter is not limited in the number of rows and is using constant memory:
+ * the row IDs are read chunk by chunk from the view's selection, in forward only order,
+ * and only the rows of current chunk are loaded.
+ */
+/* package */ final class ViewCSVExporter
+{
+	private static final Logger logger = LogManager.getLogger(ViewCSVExporter.class);
+
+	private static final int CHUNK_SIZE = 500;
+	private static final char SEPARATOR = ';';
+	private static final String LINE_SEPARATOR = "\r\n";
+	private static final Pattern PATTERN_Number = Pattern.compile("[+-]?\\d+(\\.\\d+)?");
+	/** UTF-8 byte order mark, so Excel recognizes the encoding */
+	private static final char BOM = '\uFEFF';
+
+	private final IView view;
+	private final DocumentIdsSelection rowIds;
+	private final ImmutableList<DocumentLayoutElementDescriptor> columns;
+	private final String adLanguage;
+
+	@Builder
+	private ViewCSVExporter(
+			@NonNull final IView view,
+			@NonNull final DocumentIdsSelection rowIds,
+			@NonNull final ViewLayout layout,
+			@NonNull final String adLanguage)
+	{
+		if (rowIds.isEmpty())
+		{
+			throw new AdempiereException("@NoSelection@");
+		}
+
+		this.view = view;
+		this.rowIds = rowIds;
+		this.columns = ImmutableList.copyOf(layout.getElements());
+		this.adLanguage = adLanguage;
+	}
+
+	/** @return how many rows will be exported (approximately, if all rows are exported) */
+	public long getEstimatedRowsCount()
+	{
+		return rowIds.isAll() ? view.size() : rowIds.toSet().size();
+	}
+
+	/** @return exported rows count */
+	public int export(@NonNull final OutputStream out) throws IOException
+	{
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		writer.write(BOM);
+		writeHeader(writer);
+
+		int rowsCount = 0;
+		if (rowIds.isAll())
+		{
+			rowsCount = exportAllRows(writer);
+		}
+		else
+		{
+			for (final List<DocumentId> rowIdsChunk : Iterables.partition(rowIds.toSet(), CHUNK_SIZE))
+			{
+				rowsCount += writeRows(writer, rowIdsChunk);
+				logProgress(rowsCount);
+			}
+		}
+
+		writer.flush();
+		return rowsCount;
+	}
+
+	/**
+	 * Reads all row IDs chunk by chunk (see {@link IView#forEachRowId(int, java.util.function.Consumer)})
+	 * and writes the rows chunk by chunk.
+	 *
+	 * @return exported rows count
+	 */
+	private int exportAllRows(final Writer writer) throws IOException
+	{
+		final List<DocumentId> rowIdsChunk = new ArrayList<>(CHUNK_SIZE);
+		final MutableInt rowsCount = new MutableInt(0);
+		try
+		{
+			view.forEachRowId(CHUNK_SIZE, rowId -> {
+				rowIdsChunk.add(rowId);
+				if (rowIdsChunk.size() >= CHUNK_SIZE)
+				{
+					writeRowsChunk(writer, rowIdsChunk, rowsCount);
+				}
+			});
+			writeRowsChunk(writer, rowIdsChunk, rowsCount);
+		}
+		catch (final UncheckedIOException ex)
+		{
+			throw ex.getCause();
+		}
+
+		return rowsCount.getValue();
+	}
+
+	private void writeRowsChunk(final Writer writer, final List<DocumentId> rowIdsChunk, final MutableInt rowsCount)
+	{
+		try
+		{
+			final int writtenRowsCount = writeRows(writer, rowIdsChunk);
+			rowsCount.setValue(rowsCount.getValue() + writtenRowsCount);
+		}
+		catch (final IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+		rowIdsChunk.clear();
+		logProgress(rowsCount.getValue());
+	}
+
+	private void logProgress(final int rowsCount)
+	{
+		logger.debug("Exported {}/{} rows of {}", rowsCount, getEstimatedRowsCount(), view.getViewId());
+	}
+
+	private void writeHeader(final Writer writer) throws IOException
+	{
+		for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++)
+		{
+			writeCell(writer, columnIndex, columns.get(columnIndex).getCaption(adLanguage));
+		}
+		writer.write(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Writes the rows of given chunk, in the order of given row IDs.
+	 *
+	 * @return written rows count
+	 */
+	private int writeRows(final Writer writer, final List<DocumentId> rowIdsChunk) throws IOException
+	{
+		if (rowIdsChunk.isEmpty())
+		{
+			return 0;
+		}
+
+		final Map<DocumentId, ? extends IViewRow> rowsById = view.streamByIds(DocumentIdsSelection.of(rowIdsChunk))
+				.collect(Collectors.toMap(IViewRow::getId, Function.identity(), (row1, row2) -> row1));
+
+		int rowsCount = 0;
+		for (final DocumentId rowId : rowIdsChunk)
+		{
+			final IViewRow row = rowsById.get(rowId);
+			if (row == null)
+			{
+				continue;
+			}
+
+			writeRow(writer, row);
+			rowsCount++;
+		}
+		return rowsCount;
+	}
+
+	private void writeRow(final Writer writer, final IViewRow row) throws IOException
+	{
+		final Map<String, Object> jsonValues = row.getFieldNameAndJsonValues();
+		for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++)
+		{
+			final String fieldName = columns.get(columnIndex).getFields().iterator().next().getField();
+			writeCell(writer, columnIndex, toCellString(jsonValues.get(fieldName)));
+		}
+		writer.write(LINE_SEPARATOR);
+	}
+
+	private static String toCellString(final Object jsonValue)
+	{
+		if (jsonValue == null)
+		{
+			return "";
+		}
+		else if (jsonValue instanceof JSONLookupValue)
+		{
+			return ((JSONLookupValue)jsonValue).getCaption();
+		}
+		else if (jsonValue instanceof BigDecimal)
+		{
+			return ((BigDecimal)jsonValue).toPlainString();
+		}
+		else
+		{
+			return jsonValue.toString();
+		}
+	}
+
+	private static void writeCell(final Writer writer, final int columnIndex, final String value) throws IOException
+	{
+		if (columnIndex > 0)
+		{
+			writer.write(SEPARATOR);
+		}
+
+		if (value == null || value.isEmpty())
+		{
+			return;
+		}
+
+		// Prevent formula injection: spreadsheet applications are evaluating the cells which are starting with one of those characters,
+		// so we prefix them with an apostrophe, which makes them plain text.
+		final boolean formulaLike = isFormulaLike(value);
+		final String valueToWrite = formulaLike ? "'" + value : value;
+
+		final boolean quote = formulaLike
+				|| value.indexOf(SEPARATOR) >= 0
+				|| value.indexOf('"') >= 0
+				|| value.indexOf('\n') >= 0
+				|| value.indexOf('\r') >= 0;
+		if (!quote)
+		{
+			writer.write(valueToWrite);
+			return;
+		}
+
+		writer.write('"');
+		writer.write(valueToWrite.replace("\"", "\"\""));
+		writer.write('"');
+	}
+
+	private static boolean isFormulaLike(final String value)
+	{
+		final char firstChar = value.charAt(0);
+		if (firstChar != '=' && firstChar != '+' && firstChar != '-' && firstChar != '@' && firstChar != '\t' && firstChar != '\r')
+		{
+			return false;
+		}
+
+		// a plain number (e.g. a negative amount) can't be a formula, so we keep it as number
+		return !PATTERN_Number.matcher(value).matches();
+	}
+}
@@ -0,0 +1,205 @@
+package de.metas.ui.web.view;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.adempiere.util.lang.IAutoCloseable;
+import org.compiere.util.Env;
+import org.slf4j.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import de.metas.logging.LogManager;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Prefetches the next page of a view while the client is paging sequentially.
+ * <p>
+ * At most one prefetch is running for a view. A prefetched page is used only once and only if the view was not invalidated in meantime (see cache generation).
+ */
+final class ViewPagePrefetcher
+{
+	private static final Logger logger = LogManager.getLogger(ViewPagePrefetcher.class);
+
+	/** Executor used to prefetch the pages of all views. Tasks which cannot be queued are not executed at all. */
+	private static final ThreadPoolExecutor sharedExecutor = createSharedExecutor();
+
+	private final Executor executor;
+	private final AtomicReference<PageKey> lastPageKeyRef = new AtomicReference<>();
+	private final AtomicReference<PrefetchedPage> prefetchedPageRef = new AtomicReference<>();
+	private final AtomicBoolean prefetchRunning = new AtomicBoolean(false);
+
+	public static ViewPagePrefetcher newInstance()
+	{
+		return new ViewPagePrefetcher(sharedExecutor);
+	}
+
+	@VisibleForTesting
+	ViewPagePrefetcher(@NonNull final Executor executor)
+	{
+		this.executor = executor;
+	}
+
+	private static ThreadPoolExecutor createSharedExecutor()
+	{
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				2, // corePoolSize
+				2, // maximumPoolSize
+				1, TimeUnit.MINUTES, // keepAliveTime
+				new ArrayBlockingQueue<>(50), // workQueue
+				CustomizableThreadFactory.builder()
+						.setDaemon(true)
+						.setThreadNamePrefix("webui-views-prefetch")
+						.build());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/** Discards the prefetched page, if any */
+	public void invalidate()
+	{
+		prefetchedPageRef.set(null);
+	}
+
+	/**
+	 * @return the prefetched rows of given page or <code>null</code> if the page was not prefetched or it was prefetched for another cache generation
+	 */
+	public List<IViewRow> getPrefetchedPageOrNull(@NonNull final PageKey pageKey, final int cacheGeneration)
+	{
+		final PrefetchedPage prefetchedPage = prefetchedPageRef.getAndSet(null);
+		if (prefetchedPage == null)
+		{
+			return null;
+		}
+		if (!pageKey.equals(prefetchedPage.getPageKey()))
+		{
+			return null;
+		}
+		if (prefetchedPage.getCacheGeneration() != cacheGeneration)
+		{
+			return null; // stale
+		}
+
+		logger.trace("Using prefetched page {}", pageKey);
+		return prefetchedPage.getRows();
+	}
+
+	/**
+	 * To be called after a page was served. If the client is paging sequentially, the next page is loaded asynchronously.
+	 *
+	 * @param rowsCount total number of rows of the view
+	 * @param cacheGenerationSupplier provides view's current cache generation
+	 * @param pageLoader loads a page; it's called in the prefetching thread, with the context of the current thread
+	 */
+	public void onPageServed(
+			@NonNull final PageKey pageKey,
+			final long rowsCount,
+			@NonNull final IntSupplier cacheGenerationSupplier,
+			@NonNull final PageLoader pageLoader)
+	{
+		final PageKey previousPageKey = lastPageKeyRef.getAndSet(pageKey);
+		if (previousPageKey == null || !pageKey.equals(previousPageKey.next()))
+		{
+			return; // not paging sequentially
+		}
+
+		final PageKey nextPageKey = pageKey.next();
+		if (nextPageKey.getFirstRow() >= rowsCount)
+		{
+			return; // there is no next page
+		}
+		if (!prefetchRunning.compareAndSet(false, true))
+		{
+			return; // another prefetch is running for this view
+		}
+
+		// NOTE: the prefetching thread does not have a context, so we are using a copy of the current one
+		final Properties ctx = Env.copyCtx(Env.getCtx());
+		final int cacheGeneration = cacheGenerationSupplier.getAsInt();
+		try
+		{
+			executor.execute(() -> {
+				try (final IAutoCloseable temporaryCtx = Env.switchContext(ctx))
+				{
+					final List<IViewRow> rows = pageLoader.loadPage(nextPageKey);
+					if (rows != null && cacheGeneration == cacheGenerationSupplier.getAsInt())
+					{
+						prefetchedPageRef.set(new PrefetchedPage(nextPageKey, cacheGeneration, rows));
+					}
+				}
+				catch (final Exception ex)
+				{
+					logger.debug("Failed prefetching {}. Ignored.", nextPageKey, ex);
+				}
+				finally
+				{
+					prefetchRunning.set(false);
+				}
+			});
+		}
+		catch (final RejectedExecutionException ex)
+		{
+			// prefetch executor is busy => skip it
+			prefetchRunning.set(false);
+		}
+	}
+
+	@FunctionalInterface
+	public static interface PageLoader
+	{
+		/** @return page rows or <code>null</code> if the page shall not be prefetched anymore (e.g. view was closed) */
+		List<IViewRow> loadPage(PageKey pageKey);
+	}
+
+	@lombok.Value(staticConstructor = "of")
+	public static final class PageKey
+	{
+		private final String selectionId;
+		private final int firstRow;
+		private final int pageLength;
+
+		public PageKey next()
+		{
+			return of(selectionId, firstRow + pageLength, pageLength);
+		}
+	}
+
+	@lombok.Value
+	private static final class PrefetchedPage
+	{
+		private final PageKey pageKey;
+		private final int cacheGeneration;
+		private final List<IViewRow> rows;
+	}
+}
@@ -3,10 +3,15 @@ package de.metas.ui.web.view;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Objects;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.util.Check;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
@@ -24,8 +29,11 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.WebRequest;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 
+import de.metas.ui.web.cache.ETag;
+import de.metas.ui.web.cache.ETagAware;
 import de.metas.ui.web.cache.ETagResponseEntityBuilder;
 import de.metas.ui.web.config.WebConfig;
 import de.metas.ui.web.process.ProcessRestController;
@@ -93,6 +101,8 @@ public class ViewRestController
 	private static final String PARAM_FirstRow = "firstRow";
 	private static final String PARAM_FirstRow_Description = "first row to fetch (starting from 0)";
 	private static final String PARAM_PageLength = "pageLength";
+	//
+	private static final String HEADER_ExportRowsCount = "X-Export-RowsCount";
 
 	@Autowired
 	private UserSession userSession;
@@ -203,21 +213,46 @@ public class ViewRestController
 	}
 
 	@GetMapping("/{viewId}")
-	public JSONViewResult getViewData(
+	public ResponseEntity<JSONViewResult> getViewData(
 			@PathVariable(PARAM_WindowId) final String windowId //
 			, @PathVariable("viewId") final String viewIdStr//
 			, @RequestParam(name = PARAM_FirstRow, required = true) @ApiParam(PARAM_FirstRow_Description) final int firstRow //
 			, @RequestParam(name = PARAM_PageLength, required = true) final int pageLength //
 			, @RequestParam(name = PARAM_OrderBy, required = false) @ApiParam(PARAM_OrderBy_Description) final String orderBysListStr //
+			, final WebRequest request //
 	)
 	{
 		userSession.assertLoggedIn();
 
 		final ViewId viewId = ViewId.of(windowId, viewIdStr);
 		final IView view = viewsRepo.getView(viewId);
-		final ViewResult result = view.getPage(firstRow, pageLength, DocumentQueryOrderBy.parseOrderBysList(orderBysListStr));
+		final List<DocumentQueryOrderBy> orderBys = DocumentQueryOrderBy.parseOrderBysList(orderBysListStr);
+
+		final ETag etag = view.getDataETagOrNull();
+		if (etag == null)
+		{
+			return ResponseEntity.ok(getViewData(view, firstRow, pageLength, orderBys, userSession.getAD_Language()));
+		}
+
+		// NOTE: the ETag is checked before fetching the page
+		final ETagAware etagAware = () -> etag;
+		return ETagResponseEntityBuilder.ofETagAware(request, etagAware)
+				.includeLanguageInETag()
+				.cacheMaxAge(0) // always revalidate
+				.jsonOptions(() -> newJSONOptions())
+				.toJson((ignored, jsonOpts) -> getViewData(view, firstRow, pageLength, orderBys, jsonOpts.getAD_Language()));
+	}
+
+	private static JSONViewResult getViewData(
+			final IView view,
+			final int firstRow,
+			final int pageLength,
+			final List<DocumentQueryOrderBy> orderBys,
+			final String adLanguage)
+	{
+		final ViewResult result = view.getPage(firstRow, pageLength, orderBys);
 		final IViewRowOverrides rowOverrides = ViewRowOverridesHelper.getViewRowOverrides(view);
-		return JSONViewResult.of(result, rowOverrides, userSession.getAD_Language());
+		return JSONViewResult.of(result, rowOverrides, adLanguage);
 	}
 
 	@GetMapping("/layout")
@@ -413,26 +448,126 @@ public class ViewRestController
 
 		final ViewId viewId = ViewId.ofViewIdString(viewIdStr, WindowId.fromJson(windowIdStr));
 
+		final IView view = viewsRepo.getView(viewId);
+		final ViewLayout layout = viewsRepo.getViewLayout(viewId.getWindowId(), JSONViewDataType.grid, ViewProfileId.NULL);
+		final String adLanguage = userSession.getAD_Language();
+
 		final File tmpFile = File.createTempFile("exportToExcel", ".xls");
 
 		try (final FileOutputStream out = new FileOutputStream(tmpFile))
 		{
 			ViewExcelExporter.builder()
-					.view(viewsRepo.getView(viewId))
+					.view(view)
 					.rowIds(DocumentIdsSelection.ofCommaSeparatedString(selectedIdsListStr))
-					.layout(viewsRepo.getViewLayout(viewId.getWindowId(), JSONViewDataType.grid, ViewProfileId.NULL))
-					.adLanguage(userSession.getAD_Language())
+					.layout(layout)
+					.adLanguage(adLanguage)
 					.build()
 					.export(out);
 		}
 
-		final String filename = "report.xls"; // TODO: use a better name
+		final String filename = buildExportFilename(view, layout, adLanguage, "xls");
 		final HttpHeaders headers = new HttpHeaders();
 		headers.setContentType(MediaType.parseMediaType("application/vnd.ms-excel"));
-		headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"");
+		headers.set(HttpHeaders.CONTENT_DISPOSITION, buildContentDisposition("inline", filename));
 		headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
 
 		final ResponseEntity<Resource> response = new ResponseEntity<>(new InputStreamResource(new FileInputStream(tmpFile)), headers, HttpStatus.OK);
 		return response;
 	}
+
+	/**
+	 * Streams the view rows as CSV, directly to the response. Unlike {@link #exportToExcel(String, String, String)} the number of exported rows is not limited.
+	 * <p>
+	 * The estimated rows count is sent in the X-Export-RowsCount header, so the client can report the progress.
+	 */
+	@GetMapping("/{viewId}/export/csv")
+	public void exportToCSV(
+			@PathVariable("windowId") final String windowIdStr,
+			@PathVariable("viewId") final String viewIdStr,
+			@RequestParam(name = "selectedIds", required = false) @ApiParam("comma separated IDs") final String selectedIdsListStr,
+			final HttpServletResponse response)
+			throws IOException
+	{
+		userSession.assertLoggedIn();
+
+		final ViewId viewId = ViewId.ofViewIdString(viewIdStr, WindowId.fromJson(windowIdStr));
+
+		final IView view = viewsRepo.getView(viewId);
+		final ViewLayout layout = viewsRepo.getViewLayout(viewId.getWindowId(), JSONViewDataType.grid, ViewProfileId.NULL);
+		final String adLanguage = userSession.getAD_Language();
+
+		final ViewCSVExporter exporter = ViewCSVExporter.builder()
+				.view(view)
+				.rowIds(DocumentIdsSelection.ofCommaSeparatedString(selectedIdsListStr))
+				.layout(layout)
+				.adLanguage(adLanguage)
+				.build();
+
+		final String filename = buildExportFilename(view, layout, adLanguage, "csv");
+		response.setContentType("text/csv; charset=UTF-8");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, buildContentDisposition("attachment", filename));
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "must-revalidate, post-check=0, pre-check=0");
+		response.setHeader(HEADER_ExportRowsCount, String.valueOf(exporter.getEstimatedRowsCount()));
+
+		exporter.export(response.getOutputStream());
+	}
+
+	/**
+	 * @return export file name, built from view's description or, if not available, from window's caption
+	 */
+	@VisibleForTesting
+	static String buildExportFilename(@NonNull final IView view, @NonNull final ViewLayout layout, final String adLanguage, @NonNull final String fileExtension)
+	{
+		String name = view.getDescription().translate(adLanguage);
+		if (Check.isEmpty(name, true))
+		{
+			name = layout.getCaption(adLanguage);
+		}
+		if (Check.isEmpty(name, true))
+		{
+			name = "report";
+		}
+
+		// get rid of characters which are not allowed in file names or in the Content-Disposition header
+		final String filenameWithoutExtension = name.trim().replaceAll("[\\\\/:*?\"<>|\\r\\n]", "_");
+		return filenameWithoutExtension + "." + fileExtension;
+	}
+
+	/**
+	 * @return Content-Disposition header value which contains an ASCII only file name, for older clients,
+	 *         and the UTF-8 encoded file name (<code>filename*</code>, see RFC 5987 and RFC 6266)
+	 */
+	@VisibleForTesting
+	static String buildContentDisposition(@NonNull final String dispositionType, @NonNull final String filename)
+	{
+		final StringBuilder asciiFilename = new StringBuilder(filename.length());
+		for (final char ch : filename.toCharArray())
+		{
+			asciiFilename.append(ch >= 0x20 && ch < 0x7F && ch != '"' && ch != '\\' ? ch : '_');
+		}
+
+		final StringBuilder encodedFilename = new StringBuilder();
+		for (final byte b : filename.getBytes(StandardCharsets.UTF_8))
+		{
+			final char ch = (char)(b & 0xFF);
+			if (isRFC5987AttrChar(ch))
+			{
+				encodedFilename.append(ch);
+			}
+			else
+			{
+				encodedFilename.append('%').append(String.format("%02X", b & 0xFF));
+			}
+		}
+
+		return dispositionType + "; filename=\"" + asciiFilename + "\"; filename*=UTF-8''" + encodedFilename;
+	}
+
+	private static boolean isRFC5987AttrChar(final char ch)
+	{
+		return (ch >= 'a' && ch <= 'z')
+				|| (ch >= 'A' && ch <= 'Z')
+				|| (ch >= '0' && ch <= '9')
+				|| "!#$&+-.^_`|~".indexOf(ch) >= 0;
+	}
 }
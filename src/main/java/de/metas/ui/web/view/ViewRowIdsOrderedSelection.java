@@ -12,6 +12,7 @@ import com.google.common.collect.ImmutableList;
 import de.metas.ui.web.window.datatypes.WindowId;
 import de.metas.ui.web.window.model.DocumentQueryOrderBy;
 import lombok.EqualsAndHashCode;
+import lombok.NonNull;
 
 /*
  * #%L
@@ -49,7 +50,9 @@ public final class ViewRowIdsOrderedSelection
 	private final ImmutableList<DocumentQueryOrderBy> orderBys;
 
 	private final int queryLimit;
-	private final boolean queryLimitHit;
+
+	/** background materialization, if the selection was created progressively */
+	private final ViewRowIdsOrderedSelectionMaterialization materialization;
 
 	private ViewRowIdsOrderedSelection(final Builder builder)
 	{
@@ -59,7 +62,7 @@ public final class ViewRowIdsOrderedSelection
 		orderBys = builder.getOrderBys();
 
 		queryLimit = builder.getQueryLimit();
-		queryLimitHit = builder.isQueryLimitHit();
+		materialization = builder.getMaterialization();
 	}
 
 	@Override
@@ -68,7 +71,8 @@ public final class ViewRowIdsOrderedSelection
 		return MoreObjects.toStringHelper(this)
 				.omitNullValues()
 				.add("viewId", viewId)
-				.add("size", size)
+				.add("size", getSize())
+				.add("sizeEstimated", isSizeEstimated() ? Boolean.TRUE : null)
 				.add("orderBys", orderBys.isEmpty() ? null : orderBys)
 				.toString();
 	}
@@ -77,9 +81,10 @@ public final class ViewRowIdsOrderedSelection
 	{
 		return builder()
 				.setViewId(viewId)
-				.setSize(size)
+				.setSize(getSize())
 				.setOrderBys(orderBys)
-				.setQueryLimit(queryLimit);
+				.setQueryLimit(queryLimit)
+				.setMaterialization(isSizeEstimated() ? materialization : null);
 	}
 
 	public ViewId getViewId()
@@ -99,7 +104,50 @@ public final class ViewRowIdsOrderedSelection
 
 	public long getSize()
 	{
-		return size;
+		return materialization != null ? materialization.getSize() : size;
+	}
+
+	/**
+	 * @return true if the selection is still materialized in background (or that failed), so {@link #getSize()} returns just an estimation
+	 */
+	public boolean isSizeEstimated()
+	{
+		return materialization != null && materialization.isSizeEstimated();
+	}
+
+	/**
+	 * Blocks until the selection is fully materialized.
+	 * To be called before running queries which need all rows of this selection.
+	 */
+	public void awaitMaterialized()
+	{
+		if (materialization != null)
+		{
+			materialization.await();
+		}
+	}
+
+	/**
+	 * Blocks until the first <code>rowsCount</code> rows of this selection are materialized.
+	 */
+	public void awaitMaterialized(final long rowsCount)
+	{
+		if (materialization != null)
+		{
+			materialization.awaitRows(rowsCount);
+		}
+	}
+
+	/**
+	 * Calls given runnable when the background materialization is done.
+	 * If the selection is not materialized in background, the runnable is not called at all.
+	 */
+	public void onMaterialized(@NonNull final Runnable runnable)
+	{
+		if (materialization != null && !materialization.isDone())
+		{
+			materialization.onDone(runnable);
+		}
 	}
 
 	public ImmutableList<DocumentQueryOrderBy> getOrderBys()
@@ -114,7 +162,10 @@ public final class ViewRowIdsOrderedSelection
 	
 	public boolean isQueryLimitHit()
 	{
-		return queryLimitHit;
+		final long size = getSize();
+		return queryLimit > 0
+				&& size > 0
+				&& size >= queryLimit;
 	}
 
 	public static final class Builder
@@ -124,6 +175,7 @@ public final class ViewRowIdsOrderedSelection
 		private List<DocumentQueryOrderBy> orderBys;
 
 		private int queryLimit;
+		private ViewRowIdsOrderedSelectionMaterialization materialization;
 
 		private Builder()
 		{
@@ -179,11 +231,18 @@ public final class ViewRowIdsOrderedSelection
 			return queryLimit;
 		}
 
-		private boolean isQueryLimitHit()
+		/**
+		 * @param materialization background materialization of the remaining rows; <code>size</code> is then the number of rows which were already materialized
+		 */
+		public Builder setMaterialization(final ViewRowIdsOrderedSelectionMaterialization materialization)
+		{
+			this.materialization = materialization;
+			return this;
+		}
+
+		private ViewRowIdsOrderedSelectionMaterialization getMaterialization()
 		{
-			return queryLimit > 0
-					&& size > 0
-					&& size >= queryLimit;
+			return materialization;
 		}
 	}
 }
@@ -0,0 +1,126 @@
+package de.metas.ui.web.view;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.adempiere.exceptions.AdempiereException;
+
+import com.google.common.base.MoreObjects;
+
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Tracks the background materialization of a {@link ViewRowIdsOrderedSelection} which was created progressively,
+ * i.e. only the first rows were inserted synchronously and the remaining ones are inserted in background.
+ * <p>
+ * Until the materialization is done, the selection's size is estimated as the number of rows which were already materialized.
+ * <p>
+ * If the materialization failed, only the rows which were already materialized are available:
+ * the size stays at that number, but it's still flagged as estimated because the real size is not known, and waiting for the remaining rows fails.
+ */
+public final class ViewRowIdsOrderedSelectionMaterialization
+{
+	public static ViewRowIdsOrderedSelectionMaterialization of(final long materializedRowsCount, @NonNull final CompletableFuture<Long> sizeFuture)
+	{
+		return new ViewRowIdsOrderedSelectionMaterialization(materializedRowsCount, sizeFuture);
+	}
+
+	/** rows which were materialized before the background materialization was started */
+	private final long materializedRowsCount;
+	/** completed with the exact selection size when the background materialization is done or completed exceptionally if it failed */
+	private final CompletableFuture<Long> sizeFuture;
+
+	private ViewRowIdsOrderedSelectionMaterialization(final long materializedRowsCount, final CompletableFuture<Long> sizeFuture)
+	{
+		this.materializedRowsCount = materializedRowsCount;
+		this.sizeFuture = sizeFuture;
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.add("materializedRowsCount", materializedRowsCount)
+				.add("done", isDone())
+				.add("failed", isFailed())
+				.toString();
+	}
+
+	public boolean isDone()
+	{
+		return sizeFuture.isDone();
+	}
+
+	/** @return true if the materialization failed, i.e. the selection contains only the rows which were materialized before */
+	public boolean isFailed()
+	{
+		return sizeFuture.isCompletedExceptionally();
+	}
+
+	/** @return exact size if the materialization is done, else (or if it failed) the number of rows which were already materialized */
+	public long getSize()
+	{
+		return isSizeEstimated() ? materializedRowsCount : sizeFuture.join();
+	}
+
+	/** @return true if {@link #getSize()} is not the exact size, i.e. the materialization is still running or it failed */
+	public boolean isSizeEstimated()
+	{
+		return !isDone() || isFailed();
+	}
+
+	/**
+	 * Blocks until the materialization is done.
+	 *
+	 * @throws AdempiereException if the materialization failed
+	 */
+	public void await()
+	{
+		try
+		{
+			sizeFuture.join();
+		}
+		catch (final CompletionException ex)
+		{
+			throw new AdempiereException("View selection was truncated to " + materializedRowsCount + " rows because loading the remaining rows failed. Please refresh the view.", ex.getCause());
+		}
+	}
+
+	/** Blocks until the first <code>rowsCount</code> rows are materialized. */
+	public void awaitRows(final long rowsCount)
+	{
+		if (rowsCount <= materializedRowsCount)
+		{
+			return;
+		}
+		await();
+	}
+
+	/** Calls given runnable when the materialization is done or failed (or right away if it's already done). */
+	public void onDone(@NonNull final Runnable runnable)
+	{
+		sizeFuture.whenComplete((size, ex) -> runnable.run());
+	}
+}
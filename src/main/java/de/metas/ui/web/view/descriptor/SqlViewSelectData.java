@@ -60,8 +60,10 @@ public class SqlViewSelectData
 	public static final String COLUMNNAME_IsRecordMissing = COLUMNNAME_Paging_Prefix + "IsRecordMissing";
 
 	private final SqlViewKeyColumnNamesMap keyColumnNamesMap;
+	private final IStringExpression _sqlSelect;
 	private final IStringExpression _sqlSelectByPage;
 	private final IStringExpression _sqlSelectRowIdsByPage;
+	private final IStringExpression _sqlSelectRowIdsAfterSeqNo;
 	private final IStringExpression _sqlSelectById;
 	private final IStringExpression _sqlSelectLines;
 
@@ -76,6 +78,7 @@ public class SqlViewSelectData
 	{
 		this.keyColumnNamesMap = keyColumnNamesMap;
 		final IStringExpression sqlSelect = buildSqlSelect(sqlTableName, sqlTableAlias, keyColumnNamesMap, displayFieldNames, allFields, groupingBinding);
+		_sqlSelect = sqlSelect;
 
 		_sqlSelectByPage = sqlSelect.toComposer()
 				.append("\n WHERE ")
@@ -84,20 +87,29 @@ public class SqlViewSelectData
 				.append("\n ORDER BY " + COLUMNNAME_Paging_SeqNo_OneBased)
 				.build();
 
-		_sqlSelectRowIdsByPage = buildSqlSelect(
+		final IStringExpression sqlSelectRowIds = buildSqlSelect(
 				sqlTableName,
 				sqlTableAlias,
 				keyColumnNamesMap,
 				ImmutableList.of(), // displayFieldNames
 				extractKeyFields(allFields, keyColumnNamesMap), // allFields
-				groupingBinding)
-						//
-						.toComposer()
-						.append("\n WHERE ")
-						// NOTE: already filtered by UUID
-						.append("\n " + COLUMNNAME_Paging_SeqNo_OneBased + " BETWEEN ? AND ?")
-						.append("\n ORDER BY " + COLUMNNAME_Paging_SeqNo_OneBased)
-						.build();
+				groupingBinding);
+
+		_sqlSelectRowIdsByPage = sqlSelectRowIds.toComposer()
+				.append("\n WHERE ")
+				// NOTE: already filtered by UUID
+				.append("\n " + COLUMNNAME_Paging_SeqNo_OneBased + " BETWEEN ? AND ?")
+				.append("\n ORDER BY " + COLUMNNAME_Paging_SeqNo_OneBased)
+				.build();
+
+		// NOTE: keyset pagination, because the SeqNo-s might have gaps (e.g. rows removed from selection)
+		_sqlSelectRowIdsAfterSeqNo = sqlSelectRowIds.toComposer()
+				.append("\n WHERE ")
+				// NOTE: already filtered by UUID
+				.append("\n " + COLUMNNAME_Paging_SeqNo_OneBased + " > ?")
+				.append("\n ORDER BY " + COLUMNNAME_Paging_SeqNo_OneBased)
+				.append("\n LIMIT ?")
+				.build();
 
 		_sqlSelectById = sqlSelect.toComposer()
 				.append("\n WHERE ")
@@ -119,6 +131,11 @@ public class SqlViewSelectData
 		}
 	}
 
+	private IStringExpression getSqlSelect()
+	{
+		return _sqlSelect;
+	}
+
 	private IStringExpression getSqlSelectByPage()
 	{
 		return _sqlSelectByPage;
@@ -129,6 +146,11 @@ public class SqlViewSelectData
 		return _sqlSelectRowIdsByPage;
 	}
 
+	private IStringExpression getSqlSelectRowIdsAfterSeqNo()
+	{
+		return _sqlSelectRowIdsAfterSeqNo;
+	}
+
 	private IStringExpression getSqlSelectById()
 	{
 		return _sqlSelectById;
@@ -413,6 +435,26 @@ public class SqlViewSelectData
 		return SqlAndParams.of(sql, viewSelectionId, firstSeqNo, lastSeqNo);
 	}
 
+	/**
+	 * Selects at most <code>limit</code> row IDs which are after given SeqNo (exclusive), in selection's order.
+	 * The SeqNo of each row is available in {@link #COLUMNNAME_Paging_SeqNo_OneBased} column, so the next chunk can be selected after the last one.
+	 */
+	@Builder(builderMethodName = "selectRowIdsAfterSeqNo", builderClassName = "SelectRowIdsAfterSeqNoBuilder")
+	private SqlAndParams selectRowIdsAfterSeqNoBuilder(
+			@NonNull final ViewEvaluationCtx viewEvalCtx,
+			@NonNull final ViewId viewId,
+			final int afterSeqNo,
+			final int limit)
+	{
+		Check.assume(afterSeqNo >= 0, "afterSeqNo >= 0 but it was {}", afterSeqNo);
+		Check.assume(limit > 0, "limit > 0 but it was {}", limit);
+
+		final String viewSelectionId = viewId.getViewId();
+		final IStringExpression sqlSelectRowIdsAfterSeqNo = getSqlSelectRowIdsAfterSeqNo();
+		final String sql = sqlSelectRowIdsAfterSeqNo.evaluate(viewEvalCtx.toEvaluatee(), OnVariableNotFound.Fail);
+		return SqlAndParams.of(sql, viewSelectionId, afterSeqNo, limit);
+	}
+
 	@Builder(builderMethodName = "selectById", builderClassName = "SelectByIdBuilder")
 	private SqlAndParams selectByIdBuilder(
 			@NonNull final ViewEvaluationCtx viewEvalCtx,
@@ -425,6 +467,34 @@ public class SqlViewSelectData
 		return SqlAndParams.of(sql, viewSelectionId, rowId.toInt());
 	}
 
+	/**
+	 * Selects given root rows, in the selection's order. Intended to be used only for views with a single key column.
+	 */
+	@Builder(builderMethodName = "selectByIds", builderClassName = "SelectByIdsBuilder")
+	private SqlAndParams selectByIdsBuilder(
+			@NonNull final ViewEvaluationCtx viewEvalCtx,
+			@NonNull final ViewId viewId,
+			@NonNull final DocumentIdsSelection rowIds)
+	{
+		final List<Object> sqlParams = new ArrayList<>();
+		sqlParams.add(viewId.getViewId());
+
+		final SqlAndParams sqlFilterByRowIds = keyColumnNamesMap.prepareSqlFilterByRowIds()
+				.sqlColumnPrefix(COLUMNNAME_Paging_Prefix)
+				.rowIds(rowIds)
+				.build();
+		final String sql = new StringBuilder()
+				.append(getSqlSelect().evaluate(viewEvalCtx.toEvaluatee(), OnVariableNotFound.Fail))
+				// NOTE: already filtered by UUID
+				.append("\n WHERE ")
+				.append("\n").append(sqlFilterByRowIds.getSql())
+				.append("\n ORDER BY " + COLUMNNAME_Paging_SeqNo_OneBased)
+				.toString();
+		sqlParams.addAll(sqlFilterByRowIds.getSqlParams());
+
+		return SqlAndParams.of(sql, sqlParams);
+	}
+
 	@Builder(builderMethodName = "selectIncludedLines", builderClassName = "SelectIncludedLinesBuilder")
 	private SqlAndParams selectIncludedLinesBuilder(
 			@NonNull final ViewEvaluationCtx viewEvalCtx,
@@ -204,7 +204,7 @@ public final class SqlViewSelectionQueryBuilder
 	{
 		if (!hasGroupingFields())
 		{
-			final SqlAndParams sqlCreateSelection = buildSqlCreateSelection_WithoutGrouping(viewEvalCtx, newViewId, filters, orderBys, queryLimit, context);
+			final SqlAndParams sqlCreateSelection = buildSqlCreateSelection_WithoutGrouping(viewEvalCtx, newViewId, filters, orderBys, -1, queryLimit, context);
 			return SqlCreateSelection.builder().sqlCreateSelection(sqlCreateSelection).build();
 		}
 		else
@@ -215,14 +215,44 @@ public final class SqlViewSelectionQueryBuilder
 		}
 	}
 
+	/**
+	 * Builds the SQL which inserts only the given range of the ordered selection rows.
+	 * <p>
+	 * The rows are strictly ordered (key columns are used as tie breaker), so the selection can be created progressively,
+	 * by executing this SQL for consecutive ranges. The selection line numbers are computed before applying the range, so they are continuous.
+	 *
+	 * @param offset how many rows to skip
+	 * @param limit how many rows to insert
+	 */
+	public SqlAndParams buildSqlCreateSelectionRange(
+			final ViewEvaluationCtx viewEvalCtx,
+			final ViewId newViewId,
+			final List<DocumentFilter> filters,
+			final List<DocumentQueryOrderBy> orderBys,
+			final int offset,
+			final int limit,
+			final SqlDocumentFilterConverterContext context)
+	{
+		Check.assume(!hasGroupingFields(), "Creating the selection by range is not supported for views with grouping");
+		Check.assume(offset >= 0, "offset >= 0 but it was {}", offset);
+		Check.assume(limit > 0, "limit > 0 but it was {}", limit);
+
+		return buildSqlCreateSelection_WithoutGrouping(viewEvalCtx, newViewId, filters, orderBys, offset, limit, context);
+	}
+
+	/**
+	 * @param offset if &gt;= 0, the rows are strictly ordered and <code>queryLimit</code> rows are inserted, starting with given offset
+	 */
 	private SqlAndParams buildSqlCreateSelection_WithoutGrouping(
 			final ViewEvaluationCtx viewEvalCtx,
 			final ViewId newViewId,
 			final List<DocumentFilter> filters,
 			final List<DocumentQueryOrderBy> orderBys,
+			final int offset,
 			final int queryLimit,
 			final SqlDocumentFilterConverterContext context)
 	{
+		final boolean ranged = offset >= 0;
 		final String sqlTableName = getTableName();
 		final String sqlTableAlias = getTableAlias();
 		final SqlViewKeyColumnNamesMap keyColumnNamesMap = getSqlViewKeyColumnNamesMap();
@@ -239,12 +269,20 @@ public final class SqlViewSelectionQueryBuilder
 		//
 		// SELECT ... FROM ... WHERE 1=1
 		final List<Object> sqlParams = new ArrayList<>();
+		IStringExpression sqlOrderBy = SqlDocumentOrderByBuilder.newInstance(this::getFieldOrderBy).buildSqlOrderBy(orderBys);
 		{
-			IStringExpression sqlOrderBy = SqlDocumentOrderByBuilder.newInstance(this::getFieldOrderBy).buildSqlOrderBy(orderBys);
 			if (sqlOrderBy == null || sqlOrderBy.isNullExpression())
 			{
 				sqlOrderBy = ConstantStringExpression.of(keyColumnNamesMap.getKeyColumnNamesCommaSeparated());
 			}
+			else if (ranged)
+			{
+				// make the ordering strict, so the ranges are not overlapping
+				sqlOrderBy = IStringExpression.composer()
+						.append(sqlOrderBy)
+						.append(", ").append(keyColumnNamesMap.getKeyColumnNamesCommaSeparated())
+						.build();
+			}
 
 			final IStringExpression sqlSeqNo = IStringExpression.composer()
 					.append("row_number() OVER (ORDER BY ").append(sqlOrderBy).append(")")
@@ -278,9 +316,18 @@ public final class SqlViewSelectionQueryBuilder
 			}
 		}
 
+		//
+		// Ranged: ORDER BY ... LIMIT ? OFFSET ?
+		if (ranged)
+		{
+			sqlBuilder.append("\n ORDER BY ").append(sqlOrderBy);
+			sqlBuilder.append("\n LIMIT ? OFFSET ?");
+			sqlParams.add(queryLimit);
+			sqlParams.add(offset);
+		}
 		//
 		// Enforce a LIMIT, to not affect server performances on huge tables
-		if (queryLimit > 0)
+		else if (queryLimit > 0)
 		{
 			sqlBuilder.append("\n LIMIT ?");
 			sqlParams.add(queryLimit);
@@ -586,6 +633,44 @@ public final class SqlViewSelectionQueryBuilder
 		return SqlAndParams.of(sql, newViewId.getViewId(), fromSelectionId);
 	}
 
+	/**
+	 * @return SQL which retrieves the keys of given selection together with the rank of given field's ORDER BY expression (as last column).
+	 *         The ranks are computed by database, so ordering by them gives the same result as ordering by field's ORDER BY expression
+	 *         (i.e. lookups are ordered by their display value, using database's collation).
+	 *         The rank is <code>null</code> when the ORDER BY expression is <code>null</code>.
+	 *
+	 *         <pre>
+	 * SELECT sel.keys, dense_rank() OVER (ORDER BY [fieldOrderBy]) FROM T_WEBUI_ViewSelection sel LEFT OUTER JOIN ourTable WHERE sel.UUID=[selectionId]
+	 *         </pre>
+	 */
+	public SqlAndParams buildSqlRetrieveFieldOrderingRanksFromSelection(final ViewEvaluationCtx viewEvalCtx, final String selectionId, final String fieldName)
+	{
+		final String sqlTableAlias = getTableAlias();
+		final SqlViewKeyColumnNamesMap keyColumnNamesMap = getSqlViewKeyColumnNamesMap();
+
+		final IStringExpression sqlFieldOrderByExpr = getFieldOrderBy(fieldName);
+		final String sqlFieldOrderBy = sqlFieldOrderByExpr == null || sqlFieldOrderByExpr.isNullExpression()
+				? null
+				: replaceTableNameWithTableAlias(sqlFieldOrderByExpr.evaluate(viewEvalCtx.toEvaluatee(), OnVariableNotFound.Fail));
+
+		// NOTE: in case the field is not orderable, it's not considered when ordering in database either, so all ranks are null (i.e. equal)
+		final String sqlRank = Check.isEmpty(sqlFieldOrderBy, true)
+				? "NULL"
+				: "CASE WHEN (" + sqlFieldOrderBy + ") IS NULL THEN NULL ELSE dense_rank() OVER (ORDER BY (" + sqlFieldOrderBy + ") ASC NULLS LAST) END";
+
+		final String sqlJoinCondition = keyColumnNamesMap.getSqlJoinCondition(sqlTableAlias, "sel");
+		final String sql = new StringBuilder()
+				.append("SELECT ")
+				.append("\n ").append(keyColumnNamesMap.getWebuiSelectionColumnNamesCommaSeparated("sel")) // keys
+				.append("\n, ").append(sqlRank) // rank
+				.append("\n FROM ").append(I_T_WEBUI_ViewSelection.Table_Name).append(" sel")
+				.append("\n LEFT OUTER JOIN ").append(getTableName()).append(" ").append(sqlTableAlias).append(" ON (").append(sqlJoinCondition).append(")")
+				.append("\n WHERE sel.").append(I_T_WEBUI_ViewSelection.COLUMNNAME_UUID).append("=?")
+				.toString();
+
+		return SqlAndParams.of(sql, selectionId);
+	}
+
 	/**
 	 * @return
 	 *
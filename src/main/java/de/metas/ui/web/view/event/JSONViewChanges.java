@@ -1,6 +1,8 @@
 package de.metas.ui.web.view.event;
 
 import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Objects;
 import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
@@ -9,6 +11,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.MoreObjects;
 
+import de.metas.ui.web.websocket.MergeableWebsocketEvent;
 import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
 import de.metas.ui.web.window.datatypes.WindowId;
 
@@ -36,7 +39,7 @@ import de.metas.ui.web.window.datatypes.WindowId;
 
 @SuppressWarnings("serial")
 @JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
-public final class JSONViewChanges implements Serializable
+public final class JSONViewChanges implements Serializable, MergeableWebsocketEvent
 {
 	public static JSONViewChanges of(final ViewChanges changes)
 	{
@@ -82,6 +85,14 @@ public final class JSONViewChanges implements Serializable
 		}
 	}
 
+	private JSONViewChanges(final String viewId, final WindowId windowId, final Boolean fullyChanged, final Set<String> changedIds)
+	{
+		this.viewId = viewId;
+		this.windowId = windowId;
+		this.fullyChanged = fullyChanged;
+		this.changedIds = changedIds;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -108,4 +119,56 @@ public final class JSONViewChanges implements Serializable
 	{
 		return fullyChanged;
 	}
+
+	private boolean isFullyChanged()
+	{
+		return fullyChanged != null && fullyChanged;
+	}
+
+	private boolean isNoChanges()
+	{
+		return fullyChanged == null;
+	}
+
+	@Override
+	public JSONViewChanges mergeWithOrNull(final Object nextEvent)
+	{
+		if (!(nextEvent instanceof JSONViewChanges))
+		{
+			return null;
+		}
+
+		final JSONViewChanges next = (JSONViewChanges)nextEvent;
+		if (!Objects.equals(viewId, next.viewId) || !Objects.equals(windowId, next.windowId))
+		{
+			return null;
+		}
+
+		if (next.isNoChanges() || isFullyChanged())
+		{
+			return this;
+		}
+		else if (isNoChanges() || next.isFullyChanged())
+		{
+			return next;
+		}
+		else
+		{
+			final Set<String> mergedChangedIds = new LinkedHashSet<>(changedIds);
+			mergedChangedIds.addAll(next.changedIds);
+			return new JSONViewChanges(viewId, windowId, Boolean.FALSE, mergedChangedIds);
+		}
+	}
+
+	@Override
+	public JSONViewChanges toFullyChangedEventOrNull()
+	{
+		if (isFullyChanged())
+		{
+			return this;
+		}
+
+		final Set<String> changedIds = null;
+		return new JSONViewChanges(viewId, windowId, Boolean.TRUE, changedIds);
+	}
 }
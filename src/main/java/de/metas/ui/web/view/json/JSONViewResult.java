@@ -98,6 +98,10 @@ public final class JSONViewResult
 	@JsonProperty("size")
 	@JsonInclude(JsonInclude.Include.NON_NULL)
 	private final Long size;
+	/** true if the size is just an estimation, because the view's rows are still loaded in background. A view changed websocket event is sent when the exact size is known. */
+	@JsonProperty("sizeEstimated")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private final Boolean sizeEstimated;
 
 	@JsonProperty("orderBy")
 	@JsonInclude(JsonInclude.Include.NON_EMPTY)
@@ -161,6 +165,7 @@ public final class JSONViewResult
 
 		final long size = viewResult.getSize();
 		this.size = size >= 0 ? size : null;
+		this.sizeEstimated = viewResult.isSizeEstimated() ? Boolean.TRUE : null;
 
 		staticFilters = JSONStickyDocumentFilter.ofStickyFiltersList(viewResult.getStickyFilters(), adLanguage);
 		filters = JSONDocumentFilter.ofList(viewResult.getFilters(), adLanguage);
@@ -206,6 +211,7 @@ public final class JSONViewResult
 			@JsonProperty("description") final String description,
 			//
 			@JsonProperty("size") final Long size,
+			@JsonProperty("sizeEstimated") final Boolean sizeEstimated,
 			@JsonProperty("staticFilters") final List<JSONStickyDocumentFilter> staticFilters,
 			@JsonProperty("filters") final List<JSONDocumentFilter> filters,
 			@JsonProperty("orderBy") final List<JSONViewOrderBy> orderBy,
@@ -233,6 +239,7 @@ public final class JSONViewResult
 		this.description = description;
 		//
 		this.size = size;
+		this.sizeEstimated = sizeEstimated;
 		this.filters = filters == null ? ImmutableList.of() : filters;
 		this.staticFilters = staticFilters == null ? ImmutableList.of() : staticFilters;
 		this.orderBy = orderBy == null ? ImmutableList.of() : orderBy;
@@ -260,6 +267,7 @@ public final class JSONViewResult
 				.add("viewId", viewId)
 				.add("AD_Window_ID", windowId)
 				.add("size", size)
+				.add("sizeEstimated", sizeEstimated)
 				//
 				// Page info
 				.add("firstRow", firstRow)
@@ -0,0 +1,52 @@
+package de.metas.ui.web.websocket;
+
+import javax.annotation.Nullable;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Implemented by websocket events which can be coalesced with the events which are sent after them to the same destination.
+ *
+ * @see WebsocketEventsDispatcher
+ */
+public interface MergeableWebsocketEvent
+{
+	/**
+	 * @return an event which contains the changes of this event and of the given next event or <code>null</code> if they cannot be merged.
+	 *         NOTE: implementations shall not change this event or the given one.
+	 */
+	@Nullable
+	Object mergeWithOrNull(Object nextEvent);
+
+	/**
+	 * @return an event which tells the client that everything covered by this event (e.g. the whole view or document) shall be considered changed
+	 *         or <code>null</code> if not supported.
+	 *         Used to replace too many pending events of the same destination.
+	 *         NOTE: implementations shall not change this event.
+	 */
+	@Nullable
+	default Object toFullyChangedEventOrNull()
+	{
+		return null;
+	}
+}
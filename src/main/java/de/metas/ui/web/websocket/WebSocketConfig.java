@@ -6,6 +6,7 @@ import java.util.Map;
 import org.adempiere.util.Check;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpStatus;
@@ -23,6 +24,7 @@ import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.AbstractWebSocketMessageBrokerConfigurer;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.messaging.AbstractSubProtocolEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionSubscribeEvent;
@@ -71,9 +73,15 @@ public class WebSocketConfig extends AbstractWebSocketMessageBrokerConfigurer
 	private static final String TOPIC_View = "/view";
 	private static final String TOPIC_Document = "/document";
 	private static final String TOPIC_Board = "/board";
+	private static final String TOPIC_Process = "/process";
 	public static final String TOPIC_Dashboard = "/dashboard";
 	public static final String TOPIC_Devices = "/devices";
 
+	@Value("${metasfresh.webui.websocket.sendTimeLimitMillis:10000}")
+	private int sendTimeLimitMillis;
+	@Value("${metasfresh.webui.websocket.sendBufferSizeLimitBytes:524288}")
+	private int sendBufferSizeLimitBytes;
+
 	public static final String buildUserSessionTopicName(final int adUserId)
 	{
 		return TOPIC_UserSession + "/" + adUserId;
@@ -95,12 +103,22 @@ public class WebSocketConfig extends AbstractWebSocketMessageBrokerConfigurer
 		return TOPIC_Document + "/" + windowId.toJson() + "/" + documentId.toJson();
 	}
 
+	public static final String buildDocumentReferencesTopicName(@NonNull final WindowId windowId, @NonNull final DocumentId documentId)
+	{
+		return buildDocumentTopicName(windowId, documentId) + "/references";
+	}
+
 	public static final String buildBoardTopicName(final int boardId)
 	{
 		Preconditions.checkArgument(boardId > 0);
 		return TOPIC_Board + "/" + boardId;
 	}
 
+	public static final String buildProcessInstanceTopicName(@NonNull final DocumentId pinstanceId)
+	{
+		return TOPIC_Process + "/" + pinstanceId.toJson();
+	}
+
 	@Override
 	public void registerStompEndpoints(final StompEndpointRegistry registry)
 	{
@@ -123,6 +141,7 @@ public class WebSocketConfig extends AbstractWebSocketMessageBrokerConfigurer
 				TOPIC_View,
 				TOPIC_Document,
 				TOPIC_Board,
+				TOPIC_Process,
 				TOPIC_Dashboard,
 				TOPIC_Devices);
 
@@ -130,6 +149,17 @@ public class WebSocketConfig extends AbstractWebSocketMessageBrokerConfigurer
 		config.setApplicationDestinationPrefixes("/app");
 	}
 
+	@Override
+	public void configureWebSocketTransport(final WebSocketTransportRegistration registration)
+	{
+		//
+		// Per session backpressure: if a slow client cannot keep up with the messages we are sending,
+		// the messages are buffered up to given limits and after that the session is closed,
+		// instead of blocking the outbound channel (which is shared by all sessions, see configureClientOutboundChannel()).
+		registration.setSendTimeLimit(sendTimeLimitMillis)
+				.setSendBufferSizeLimit(sendBufferSizeLimitBytes);
+	}
+
 	@Override
 	public void configureClientOutboundChannel(final ChannelRegistration registration)
 	{
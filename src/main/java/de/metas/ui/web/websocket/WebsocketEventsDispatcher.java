@@ -0,0 +1,352 @@
+package de.metas.ui.web.websocket;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.slf4j.Logger;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.google.common.collect.ImmutableMap;
+
+import de.metas.logging.LogManager;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Sends websocket events to {@link SimpMessagingTemplate}, asynchronously and coalesced.
+ *
+ * Events are collected per destination for a short time window and then they are sent from a single background thread, so the sending order is preserved.
+ * While collecting, an event is merged with the last pending event of the same destination, if both are {@link MergeableWebsocketEvent}s.
+ * If there are too many pending events for one destination, they are replaced by one "fully changed" event (see {@link MergeableWebsocketEvent#toFullyChangedEventOrNull()}).
+ * Only if that's not possible, the oldest events are dropped.
+ *
+ * If the coalescing window is not positive, the events are sent right away, on caller's thread.
+ *
+ * @author metas-dev <dev@metasfresh.com>
+ *
+ */
+final class WebsocketEventsDispatcher
+{
+	private static final transient Logger logger = LogManager.getLogger(WebsocketEventsDispatcher.class);
+
+	private final SimpMessagingTemplate websocketMessagingTemplate;
+	private final WebsocketEventsLog eventsLog;
+	private final long coalesceWindowMillis;
+	private final int maxPendingEventsPerDestination;
+	private final ScheduledExecutorService executor;
+
+	private final Object lock = new Object();
+	private LinkedHashMap<String, ArrayDeque<PendingEvent>> pendingEventsByDestination = new LinkedHashMap<>();
+	private int pendingEventsCount = 0;
+	private boolean flushScheduled = false;
+
+	private final AtomicLong countEnqueued = new AtomicLong();
+	private final AtomicLong countMerged = new AtomicLong();
+	private final AtomicLong countCoalescedToFullyChanged = new AtomicLong();
+	private final AtomicLong countDropped = new AtomicLong();
+	private final AtomicLong countSent = new AtomicLong();
+	private final AtomicLong countSendErrors = new AtomicLong();
+
+	public WebsocketEventsDispatcher(
+			@NonNull final SimpMessagingTemplate websocketMessagingTemplate,
+			@NonNull final WebsocketEventsLog eventsLog,
+			final long coalesceWindowMillis,
+			final int maxPendingEventsPerDestination)
+	{
+		this.websocketMessagingTemplate = websocketMessagingTemplate;
+		this.eventsLog = eventsLog;
+		this.coalesceWindowMillis = coalesceWindowMillis > 0 ? coalesceWindowMillis : 0;
+		this.maxPendingEventsPerDestination = maxPendingEventsPerDestination > 0 ? maxPendingEventsPerDestination : Integer.MAX_VALUE;
+
+		if (this.coalesceWindowMillis > 0)
+		{
+			executor = Executors.newSingleThreadScheduledExecutor(CustomizableThreadFactory.builder()
+					.setDaemon(true)
+					.setThreadNamePrefix("webui-websocket-sender")
+					.build());
+		}
+		else
+		{
+			executor = null;
+		}
+
+		logger.info("Created with coalesceWindowMillis={}, maxPendingEventsPerDestination={}", this.coalesceWindowMillis, this.maxPendingEventsPerDestination);
+	}
+
+	public void send(@NonNull final String destination, @NonNull final Object payload, final boolean converted)
+	{
+		countEnqueued.incrementAndGet();
+
+		if (executor == null)
+		{
+			sendNow(destination, payload, converted);
+			return;
+		}
+
+		final Map<String, ArrayDeque<PendingEvent>> eventsToSendNow;
+		synchronized (lock)
+		{
+			final ArrayDeque<PendingEvent> pendingEvents = pendingEventsByDestination.computeIfAbsent(destination, k -> new ArrayDeque<>());
+
+			final Object mergedPayload = converted ? null : mergeWithLastOrNull(pendingEvents.peekLast(), payload);
+			if (mergedPayload != null)
+			{
+				pendingEvents.pollLast();
+				pendingEvents.addLast(new PendingEvent(mergedPayload, false));
+				countMerged.incrementAndGet();
+			}
+			else
+			{
+				pendingEvents.addLast(new PendingEvent(payload, converted));
+				pendingEventsCount++;
+
+				if (pendingEvents.size() > maxPendingEventsPerDestination)
+				{
+					coalesceToFullyChangedEvents(destination, pendingEvents);
+				}
+			}
+
+			eventsToSendNow = flushScheduled ? null : scheduleFlushOrRemoveAllPendingEvents();
+		}
+
+		// NOTE: sending outside of the lock, in case the flush could not be scheduled
+		if (eventsToSendNow != null)
+		{
+			sendAll(eventsToSendNow);
+		}
+	}
+
+	/**
+	 * Replaces the pending events of given destination by "fully changed" events, where supported.
+	 * If there are still too many pending events, the oldest ones are dropped.
+	 * <p>
+	 * NOTE: shall be called while holding the {@link #lock}
+	 */
+	private void coalesceToFullyChangedEvents(final String destination, final ArrayDeque<PendingEvent> pendingEvents)
+	{
+		final int countBefore = pendingEvents.size();
+
+		final ArrayDeque<PendingEvent> notCoalescedEvents = new ArrayDeque<>();
+		final ArrayDeque<PendingEvent> fullyChangedEvents = new ArrayDeque<>();
+		for (final PendingEvent event : pendingEvents)
+		{
+			final Object fullyChangedPayload = toFullyChangedPayloadOrNull(event);
+			if (fullyChangedPayload == null)
+			{
+				notCoalescedEvents.addLast(event);
+				continue;
+			}
+
+			final Object mergedPayload = mergeWithLastOrNull(fullyChangedEvents.peekLast(), fullyChangedPayload);
+			if (mergedPayload != null)
+			{
+				fullyChangedEvents.pollLast();
+				fullyChangedEvents.addLast(new PendingEvent(mergedPayload, false));
+			}
+			else
+			{
+				fullyChangedEvents.addLast(new PendingEvent(fullyChangedPayload, false));
+			}
+		}
+
+		// NOTE: the "fully changed" events are covering the latest state, so we are sending them last
+		pendingEvents.clear();
+		pendingEvents.addAll(notCoalescedEvents);
+		pendingEvents.addAll(fullyChangedEvents);
+		pendingEventsCount += pendingEvents.size() - countBefore;
+		if (pendingEvents.size() < countBefore)
+		{
+			countCoalescedToFullyChanged.addAndGet(countBefore - pendingEvents.size());
+			logger.debug("Coalesced {} pending events to {} events for destination={}", countBefore, pendingEvents.size(), destination);
+		}
+
+		while (pendingEvents.size() > maxPendingEventsPerDestination)
+		{
+			final PendingEvent droppedEvent = pendingEvents.pollFirst();
+			pendingEventsCount--;
+			countDropped.incrementAndGet();
+			logger.warn("Dropped event because there are more than {} pending events for destination={}: {}", maxPendingEventsPerDestination, destination, droppedEvent);
+		}
+	}
+
+	private static Object toFullyChangedPayloadOrNull(final PendingEvent event)
+	{
+		if (event.isConverted())
+		{
+			return null;
+		}
+
+		final Object payload = event.getPayload();
+		if (!(payload instanceof MergeableWebsocketEvent))
+		{
+			return null;
+		}
+
+		return ((MergeableWebsocketEvent)payload).toFullyChangedEventOrNull();
+	}
+
+	private static Object mergeWithLastOrNull(final PendingEvent lastEvent, final Object payload)
+	{
+		if (lastEvent == null || lastEvent.isConverted())
+		{
+			return null;
+		}
+
+		final Object lastPayload = lastEvent.getPayload();
+		if (!(lastPayload instanceof MergeableWebsocketEvent))
+		{
+			return null;
+		}
+
+		return ((MergeableWebsocketEvent)lastPayload).mergeWithOrNull(payload);
+	}
+
+	/**
+	 * NOTE: shall be called while holding the {@link #lock}
+	 *
+	 * @return <code>null</code> if the flush was scheduled or the pending events which shall be sent right away
+	 */
+	private Map<String, ArrayDeque<PendingEvent>> scheduleFlushOrRemoveAllPendingEvents()
+	{
+		try
+		{
+			executor.schedule(this::flush, coalesceWindowMillis, TimeUnit.MILLISECONDS);
+			flushScheduled = true;
+			return null;
+		}
+		catch (final RejectedExecutionException ex)
+		{
+			logger.warn("Failed scheduling the flush. Sending the pending events right away.", ex);
+			return removeAllPendingEvents();
+		}
+	}
+
+	private void flush()
+	{
+		final Map<String, ArrayDeque<PendingEvent>> eventsToSend;
+		synchronized (lock)
+		{
+			flushScheduled = false;
+			eventsToSend = removeAllPendingEvents();
+		}
+
+		sendAll(eventsToSend);
+	}
+
+	/** NOTE: shall be called while holding the {@link #lock} */
+	private Map<String, ArrayDeque<PendingEvent>> removeAllPendingEvents()
+	{
+		final Map<String, ArrayDeque<PendingEvent>> pendingEvents = pendingEventsByDestination;
+		pendingEventsByDestination = new LinkedHashMap<>();
+		pendingEventsCount = 0;
+		return pendingEvents;
+	}
+
+	private void sendAll(final Map<String, ArrayDeque<PendingEvent>> eventsByDestination)
+	{
+		for (final Map.Entry<String, ArrayDeque<PendingEvent>> entry : eventsByDestination.entrySet())
+		{
+			final String destination = entry.getKey();
+			for (final PendingEvent event : entry.getValue())
+			{
+				try
+				{
+					sendNow(destination, event.getPayload(), event.isConverted());
+				}
+				catch (final Exception ex)
+				{
+					countSendErrors.incrementAndGet();
+					logger.warn("Failed sending to destination={}: {}", destination, event, ex);
+				}
+			}
+		}
+	}
+
+	private void sendNow(final String destination, final Object payload, final boolean converted)
+	{
+		logger.debug("Sending to destination={}: payload={}", destination, payload);
+
+		if (converted)
+		{
+			final Message<?> message = (Message<?>)payload;
+			websocketMessagingTemplate.send(destination, message);
+		}
+		else
+		{
+			websocketMessagingTemplate.convertAndSend(destination, payload);
+			eventsLog.logEvent(destination, payload);
+		}
+
+		countSent.incrementAndGet();
+	}
+
+	public Map<String, Object> getStats()
+	{
+		final int pendingEventsCount;
+		final int pendingDestinationsCount;
+		synchronized (lock)
+		{
+			pendingEventsCount = this.pendingEventsCount;
+			pendingDestinationsCount = pendingEventsByDestination.size();
+		}
+
+		return ImmutableMap.<String, Object> builder()
+				.put("coalesceWindowMillis", coalesceWindowMillis)
+				.put("maxPendingEventsPerDestination", maxPendingEventsPerDestination)
+				.put("pendingEventsCount", pendingEventsCount)
+				.put("pendingDestinationsCount", pendingDestinationsCount)
+				.put("enqueuedCount", countEnqueued.get())
+				.put("mergedCount", countMerged.get())
+				.put("coalescedToFullyChangedCount", countCoalescedToFullyChanged.get())
+				.put("droppedCount", countDropped.get())
+				.put("sentCount", countSent.get())
+				.put("sendErrorsCount", countSendErrors.get())
+				.build();
+	}
+
+	public void resetStats()
+	{
+		countEnqueued.set(0);
+		countMerged.set(0);
+		countCoalescedToFullyChanged.set(0);
+		countDropped.set(0);
+		countSent.set(0);
+		countSendErrors.set(0);
+	}
+
+	@lombok.Value
+	private static final class PendingEvent
+	{
+		private final Object payload;
+		private final boolean converted;
+	}
+}
@@ -3,6 +3,7 @@ package de.metas.ui.web.websocket;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.ad.trx.api.ITrxListenerManager.TrxEventTiming;
@@ -46,6 +47,7 @@ import lombok.NonNull;
  *
  * NOTE: by default, all methods will send the events after the current DB transaction is committed.
  * If there is no current transaction, the events will be sent right away.
+ * The actual sending is done asynchronously, see {@link WebsocketEventsDispatcher}.
  *
  * @author metas-dev <dev@metasfresh.com>
  *
@@ -55,17 +57,20 @@ public class WebsocketSender implements InitializingBean
 {
 	private static final transient Logger logger = LogManager.getLogger(WebsocketSender.class);
 
-	private final SimpMessagingTemplate websocketMessagingTemplate;
 	private final WebsocketEventsLog eventsLog = new WebsocketEventsLog();
+	private final WebsocketEventsDispatcher dispatcher;
 	private final WebsocketEventsQueue autoflushQueue;
 
 	@Value("${metasfresh.webui.websocket.logEventsEnabled:false}")
 	private boolean logEventsEnabledDefault;
 
-	public WebsocketSender(final SimpMessagingTemplate websocketMessagingTemplate)
+	public WebsocketSender(
+			final SimpMessagingTemplate websocketMessagingTemplate,
+			@Value("${metasfresh.webui.websocket.coalesceWindowMillis:50}") final long coalesceWindowMillis,
+			@Value("${metasfresh.webui.websocket.maxPendingEventsPerDestination:1000}") final int maxPendingEventsPerDestination)
 	{
-		this.websocketMessagingTemplate = websocketMessagingTemplate;
-		autoflushQueue = new WebsocketEventsQueue("AUTOFLUSH", websocketMessagingTemplate, eventsLog, /* autoflush */true);
+		dispatcher = new WebsocketEventsDispatcher(websocketMessagingTemplate, eventsLog, coalesceWindowMillis, maxPendingEventsPerDestination);
+		autoflushQueue = new WebsocketEventsQueue("AUTOFLUSH", dispatcher, /* autoflush */true);
 	}
 
 	@Override
@@ -116,7 +121,7 @@ public class WebsocketSender implements InitializingBean
 	{
 		final String name = trx.getTrxName();
 		final boolean autoflush = false;
-		final WebsocketEventsQueue queue = new WebsocketEventsQueue(name, websocketMessagingTemplate, eventsLog, autoflush);
+		final WebsocketEventsQueue queue = new WebsocketEventsQueue(name, dispatcher, autoflush);
 
 		// Bind
 		trx.getTrxListenerManager()
@@ -141,6 +146,17 @@ public class WebsocketSender implements InitializingBean
 		return eventsLog.getLoggedEvents(destinationFilter);
 	}
 
+	/** @return queue depth and enqueued/merged/dropped/sent counters */
+	public Map<String, Object> getStats()
+	{
+		return dispatcher.getStats();
+	}
+
+	public void resetStats()
+	{
+		dispatcher.resetStats();
+	}
+
 	@lombok.Value
 	@lombok.Builder
 	private static final class WebsocketEvent
@@ -154,20 +170,17 @@ public class WebsocketSender implements InitializingBean
 	{
 		/** internal name, used for logging */
 		private final String name;
-		private final SimpMessagingTemplate websocketMessagingTemplate;
-		private final WebsocketEventsLog eventsLog;
+		private final WebsocketEventsDispatcher dispatcher;
 		private final boolean autoflush;
 		private final List<WebsocketEvent> events = new ArrayList<>();
 
 		public WebsocketEventsQueue(
 				@NonNull final String name,
-				@NonNull final SimpMessagingTemplate websocketMessagingTemplate,
-				@NonNull final WebsocketEventsLog eventsLog,
+				@NonNull final WebsocketEventsDispatcher dispatcher,
 				final boolean autoflush)
 		{
 			this.name = name;
-			this.websocketMessagingTemplate = websocketMessagingTemplate;
-			this.eventsLog = eventsLog;
+			this.dispatcher = dispatcher;
 			this.autoflush = autoflush;
 		}
 
@@ -232,17 +245,7 @@ public class WebsocketSender implements InitializingBean
 		private void sendEvent(final String destination, final Object payload, final boolean converted)
 		{
 			logger.info("[name={}] Sending to destination={}: payload={}", name, destination, payload);
-
-			if (converted)
-			{
-				final Message<?> message = (Message<?>)payload;
-				websocketMessagingTemplate.send(destination, message);
-			}
-			else
-			{
-				websocketMessagingTemplate.convertAndSend(destination, payload);
-				eventsLog.logEvent(destination, payload);
-			}
+			dispatcher.send(destination, payload, converted);
 		}
 	}
 }
@@ -2,6 +2,7 @@ package de.metas.ui.web.window.controller;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
 import java.util.function.Predicate;
 
 import org.adempiere.ad.table.api.IADTableDAO;
@@ -38,6 +39,7 @@ import de.metas.ui.web.process.ProcessRestController;
 import de.metas.ui.web.process.descriptor.WebuiRelatedProcessDescriptor;
 import de.metas.ui.web.process.json.JSONDocumentActionsList;
 import de.metas.ui.web.session.UserSession;
+import de.metas.ui.web.websocket.WebSocketConfig;
 import de.metas.ui.web.window.datatypes.DocumentId;
 import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
 import de.metas.ui.web.window.datatypes.DocumentPath;
@@ -47,6 +49,8 @@ import de.metas.ui.web.window.datatypes.json.JSONDocumentChangedEvent;
 import de.metas.ui.web.window.datatypes.json.JSONDocumentLayout;
 import de.metas.ui.web.window.datatypes.json.JSONDocumentPath;
 import de.metas.ui.web.window.datatypes.json.JSONDocumentReference;
+import de.metas.ui.web.window.datatypes.json.JSONDocumentReferencesAsyncResult;
+import de.metas.ui.web.window.datatypes.json.JSONDocumentReferencesEvent;
 import de.metas.ui.web.window.datatypes.json.JSONDocumentReferencesGroup;
 import de.metas.ui.web.window.datatypes.json.JSONDocumentReferencesGroupList;
 import de.metas.ui.web.window.datatypes.json.JSONLookupValuesList;
@@ -180,52 +184,60 @@ public class WindowRestController
 	}
 
 	@GetMapping("/{windowId}/{documentId}")
-	public List<JSONDocument> getData(
+	public ResponseEntity<List<JSONDocument>> getData(
 			@PathVariable("windowId") final String windowIdStr,
 			@PathVariable("documentId") final String documentIdStr,
 			@RequestParam(name = PARAM_FieldsList, required = false) @ApiParam("comma separated field names") final String fieldsListStr,
-			@RequestParam(name = PARAM_Advanced, required = false, defaultValue = PARAM_Advanced_DefaultValue) final boolean advanced)
+			@RequestParam(name = PARAM_Advanced, required = false, defaultValue = PARAM_Advanced_DefaultValue) final boolean advanced,
+			final WebRequest request)
 	{
 		final WindowId windowId = WindowId.fromJson(windowIdStr);
 		final DocumentPath documentPath = DocumentPath.rootDocumentPath(windowId, documentIdStr);
 		final List<DocumentQueryOrderBy> orderBys = ImmutableList.of();
-		return getData(documentPath, fieldsListStr, advanced, orderBys);
+		return getData(documentPath, fieldsListStr, advanced, orderBys, request);
 	}
 
 	@GetMapping("/{windowId}/{documentId}/{tabId}")
-	public List<JSONDocument> getData(
+	public ResponseEntity<List<JSONDocument>> getData(
 			@PathVariable("windowId") final String windowIdStr,
 			@PathVariable("documentId") final String documentIdStr,
 			@PathVariable("tabId") final String tabIdStr,
 			@RequestParam(name = PARAM_FieldsList, required = false) @ApiParam("comma separated field names") final String fieldsListStr,
 			@RequestParam(name = PARAM_Advanced, required = false, defaultValue = PARAM_Advanced_DefaultValue) final boolean advanced,
-			@RequestParam(name = "orderBy", required = false) final String orderBysListStr)
+			@RequestParam(name = "orderBy", required = false) final String orderBysListStr,
+			final WebRequest request)
 	{
 		final WindowId windowId = WindowId.fromJson(windowIdStr);
 		final DocumentId documentId = DocumentId.of(documentIdStr);
 		final DetailId tabId = DetailId.fromJson(tabIdStr);
 		final DocumentPath documentPath = DocumentPath.includedDocumentPath(windowId, documentId, tabId);
 		final List<DocumentQueryOrderBy> orderBys = DocumentQueryOrderBy.parseOrderBysList(orderBysListStr);
-		return getData(documentPath, fieldsListStr, advanced, orderBys);
+		return getData(documentPath, fieldsListStr, advanced, orderBys, request);
 	}
 
 	@GetMapping("/{windowId}/{documentId}/{tabId}/{rowId}")
-	public List<JSONDocument> getData(
+	public ResponseEntity<List<JSONDocument>> getData(
 			@PathVariable("windowId") final String windowIdStr //
 			, @PathVariable("documentId") final String documentIdStr //
 			, @PathVariable("tabId") final String tabIdStr //
 			, @PathVariable("rowId") final String rowIdStr //
 			, @RequestParam(name = PARAM_FieldsList, required = false) @ApiParam("comma separated field names") final String fieldsListStr //
 			, @RequestParam(name = PARAM_Advanced, required = false, defaultValue = PARAM_Advanced_DefaultValue) final boolean advanced //
+			, final WebRequest request //
 	)
 	{
 		final WindowId windowId = WindowId.fromJson(windowIdStr);
 		final DocumentPath documentPath = DocumentPath.includedDocumentPath(windowId, documentIdStr, tabIdStr, rowIdStr);
 		final List<DocumentQueryOrderBy> orderBys = ImmutableList.of();
-		return getData(documentPath, fieldsListStr, advanced, orderBys);
+		return getData(documentPath, fieldsListStr, advanced, orderBys, request);
 	}
 
-	private List<JSONDocument> getData(final DocumentPath documentPath, final String fieldsListStr, final boolean advanced, final List<DocumentQueryOrderBy> orderBys)
+	private ResponseEntity<List<JSONDocument>> getData(
+			final DocumentPath documentPath,
+			final String fieldsListStr,
+			final boolean advanced,
+			final List<DocumentQueryOrderBy> orderBys,
+			final WebRequest request)
 	{
 		userSession.assertLoggedIn();
 
@@ -234,27 +246,36 @@ public class WindowRestController
 				.setDataFieldsList(fieldsListStr)
 				.build();
 
-		return documentCollection.forRootDocumentReadonly(documentPath, rootDocument -> {
-			List<Document> documents;
-			if (documentPath.isRootDocument())
-			{
-				documents = ImmutableList.of(rootDocument);
-			}
-			else if (documentPath.isAnyIncludedDocument())
-			{
-				documents = rootDocument.getIncludedDocuments(documentPath.getDetailId(), orderBys).toList();
-			}
-			else if (documentPath.isSingleIncludedDocument())
-			{
-				documents = ImmutableList.of(rootDocument.getIncludedDocument(documentPath.getDetailId(), documentPath.getSingleRowId()));
-			}
-			else
-			{
-				throw new InvalidDocumentPathException(documentPath);
-			}
+		// NOTE: the ETag is checked while holding the root document's read lock, before any JSONDocument is built
+		// NOTE: the stale included documents are reported once per session
+		return documentCollection.forRootDocumentReadonly(documentPath, userSession.getSessionId(), rootDocument -> ETagResponseEntityBuilder.ofETagAware(request, rootDocument)
+				.includeLanguageInETag()
+				.etagAttribute("user", String.valueOf(userSession.getAD_User_ID()))
+				.etagAttribute("role", String.valueOf(userSession.getUserRolePermissions().getAD_Role_ID()))
+				.cacheMaxAge(0) // always revalidate
+				.map(doc -> getDocuments(doc, documentPath, orderBys))
+				.jsonOptions(() -> jsonOpts)
+				.toJson(JSONDocument::ofDocumentsList));
+	}
 
-			return JSONDocument.ofDocumentsList(documents, jsonOpts);
-		});
+	private static List<Document> getDocuments(final Document rootDocument, final DocumentPath documentPath, final List<DocumentQueryOrderBy> orderBys)
+	{
+		if (documentPath.isRootDocument())
+		{
+			return ImmutableList.of(rootDocument);
+		}
+		else if (documentPath.isAnyIncludedDocument())
+		{
+			return rootDocument.getIncludedDocuments(documentPath.getDetailId(), orderBys).toList();
+		}
+		else if (documentPath.isSingleIncludedDocument())
+		{
+			return ImmutableList.of(rootDocument.getIncludedDocument(documentPath.getDetailId(), documentPath.getSingleRowId()));
+		}
+		else
+		{
+			throw new InvalidDocumentPathException(documentPath);
+		}
 	}
 
 	/**
@@ -709,6 +730,35 @@ public class WindowRestController
 		return JSONDocumentReferencesGroupList.of(documentReferences, menuTree, othersMenuCaption, jsonOpts);
 	}
 
+	@GetMapping(value = "/{windowId}/{documentId}/references/async")
+	@ApiOperation("Starts counting the document references. Each reference is sent to the returned websocket endpoint as soon as it was counted, so the frontend shall subscribe to it before calling this.")
+	public JSONDocumentReferencesAsyncResult getDocumentReferencesAsync(
+			@PathVariable("windowId") final String windowIdStr //
+			, @PathVariable("documentId") final String documentIdStr //
+	)
+	{
+		userSession.assertLoggedIn();
+
+		final WindowId windowId = WindowId.fromJson(windowIdStr);
+		final DocumentId documentId = DocumentId.of(documentIdStr);
+		final DocumentPath documentPath = DocumentPath.rootDocumentPath(windowId, documentId);
+
+		final JSONOptions jsonOpts = newJSONOptions().build();
+		documentReferencesService.getDocumentReferencesAsync(documentPath, documentReference -> {
+			final JSONDocumentReference jsonDocumentReference = JSONDocumentReference.of(documentReference, jsonOpts);
+			if (jsonDocumentReference != null)
+			{
+				websocketPublisher.publishDocumentReferencesEvent(windowId, documentId, JSONDocumentReferencesEvent.partialResult(jsonDocumentReference));
+			}
+		})
+				// NOTE: also when failed, so the frontend is not waiting forever
+				.whenComplete((documentReferences, ex) -> websocketPublisher.publishDocumentReferencesEvent(windowId, documentId, ex == null
+						? JSONDocumentReferencesEvent.completed()
+						: JSONDocumentReferencesEvent.failed(AdempiereException.extractMessage(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex))));
+
+		return JSONDocumentReferencesAsyncResult.of(WebSocketConfig.buildDocumentReferencesTopicName(windowId, documentId));
+	}
+
 	@GetMapping("/{windowId}/{documentId}/print/{filename:.*}")
 	public ResponseEntity<byte[]> getDocumentPrint(
 			@PathVariable("windowId") final String windowIdStr //
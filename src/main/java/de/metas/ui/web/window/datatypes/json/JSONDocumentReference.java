@@ -44,7 +44,7 @@ import de.metas.ui.web.window.model.DocumentReference;
 @JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
 public final class JSONDocumentReference
 {
-	static final JSONDocumentReference of(final DocumentReference documentReference, final JSONOptions jsonOpts)
+	public static final JSONDocumentReference of(final DocumentReference documentReference, final JSONOptions jsonOpts)
 	{
 		try
 		{
@@ -0,0 +1,67 @@
+package de.metas.ui.web.window.datatypes.json;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.common.collect.ImmutableList;
+
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Websocket event sent while the document references are counted.
+ * <p>
+ * A partial event is sent for each reference, as soon as it was counted, and a final "completed" event at the end.
+ * If counting failed, the final event also contains the error.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+@Value
+public final class JSONDocumentReferencesEvent
+{
+	public static JSONDocumentReferencesEvent partialResult(final JSONDocumentReference reference)
+	{
+		return new JSONDocumentReferencesEvent(ImmutableList.of(reference), false, null);
+	}
+
+	public static JSONDocumentReferencesEvent completed()
+	{
+		return new JSONDocumentReferencesEvent(ImmutableList.of(), true, null);
+	}
+
+	/** @return final event, telling the frontend that counting failed and the references sent so far are not complete */
+	public static JSONDocumentReferencesEvent failed(final String error)
+	{
+		return new JSONDocumentReferencesEvent(ImmutableList.of(), true, error);
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	private final List<JSONDocumentReference> references;
+
+	private final boolean completed;
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private final String error;
+}
@@ -0,0 +1,242 @@
+package de.metas.ui.web.window.descriptor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+import org.adempiere.ad.expression.api.IExpressionEvaluator.OnVariableNotFound;
+import org.adempiere.ad.expression.api.ILogicExpression;
+import org.adempiere.ad.expression.api.LogicExpressionResult;
+import org.adempiere.ad.validationRule.IValidationContext;
+import org.compiere.util.Evaluatee;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+
+import de.metas.ui.web.window.WindowConstants;
+import lombok.NonNull;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * A document's readonly/display/mandatory {@link ILogicExpression}, prepared for being evaluated against a document of a given {@link DocumentEntityDescriptor}:
+ * <ul>
+ * <li>constant expressions are evaluated once, at compile time
+ * <li>if all expression parameters are fields of the entity, they are bound to the field indexes, so the parameter values can be fetched without any name based lookup.
+ * In this case the last evaluation result is memorized per document ({@link Memo}) and it's returned as long as the parameter values did not change,
+ * without walking the expression tree again.
+ * <li>else the expression is interpreted as usual
+ * </ul>
+ */
+public final class CompiledLogicExpression
+{
+	/* package */ static Compiler compiler(@NonNull final List<String> fieldNamesByIndex)
+	{
+		return new Compiler(fieldNamesByIndex);
+	}
+
+	private final ILogicExpression expression;
+	private final LogicExpressionResult constantResult;
+
+	/** field indexes of expression parameters, or <code>null</code> if the expression cannot be memorized */
+	private final int[] parameterFieldIndexes;
+	private final int memoSlot;
+
+	private CompiledLogicExpression(
+			@NonNull final ILogicExpression expression,
+			final LogicExpressionResult constantResult,
+			final int[] parameterFieldIndexes,
+			final int memoSlot)
+	{
+		this.expression = expression;
+		this.constantResult = constantResult;
+		this.parameterFieldIndexes = parameterFieldIndexes;
+		this.memoSlot = memoSlot;
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.omitNullValues()
+				.add("constant", constantResult != null ? Boolean.TRUE : null)
+				.add("memoSlot", memoSlot >= 0 ? memoSlot : null)
+				.addValue(expression)
+				.toString();
+	}
+
+	public ILogicExpression getExpression()
+	{
+		return expression;
+	}
+
+	/**
+	 * @param evaluatee document evaluatee, used when the expression has to be interpreted
+	 * @param fieldValueByIndex gets document's field value by field index
+	 * @param memo document's evaluation results memo
+	 */
+	public LogicExpressionResult evaluate(
+			@NonNull final Evaluatee evaluatee,
+			@NonNull final IntFunction<Object> fieldValueByIndex,
+			@NonNull final Memo memo)
+	{
+		if (constantResult != null)
+		{
+			return constantResult;
+		}
+		if (parameterFieldIndexes == null)
+		{
+			return expression.evaluateToResult(evaluatee, OnVariableNotFound.Fail);
+		}
+
+		//
+		// Fetch the parameter values.
+		// NOTE: null values are resolved by the evaluatee from other sources (parent document, defaults etc), so we cannot memorize them.
+		final Object[] parameterValues = new Object[parameterFieldIndexes.length];
+		for (int i = 0; i < parameterFieldIndexes.length; i++)
+		{
+			final Object value = fieldValueByIndex.apply(parameterFieldIndexes[i]);
+			if (value == null)
+			{
+				return expression.evaluateToResult(evaluatee, OnVariableNotFound.Fail);
+			}
+			parameterValues[i] = value;
+		}
+
+		//
+		// Check if the memorized result is still valid
+		final MemoEntry lastEntry = memo.get(memoSlot);
+		if (lastEntry != null && Arrays.equals(lastEntry.getParameterValues(), parameterValues))
+		{
+			return lastEntry.getResult();
+		}
+
+		//
+		// Evaluate and memorize the result
+		final LogicExpressionResult result = expression.evaluateToResult(evaluatee, OnVariableNotFound.Fail);
+		memo.set(memoSlot, new MemoEntry(parameterValues, result));
+		return result;
+	}
+
+	/**
+	 * Per document memo of the last evaluation results.
+	 * <p>
+	 * It's thread safe because a document snapshot might be evaluated by more readers at the same time.
+	 * The parameter values and the result are always replaced together, so a reader never gets a result which was computed for other parameter values.
+	 */
+	public static final class Memo
+	{
+		private final AtomicReferenceArray<MemoEntry> entries;
+
+		/* package */ Memo(final int slotsCount)
+		{
+			entries = new AtomicReferenceArray<>(slotsCount);
+		}
+
+		private MemoEntry get(final int slot)
+		{
+			return entries.get(slot);
+		}
+
+		private void set(final int slot, final MemoEntry entry)
+		{
+			entries.set(slot, entry);
+		}
+	}
+
+	@lombok.Value
+	private static final class MemoEntry
+	{
+		private final Object[] parameterValues;
+		private final LogicExpressionResult result;
+	}
+
+	/* package */ static final class Compiler
+	{
+		private final ImmutableMap<String, Integer> fieldIndexesByName;
+		private int nextMemoSlot = 0;
+
+		private Compiler(final List<String> fieldNamesByIndex)
+		{
+			final ImmutableMap.Builder<String, Integer> fieldIndexesByName = ImmutableMap.builder();
+			for (int index = 0; index < fieldNamesByIndex.size(); index++)
+			{
+				fieldIndexesByName.put(fieldNamesByIndex.get(index), index);
+			}
+			this.fieldIndexesByName = fieldIndexesByName.build();
+		}
+
+		public CompiledLogicExpression compile(@NonNull final ILogicExpression expression)
+		{
+			if (expression.isConstant())
+			{
+				return new CompiledLogicExpression(expression, LogicExpressionResult.ofConstantExpression(expression), null, -1);
+			}
+
+			final int[] parameterFieldIndexes = getParameterFieldIndexesOrNull(expression.getParameterNames(), fieldIndexesByName);
+			if (parameterFieldIndexes == null)
+			{
+				return new CompiledLogicExpression(expression, null, null, -1);
+			}
+
+			return new CompiledLogicExpression(expression, null, parameterFieldIndexes, nextMemoSlot++);
+		}
+
+		private static int[] getParameterFieldIndexesOrNull(final Set<String> parameterNames, final Map<String, Integer> fieldIndexesByName)
+		{
+			if (parameterNames.isEmpty())
+			{
+				return null;
+			}
+
+			final int[] parameterFieldIndexes = new int[parameterNames.size()];
+			int i = 0;
+			for (final String parameterName : parameterNames)
+			{
+				// variables which are resolved by the evaluatee before checking the document fields
+				if (WindowConstants.CONTEXTVAR_NextLineNo.equals(parameterName)
+						|| IValidationContext.PARAMETER_ContextTableName.equals(parameterName))
+				{
+					return null;
+				}
+
+				final Integer fieldIndex = fieldIndexesByName.get(parameterName);
+				if (fieldIndex == null)
+				{
+					return null;
+				}
+				parameterFieldIndexes[i++] = fieldIndex;
+			}
+
+			return parameterFieldIndexes;
+		}
+
+		public int getMemoSlotsCount()
+		{
+			return nextMemoSlot;
+		}
+	}
+}
@@ -115,6 +115,14 @@ public class DocumentEntityDescriptor
 
 	private final DocumentFieldDependencyMap dependencies;
 
+	//
+	// Compiled logic expressions
+	private final CompiledLogicExpression compiledReadonlyLogic;
+	private final ImmutableMap<String, CompiledLogicExpression> compiledFieldReadonlyLogics;
+	private final ImmutableMap<String, CompiledLogicExpression> compiledFieldDisplayLogics;
+	private final ImmutableMap<String, CompiledLogicExpression> compiledFieldMandatoryLogics;
+	private final int compiledLogicsMemoSlotsCount;
+
 	private final ConcurrentHashMap<Characteristic, Set<String>> _fieldNamesByCharacteristic = new ConcurrentHashMap<>();
 
 	//
@@ -154,6 +162,20 @@ public class DocumentEntityDescriptor
 		dataBinding = builder.getOrBuildDataBinding();
 		dependencies = builder.buildDependencies();
 
+		//
+		// Compile logic expressions
+		{
+			final CompiledLogicExpression.Compiler compiler = CompiledLogicExpression.compiler(fields.keySet().asList());
+			compiledReadonlyLogic = compiler.compile(readonlyLogic);
+			compiledFieldReadonlyLogics = fields.values().stream()
+					.collect(ImmutableMap.toImmutableMap(DocumentFieldDescriptor::getFieldName, field -> compiler.compile(field.getReadonlyLogic())));
+			compiledFieldDisplayLogics = fields.values().stream()
+					.collect(ImmutableMap.toImmutableMap(DocumentFieldDescriptor::getFieldName, field -> compiler.compile(field.getDisplayLogic())));
+			compiledFieldMandatoryLogics = fields.values().stream()
+					.collect(ImmutableMap.toImmutableMap(DocumentFieldDescriptor::getFieldName, field -> compiler.compile(field.getMandatoryLogic())));
+			compiledLogicsMemoSlotsCount = compiler.getMemoSlotsCount();
+		}
+
 		//
 		id = builder.getId();
 		internalName = builder.getInternalName();
@@ -387,6 +409,32 @@ public class DocumentEntityDescriptor
 		return dependencies;
 	}
 
+	public CompiledLogicExpression getCompiledReadonlyLogic()
+	{
+		return compiledReadonlyLogic;
+	}
+
+	public CompiledLogicExpression getCompiledFieldReadonlyLogic(final String fieldName)
+	{
+		return compiledFieldReadonlyLogics.get(fieldName);
+	}
+
+	public CompiledLogicExpression getCompiledFieldDisplayLogic(final String fieldName)
+	{
+		return compiledFieldDisplayLogics.get(fieldName);
+	}
+
+	public CompiledLogicExpression getCompiledFieldMandatoryLogic(final String fieldName)
+	{
+		return compiledFieldMandatoryLogics.get(fieldName);
+	}
+
+	/** @return a new memo of compiled logic expressions evaluation results, to be used by one document */
+	public CompiledLogicExpression.Memo newCompiledLogicsMemo()
+	{
+		return new CompiledLogicExpression.Memo(compiledLogicsMemoSlotsCount);
+	}
+
 	// legacy
 	/**
 	 * @return AD_Tab_ID
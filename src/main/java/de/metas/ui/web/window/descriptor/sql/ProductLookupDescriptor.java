@@ -4,6 +4,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -11,6 +12,13 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
@@ -22,11 +30,14 @@ import org.adempiere.model.I_M_FreightCost;
 import org.adempiere.service.ISysConfigBL;
 import org.adempiere.util.Check;
 import org.adempiere.util.Services;
+import org.adempiere.util.concurrent.CustomizableThreadFactory;
+import org.adempiere.util.lang.IAutoCloseable;
 import org.adempiere.util.time.SystemTime;
 import org.compiere.model.I_M_PriceList_Version;
 import org.compiere.model.I_M_ProductPrice;
 import org.compiere.model.MLookupFactory;
 import org.compiere.model.MLookupFactory.LanguageInfo;
+import org.compiere.util.CCache;
 import org.compiere.util.CtxName;
 import org.compiere.util.CtxNames;
 import org.compiere.util.DB;
@@ -34,14 +45,17 @@ import org.compiere.util.DisplayType;
 import org.compiere.util.Env;
 import org.compiere.util.TimeUtil;
 import org.compiere.util.Util;
+import org.slf4j.Logger;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import de.metas.i18n.ITranslatableString;
 import de.metas.i18n.NumberTranslatableString;
-import de.metas.material.dispo.commons.repository.atp.AvailableToPromiseQuery;
+import de.metas.logging.LogManager;
 import de.metas.pricing.PriceListId;
 import de.metas.pricing.service.IPriceListDAO;
 import de.metas.product.ProductId;
@@ -49,7 +63,6 @@ import de.metas.product.model.I_M_Product;
 import de.metas.quantity.Quantity;
 import de.metas.ui.web.document.filter.sql.SqlParamsCollector;
 import de.metas.ui.web.material.adapter.AvailableToPromiseAdapter;
-import de.metas.ui.web.material.adapter.AvailableToPromiseResultForWebui;
 import de.metas.ui.web.material.adapter.AvailableToPromiseResultForWebui.Group;
 import de.metas.ui.web.window.WindowConstants;
 import de.metas.ui.web.window.datatypes.LookupValue;
@@ -97,12 +110,31 @@ import lombok.Value;
  */
 public class ProductLookupDescriptor implements LookupDescriptor, LookupDataSourceFetcher
 {
+	private static final Logger logger = LogManager.getLogger(ProductLookupDescriptor.class);
+
 	private static final String SYSCONFIG_ATP_QUERY_ENABLED = //
 			"de.metas.ui.web.window.descriptor.sql.ProductLookupDescriptor.ATP.QueryEnabled";
 
 	private static final String SYSCONFIG_ATP_DISPLAY_ONLY_POSITIVE = //
 			"de.metas.ui.web.window.descriptor.sql.ProductLookupDescriptor.ATP.DisplayOnlyPositive";
 
+	/** Max number of product lookup records to be kept in the in-memory search index. If there are more, or if it's zero, the index is not used. */
+	private static final String SYSCONFIG_SEARCH_INDEX_MAX_ROWS = //
+			"de.metas.ui.web.window.descriptor.sql.ProductLookupDescriptor.SearchIndex.MaxRows";
+	private static final int DEFAULT_SEARCH_INDEX_MAX_ROWS = 200000;
+
+	/** Max number of product IDs found by the in-memory search index which are passed to the SQL query. If there are more, we search by SQL. */
+	private static final int SEARCH_INDEX_MAX_RESULTS = 1000;
+
+	/** Search indexes by AD_Language. They are also invalidated on product changes, see {@link #getDependsOnTableNames()}. */
+	private static final CCache<String, ProductLookupSearchIndex> searchIndexByAdLanguage = CCache.newCache(I_M_Product.Table_Name + "#ProductLookupSearchIndex#by#AD_Language", 5, 60);
+	/** AD_Languages for which the search index is currently loading */
+	private static final Set<String> searchIndexLoadingAdLanguages = ConcurrentHashMap.newKeySet();
+	/** Incremented on each invalidation, in order to discard the search indexes which were loading while invalidating */
+	private static final AtomicInteger searchIndexGeneration = new AtomicInteger(0);
+	/** Executor used to load the search indexes in background. While an index is loading, we search by SQL. */
+	private static final ThreadPoolExecutor searchIndexLoadExecutor = createSearchIndexLoadExecutor();
+
 	private static final Optional<String> LookupTableName = Optional.of(I_M_Product.Table_Name);
 	private static final String CONTEXT_LookupTableName = LookupTableName.get();
 
@@ -166,7 +198,59 @@ public class ProductLookupDescriptor implements LookupDescriptor, LookupDataSour
 			throw new IllegalStateException("No ID provided in " + evalCtx);
 		}
 
-		throw new UnsupportedOperationException();
+		final LookupValue lookupValue = retrieveLookupValuesByIds(ImmutableList.of(evalCtx)).getById(id);
+		return lookupValue != null ? lookupValue : LOOKUPVALUE_NULL;
+	}
+
+	@Override
+	public LookupValuesList retrieveLookupValuesByIds(@NonNull final Collection<LookupDataSourceContext> evalCtxs)
+	{
+		final Set<Integer> productIds = evalCtxs.stream()
+				.map(evalCtx -> evalCtx.getIdToFilterAsInt(-1))
+				.filter(productId -> productId > 0)
+				.collect(ImmutableSet.toImmutableSet());
+		if (productIds.isEmpty())
+		{
+			return LookupValuesList.EMPTY;
+		}
+
+		// NOTE: we assume all contexts are the same, except the ID to filter
+		final String adLanguage = evalCtxs.iterator().next().getAD_Language();
+		final String sqlDisplayName = buildSqlDisplayName(adLanguage, "p." + I_M_Product.COLUMNNAME_M_Product_ID);
+
+		final List<Object> sqlParams = new ArrayList<>();
+		final String sql = "SELECT"
+				+ "\n p." + I_M_Product.COLUMNNAME_M_Product_ID
+				+ "\n, (" + sqlDisplayName + ") AS " + COLUMNNAME_ProductDisplayName
+				+ "\n FROM " + I_M_Product.Table_Name + " p"
+				+ "\n WHERE " + DB.buildSqlList("p." + I_M_Product.COLUMNNAME_M_Product_ID, productIds, sqlParams);
+
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_None);
+			DB.setParameters(pstmt, sqlParams);
+			rs = pstmt.executeQuery();
+
+			final List<LookupValue> lookupValues = new ArrayList<>(productIds.size());
+			while (rs.next())
+			{
+				final int productId = rs.getInt(I_M_Product.COLUMNNAME_M_Product_ID);
+				final String displayName = rs.getString(COLUMNNAME_ProductDisplayName);
+				lookupValues.add(IntegerLookupValue.of(productId, displayName));
+			}
+
+			return LookupValuesList.fromCollection(lookupValues);
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex, sql, sqlParams);
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
 	}
 
 	@Override
@@ -252,11 +336,7 @@ public class ProductLookupDescriptor implements LookupDescriptor, LookupDataSour
 
 		//
 		// SQL: SELECT ... FROM
-		final String sqlDisplayName = MLookupFactory.getLookup_TableDirEmbed(
-				LanguageInfo.ofSpecificLanguage(evalCtx.getAD_Language()),
-				I_M_Product.COLUMNNAME_M_Product_ID, // columnName
-				null, // baseTable
-				"p." + I_M_Product_Lookup_V.COLUMNNAME_M_Product_ID);
+		final String sqlDisplayName = buildSqlDisplayName(evalCtx.getAD_Language(), "p." + I_M_Product_Lookup_V.COLUMNNAME_M_Product_ID);
 		final StringBuilder sql = new StringBuilder("SELECT"
 				+ "\n p." + I_M_Product_Lookup_V.COLUMNNAME_M_Product_ID
 				+ "\n, (" + sqlDisplayName + ") AS " + COLUMNNAME_ProductDisplayName
@@ -287,6 +367,15 @@ public class ProductLookupDescriptor implements LookupDescriptor, LookupDataSour
 		return sql.toString();
 	}
 
+	private static String buildSqlDisplayName(final String adLanguage, final String productIdColumnSql)
+	{
+		return MLookupFactory.getLookup_TableDirEmbed(
+				LanguageInfo.ofSpecificLanguage(adLanguage),
+				I_M_Product.COLUMNNAME_M_Product_ID, // columnName
+				null, // baseTable
+				productIdColumnSql);
+	}
+
 	private static StringBuilder appendFilterByIsActive(final StringBuilder sqlWhereClause, final SqlParamsCollector sqlWhereClauseParams)
 	{
 		return sqlWhereClause.append("\n p.").append(I_M_Product_Lookup_V.COLUMNNAME_IsActive).append("=").append(sqlWhereClauseParams.placeholder(true));
@@ -306,7 +395,35 @@ public class ProductLookupDescriptor implements LookupDescriptor, LookupDataSour
 			return;
 		}
 
-		final String sqlFilter = convertFilterToSql(evalCtxFilter);
+		final Set<Integer> productIds = findProductIdsUsingSearchIndexOrNull(evalCtxFilter, evalCtx.getAD_Language());
+		appendFilterBySearchString(sqlWhereClause, sqlWhereClauseParams, evalCtxFilter, productIds);
+	}
+
+	/**
+	 * @param productIdsFromSearchIndex the products found by the in-memory search index or <code>null</code> if the index could not be used (e.g. it's still loading)
+	 */
+	@VisibleForTesting
+	static void appendFilterBySearchString(
+			final StringBuilder sqlWhereClause,
+			final SqlParamsCollector sqlWhereClauseParams,
+			final String filter,
+			@Nullable final Set<Integer> productIdsFromSearchIndex)
+	{
+		//
+		// The in-memory index is warm and it found some products
+		// => filter only by product IDs, which is cheap, instead of scanning the whole product lookup view
+		if (productIdsFromSearchIndex != null && !productIdsFromSearchIndex.isEmpty())
+		{
+			sqlWhereClause.append("\n AND p." + I_M_Product_Lookup_V.COLUMNNAME_M_Product_ID + " IN (")
+					.append(productIdsFromSearchIndex.stream().map(sqlWhereClauseParams::placeholder).collect(Collectors.joining(",")))
+					.append(")");
+			return;
+		}
+
+		//
+		// The in-memory index is cold or it did not find anything (e.g. the filter matches in the middle of a word)
+		// => fallback to ILIKE
+		final String sqlFilter = convertFilterToSql(filter);
 		sqlWhereClause.append("\n AND (")
 				// .append(" p." + I_M_Product_Lookup_V.COLUMNNAME_Value + " ILIKE ").append(sqlWhereClauseParams.placeholder(sqlFilter))
 				.append(" ").append("p." + COLUMNNAME_ProductDisplayName + " ILIKE ").append(sqlWhereClauseParams.placeholder(sqlFilter))
@@ -316,6 +433,137 @@ public class ProductLookupDescriptor implements LookupDescriptor, LookupDataSour
 				.append(")");
 	}
 
+	/**
+	 * @return IDs of the products matching given filter or <code>null</code> if the in-memory search index could not be used (e.g. it's still loading)
+	 */
+	private static Set<Integer> findProductIdsUsingSearchIndexOrNull(final String filter, final String adLanguage)
+	{
+		if (filter.contains("%"))
+		{
+			// user explicitly asked for an SQL pattern
+			return null;
+		}
+
+		final ProductLookupSearchIndex searchIndex = searchIndexByAdLanguage.get(adLanguage);
+		if (searchIndex == null)
+		{
+			loadSearchIndexAsync(adLanguage);
+			return null;
+		}
+
+		return searchIndex.findProductIds(filter, SEARCH_INDEX_MAX_RESULTS);
+	}
+
+	private static ThreadPoolExecutor createSearchIndexLoadExecutor()
+	{
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				1, // corePoolSize
+				1, // maximumPoolSize
+				1, TimeUnit.MINUTES, // keepAliveTime
+				new ArrayBlockingQueue<>(10), // workQueue
+				CustomizableThreadFactory.builder()
+						.setDaemon(true)
+						.setThreadNamePrefix("webui-product-search-index")
+						.build());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static void loadSearchIndexAsync(final String adLanguage)
+	{
+		if (!searchIndexLoadingAdLanguages.add(adLanguage))
+		{
+			return; // already loading
+		}
+
+		final int generation = searchIndexGeneration.get();
+		final Properties ctx = Env.copyCtx(Env.getCtx());
+		try
+		{
+			searchIndexLoadExecutor.execute(() -> {
+				try (final IAutoCloseable temporaryCtx = Env.switchContext(ctx))
+				{
+					final ProductLookupSearchIndex searchIndex = retrieveSearchIndex(adLanguage);
+					if (generation == searchIndexGeneration.get())
+					{
+						searchIndexByAdLanguage.put(adLanguage, searchIndex);
+					}
+				}
+				catch (final Exception ex)
+				{
+					logger.warn("Failed loading the product search index for AD_Language={}. Searching by SQL.", adLanguage, ex);
+				}
+				finally
+				{
+					searchIndexLoadingAdLanguages.remove(adLanguage);
+				}
+			});
+		}
+		catch (final RejectedExecutionException ex)
+		{
+			// executor is busy => we will try again on next search
+			searchIndexLoadingAdLanguages.remove(adLanguage);
+		}
+	}
+
+	private static ProductLookupSearchIndex retrieveSearchIndex(final String adLanguage)
+	{
+		final int maxRows = Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_SEARCH_INDEX_MAX_ROWS, DEFAULT_SEARCH_INDEX_MAX_ROWS);
+		if (maxRows <= 0)
+		{
+			return ProductLookupSearchIndex.NOT_AVAILABLE;
+		}
+
+		final String sqlDisplayName = buildSqlDisplayName(adLanguage, "p." + I_M_Product_Lookup_V.COLUMNNAME_M_Product_ID);
+		final String sql = "SELECT"
+				+ "\n p." + I_M_Product_Lookup_V.COLUMNNAME_M_Product_ID
+				+ "\n, (" + sqlDisplayName + ") AS " + COLUMNNAME_ProductDisplayName
+				+ "\n, p." + I_M_Product_Lookup_V.COLUMNNAME_UPC
+				+ "\n, p." + I_M_Product_Lookup_V.COLUMNNAME_BPartnerProductNo
+				+ "\n, p." + I_M_Product_Lookup_V.COLUMNNAME_BPartnerProductName
+				+ "\n FROM " + I_M_Product_Lookup_V.Table_Name + " p"
+				+ "\n WHERE p." + I_M_Product_Lookup_V.COLUMNNAME_IsActive + "='Y'"
+				+ "\n LIMIT " + (maxRows + 1);
+
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try
+		{
+			pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_None);
+			rs = pstmt.executeQuery();
+
+			final ProductLookupSearchIndex.Builder searchIndex = ProductLookupSearchIndex.builder();
+			int rowsCount = 0;
+			while (rs.next())
+			{
+				rowsCount++;
+				if (rowsCount > maxRows)
+				{
+					logger.info("Not using the product search index because there are more than {} product lookup records", maxRows);
+					return ProductLookupSearchIndex.NOT_AVAILABLE;
+				}
+
+				searchIndex.add(rs.getInt(I_M_Product_Lookup_V.COLUMNNAME_M_Product_ID),
+						rs.getString(COLUMNNAME_ProductDisplayName),
+						rs.getString(I_M_Product_Lookup_V.COLUMNNAME_UPC),
+						rs.getString(I_M_Product_Lookup_V.COLUMNNAME_BPartnerProductNo),
+						rs.getString(I_M_Product_Lookup_V.COLUMNNAME_BPartnerProductName));
+			}
+
+			final ProductLookupSearchIndex result = searchIndex.build();
+			logger.info("Loaded product search index for AD_Language={}: {}", adLanguage, result);
+			return result;
+		}
+		catch (final SQLException ex)
+		{
+			throw new DBException(ex, sql);
+		}
+		finally
+		{
+			DB.close(rs, pstmt);
+		}
+	}
+
 	private static void appendFilterById(final StringBuilder sqlWhereClause, final SqlParamsCollector sqlWhereClauseParams, final LookupDataSourceContext evalCtx)
 	{
 		final Integer idToFilter = evalCtx.getIdToFilterAsInt(-1);
@@ -441,6 +689,15 @@ public class ProductLookupDescriptor implements LookupDescriptor, LookupDataSour
 	@Override
 	public void cacheInvalidate()
 	{
+		searchIndexGeneration.incrementAndGet();
+		searchIndexByAdLanguage.clear();
+	}
+
+	@Override
+	public Set<String> getDependsOnTableNames()
+	{
+		// the tables on which the in-memory search index depends
+		return ImmutableSet.of(I_M_Product.Table_Name, "M_Product_Trl", "C_BPartner_Product");
 	}
 
 	@Override
@@ -500,14 +757,10 @@ public class ProductLookupDescriptor implements LookupDescriptor, LookupDataSour
 		{
 			return productLookupValues;
 		}
-		// Services.get(IWarehouseDAO.class).
-		final AvailableToPromiseResultForWebui availableStock = availableToPromiseAdapter.retrieveAvailableStock(AvailableToPromiseQuery.builder()
-				.productIds(productLookupValues.getKeysAsInt())
-				.storageAttributesKeys(availableToPromiseAdapter.getPredefinedStorageAttributeKeys())
-				.date(TimeUtil.asLocalDateTime(dateOrNull))
-				.bpartnerId(bpartnerId)
-				.build());
-		final List<Group> availableStockGroups = availableStock.getGroups();
+		final List<Group> availableStockGroups = availableToPromiseAdapter.retrieveAvailableStockGroupsCached(
+				productLookupValues.getKeysAsInt(),
+				bpartnerId,
+				TimeUtil.asLocalDateTime(dateOrNull));
 
 		// process the query's result into those explodedProductValues
 		return createLookupValuesFromAvailableStockGroups(productLookupValues, availableStockGroups);
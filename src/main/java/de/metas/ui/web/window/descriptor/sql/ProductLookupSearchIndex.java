@@ -0,0 +1,220 @@
+package de.metas.ui.web.window.descriptor.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * In-memory token/prefix index of products, used by {@link ProductLookupDescriptor} to find the candidate product IDs for a typeahead search string
+ * without scanning the whole product lookup view.
+ *
+ * The indexed texts (e.g. product's display name, UPC, bpartner's product no) are split into lower case tokens.
+ * A product matches a search string if each token of the search string is a prefix of at least one of product's tokens.
+ *
+ * @author metas-dev <dev@metasfresh.com>
+ *
+ */
+final class ProductLookupSearchIndex
+{
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	/** Index which cannot answer any search (e.g. because there were too many products to be indexed) */
+	public static final ProductLookupSearchIndex NOT_AVAILABLE = new ProductLookupSearchIndex();
+
+	private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	private final boolean available;
+	private final NavigableMap<String, Set<Integer>> productIdsByToken;
+	private final Map<Integer, String[]> tokensByProductId;
+
+	private ProductLookupSearchIndex(final Builder builder)
+	{
+		available = true;
+		productIdsByToken = new TreeMap<>();
+		tokensByProductId = new HashMap<>(builder.tokensByProductId.size());
+		builder.tokensByProductId.forEach((productId, tokens) -> {
+			tokensByProductId.put(productId, tokens.toArray(new String[tokens.size()]));
+			tokens.forEach(token -> productIdsByToken.computeIfAbsent(token, k -> new HashSet<>()).add(productId));
+		});
+	}
+
+	private ProductLookupSearchIndex()
+	{
+		available = false;
+		productIdsByToken = new TreeMap<>();
+		tokensByProductId = new HashMap<>();
+	}
+
+	@Override
+	public String toString()
+	{
+		return MoreObjects.toStringHelper(this)
+				.add("available", available)
+				.add("productsCount", tokensByProductId.size())
+				.add("tokensCount", productIdsByToken.size())
+				.toString();
+	}
+
+	/**
+	 * @param maxResults maximum number of product IDs the caller is willing to handle
+	 * @return IDs of the products which are matching given search string
+	 *         or <code>null</code> if the search cannot be answered by this index (e.g. the index is not available, the search string has no tokens or it's matching more than <code>maxResults</code> products)
+	 */
+	@Nullable
+	public Set<Integer> findProductIds(final String searchString, final int maxResults)
+	{
+		if (!available)
+		{
+			return null;
+		}
+
+		final List<String> searchTokens = tokenize(searchString);
+		if (searchTokens.isEmpty())
+		{
+			return null;
+		}
+
+		//
+		// Find the candidates using the most selective tokens, i.e. the ones which are matching at most maxResults products
+		Set<Integer> candidateProductIds = null;
+		final List<String> notSelectiveSearchTokens = new ArrayList<>();
+		for (final String searchToken : searchTokens)
+		{
+			final Set<Integer> productIds = getProductIdsByTokenPrefix(searchToken, maxResults);
+			if (productIds == null)
+			{
+				notSelectiveSearchTokens.add(searchToken);
+			}
+			else if (candidateProductIds == null)
+			{
+				candidateProductIds = productIds;
+			}
+			else
+			{
+				candidateProductIds.retainAll(productIds);
+			}
+		}
+
+		if (candidateProductIds == null)
+		{
+			// none of the search tokens is selective enough
+			return null;
+		}
+
+		//
+		// Check the remaining tokens against candidate's own tokens
+		if (!notSelectiveSearchTokens.isEmpty())
+		{
+			candidateProductIds.removeIf(productId -> !hasAllTokenPrefixes(productId, notSelectiveSearchTokens));
+		}
+
+		return ImmutableSet.copyOf(candidateProductIds);
+	}
+
+	/** @return matching product IDs or <code>null</code> if there are more than <code>maxResults</code> */
+	private Set<Integer> getProductIdsByTokenPrefix(final String tokenPrefix, final int maxResults)
+	{
+		final Set<Integer> result = new LinkedHashSet<>();
+		for (final Set<Integer> productIds : productIdsByToken.subMap(tokenPrefix, true, tokenPrefix + Character.MAX_VALUE, true).values())
+		{
+			result.addAll(productIds);
+			if (result.size() > maxResults)
+			{
+				return null;
+			}
+		}
+		return result;
+	}
+
+	private boolean hasAllTokenPrefixes(final Integer productId, final List<String> tokenPrefixes)
+	{
+		final String[] tokens = tokensByProductId.get(productId);
+		if (tokens == null)
+		{
+			return false;
+		}
+
+		return tokenPrefixes.stream()
+				.allMatch(tokenPrefix -> Arrays.stream(tokens).anyMatch(token -> token.startsWith(tokenPrefix)));
+	}
+
+	private static List<String> tokenize(@Nullable final String text)
+	{
+		if (text == null)
+		{
+			return new ArrayList<>();
+		}
+
+		final List<String> tokens = new ArrayList<>();
+		for (final String token : TOKEN_SEPARATORS.split(text.toLowerCase()))
+		{
+			if (!token.isEmpty())
+			{
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+
+	public static final class Builder
+	{
+		private final Map<Integer, Set<String>> tokensByProductId = new HashMap<>();
+
+		private Builder()
+		{
+		}
+
+		public ProductLookupSearchIndex build()
+		{
+			return new ProductLookupSearchIndex(this);
+		}
+
+		public Builder add(final int productId, final String... texts)
+		{
+			final Set<String> tokens = tokensByProductId.computeIfAbsent(productId, k -> new HashSet<>());
+			for (final String text : texts)
+			{
+				tokens.addAll(tokenize(text));
+			}
+			return this;
+		}
+	}
+}
@@ -139,6 +139,7 @@ public final class SqlLookupDescriptor implements ISqlLookupDescriptor
 	private final Optional<WindowId> zoomIntoWindowId;
 	private final ICachedStringExpression sqlForFetchingExpression;
 	private final ICachedStringExpression sqlForFetchingDisplayNameByIdExpression;
+	private final ICachedStringExpression sqlForFetchingDisplayNamesByIdsExpression;
 	private final int entityTypeIndex;
 	private final INamePairPredicate postQueryPredicate;
 
@@ -157,6 +158,7 @@ public final class SqlLookupDescriptor implements ISqlLookupDescriptor
 		zoomIntoWindowId = builder.getZoomIntoWindowId();
 		sqlForFetchingExpression = builder.sqlForFetchingExpression;
 		sqlForFetchingDisplayNameByIdExpression = builder.sqlForFetchingDisplayNameByIdExpression;
+		sqlForFetchingDisplayNamesByIdsExpression = builder.sqlForFetchingDisplayNamesByIdsExpression;
 		entityTypeIndex = builder.entityTypeIndex;
 
 		postQueryPredicate = builder.getPostQueryPredicate();
@@ -266,6 +268,15 @@ public final class SqlLookupDescriptor implements ISqlLookupDescriptor
 		return sqlForFetchingDisplayNameByIdExpression;
 	}
 
+	/**
+	 * @return SQL which is selecting the key (first column) and the display name (second column).
+	 *         The {@link #SQL_PARAM_KeyId} parameter is expected to be a list of IDs, as used in an <code>IN (...)</code> clause.
+	 */
+	public IStringExpression getSqlForFetchingDisplayNamesByIdsExpression()
+	{
+		return sqlForFetchingDisplayNamesByIdsExpression;
+	}
+
 	@Override
 	public IStringExpression getSqlForFetchingDisplayNameByIdExpression(final String sqlKeyColumn)
 	{
@@ -339,6 +350,7 @@ public final class SqlLookupDescriptor implements ISqlLookupDescriptor
 		private String sqlTableName;
 		private ICachedStringExpression sqlForFetchingExpression;
 		private ICachedStringExpression sqlForFetchingDisplayNameByIdExpression;
+		private ICachedStringExpression sqlForFetchingDisplayNamesByIdsExpression;
 		private int entityTypeIndex = -1;
 
 		private int zoomIntoWindowId = -1;
@@ -470,6 +482,8 @@ public final class SqlLookupDescriptor implements ISqlLookupDescriptor
 						.caching();
 				sqlForFetchingDisplayNameByIdExpression = buildSqlForFetchingDisplayNameById(lookupInfo)
 						.caching();
+				sqlForFetchingDisplayNamesByIdsExpression = buildSqlForFetchingDisplayNamesByIds(lookupInfo)
+						.caching();
 
 				if (lookupInfo.isQueryHasEntityType())
 				{
@@ -531,6 +545,11 @@ public final class SqlLookupDescriptor implements ISqlLookupDescriptor
 					.append("\n FROM ").append(tableName) // FROM
 					.append("\n WHERE ").append(keyColumnNameFQ).append("=").append(SQL_PARAM_KeyId)
 					.build();
+			final IStringExpression sqlForFetchingDisplayNamesByIds = IStringExpression.composer()
+					.append("SELECT ").append(keyColumnNameFQ).append(", ").append(displayColumnSql) // SELECT
+					.append("\n FROM ").append(tableName) // FROM
+					.append("\n WHERE ").append(keyColumnNameFQ).append(" IN (").append(SQL_PARAM_KeyId).append(")")
+					.build();
 
 			//
 			// Set the SQLs
@@ -538,6 +557,7 @@ public final class SqlLookupDescriptor implements ISqlLookupDescriptor
 				sqlTableName = tableName;
 				sqlForFetchingExpression = sqlForFetching.caching();
 				sqlForFetchingDisplayNameByIdExpression = sqlForFetchingDisplayNameById.caching();
+				sqlForFetchingDisplayNamesByIdsExpression = sqlForFetchingDisplayNamesByIds.caching();
 			}
 		}
 
@@ -629,6 +649,24 @@ public final class SqlLookupDescriptor implements ISqlLookupDescriptor
 			return sqlForFetchingDisplayNameById;
 		}
 
+		private final IStringExpression buildSqlForFetchingDisplayNamesByIds(final MLookupInfo lookupInfo)
+		{
+			final IStringExpression displayColumnSQL = TranslatableParameterizedStringExpression.of(lookupInfo.getDisplayColumnSql());
+			final IStringExpression fromSqlPart = TranslatableParameterizedStringExpression.of(lookupInfo.getFromSqlPart());
+			final String keyColumnFQ = lookupInfo.getKeyColumnFQ();
+			final int displayType = lookupInfo.getDisplayType();
+			final String whereClauseSqlPart = lookupInfo.getWhereClauseSqlPart(); // assuming this is constant!
+
+			return IStringExpression.composer()
+					.append("SELECT ").append(keyColumnFQ).append(", ").append(displayColumnSQL) // SELECT ...
+					.append("\n FROM ").append(fromSqlPart) // FROM
+					.append("\n WHERE ").append(keyColumnFQ).append(" IN (").append(SQL_PARAM_KeyId).append(")")
+					.append(" ")
+					// FIXME: make it better: this is actually adding the AD_Ref_List.AD_Reference_ID=....
+					.append(DisplayType.List == displayType || DisplayType.Button == displayType ? " AND " + whereClauseSqlPart : "")
+					.build();
+		}
+
 		private INamePairPredicate getPostQueryPredicate()
 		{
 			final INamePairPredicate postQueryPredicate = validationRuleEffective.getPostQueryFilter();
@@ -13,11 +13,13 @@ import org.adempiere.util.Services;
 import org.adempiere.util.lang.IAutoCloseable;
 import org.springframework.stereotype.Component;
 
+import de.metas.ui.web.websocket.WebSocketConfig;
 import de.metas.ui.web.websocket.WebsocketSender;
 import de.metas.ui.web.window.datatypes.DocumentId;
 import de.metas.ui.web.window.datatypes.DocumentPath;
 import de.metas.ui.web.window.datatypes.WindowId;
 import de.metas.ui.web.window.datatypes.json.JSONDocument;
+import de.metas.ui.web.window.datatypes.json.JSONDocumentReferencesEvent;
 import de.metas.ui.web.window.descriptor.DetailId;
 import lombok.NonNull;
 
@@ -159,6 +161,14 @@ public class DocumentWebsocketPublisher
 		forCollector(collector -> collector.mergeFrom(collectorToMerge));
 	}
 
+	/**
+	 * Sends the document references event right away, i.e. not collected and not bound to current transaction.
+	 */
+	public void publishDocumentReferencesEvent(@NonNull final WindowId windowId, @NonNull final DocumentId documentId, @NonNull final JSONDocumentReferencesEvent event)
+	{
+		websocketSender.convertAndSend(WebSocketConfig.buildDocumentReferencesTopicName(windowId, documentId), event);
+	}
+
 	private static final void collectFrom(final JSONDocumentChangedWebSocketEventCollector collector, final JSONDocument event)
 	{
 		final WindowId windowId = event.getWindowId();
@@ -16,6 +16,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import de.metas.ui.web.websocket.MergeableWebsocketEvent;
 import de.metas.ui.web.websocket.WebSocketConfig;
 import de.metas.ui.web.websocket.WebsocketEndpointAware;
 import de.metas.ui.web.window.datatypes.DocumentId;
@@ -60,7 +61,7 @@ import lombok.ToString;
 @JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
 @ToString
 @EqualsAndHashCode
-final class JSONDocumentChangedWebSocketEvent implements WebsocketEndpointAware
+final class JSONDocumentChangedWebSocketEvent implements WebsocketEndpointAware, MergeableWebsocketEvent
 {
 	public static JSONDocumentChangedWebSocketEvent rootDocument(final WindowId windowId, final DocumentId documentId)
 	{
@@ -198,12 +199,17 @@ final class JSONDocumentChangedWebSocketEvent implements WebsocketEndpointAware
 		getIncludedTabInfo(tabId).staleRow(rowId);
 	}
 
+	private boolean isMatching(@NonNull final JSONDocumentChangedWebSocketEvent other)
+	{
+		return Objects.equals(windowId, other.windowId)
+				&& Objects.equals(documentId, other.documentId)
+				&& Objects.equals(tabId, other.tabId)
+				&& Objects.equals(rowId, other.rowId);
+	}
+
 	void mergeFrom(@NonNull final JSONDocumentChangedWebSocketEvent from)
 	{
-		if (!Objects.equals(windowId, from.windowId)
-				|| !Objects.equals(documentId, from.documentId)
-				|| !Objects.equals(tabId, from.tabId)
-				|| !Objects.equals(rowId, from.rowId))
+		if (!isMatching(from))
 		{
 			throw new AdempiereException("Cannot merge events because they are not matching")
 					.setParameter("from", from)
@@ -218,4 +224,39 @@ final class JSONDocumentChangedWebSocketEvent implements WebsocketEndpointAware
 
 		from.getIncludedTabsInfo().values().forEach(this::addIncludedTabInfo);
 	}
+
+	@Override
+	public JSONDocumentChangedWebSocketEvent mergeWithOrNull(final Object nextEvent)
+	{
+		if (!(nextEvent instanceof JSONDocumentChangedWebSocketEvent))
+		{
+			return null;
+		}
+
+		final JSONDocumentChangedWebSocketEvent next = (JSONDocumentChangedWebSocketEvent)nextEvent;
+		if (!isMatching(next))
+		{
+			return null;
+		}
+
+		final JSONDocumentChangedWebSocketEvent merged = copy();
+		merged.mergeFrom(next);
+		return merged;
+	}
+
+	@Override
+	public JSONDocumentChangedWebSocketEvent toFullyChangedEventOrNull()
+	{
+		final JSONDocumentChangedWebSocketEvent fullyChanged = rootDocument(windowId, documentId);
+		fullyChanged.setStale();
+		if (tabId != null)
+		{
+			fullyChanged.staleTab(DetailId.fromJson(tabId));
+		}
+		if (includedTabsInfoByTabId != null)
+		{
+			includedTabsInfoByTabId.values().forEach(tabInfo -> fullyChanged.staleTab(tabInfo.getTabId()));
+		}
+		return fullyChanged;
+	}
 }
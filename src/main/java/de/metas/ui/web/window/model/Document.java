@@ -9,7 +9,9 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -22,11 +24,11 @@ import org.adempiere.ad.callout.api.ICalloutExecutor;
 import org.adempiere.ad.callout.api.ICalloutRecord;
 import org.adempiere.ad.expression.api.IExpression;
 import org.adempiere.ad.expression.api.IExpressionEvaluator.OnVariableNotFound;
-import org.adempiere.ad.expression.api.ILogicExpression;
 import org.adempiere.ad.expression.api.LogicExpressionResult;
 import org.adempiere.ad.ui.spi.ExceptionHandledTabCallout;
 import org.adempiere.ad.ui.spi.ITabCallout;
 import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.service.ISysConfigBL;
 import org.adempiere.util.Check;
 import org.adempiere.util.Services;
 import org.adempiere.util.lang.IAutoCloseable;
@@ -43,6 +45,8 @@ import de.metas.document.engine.IDocumentBL;
 import de.metas.document.exceptions.DocumentProcessingException;
 import de.metas.letters.model.Letters;
 import de.metas.logging.LogManager;
+import de.metas.ui.web.cache.ETag;
+import de.metas.ui.web.cache.ETagAware;
 import de.metas.ui.web.window.WindowConstants;
 import de.metas.ui.web.window.datatypes.DataTypes;
 import de.metas.ui.web.window.datatypes.DocumentId;
@@ -52,6 +56,7 @@ import de.metas.ui.web.window.datatypes.DocumentType;
 import de.metas.ui.web.window.datatypes.LookupValue.StringLookupValue;
 import de.metas.ui.web.window.datatypes.LookupValuesList;
 import de.metas.ui.web.window.datatypes.json.JSONDocumentChangedEvent;
+import de.metas.ui.web.window.descriptor.CompiledLogicExpression;
 import de.metas.ui.web.window.descriptor.DetailId;
 import de.metas.ui.web.window.descriptor.DocumentEntityDescriptor;
 import de.metas.ui.web.window.descriptor.DocumentFieldDependencyMap;
@@ -89,7 +94,7 @@ import lombok.NonNull;
  * #L%
  */
 
-public final class Document
+public final class Document implements ETagAware
 {
 	public static final Builder builder(final DocumentEntityDescriptor entityDescriptor)
 	{
@@ -98,6 +103,16 @@ public final class Document
 
 	private static final Logger logger = LogManager.getLogger(Document.class);
 
+	private static final AtomicLong nextSnapshotVersion = new AtomicLong(1);
+
+	/**
+	 * For how long we trust the loaded document version without checking it against the database.
+	 * Changes are anyways notified by cache invalidation events, the version check is only a safety net.
+	 * Set it to zero to check the version on each writable checkout.
+	 */
+	private static final String SYSCONFIG_StaleCheckTrustWindowMillis = "de.metas.ui.web.window.model.Document.StaleCheck.TrustWindowMillis";
+	private static final int DEFAULT_StaleCheckTrustWindowMillis = 5000;
+
 	public static final Document NULL = null;
 
 	private static final ReasonSupplier REASON_Value_DirectSetOnDocument = () -> "direct set on Document";
@@ -123,6 +138,8 @@ public final class Document
 	private DocumentSaveStatus _saveStatusOnCheckout;
 	private final DocumentStaleState _staleStatus;
 	private final ReentrantReadWriteLock _lock;
+	/** Changed each time a copy of this document is created or when the document is changed in place (e.g. included documents were marked as stale) */
+	private volatile long _snapshotVersion = nextSnapshotVersion.getAndIncrement();
 	// Status: readonly
 	private DocumentReadonly parentReadonly = DocumentReadonly.NOT_READONLY;
 	private DocumentReadonly readonly = DocumentReadonly.NOT_READONLY;
@@ -136,6 +153,8 @@ public final class Document
 	//
 	// Fields
 	private final ImmutableMap<String, IDocumentField> fieldsByName;
+	/** fields in the same order as entity descriptor's fields, used by compiled logic expressions */
+	private final IDocumentField[] fieldsByIndex;
 	private final ImmutableList<IDocumentFieldView> idFields;
 	private final IDocumentField parentLinkField;
 
@@ -148,6 +167,7 @@ public final class Document
 	// Evaluatee
 	private IDocumentEvaluatee _evaluatee; // lazy
 	private transient IDocumentEvaluatee _shadowParentEvaluatee;
+	private final transient CompiledLogicExpression.Memo compiledLogicsMemo;
 
 	// Changes tracking
 	private final transient IDocumentChangesCollector changesCollector;
@@ -211,6 +231,7 @@ public final class Document
 				}
 			}
 			fieldsByName = fieldsBuilder.build();
+			fieldsByIndex = fieldsByName.values().toArray(new IDocumentField[fieldsByName.size()]);
 			this.parentLinkField = parentLinkField;
 
 			idFields = entityDescriptor.getIdFields()
@@ -240,6 +261,7 @@ public final class Document
 		// Evaluatee
 		_evaluatee = null; // lazy
 		_shadowParentEvaluatee = null;
+		compiledLogicsMemo = entityDescriptor.newCompiledLogicsMemo();
 
 		//
 		// Set default dynamic attributes
@@ -329,6 +351,7 @@ public final class Document
 				}
 			}
 			fieldsByName = fieldsBuilder.build();
+			fieldsByIndex = fieldsByName.values().toArray(new IDocumentField[fieldsByName.size()]);
 			this.parentLinkField = parentLinkField;
 			this.idFields = from.idFields
 					.stream()
@@ -358,6 +381,7 @@ public final class Document
 
 		_evaluatee = null; // lazy
 		_shadowParentEvaluatee = null; // never copy it!
+		compiledLogicsMemo = entityDescriptor.newCompiledLogicsMemo();
 
 		//
 		// Copy dynamic attributes
@@ -908,11 +932,66 @@ public final class Document
 		return getParentDocument() == null;
 	}
 
+	/**
+	 * @return root document's snapshot version, together with the version of the underlying record
+	 */
+	@Override
+	public ETag getETag()
+	{
+		final Document rootDocument = getRootDocument();
+		final String dataVersion = rootDocument.getStale().getVersion();
+		return ETag.of(rootDocument._snapshotVersion, dataVersion != null ? ImmutableMap.of("dataVersion", dataVersion) : ImmutableMap.of());
+	}
+
+	/** @return root document's snapshot version, see {@link #changeSnapshotVersion()} */
+	/* package */ long getSnapshotVersion()
+	{
+		return getRootDocument()._snapshotVersion;
+	}
+
+	/** Shall be called when this (readonly) document was changed in place, so it will get a new {@link #getETag()}. */
+	/* package */ void changeSnapshotVersion()
+	{
+		getRootDocument()._snapshotVersion = nextSnapshotVersion.getAndIncrement();
+	}
+
 	private Collection<IDocumentField> getFields()
 	{
 		return fieldsByName.values();
 	}
 
+	/**
+	 * @return how many fields this document and all its currently loaded included documents have; no included documents will be loaded
+	 */
+	/* package */ int getLoadedFieldsCountRecursivelly()
+	{
+		int fieldsCount = fieldsByName.size();
+		for (final IIncludedDocumentsCollection includedDocumentsCollection : includedDocuments.values())
+		{
+			for (final Document includedDocument : includedDocumentsCollection.getLoadedDocuments())
+			{
+				fieldsCount += includedDocument.getLoadedFieldsCountRecursivelly();
+			}
+		}
+		return fieldsCount;
+	}
+
+	/**
+	 * @return how many included documents (recursivelly) are currently loaded; no included documents will be loaded
+	 */
+	/* package */ int getLoadedIncludedDocumentsCountRecursivelly()
+	{
+		int documentsCount = 0;
+		for (final IIncludedDocumentsCollection includedDocumentsCollection : includedDocuments.values())
+		{
+			for (final Document includedDocument : includedDocumentsCollection.getLoadedDocuments())
+			{
+				documentsCount += 1 + includedDocument.getLoadedIncludedDocumentsCountRecursivelly();
+			}
+		}
+		return documentsCount;
+	}
+
 	public Collection<IDocumentFieldView> getFieldViews()
 	{
 		final Collection<IDocumentField> documentFields = fieldsByName.values();
@@ -1296,11 +1375,11 @@ public final class Document
 
 	private final DocumentReadonly computeReadonly()
 	{
-		final ILogicExpression allFieldsReadonlyLogic = getEntityDescriptor().getReadonlyLogic();
+		final CompiledLogicExpression allFieldsReadonlyLogic = getEntityDescriptor().getCompiledReadonlyLogic();
 		LogicExpressionResult allFieldsReadonly;
 		try
 		{
-			allFieldsReadonly = allFieldsReadonlyLogic.evaluateToResult(asEvaluatee(), OnVariableNotFound.Fail);
+			allFieldsReadonly = evaluateLogic(allFieldsReadonlyLogic);
 		}
 		catch (final Exception e)
 		{
@@ -1338,10 +1417,10 @@ public final class Document
 		}
 
 		// Check field's readonly logic
-		final ILogicExpression fieldReadonlyLogic = documentField.getDescriptor().getReadonlyLogic();
+		final CompiledLogicExpression fieldReadonlyLogic = getEntityDescriptor().getCompiledFieldReadonlyLogic(documentField.getFieldName());
 		try
 		{
-			final LogicExpressionResult readonly = fieldReadonlyLogic.evaluateToResult(asEvaluatee(), OnVariableNotFound.Fail);
+			final LogicExpressionResult readonly = evaluateLogic(fieldReadonlyLogic);
 			return readonly;
 		}
 		catch (final Exception e)
@@ -1355,10 +1434,10 @@ public final class Document
 	private final void updateFieldDisplayed(final IDocumentField documentField)
 	{
 		LogicExpressionResult displayed = LogicExpressionResult.FALSE; // default false, i.e. not displayed
-		final ILogicExpression displayLogic = documentField.getDescriptor().getDisplayLogic();
+		final CompiledLogicExpression displayLogic = getEntityDescriptor().getCompiledFieldDisplayLogic(documentField.getFieldName());
 		try
 		{
-			displayed = displayLogic.evaluateToResult(asEvaluatee(), OnVariableNotFound.Fail);
+			displayed = evaluateLogic(displayLogic);
 		}
 		catch (final Exception e)
 		{
@@ -1369,6 +1448,11 @@ public final class Document
 		documentField.setDisplayed(displayed);
 	}
 
+	private LogicExpressionResult evaluateLogic(final CompiledLogicExpression logic)
+	{
+		return logic.evaluate(asEvaluatee(), fieldIndex -> fieldsByIndex[fieldIndex].getValue(), compiledLogicsMemo);
+	}
+
 	private final void updateFieldsWhichDependsOn(final String triggeringFieldName)
 	{
 		final DocumentFieldDependencyMap dependencies = getEntityDescriptor().getDependencies();
@@ -1417,10 +1501,10 @@ public final class Document
 		else if (DependencyType.MandatoryLogic == triggeringDependencyType)
 		{
 			final LogicExpressionResult valueOld = documentField.getMandatory();
-			final ILogicExpression mandatoryLogic = documentField.getDescriptor().getMandatoryLogic();
+			final CompiledLogicExpression mandatoryLogic = getEntityDescriptor().getCompiledFieldMandatoryLogic(documentField.getFieldName());
 			try
 			{
-				final LogicExpressionResult mandatory = mandatoryLogic.evaluateToResult(asEvaluatee(), OnVariableNotFound.Fail);
+				final LogicExpressionResult mandatory = evaluateLogic(mandatoryLogic);
 				documentField.setMandatory(mandatory, changesCollector);
 			}
 			catch (final Exception e)
@@ -1925,6 +2009,15 @@ public final class Document
 		return _staleStatus.isStaled();
 	}
 
+	/**
+	 * Marks this document (and all it's copies) as staled, i.e. it was changed in database.
+	 * Called when a cache invalidation event was received for this document.
+	 */
+	/* package */ void markStaled()
+	{
+		_staleStatus.markStaledByNotification();
+	}
+
 	public IAutoCloseable lockForReading()
 	{
 		// assume _lock is not null
@@ -1953,6 +2046,22 @@ public final class Document
 		};
 	}
 
+	/**
+	 * @return write lock or <code>null</code> if the lock is not available right now
+	 */
+	/* package */ IAutoCloseable tryLockForWriting()
+	{
+		// assume _lock is not null
+		final WriteLock writeLock = _lock.writeLock();
+		if (!writeLock.tryLock())
+		{
+			logger.debug("Write lock not available for {}: {}", this, writeLock);
+			return null;
+		}
+
+		return writeLock::unlock;
+	}
+
 	public int getAD_Client_ID()
 	{
 		final IDocumentField field = getFieldOrNull(WindowConstants.FIELDNAME_AD_Client_ID);
@@ -2002,17 +2111,25 @@ public final class Document
 	{
 		private boolean staled;
 		private String version;
+		/** when the version was last checked against the database */
+		private long versionCheckedMillis;
+		/** set when a cache invalidation event was received; shared with the copies of the same loaded document */
+		private AtomicBoolean staledByNotification;
 
 		private DocumentStaleState()
 		{
 			staled = false; // initially not staled
 			version = null; // unknown
+			versionCheckedMillis = 0;
+			staledByNotification = new AtomicBoolean(false);
 		}
 
 		private DocumentStaleState(final DocumentStaleState from)
 		{
 			staled = from.staled;
 			version = from.version;
+			versionCheckedMillis = from.versionCheckedMillis;
+			staledByNotification = from.staledByNotification;
 		}
 
 		@Override
@@ -2020,6 +2137,7 @@ public final class Document
 		{
 			return MoreObjects.toStringHelper(this)
 					.add("staled", staled)
+					.add("staledByNotification", staledByNotification.get())
 					.add("version", version)
 					.add("document", Document.this)
 					.toString();
@@ -2027,12 +2145,17 @@ public final class Document
 
 		public boolean isStaled()
 		{
-			return staled;
+			return staled || staledByNotification.get();
+		}
+
+		public String getVersion()
+		{
+			return version;
 		}
 
 		private boolean checkStaled()
 		{
-			if (staled)
+			if (isStaled())
 			{
 				return true;
 			}
@@ -2042,9 +2165,18 @@ public final class Document
 				return false;
 			}
 
+			//
+			// Trust our version for a while, because changes of this document are notified by cache invalidation events (see markStaledByNotification)
+			final long nowMillis = System.currentTimeMillis();
+			if (nowMillis - versionCheckedMillis < getStaleCheckTrustWindowMillis())
+			{
+				return false;
+			}
+
 			final String versionNow = getDocumentRepository().retrieveVersion(getEntityDescriptor(), getDocumentIdAsInt());
 			if (Objects.equals(version, versionNow))
 			{
+				versionCheckedMillis = nowMillis;
 				return false;
 			}
 
@@ -2056,9 +2188,21 @@ public final class Document
 		{
 			staled = false;
 			this.version = version;
+			versionCheckedMillis = System.currentTimeMillis();
+			staledByNotification = new AtomicBoolean(false);
+		}
+
+		private void markStaledByNotification()
+		{
+			staledByNotification.set(true);
 		}
 	}
 
+	private static int getStaleCheckTrustWindowMillis()
+	{
+		return Services.get(ISysConfigBL.class).getIntValue(SYSCONFIG_StaleCheckTrustWindowMillis, DEFAULT_StaleCheckTrustWindowMillis);
+	}
+
 	//
 	//
 	// Builder
@@ -27,6 +27,7 @@ import org.springframework.stereotype.Component;
 import com.google.common.collect.ImmutableSet;
 
 import de.metas.logging.LogManager;
+import de.metas.ui.web.board.BoardDescriptorRepository;
 import de.metas.ui.web.view.IViewsRepository;
 import lombok.NonNull;
 
@@ -71,6 +72,12 @@ public class DocumentCacheInvalidationDispatcher implements ICacheResetListener
 	@Autowired
 	private IViewsRepository viewsRepository;
 
+	@Autowired
+	private BoardDescriptorRepository boardsRepository;
+
+	@Autowired
+	private DocumentReferencesService documentReferencesService;
+
 	private final Executor async;
 
 	public DocumentCacheInvalidationDispatcher()
@@ -130,6 +137,8 @@ public class DocumentCacheInvalidationDispatcher implements ICacheResetListener
 		//
 		final Set<TableRecordReference> rootRecords = request.getRootRecords();
 		viewsRepository.notifyRecordsChanged(rootRecords);
+		boardsRepository.notifyRecordsChanged(rootRecords);
+		documentReferencesService.notifyRecordsChanged(rootRecords);
 	}
 
 	private void resetDocumentNow(final CacheInvalidateRequest request)
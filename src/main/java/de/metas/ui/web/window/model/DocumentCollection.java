@@ -2,10 +2,13 @@ package de.metas.ui.web.window.model;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import javax.annotation.Nullable;
@@ -33,13 +36,17 @@ import org.compiere.util.Evaluatee;
 import org.compiere.util.Evaluatees;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import de.metas.adempiere.report.jasper.OutputType;
@@ -68,7 +75,6 @@ import de.metas.ui.web.window.model.lookup.DocumentZoomIntoInfo;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NonNull;
-import lombok.Value;
 
 /*
  * #%L
@@ -106,12 +112,40 @@ public class DocumentCollection
 	@Autowired
 	private DocumentWebsocketPublisher websocketPublisher;
 
-	private final Cache<DocumentKey, Document> rootDocuments = CacheBuilder.newBuilder().build();
+	/** Checked-in, saved root documents. Evicted when the heap budget is exceeded or when idle for too long. */
+	private final Cache<DocumentKey, Document> rootDocuments;
+	/** Root documents which shall never be evicted: new (not saved) documents and documents which are currently checked out for writing */
+	private final ConcurrentHashMap<DocumentKey, PinnedRootDocument> pinnedRootDocuments = new ConcurrentHashMap<>();
+	private final long rootDocumentsMaxWeight;
+	/** New (not saved) documents which were not accessed for that long are evicted */
+	private final long newDocumentsMaxIdleMillis;
+	private final AtomicLong nextIdleNewDocumentsEvictionMillis = new AtomicLong(0);
 
 	private final ConcurrentHashMap<String, Set<WindowId>> tableName2windowIds = new ConcurrentHashMap<>();
 
-	/* package */ DocumentCollection()
+	/** Remembers which snapshots were seen by which readers, so the stale included documents are reported once per reader */
+	private final DocumentSnapshotStaleTracker snapshotStaleTracker = new DocumentSnapshotStaleTracker();
+
+	@Autowired
+	/* package */ DocumentCollection(
+			@Value("${metasfresh.webui.documents.cache.maxHeapMB:256}") final int cacheMaxHeapMB,
+			@Value("${metasfresh.webui.documents.cache.expireAfterAccessMinutes:60}") final int cacheExpireAfterAccessMinutes)
 	{
+		rootDocumentsMaxWeight = RootDocumentWeigher.computeMaxWeight(cacheMaxHeapMB);
+		newDocumentsMaxIdleMillis = TimeUnit.MINUTES.toMillis(cacheExpireAfterAccessMinutes > 0 ? cacheExpireAfterAccessMinutes : 60);
+
+		final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+				.maximumWeight(rootDocumentsMaxWeight)
+				.recordStats();
+		if (cacheExpireAfterAccessMinutes > 0)
+		{
+			cacheBuilder.expireAfterAccess(cacheExpireAfterAccessMinutes, TimeUnit.MINUTES);
+		}
+		rootDocuments = cacheBuilder
+				.weigher(RootDocumentWeigher.instance)
+				.build();
+
+		logger.info("Root documents cache: maxHeapMB={}, maxWeight={}, expireAfterAccessMinutes={}", cacheMaxHeapMB, rootDocumentsMaxWeight, cacheExpireAfterAccessMinutes);
 	}
 
 	public DocumentDescriptorFactory getDocumentDescriptorFactory()
@@ -159,36 +193,52 @@ public class DocumentCollection
 		return windowIds != null && !windowIds.isEmpty() ? ImmutableSet.copyOf(windowIds) : ImmutableSet.of();
 	}
 
+	/**
+	 * @return a private readonly copy of the document, which can be used after the read lock was released
+	 */
 	public Document getDocumentReadonly(@NonNull final DocumentPath documentPath)
 	{
-		return forDocumentReadonly(documentPath, Function.identity());
+		final DocumentPath rootDocumentPath = documentPath.getRootDocumentPath();
+
+		// NOTE: we are not returning the shared snapshot because it would escape the read lock
+		final Document rootDocumentCopy = forRootDocumentReadonly(rootDocumentPath, rootDocument -> rootDocument.copy(CopyMode.CheckInReadonly, NullDocumentChangesCollector.instance));
+		return getDocumentFromRootDocument(rootDocumentCopy, documentPath);
 	}
 
 	public <R> R forDocumentReadonly(@NonNull final DocumentPath documentPath, @NonNull final Function<Document, R> documentProcessor)
 	{
 		final DocumentPath rootDocumentPath = documentPath.getRootDocumentPath();
 
-		return forRootDocumentReadonly(rootDocumentPath, rootDocument -> {
-			if (documentPath.isRootDocument())
-			{
-				return documentProcessor.apply(rootDocument);
-			}
-			else if (documentPath.isSingleIncludedDocument())
-			{
-				final Document includedDocument = rootDocument.getIncludedDocument(documentPath.getDetailId(), documentPath.getSingleRowId());
-				DocumentPermissionsHelper.assertCanView(includedDocument, UserSession.getCurrentPermissions());
+		return forRootDocumentReadonly(rootDocumentPath, rootDocument -> documentProcessor.apply(getDocumentFromRootDocument(rootDocument, documentPath)));
+	}
 
-				return documentProcessor.apply(includedDocument);
-			}
-			else
-			{
-				throw new InvalidDocumentPathException(documentPath);
-			}
-		});
+	private static Document getDocumentFromRootDocument(final Document rootDocument, final DocumentPath documentPath)
+	{
+		if (documentPath.isRootDocument())
+		{
+			return rootDocument;
+		}
+		else if (documentPath.isSingleIncludedDocument())
+		{
+			final Document includedDocument = rootDocument.getIncludedDocument(documentPath.getDetailId(), documentPath.getSingleRowId());
+			DocumentPermissionsHelper.assertCanView(includedDocument, UserSession.getCurrentPermissions());
+			return includedDocument;
+		}
+		else
+		{
+			throw new InvalidDocumentPathException(documentPath);
+		}
 	}
 
 	private Document getOrLoadDocument(@NonNull final DocumentKey documentKey)
 	{
+		final PinnedRootDocument pinnedDocument = pinnedRootDocuments.get(documentKey);
+		if (pinnedDocument != null)
+		{
+			pinnedDocument.touch();
+			return pinnedDocument.getDocument();
+		}
+
 		try
 		{
 			return rootDocuments.get(documentKey, () -> {
@@ -206,15 +256,43 @@ public class DocumentCollection
 		}
 	}
 
+	/**
+	 * Calls the given processor with the shared readonly snapshot of the root document.
+	 * <p>
+	 * The snapshot is published on {@link #commitRootDocument(Document)} (or when the document is loaded) and it's never changed afterwards,
+	 * so it's shared by all concurrent readers without copying it.
+	 * <p>
+	 * IMPORTANT: the processor shall not change the document and shall not keep a reference to it after it returns.
+	 * If that's needed, please use a copy (see {@link #getDocumentReadonly(DocumentPath)}).
+	 */
 	public <R> R forRootDocumentReadonly(@NonNull final DocumentPath documentPath, final Function<Document, R> rootDocumentProcessor)
+	{
+		final String readerId = null;
+		return forRootDocumentReadonly(documentPath, readerId, rootDocumentProcessor);
+	}
+
+	/**
+	 * Same as {@link #forRootDocumentReadonly(DocumentPath, Function)}, but the stale included documents are reported only once to given reader.
+	 * <p>
+	 * i.e. if the reader already got the current snapshot, the processor is called with a shared copy of it, without the stale flags
+	 * (see {@link DocumentSnapshotStaleTracker}).
+	 *
+	 * @param readerId identifies the reader which is reporting the stale included documents to frontend (e.g. the session ID);
+	 *            if null, the processor is always called with the snapshot, including its stale flags
+	 */
+	public <R> R forRootDocumentReadonly(@NonNull final DocumentPath documentPath, @Nullable final String readerId, final Function<Document, R> rootDocumentProcessor)
 	{
 		final DocumentKey rootDocumentKey = DocumentKey.ofRootDocumentPath(documentPath.getRootDocumentPath());
 
 		try (final IAutoCloseable readLock = getOrLoadDocument(rootDocumentKey).lockForReading())
 		{
-			final Document rootDocument = getOrLoadDocument(rootDocumentKey).copy(CopyMode.CheckInReadonly, NullDocumentChangesCollector.instance);
-			DocumentPermissionsHelper.assertCanView(rootDocument, UserSession.getCurrentPermissions());
+			// NOTE: fetch it again, because it might be that a newer snapshot was published while we were waiting for the lock
+			final Document rootDocumentSnapshot = getOrLoadDocument(rootDocumentKey);
+			DocumentPermissionsHelper.assertCanView(rootDocumentSnapshot, UserSession.getCurrentPermissions());
 
+			final Document rootDocument = readerId != null
+					? snapshotStaleTracker.getSnapshotForReader(readerId, rootDocumentSnapshot)
+					: rootDocumentSnapshot;
 			return rootDocumentProcessor.apply(rootDocument);
 		}
 	}
@@ -246,6 +324,34 @@ public class DocumentCollection
 		});
 	}
 
+	private Document getCachedDocumentOrNull(@NonNull final DocumentKey documentKey)
+	{
+		final PinnedRootDocument pinnedDocument = pinnedRootDocuments.get(documentKey);
+		if (pinnedDocument != null)
+		{
+			return pinnedDocument.getDocument();
+		}
+
+		return rootDocuments.getIfPresent(documentKey);
+	}
+
+	/**
+	 * Pins the root document so it won't be evicted from cache while it's checked out for writing.
+	 *
+	 * @return the root document which shall be used as lock holder
+	 */
+	private Document pinCheckedOutDocument(@NonNull final DocumentKey documentKey)
+	{
+		final Document document = getOrLoadDocument(documentKey);
+		return pinnedRootDocuments.compute(documentKey, (k, pinnedDocument) -> pinnedDocument != null ? pinnedDocument.checkOut() : PinnedRootDocument.checkedOut(document))
+				.getDocument();
+	}
+
+	private void unpinCheckedOutDocument(@NonNull final DocumentKey documentKey)
+	{
+		pinnedRootDocuments.computeIfPresent(documentKey, (k, pinnedDocument) -> pinnedDocument.checkIn());
+	}
+
 	public <R> R forRootDocumentWritable(final DocumentPath documentPathOrNew, final IDocumentChangesCollector changesCollector, final Function<Document, R> rootDocumentProcessor)
 	{
 		final DocumentPath rootDocumentPathOrNew = documentPathOrNew.getRootDocumentPath();
@@ -263,7 +369,7 @@ public class DocumentCollection
 		else
 		{
 			rootDocumentKey = DocumentKey.ofRootDocumentPath(rootDocumentPathOrNew);
-			lockHolder = getOrLoadDocument(rootDocumentKey);
+			lockHolder = pinCheckedOutDocument(rootDocumentKey);
 			isNewRootDocument = false;
 		}
 
@@ -292,6 +398,7 @@ public class DocumentCollection
 			if (rootDocument.isDeleted())
 			{
 				rootDocuments.invalidate(rootDocumentKey);
+				pinnedRootDocuments.remove(rootDocumentKey);
 				changesCollector.collectDeleted(rootDocument.getDocumentPath());
 			}
 			else
@@ -302,6 +409,13 @@ public class DocumentCollection
 			// Return the result
 			return result;
 		}
+		finally
+		{
+			if (!isNewRootDocument)
+			{
+				unpinCheckedOutDocument(rootDocumentKey);
+			}
+		}
 	}
 
 	/**
@@ -361,9 +475,55 @@ public class DocumentCollection
 
 	public void cacheReset()
 	{
-		// TODO: invalidate only those which are: 1. NOT new; 2. NOT currently editing
 		rootDocuments.invalidateAll();
 		rootDocuments.cleanUp();
+
+		// NOTE: currently checked out documents are not affected
+		evictIdleNewDocuments(0);
+	}
+
+	/**
+	 * Evicts the new (not saved) documents which were not accessed for a while. It's done at most once per minute.
+	 */
+	private void evictIdleNewDocumentsIfDue()
+	{
+		final long now = System.currentTimeMillis();
+		final long nextEvictionMillis = nextIdleNewDocumentsEvictionMillis.get();
+		if (now < nextEvictionMillis || !nextIdleNewDocumentsEvictionMillis.compareAndSet(nextEvictionMillis, now + TimeUnit.MINUTES.toMillis(1)))
+		{
+			return;
+		}
+
+		evictIdleNewDocuments(newDocumentsMaxIdleMillis);
+	}
+
+	/**
+	 * Evicts the new (not saved) documents which are not checked out and which were not accessed for given time.
+	 */
+	private void evictIdleNewDocuments(final long maxIdleMillis)
+	{
+		final long now = System.currentTimeMillis();
+		for (final DocumentKey documentKey : pinnedRootDocuments.keySet())
+		{
+			pinnedRootDocuments.computeIfPresent(documentKey, (k, pinnedDocument) -> pinnedDocument.isIdleNewDocument(maxIdleMillis, now) ? null : pinnedDocument);
+		}
+	}
+
+	public Map<String, Object> getCacheStats()
+	{
+		final CacheStats stats = rootDocuments.stats();
+		return ImmutableMap.<String, Object> builder()
+				.put("size", rootDocuments.size())
+				.put("pinnedSize", pinnedRootDocuments.size())
+				.put("maxWeight", rootDocumentsMaxWeight)
+				.put("requestCount", stats.requestCount())
+				.put("hitCount", stats.hitCount())
+				.put("hitRate", stats.hitRate())
+				.put("missCount", stats.missCount())
+				.put("loadCount", stats.loadCount())
+				.put("averageLoadPenaltyMillis", TimeUnit.NANOSECONDS.toMillis((long)stats.averageLoadPenalty()))
+				.put("evictionCount", stats.evictionCount())
+				.build();
 	}
 
 	private void commitRootDocument(@NonNull final Document rootDocument)
@@ -382,9 +542,20 @@ public class DocumentCollection
 		rootDocument.updateIncludedDetailsStatus();
 
 		//
-		// Add the saved and changed document back to index
+		// Add the saved and changed document back to index.
+		// New (not saved) documents are pinned, because there is no way to load them back from repository.
 		final DocumentKey rootDocumentKey = DocumentKey.of(rootDocument);
-		rootDocuments.put(rootDocumentKey, rootDocument.copy(CopyMode.CheckInReadonly, NullDocumentChangesCollector.instance));
+		final Document rootDocumentReadonly = rootDocument.copy(CopyMode.CheckInReadonly, NullDocumentChangesCollector.instance);
+		if (rootDocumentReadonly.isNew())
+		{
+			pinnedRootDocuments.compute(rootDocumentKey, (k, pinnedDocument) -> pinnedDocument != null ? pinnedDocument.checkInNew(rootDocumentReadonly) : PinnedRootDocument.newDocument(rootDocumentReadonly));
+			evictIdleNewDocumentsIfDue();
+		}
+		else
+		{
+			rootDocuments.put(rootDocumentKey, rootDocumentReadonly);
+			pinnedRootDocuments.computeIfPresent(rootDocumentKey, (k, pinnedDocument) -> pinnedDocument.checkInSaved(rootDocumentReadonly));
+		}
 		addToTableName2WindowIdsCache(rootDocument.getEntityDescriptor());
 
 		//
@@ -622,6 +793,8 @@ public class DocumentCollection
 
 		//
 		// Invalidate the root documents
+		// NOTE: also mark them as staled because they might be pinned or currently checked out for writing
+		documentKeys.forEach(this::markStaledIfCached);
 		rootDocuments.invalidateAll(documentKeys);
 
 		//
@@ -665,7 +838,7 @@ public class DocumentCollection
 		// Get the root document if exists
 		final DocumentPath rootDocumentPath = documentPath.getRootDocumentPath();
 		final DocumentKey documentKey = DocumentKey.ofRootDocumentPath(rootDocumentPath);
-		final Document document = rootDocuments.getIfPresent(documentKey);
+		final Document document = getCachedDocumentOrNull(documentKey);
 
 		// Invalidate
 		if (document != null)
@@ -673,6 +846,7 @@ public class DocumentCollection
 			try (final IAutoCloseable lock = document.lockForWriting())
 			{
 				document.getIncludedDocumentsCollection(documentPath.getDetailId()).markStale(documentPath.getSingleRowId());
+				document.changeSnapshotVersion();
 			}
 		}
 
@@ -693,6 +867,7 @@ public class DocumentCollection
 
 		//
 		// Invalidate the root documents
+		markStaledIfCached(documentKey);
 		rootDocuments.invalidate(documentKey);
 
 		//
@@ -700,6 +875,15 @@ public class DocumentCollection
 		websocketPublisher.staleByDocumentPath(documentPath);
 	}
 
+	private void markStaledIfCached(final DocumentKey documentKey)
+	{
+		final Document document = getCachedDocumentOrNull(documentKey);
+		if (document != null)
+		{
+			document.markStaled();
+		}
+	}
+
 	public Document duplicateDocument(final DocumentPath fromDocumentPath)
 	{
 		// NOTE: assume running out of transaction
@@ -777,7 +961,7 @@ public class DocumentCollection
 	}
 
 	@Immutable
-	@Value
+	@lombok.Value
 	@Builder
 	public static final class DocumentPrint
 	{
@@ -789,6 +973,128 @@ public class DocumentCollection
 		private final byte[] reportData;
 	}
 
+	/**
+	 * Weights root documents by the number of fields of the root document and of its currently loaded included documents.
+	 */
+	private static final class RootDocumentWeigher implements Weigher<DocumentKey, Document>
+	{
+		public static final transient RootDocumentWeigher instance = new RootDocumentWeigher();
+
+		/** Approximate heap usage of one document field (field, descriptor references, value, initial value, lookup value etc) */
+		private static final int APPROX_FIELD_SIZE_BYTES = 512;
+		/** Approximate heap usage of one document, excluding it's fields */
+		private static final int APPROX_DOCUMENT_OVERHEAD_BYTES = 2048;
+
+		public static long computeMaxWeight(final int maxHeapMB)
+		{
+			Preconditions.checkArgument(maxHeapMB > 0, "maxHeapMB > 0 but it was %s", maxHeapMB);
+			return maxHeapMB * 1024L * 1024L / APPROX_FIELD_SIZE_BYTES;
+		}
+
+		private RootDocumentWeigher()
+		{
+		}
+
+		@Override
+		public int weigh(final DocumentKey documentKey, final Document rootDocument)
+		{
+			final int documentsCount = 1 + rootDocument.getLoadedIncludedDocumentsCountRecursivelly();
+			final int fieldsCount = rootDocument.getLoadedFieldsCountRecursivelly();
+			return documentsCount * (APPROX_DOCUMENT_OVERHEAD_BYTES / APPROX_FIELD_SIZE_BYTES) + fieldsCount;
+		}
+	}
+
+	/**
+	 * A root document which is kept outside of the evictable cache, either because it's new (not saved) or because it's currently checked out.
+	 * New documents which are not checked out are evicted when idle for too long or on cache reset.
+	 * <p>
+	 * Instances are mutated only inside {@link ConcurrentHashMap#compute(Object, java.util.function.BiFunction)} calls (except the last access timestamp).
+	 */
+	private static final class PinnedRootDocument
+	{
+		public static PinnedRootDocument checkedOut(@NonNull final Document document)
+		{
+			final PinnedRootDocument pinnedDocument = new PinnedRootDocument(document, false);
+			return pinnedDocument.checkOut();
+		}
+
+		public static PinnedRootDocument newDocument(@NonNull final Document document)
+		{
+			return new PinnedRootDocument(document, true);
+		}
+
+		private Document document;
+		private boolean isNew;
+		private int checkoutsCount = 0;
+		private volatile long lastAccessMillis = System.currentTimeMillis();
+
+		private PinnedRootDocument(@NonNull final Document document, final boolean isNew)
+		{
+			this.document = document;
+			this.isNew = isNew;
+		}
+
+		@Override
+		public String toString()
+		{
+			return MoreObjects.toStringHelper(this)
+					.add("document", document)
+					.add("isNew", isNew)
+					.add("checkoutsCount", checkoutsCount)
+					.toString();
+		}
+
+		public Document getDocument()
+		{
+			return document;
+		}
+
+		public void touch()
+		{
+			lastAccessMillis = System.currentTimeMillis();
+		}
+
+		public PinnedRootDocument checkOut()
+		{
+			checkoutsCount++;
+			touch();
+			return this;
+		}
+
+		/** @return this or null if it's no longer pinned */
+		public PinnedRootDocument checkIn()
+		{
+			checkoutsCount = Math.max(checkoutsCount - 1, 0);
+			return isPinned() ? this : null;
+		}
+
+		public PinnedRootDocument checkInNew(@NonNull final Document document)
+		{
+			this.document = document;
+			this.isNew = true;
+			touch();
+			return this;
+		}
+
+		/** @return this or null if it's no longer pinned */
+		public PinnedRootDocument checkInSaved(@NonNull final Document document)
+		{
+			this.document = document;
+			this.isNew = false;
+			return isPinned() ? this : null;
+		}
+
+		private boolean isPinned()
+		{
+			return isNew || checkoutsCount > 0;
+		}
+
+		public boolean isIdleNewDocument(final long maxIdleMillis, final long now)
+		{
+			return isNew && checkoutsCount <= 0 && now - lastAccessMillis >= maxIdleMillis;
+		}
+	}
+
 	@Immutable
 	private static final class DocumentKey
 	{
@@ -421,7 +421,7 @@ import lombok.NonNull;
 		final LookupDataSource lookupDataSource = getLookupDataSource();
 		final Evaluatee ctx = getDocument().asEvaluatee();
 		final LookupValuesList values = lookupDataSource.findEntities(ctx);
-		lookupValuesStaled = false;
+		markLookupValuesNotStaled();
 		return values == null ? LookupValuesList.EMPTY : values;
 	}
 
@@ -431,10 +431,21 @@ import lombok.NonNull;
 		final LookupDataSource lookupDataSource = getLookupDataSource();
 		final Evaluatee ctx = getDocument().asEvaluatee();
 		final LookupValuesList values = lookupDataSource.findEntities(ctx, query);
-		lookupValuesStaled = false;
+		markLookupValuesNotStaled();
 		return values;
 	}
 
+	private void markLookupValuesNotStaled()
+	{
+		// NOTE: readonly documents are snapshots shared by all readers, so we are not changing them
+		if (!getDocument().isWritable())
+		{
+			return;
+		}
+
+		lookupValuesStaled = false;
+	}
+
 	@Override
 	public ICalloutField asCalloutField()
 	{
@@ -1,35 +1,65 @@
 package de.metas.ui.web.window.model;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
+import org.adempiere.ad.security.UserRolePermissionsKey;
 import org.adempiere.ad.table.api.IADTableDAO;
 import org.adempiere.ad.trx.api.ITrx;
+import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.model.ZoomInfoFactory;
 import org.adempiere.model.ZoomInfoFactory.IZoomSource;
 import org.adempiere.model.ZoomInfoFactory.ZoomInfo;
 import org.adempiere.util.Services;
+import org.adempiere.util.lang.IAutoCloseable;
+import org.adempiere.util.lang.impl.TableRecordReference;
 import org.compiere.model.I_AD_Column;
+import org.compiere.util.Env;
 import org.compiere.util.Evaluatee;
+import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import de.metas.i18n.ITranslatableString;
 import de.metas.i18n.ImmutableTranslatableString;
+import de.metas.logging.LogManager;
 import de.metas.ui.web.document.filter.MQueryDocumentFilterHelper;
+import de.metas.ui.web.session.UserSession;
 import de.metas.ui.web.window.WindowConstants;
 import de.metas.ui.web.window.datatypes.DocumentPath;
 import de.metas.ui.web.window.datatypes.WindowId;
 import de.metas.ui.web.window.descriptor.DocumentEntityDescriptor;
 import de.metas.ui.web.window.descriptor.DocumentFieldDataBindingDescriptor;
 import de.metas.ui.web.window.descriptor.DocumentFieldDescriptor;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Singular;
+import lombok.Value;
 
 /*
  * #%L
@@ -56,28 +86,217 @@ import lombok.NonNull;
 @Service
 public class DocumentReferencesService
 {
+	private static final Logger logger = LogManager.getLogger(DocumentReferencesService.class);
+
 	@Autowired
 	private DocumentCollection documentCollection;
 
+	/** Max number of reference targets which are counted in parallel */
+	private static final int COUNTING_PARALLELISM = 4;
+	private final ForkJoinPool countingPool = new ForkJoinPool(COUNTING_PARALLELISM, DocumentReferencesService::newCountingThread, null, false);
+
+	/**
+	 * Document references, cached per document and role.
+	 * Entries are invalidated when the source document or any of the referenced tables are changed (see {@link #notifyRecordsChanged(Set)}).
+	 * Because we cannot know the tables of the targets which have no references yet, the entries are also expiring after a short while.
+	 */
+	private final Cache<DocumentReferencesKey, DocumentReferencesList> documentReferencesCache = CacheBuilder.newBuilder()
+			.maximumSize(500)
+			.expireAfterWrite(60, TimeUnit.SECONDS)
+			.build();
+
+	private static ForkJoinWorkerThread newCountingThread(final ForkJoinPool pool)
+	{
+		final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName("webui-documentReferences-" + thread.getPoolIndex());
+		thread.setDaemon(true);
+		return thread;
+	}
+
 	public List<DocumentReference> getDocumentReferences(final DocumentPath documentPath)
 	{
-		return documentCollection.forDocumentReadonly(documentPath, document -> {
+		final DocumentReferencesKey key = DocumentReferencesKey.ofCurrentUserSessionOrNull(documentPath);
+		final List<DocumentReference> cachedDocumentReferences = getCachedDocumentReferencesOrNull(key);
+		if (cachedDocumentReferences != null)
+		{
+			return cachedDocumentReferences;
+		}
+
+		final ZoomSourceAndFilterCaption source = extractZoomSourceOrNull(documentPath);
+		if (source == null)
+		{
+			return ImmutableList.of();
+		}
+
+		final Properties ctx = Env.copyCtx(Env.getCtx());
+		return countAndCacheDocumentReferences(key, source, ctx, documentReference -> {
+		});
+	}
+
+	/**
+	 * Asynchronously counts the document references.
+	 *
+	 * @param partialResultsListener called for each document reference, as soon as it was counted; it might be called concurrently from several threads.
+	 * @return future which completes when all references were counted
+	 */
+	public CompletableFuture<List<DocumentReference>> getDocumentReferencesAsync(
+			@NonNull final DocumentPath documentPath,
+			@NonNull final Consumer<DocumentReference> partialResultsListener)
+	{
+		final DocumentReferencesKey key = DocumentReferencesKey.ofCurrentUserSessionOrNull(documentPath);
+		final List<DocumentReference> cachedDocumentReferences = getCachedDocumentReferencesOrNull(key);
+		if (cachedDocumentReferences != null)
+		{
+			cachedDocumentReferences.forEach(partialResultsListener);
+			return CompletableFuture.completedFuture(cachedDocumentReferences);
+		}
+
+		final ZoomSourceAndFilterCaption source = extractZoomSourceOrNull(documentPath);
+		if (source == null)
+		{
+			return CompletableFuture.completedFuture(ImmutableList.of());
+		}
 
+		// NOTE: the counting threads do not have a context, so we are using a copy of the current one
+		final Properties ctx = Env.copyCtx(Env.getCtx());
+		return CompletableFuture.supplyAsync(() -> countAndCacheDocumentReferences(key, source, ctx, partialResultsListener), countingPool)
+				.whenComplete((documentReferences, ex) -> {
+					if (ex != null)
+					{
+						logger.warn("Failed counting document references for {}", documentPath, ex);
+					}
+				});
+	}
+
+	private List<DocumentReference> getCachedDocumentReferencesOrNull(@Nullable final DocumentReferencesKey key)
+	{
+		final DocumentReferencesList cachedDocumentReferences = key != null ? documentReferencesCache.getIfPresent(key) : null;
+		return cachedDocumentReferences != null ? cachedDocumentReferences.getReferences() : null;
+	}
+
+	/**
+	 * Extracts what we need for counting while holding the document's read lock.
+	 * <p>
+	 * NOTE: the readonly document is a snapshot which is not changed afterwards, so it's safe to use it later in our counting threads.
+	 *
+	 * @return zoom source or null if the document is new
+	 */
+	private ZoomSourceAndFilterCaption extractZoomSourceOrNull(final DocumentPath documentPath)
+	{
+		return documentCollection.forDocumentReadonly(documentPath, document -> {
 			if (document.isNew())
 			{
-				return ImmutableList.of();
+				return null;
 			}
 
-			final DocumentAsZoomSource zoomSource = new DocumentAsZoomSource(document);
-			final ITranslatableString filterCaption = extractFilterCaption(document);
-
-			return ZoomInfoFactory.get()
-					.streamZoomInfos(zoomSource)
-					.map(zoomInfo -> createDocumentReference(zoomInfo, filterCaption))
-					.collect(ImmutableList.toImmutableList());
+			return ZoomSourceAndFilterCaption.of(new DocumentAsZoomSource(document), extractFilterCaption(document));
 		});
 	}
 
+	private List<DocumentReference> countAndCacheDocumentReferences(
+			@Nullable final DocumentReferencesKey key,
+			@NonNull final ZoomSourceAndFilterCaption source,
+			@NonNull final Properties ctx,
+			@NonNull final Consumer<DocumentReference> partialResultsListener)
+	{
+		final DocumentReferencesList documentReferences = countDocumentReferences(source, ctx, partialResultsListener);
+		if (key != null)
+		{
+			documentReferencesCache.put(key, documentReferences);
+		}
+
+		return documentReferences.getReferences();
+	}
+
+	private DocumentReferencesList countDocumentReferences(
+			final ZoomSourceAndFilterCaption source,
+			final Properties ctx,
+			final Consumer<DocumentReference> partialResultsListener)
+	{
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		final List<DocumentReferenceAndTableName> documentReferences = mapInParallel(
+				countingPool,
+				ctx,
+				() -> ZoomInfoFactory.get().streamZoomInfos(source.getZoomSource()),
+				zoomInfo -> {
+					final DocumentReference documentReference = createDocumentReference(zoomInfo, source.getFilterCaption());
+					partialResultsListener.accept(documentReference);
+					return DocumentReferenceAndTableName.of(documentReference, zoomInfo.getQuery().getTableName());
+				});
+		logger.debug("Counted {} document references for {} in {}", documentReferences.size(), source.getZoomSource(), stopwatch);
+
+		return DocumentReferencesList.builder()
+				.references(documentReferences.stream()
+						.map(DocumentReferenceAndTableName::getDocumentReference)
+						.collect(ImmutableList.toImmutableList()))
+				.tableName(source.getZoomSource().getTableName())
+				.tableNames(documentReferences.stream()
+						.map(DocumentReferenceAndTableName::getTableName)
+						.filter(Objects::nonNull)
+						.collect(ImmutableSet.toImmutableSet()))
+				.build();
+	}
+
+	/**
+	 * Maps the given elements in parallel, in given pool, so the parallelism is bounded by that pool.
+	 * <p>
+	 * The pool's threads do not have the context of the calling thread, so each mapping is running with the given context.
+	 *
+	 * @return mapped elements, in the order of the source elements
+	 */
+	@VisibleForTesting
+	static <T, R> ImmutableList<R> mapInParallel(
+			@NonNull final ForkJoinPool pool,
+			@NonNull final Properties ctx,
+			@NonNull final Supplier<Stream<T>> elementsSupplier,
+			@NonNull final Function<T, R> mapper)
+	{
+		final Callable<ImmutableList<R>> task = () -> {
+			try (final IAutoCloseable temporaryCtx = Env.switchContext(ctx))
+			{
+				return elementsSupplier.get()
+						.parallel()
+						.map(element -> {
+							try (final IAutoCloseable elementCtx = Env.switchContext(ctx))
+							{
+								return mapper.apply(element);
+							}
+						})
+						.collect(ImmutableList.toImmutableList());
+			}
+		};
+
+		try
+		{
+			// NOTE: the parallel stream is using the pool it's running in
+			return ForkJoinTask.getPool() == pool ? task.call() : pool.submit(task).get();
+		}
+		catch (final ExecutionException ex)
+		{
+			throw AdempiereException.wrapIfNeeded(ex.getCause());
+		}
+		catch (final Exception ex)
+		{
+			throw AdempiereException.wrapIfNeeded(ex);
+		}
+	}
+
+	/**
+	 * Invalidates the cached document references which are about given records' tables.
+	 */
+	public void notifyRecordsChanged(@NonNull final Set<TableRecordReference> recordRefs)
+	{
+		if (recordRefs.isEmpty())
+		{
+			return;
+		}
+
+		final Set<String> tableNames = recordRefs.stream()
+				.map(TableRecordReference::getTableName)
+				.collect(ImmutableSet.toImmutableSet());
+		documentReferencesCache.asMap().values().removeIf(documentReferences -> documentReferences.isReferencingAnyOfTableNames(tableNames));
+	}
+
 	public DocumentReference getDocumentReference(final DocumentPath sourceDocumentPath, final WindowId targetWindowId)
 	{
 		return documentCollection.forDocumentReadonly(sourceDocumentPath, sourceDocument -> {
@@ -275,4 +494,53 @@ public class DocumentReferencesService
 			return document.getFieldView(columnName).getValueAsBoolean();
 		}
 	}
+
+	@Value
+	private static final class DocumentReferencesKey
+	{
+		@Nullable
+		public static DocumentReferencesKey ofCurrentUserSessionOrNull(@NonNull final DocumentPath documentPath)
+		{
+			final UserSession userSession = UserSession.getCurrentOrNull();
+			if (userSession == null)
+			{
+				return null;
+			}
+			return new DocumentReferencesKey(documentPath, userSession.getUserRolePermissionsKey());
+		}
+
+		private final DocumentPath documentPath;
+		private final UserRolePermissionsKey userRolePermissionsKey;
+	}
+
+	@Value(staticConstructor = "of")
+	private static final class ZoomSourceAndFilterCaption
+	{
+		private final DocumentAsZoomSource zoomSource;
+		private final ITranslatableString filterCaption;
+	}
+
+	@Value(staticConstructor = "of")
+	private static final class DocumentReferenceAndTableName
+	{
+		private final DocumentReference documentReference;
+		private final String tableName;
+	}
+
+	@Value
+	@Builder
+	private static final class DocumentReferencesList
+	{
+		@NonNull
+		private final ImmutableList<DocumentReference> references;
+
+		/** source table name and the target table names */
+		@Singular
+		private final ImmutableSet<String> tableNames;
+
+		public boolean isReferencingAnyOfTableNames(final Set<String> tableNames)
+		{
+			return !Collections.disjoint(this.tableNames, tableNames);
+		}
+	}
 }
@@ -0,0 +1,125 @@
+package de.metas.ui.web.window.model;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.metas.ui.web.window.datatypes.DocumentPath;
+import de.metas.ui.web.window.model.Document.CopyMode;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+/**
+ * Reports the stale included documents of a shared root document snapshot to each reader, exactly once.
+ * <p>
+ * The stale flags are never cleared on the shared snapshot, because other readers might not have seen them yet.
+ * Instead, we remember which snapshot version each reader has seen last:
+ * <ul>
+ * <li>a reader which did not see the current snapshot version gets the shared snapshot, i.e. it's told which included documents are stale
+ * <li>a reader which already saw it gets a copy without the stale flags. That copy is created once per snapshot version and it's shared too.
+ * </ul>
+ *
+ * @author metas-dev <dev@metasfresh.com>
+ *
+ */
+final class DocumentSnapshotStaleTracker
+{
+	/** Last seen snapshot version, indexed by reader and root document */
+	private final Cache<ReaderAndDocument, Long> lastSeenSnapshotVersions = CacheBuilder.newBuilder()
+			.expireAfterAccess(1, TimeUnit.HOURS)
+			.build();
+
+	/** Copies of the snapshots without stale flags, indexed by root document path */
+	private final Cache<DocumentPath, NotStaleSnapshot> notStaleSnapshots = CacheBuilder.newBuilder()
+			.maximumSize(100)
+			.expireAfterAccess(10, TimeUnit.MINUTES)
+			.build();
+
+	/**
+	 * @param readerId identifies the reader (e.g. the HTTP session ID)
+	 * @param rootDocumentSnapshot shared readonly root document snapshot. The caller shall hold its read lock.
+	 * @return the root document snapshot to be used by given reader
+	 */
+	public Document getSnapshotForReader(@NonNull final String readerId, @NonNull final Document rootDocumentSnapshot)
+	{
+		if (!hasStaleIncludedDocuments(rootDocumentSnapshot))
+		{
+			return rootDocumentSnapshot;
+		}
+
+		final DocumentPath rootDocumentPath = rootDocumentSnapshot.getDocumentPath();
+		final long snapshotVersion = rootDocumentSnapshot.getSnapshotVersion();
+
+		final ReaderAndDocument readerAndDocument = ReaderAndDocument.of(readerId, rootDocumentPath);
+		final Long lastSeenSnapshotVersion = lastSeenSnapshotVersions.getIfPresent(readerAndDocument);
+		if (lastSeenSnapshotVersion == null || lastSeenSnapshotVersion != snapshotVersion)
+		{
+			lastSeenSnapshotVersions.put(readerAndDocument, snapshotVersion);
+			return rootDocumentSnapshot;
+		}
+
+		return getOrCreateNotStaleSnapshot(rootDocumentSnapshot);
+	}
+
+	private static boolean hasStaleIncludedDocuments(final Document rootDocument)
+	{
+		return rootDocument.getIncludedDocumentsCollections().stream().anyMatch(IIncludedDocumentsCollection::isStale);
+	}
+
+	private Document getOrCreateNotStaleSnapshot(final Document rootDocumentSnapshot)
+	{
+		final DocumentPath rootDocumentPath = rootDocumentSnapshot.getDocumentPath();
+		final long snapshotVersion = rootDocumentSnapshot.getSnapshotVersion();
+
+		// NOTE: in case of concurrent readers, more copies might be created but only the last one is kept. That's fine.
+		final NotStaleSnapshot notStaleSnapshot = notStaleSnapshots.getIfPresent(rootDocumentPath);
+		if (notStaleSnapshot != null && notStaleSnapshot.getSnapshotVersion() == snapshotVersion)
+		{
+			return notStaleSnapshot.getDocument();
+		}
+
+		final Document notStaleDocument = rootDocumentSnapshot.copy(CopyMode.CheckInReadonly, NullDocumentChangesCollector.instance);
+		notStaleDocument.getIncludedDocumentsCollections().forEach(IIncludedDocumentsCollection::markNotStale);
+		notStaleSnapshots.put(rootDocumentPath, new NotStaleSnapshot(snapshotVersion, notStaleDocument));
+		return notStaleDocument;
+	}
+
+	@Value(staticConstructor = "of")
+	private static final class ReaderAndDocument
+	{
+		private final String readerId;
+		private final DocumentPath rootDocumentPath;
+	}
+
+	@Value
+	private static final class NotStaleSnapshot
+	{
+		/** version of the shared snapshot which was copied */
+		private final long snapshotVersion;
+		private final Document document;
+	}
+}
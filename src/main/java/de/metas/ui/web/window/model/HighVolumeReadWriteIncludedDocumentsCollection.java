@@ -13,6 +13,7 @@ import org.compiere.util.Evaluatee;
 import org.slf4j.Logger;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 
 import de.metas.logging.LogManager;
@@ -152,6 +153,12 @@ public class HighVolumeReadWriteIncludedDocumentsCollection implements IIncluded
 		return detailId;
 	}
 
+	@Override
+	public Collection<Document> getLoadedDocuments()
+	{
+		return ImmutableList.copyOf(getChangedDocuments());
+	}
+
 	@Override
 	public IIncludedDocumentsCollection copy(final Document parentDocumentCopy, final CopyMode copyMode)
 	{
@@ -176,7 +183,11 @@ public class HighVolumeReadWriteIncludedDocumentsCollection implements IIncluded
 			documents.addDocuments(documentsWithChanges.values());
 		}
 
-		staled = false;
+		// NOTE: readonly documents are snapshots shared by all readers, so we are not changing them
+		if (parentDocument.isWritable())
+		{
+			staled = false;
+		}
 
 		return documents;
 	}
@@ -238,7 +249,15 @@ public class HighVolumeReadWriteIncludedDocumentsCollection implements IIncluded
 	@Override
 	public void assertNewDocumentAllowed()
 	{
-		actions.updateAndAssertAlowCreateNew(actionsContext);
+		// NOTE: readonly documents are snapshots shared by all readers, so we are not changing them
+		if (parentDocument.isWritable())
+		{
+			actions.updateAndAssertAlowCreateNew(actionsContext);
+		}
+		else
+		{
+			actions.assertAllowCreateNew(actionsContext);
+		}
 	}
 
 	@Override
@@ -389,6 +408,12 @@ public class HighVolumeReadWriteIncludedDocumentsCollection implements IIncluded
 		markStaleAll();
 	}
 
+	@Override
+	public void markNotStale()
+	{
+		staled = false;
+	}
+
 	@Override
 	public boolean isStale()
 	{
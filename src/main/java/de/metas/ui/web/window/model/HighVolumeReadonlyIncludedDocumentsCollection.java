@@ -162,6 +162,11 @@ public final class HighVolumeReadonlyIncludedDocumentsCollection implements IInc
 	{
 	}
 
+	@Override
+	public void markNotStale()
+	{
+	}
+
 	@Override
 	public boolean isStale()
 	{
@@ -1,9 +1,12 @@
 package de.metas.ui.web.window.model;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.adempiere.ad.expression.api.LogicExpressionResult;
 
+import com.google.common.collect.ImmutableList;
+
 import de.metas.ui.web.window.datatypes.DocumentId;
 import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
 import de.metas.ui.web.window.descriptor.DetailId;
@@ -69,11 +72,20 @@ public interface IIncludedDocumentsCollection
 	
 	void markStale(final DocumentId rowId);
 
+	/** Resets the stale flag, i.e. the documents of this collection were reloaded */
+	void markNotStale();
+
 	/** @return true if contains at least one stale document */
 	boolean isStale();
 
 	int getNextLineNo();
 
+	/** @return documents which are currently kept in memory by this collection (i.e. without loading anything from repository) */
+	default Collection<Document> getLoadedDocuments()
+	{
+		return ImmutableList.of();
+	}
+
 	default void onChildSaved(final Document document)
 	{
 		// nothing
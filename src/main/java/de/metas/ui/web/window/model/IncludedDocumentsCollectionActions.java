@@ -100,6 +100,23 @@ public final class IncludedDocumentsCollectionActions
 
 	}
 
+	/**
+	 * Same as {@link #updateAndAssertAlowCreateNew(IncludedDocumentsCollectionActionsContext)} but without changing this instance.
+	 * To be used on readonly documents, which are shared between readers.
+	 */
+	public void assertAllowCreateNew(final IncludedDocumentsCollectionActionsContext context)
+	{
+		final LogicExpressionResult allowCreateNewDocument = computeAllowCreateNewDocument(context);
+		if (allowCreateNewDocument.isFalse())
+		{
+			throw new InvalidDocumentStateException(parentDocumentPath, "Cannot create included document because it's not allowed.")
+					.setParameter("allowCreateNewDocument", allowCreateNewDocument)
+					.setParameter("allowCreateNewLogic", allowCreateNewLogic)
+					.setParameter("detailId", detailId)
+					.setParameter("context", context);
+		}
+	}
+
 	public LogicExpressionResult updateAndGetAllowCreateNewDocument(final IncludedDocumentsCollectionActionsContext context)
 	{
 		final LogicExpressionResult allowNew = computeAllowCreateNewDocument(context);
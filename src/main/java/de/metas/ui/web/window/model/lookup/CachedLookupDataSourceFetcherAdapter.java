@@ -1,5 +1,7 @@
 package de.metas.ui.web.window.model.lookup;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -138,6 +140,47 @@ public final class CachedLookupDataSourceFetcherAdapter implements LookupDataSou
 		return cache_retrieveLookupValueById.getOrLoad(evalCtx, () -> delegate.retrieveLookupValueById(evalCtx));
 	}
 
+	@Override
+	public LookupValuesList retrieveLookupValuesByIds(final Collection<LookupDataSourceContext> evalCtxs)
+	{
+		final List<LookupValue> lookupValues = new ArrayList<>(evalCtxs.size());
+
+		//
+		// Get from cache
+		final List<LookupDataSourceContext> evalCtxsToLoad = new ArrayList<>();
+		for (final LookupDataSourceContext evalCtx : evalCtxs)
+		{
+			final LookupValue lookupValue = cache_retrieveLookupValueById.get(evalCtx);
+			if (lookupValue == null)
+			{
+				evalCtxsToLoad.add(evalCtx);
+			}
+			else if (lookupValue != LOOKUPVALUE_NULL)
+			{
+				lookupValues.add(lookupValue);
+			}
+		}
+
+		//
+		// Load the missing ones in one go and put them to cache.
+		// NOTE: we also cache the IDs which were not found, same as retrieveLookupValueById does.
+		if (!evalCtxsToLoad.isEmpty())
+		{
+			final LookupValuesList lookupValuesLoaded = delegate.retrieveLookupValuesByIds(evalCtxsToLoad);
+			for (final LookupDataSourceContext evalCtx : evalCtxsToLoad)
+			{
+				final LookupValue lookupValue = lookupValuesLoaded.getById(evalCtx.getIdToFilter());
+				cache_retrieveLookupValueById.put(evalCtx, lookupValue != null ? lookupValue : LOOKUPVALUE_NULL);
+				if (lookupValue != null)
+				{
+					lookupValues.add(lookupValue);
+				}
+			}
+		}
+
+		return LookupValuesList.fromCollection(lookupValues);
+	}
+
 	@Override
 	public Builder newContextForFetchingList()
 	{
@@ -1,22 +1,38 @@
 package de.metas.ui.web.window.model.lookup;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
 import org.adempiere.ad.expression.api.IExpressionEvaluator.OnVariableNotFound;
 import org.adempiere.ad.expression.api.IStringExpression;
 import org.adempiere.ad.service.impl.LookupDAO.SQLNamePairIterator;
 import org.adempiere.ad.trx.api.ITrx;
 import org.adempiere.ad.validationRule.INamePairPredicate;
+import org.adempiere.exceptions.DBException;
 import org.compiere.util.CCache.CCacheStats;
 import org.compiere.util.DB;
+import org.compiere.util.Evaluatee;
+import org.compiere.util.Evaluatees;
 import org.slf4j.Logger;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 
 import de.metas.i18n.ITranslatableString;
 import de.metas.i18n.ImmutableTranslatableString;
@@ -62,6 +78,9 @@ public class GenericSqlLookupDataSourceFetcher implements LookupDataSourceFetche
 
 	private static final Logger logger = LogManager.getLogger(GenericSqlLookupDataSourceFetcher.class);
 
+	/** Max number of IDs to be fetched in one SQL query, see {@link #retrieveLookupValuesByIds(Collection)} */
+	private static final int MAX_IDS_PER_QUERY = 500;
+
 	private final @NonNull String lookupTableName;
 	private final @NonNull Optional<String> lookupTableNameAsOptional;
 	private final boolean numericKey;
@@ -69,6 +88,7 @@ public class GenericSqlLookupDataSourceFetcher implements LookupDataSourceFetche
 
 	private final IStringExpression sqlForFetchingExpression;
 	private final IStringExpression sqlForFetchingDisplayNameByIdExpression;
+	private final IStringExpression sqlForFetchingDisplayNamesByIdsExpression;
 	private final INamePairPredicate postQueryPredicate;
 
 	private final boolean isTranslatable;
@@ -88,6 +108,7 @@ public class GenericSqlLookupDataSourceFetcher implements LookupDataSourceFetche
 		entityTypeIndex = sqlLookupDescriptor.getEntityTypeIndex();
 		sqlForFetchingExpression = sqlLookupDescriptor.getSqlForFetchingExpression();
 		sqlForFetchingDisplayNameByIdExpression = sqlLookupDescriptor.getSqlForFetchingDisplayNameByIdExpression();
+		sqlForFetchingDisplayNamesByIdsExpression = sqlLookupDescriptor.getSqlForFetchingDisplayNamesByIdsExpression();
 		postQueryPredicate = sqlLookupDescriptor.getPostQueryPredicate();
 
 		isTranslatable = sqlForFetchingDisplayNameByIdExpression.requiresParameter(LookupDataSourceContext.PARAM_AD_Language.getName());
@@ -214,10 +235,73 @@ public class GenericSqlLookupDataSourceFetcher implements LookupDataSourceFetche
 			return LOOKUPVALUE_NULL;
 		}
 
+		final String adLanguage = isTranslatable ? evalCtx.getAD_Language() : null;
+		return createLookupValue(id, displayName, adLanguage);
+	}
+
+	@Override
+	public LookupValuesList retrieveLookupValuesByIds(@NonNull final Collection<LookupDataSourceContext> evalCtxs)
+	{
+		final Set<Object> ids = evalCtxs.stream()
+				.map(LookupDataSourceContext::getIdToFilter)
+				.filter(Predicates.notNull())
+				.collect(ImmutableSet.toImmutableSet());
+		if (ids.isEmpty())
+		{
+			return LookupValuesList.EMPTY;
+		}
+
+		// NOTE: we assume all contexts are the same, except the ID to filter
+		final LookupDataSourceContext evalCtx = evalCtxs.iterator().next();
+		final String adLanguage = isTranslatable ? evalCtx.getAD_Language() : null;
+
+		final List<LookupValue> lookupValues = new ArrayList<>(ids.size());
+		for (final List<Object> idsChunk : Iterables.partition(ids, MAX_IDS_PER_QUERY))
+		{
+			final Evaluatee evalCtxEffective = Evaluatees.mapBuilder()
+					.put(SqlLookupDescriptor.SQL_PARAM_KeyId, Joiner.on(",").join(Collections.nCopies(idsChunk.size(), "?")))
+					.build()
+					.andComposeWith(evalCtx);
+			final String sql = sqlForFetchingDisplayNamesByIdsExpression.evaluate(evalCtxEffective, OnVariableNotFound.Fail);
+
+			PreparedStatement pstmt = null;
+			ResultSet rs = null;
+			try
+			{
+				pstmt = DB.prepareStatement(sql, ITrx.TRXNAME_ThreadInherited);
+				DB.setParameters(pstmt, idsChunk);
+				rs = pstmt.executeQuery();
+				while (rs.next())
+				{
+					final Object id = numericKey ? (Object)rs.getInt(1) : rs.getString(1);
+					final String displayName = rs.getString(2);
+					if (displayName == null)
+					{
+						continue;
+					}
+
+					lookupValues.add(createLookupValue(id, displayName, adLanguage));
+				}
+			}
+			catch (final SQLException ex)
+			{
+				throw new DBException(ex, sql, idsChunk);
+			}
+			finally
+			{
+				DB.close(rs, pstmt);
+			}
+		}
+
+		logger.trace("Returning values={} for ids={}", lookupValues, ids);
+		return LookupValuesList.fromCollection(lookupValues);
+	}
+
+	private static LookupValue createLookupValue(@NonNull final Object id, @NonNull final String displayName, @Nullable final String adLanguage)
+	{
 		final ITranslatableString displayNameTrl;
-		if (isTranslatable)
+		if (adLanguage != null)
 		{
-			final String adLanguage = evalCtx.getAD_Language();
 			displayNameTrl = ImmutableTranslatableString.singleLanguage(adLanguage, displayName);
 		}
 		else
@@ -1,13 +1,17 @@
 package de.metas.ui.web.window.model.lookup;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.adempiere.util.Check;
 import org.compiere.util.CCache.CCacheStats;
 import org.compiere.util.Evaluatee;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableSet;
 
 import de.metas.ui.web.window.datatypes.LookupValue;
 import de.metas.ui.web.window.datatypes.LookupValuesList;
@@ -103,6 +107,46 @@ final class LookupDataSourceAdapter implements LookupDataSource
 
 	@Override
 	public LookupValue findById(final Object idObj)
+	{
+		//
+		// Build the validation context
+		final LookupDataSourceContext evalCtx = createContextForFetchingByIdOrNull(idObj);
+		if (evalCtx == null)
+		{
+			return null;
+		}
+
+		//
+		// Get the lookup value
+		final LookupValue lookupValue = fetcher.retrieveLookupValueById(evalCtx);
+		if (lookupValue == LookupDataSourceFetcher.LOOKUPVALUE_NULL)
+		{
+			return null;
+		}
+		return lookupValue;
+	}
+
+	@Override
+	public LookupValuesList findByIds(final Collection<? extends Object> ids)
+	{
+		if (ids.isEmpty())
+		{
+			return LookupValuesList.EMPTY;
+		}
+
+		final Set<LookupDataSourceContext> evalCtxs = ids.stream()
+				.map(this::createContextForFetchingByIdOrNull)
+				.filter(Predicates.notNull())
+				.collect(ImmutableSet.toImmutableSet());
+		if (evalCtxs.isEmpty())
+		{
+			return LookupValuesList.EMPTY;
+		}
+
+		return fetcher.retrieveLookupValuesByIds(evalCtxs);
+	}
+
+	private LookupDataSourceContext createContextForFetchingByIdOrNull(final Object idObj)
 	{
 		if (idObj == null)
 		{
@@ -117,21 +161,10 @@ final class LookupDataSourceAdapter implements LookupDataSource
 			return null;
 		}
 
-		//
-		// Build the validation context
-		final LookupDataSourceContext evalCtx = fetcher.newContextForFetchingById(idNormalized)
+		return fetcher.newContextForFetchingById(idNormalized)
 				.putFilterById(idNormalized)
 				.putShowInactive(true)
 				.build();
-
-		//
-		// Get the lookup value
-		final LookupValue lookupValue = fetcher.retrieveLookupValueById(evalCtx);
-		if (lookupValue == LookupDataSourceFetcher.LOOKUPVALUE_NULL)
-		{
-			return null;
-		}
-		return lookupValue;
 	}
 
 	@Override
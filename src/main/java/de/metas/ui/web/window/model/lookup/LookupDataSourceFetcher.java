@@ -1,5 +1,6 @@
 package de.metas.ui.web.window.model.lookup;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,6 +45,20 @@ public interface LookupDataSourceFetcher
 
 	LookupValue retrieveLookupValueById(LookupDataSourceContext evalCtx);
 
+	/**
+	 * Retrieves the lookup values for given contexts, ideally using only one database round trip.
+	 *
+	 * @param evalCtxs contexts created by {@link #newContextForFetchingById(Object)}; all contexts are expected to be the same, except for the ID to filter.
+	 * @return lookup values for the IDs which were found
+	 */
+	default LookupValuesList retrieveLookupValuesByIds(final Collection<LookupDataSourceContext> evalCtxs)
+	{
+		return evalCtxs.stream()
+				.map(this::retrieveLookupValueById)
+				.filter(lookupValue -> lookupValue != null && lookupValue != LOOKUPVALUE_NULL)
+				.collect(LookupValuesList.collect());
+	}
+
 	LookupDataSourceContext.Builder newContextForFetchingList();
 
 	LookupValuesList retrieveEntities(LookupDataSourceContext evalCtx);
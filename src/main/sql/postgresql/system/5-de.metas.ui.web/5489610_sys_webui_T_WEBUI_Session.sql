@@ -0,0 +1,16 @@
+-- Technical table used by de.metas.ui.web.session.SqlPersistentSessionStore to persist the HTTP sessions.
+-- REQUIRED when running with metasfresh.session.store=database.
+-- The webui-api creates it on startup if missing (the database user needs the CREATE privilege); else apply this script manually.
+CREATE TABLE IF NOT EXISTS public.T_WEBUI_Session
+(
+	Session_ID VARCHAR(255) NOT NULL,
+	LastAccessedTimeMillis BIGINT NOT NULL,
+	ExpiresAtMillis BIGINT NOT NULL,
+	SessionData BYTEA NOT NULL,
+	CONSTRAINT T_WEBUI_Session_Key PRIMARY KEY (Session_ID)
+)
+;
+
+-- needed to find the expired sessions without scanning the whole table
+CREATE INDEX IF NOT EXISTS T_WEBUI_Session_ExpiresAtMillis ON public.T_WEBUI_Session (ExpiresAtMillis)
+;
@@ -0,0 +1,88 @@
+package de.metas.ui.web.board;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.i18n.ImmutableTranslatableString;
+import de.metas.ui.web.board.json.events.JSONBoardCardChangedEvent;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.DocumentPath;
+import de.metas.ui.web.window.datatypes.WindowId;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class BoardCardsIndexTest
+{
+	private static final int BOARD_ID = 1;
+
+	private static BoardCard card(final int cardId, final int laneId)
+	{
+		return BoardCard.builder()
+				.cardId(cardId)
+				.laneId(laneId)
+				.caption(ImmutableTranslatableString.constant("card" + cardId))
+				.description(ImmutableTranslatableString.empty())
+				.documentPath(DocumentPath.rootDocumentPath(WindowId.of(123), DocumentId.of(cardId)))
+				.build();
+	}
+
+	@Test
+	public void test_replaceCards_removesTheCardsWhichWereNotRetrieved()
+	{
+		final BoardCardsIndex index = new BoardCardsIndex(BOARD_ID, ImmutableList.of(card(1, 10), card(2, 10), card(3, 10)));
+
+		index.replaceCards(ImmutableSet.of(1, 2), ImmutableList.of(card(1, 20)));
+
+		assertThat(index.containsCardId(2)).isFalse();
+		assertThat(index.getCardOrNull(1).getLaneId()).isEqualTo(20);
+		assertThat(index.getCardOrNull(3).getLaneId()).isEqualTo(10);
+	}
+
+	@Test
+	public void test_getEventsAfterVersion()
+	{
+		final BoardCardsIndex index = new BoardCardsIndex(BOARD_ID, ImmutableList.of(card(1, 10)));
+		final long version0 = index.getVersion();
+
+		final long version1 = index.recordEvents(ImmutableList.of(JSONBoardCardChangedEvent.of(BOARD_ID, 1)));
+
+		assertThat(version1).isGreaterThan(version0);
+		assertThat(index.getEventsAfterVersion(version0)).hasSize(1);
+		assertThat(index.getEventsAfterVersion(version1)).isEmpty();
+	}
+
+	@Test
+	public void test_getEventsAfterVersion_versionOfDiscardedIndexRequiresFullReload()
+	{
+		final BoardCardsIndex discardedIndex = new BoardCardsIndex(BOARD_ID, ImmutableList.of(card(1, 10)));
+		final long discardedIndexVersion = discardedIndex.recordEvents(ImmutableList.of(JSONBoardCardChangedEvent.of(BOARD_ID, 1)));
+
+		final BoardCardsIndex newIndex = new BoardCardsIndex(BOARD_ID, ImmutableList.of(card(1, 10)));
+
+		assertThat(newIndex.getEventsAfterVersion(discardedIndexVersion)).isNull();
+	}
+}
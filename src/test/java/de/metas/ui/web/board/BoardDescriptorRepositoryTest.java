@@ -0,0 +1,113 @@
+package de.metas.ui.web.board;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.adempiere.ad.dao.cache.CacheInvalidateMultiRequest;
+import org.compiere.model.I_C_Order;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import de.metas.ui.web.base.model.I_WEBUI_Board;
+import de.metas.ui.web.base.model.I_WEBUI_Board_CardField;
+import de.metas.ui.web.base.model.I_WEBUI_Board_Lane;
+import de.metas.ui.web.base.model.I_WEBUI_Board_RecordAssignment;
+import de.metas.ui.web.board.BoardDescriptorRepository.CardsIndexesToReset;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class BoardDescriptorRepositoryTest
+{
+	@Test
+	public void test_isResetCardsIndexes_resetAll()
+	{
+		assertThat(BoardDescriptorRepository.isResetCardsIndexes(CacheInvalidateMultiRequest.all())).isTrue();
+	}
+
+	@Test
+	public void test_isResetCardsIndexes_boardTables()
+	{
+		assertThat(BoardDescriptorRepository.isResetCardsIndexes(CacheInvalidateMultiRequest.allRecordsForTable(I_WEBUI_Board.Table_Name))).isTrue();
+		assertThat(BoardDescriptorRepository.isResetCardsIndexes(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_WEBUI_Board_Lane.Table_Name, 1))).isTrue();
+		assertThat(BoardDescriptorRepository.isResetCardsIndexes(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_WEBUI_Board_CardField.Table_Name, 1))).isTrue();
+	}
+
+	@Test
+	public void test_isResetCardsIndexes_otherTable()
+	{
+		// changed documents are handled by notifyRecordsChanged
+		assertThat(BoardDescriptorRepository.isResetCardsIndexes(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_C_Order.Table_Name, 1))).isFalse();
+	}
+
+	/** Assignment 100 belongs to board 1, assignment 200 belongs to board 2 */
+	private static final Function<Set<Integer>, Map<Integer, Integer>> boardIdsByAssignmentIdRetriever = assignmentIds -> {
+		final Map<Integer, Integer> existingAssignments = ImmutableMap.of(100, 1, 200, 2);
+		return existingAssignments.entrySet()
+				.stream()
+				.filter(entry -> assignmentIds.contains(entry.getKey()))
+				.collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+	};
+
+	private static CardsIndexesToReset computeCardsIndexesToReset(final CacheInvalidateMultiRequest multiRequest)
+	{
+		return BoardDescriptorRepository.computeCardsIndexesToReset(multiRequest, boardIdsByAssignmentIdRetriever);
+	}
+
+	@Test
+	public void test_computeCardsIndexesToReset_boardTables()
+	{
+		assertThat(computeCardsIndexesToReset(CacheInvalidateMultiRequest.all())).isSameAs(CardsIndexesToReset.ALL);
+		assertThat(computeCardsIndexesToReset(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_WEBUI_Board_Lane.Table_Name, 1))).isSameAs(CardsIndexesToReset.ALL);
+	}
+
+	@Test
+	public void test_computeCardsIndexesToReset_otherTable()
+	{
+		assertThat(computeCardsIndexesToReset(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_C_Order.Table_Name, 1))).isSameAs(CardsIndexesToReset.NONE);
+	}
+
+	@Test
+	public void test_computeCardsIndexesToReset_recordAssignment_onlyAffectedBoard()
+	{
+		final CardsIndexesToReset toReset = computeCardsIndexesToReset(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_WEBUI_Board_RecordAssignment.Table_Name, 200));
+		assertThat(toReset.isAll()).isFalse();
+		assertThat(toReset.getBoardIds()).containsOnly(2);
+	}
+
+	@Test
+	public void test_computeCardsIndexesToReset_recordAssignment_allRecords()
+	{
+		assertThat(computeCardsIndexesToReset(CacheInvalidateMultiRequest.allRecordsForTable(I_WEBUI_Board_RecordAssignment.Table_Name))).isSameAs(CardsIndexesToReset.ALL);
+	}
+
+	@Test
+	public void test_computeCardsIndexesToReset_recordAssignment_deleted()
+	{
+		// we don't know to which board the deleted assignment belonged
+		assertThat(computeCardsIndexesToReset(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_WEBUI_Board_RecordAssignment.Table_Name, 999))).isSameAs(CardsIndexesToReset.ALL);
+	}
+}
@@ -0,0 +1,116 @@
+package de.metas.ui.web.board;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class LaneCardsSequenceTest
+{
+	private static final int STEP = LaneCardsSequence.SEQNO_STEP;
+
+	private static LaneCardsSequence lane(final int... cardIdAndSeqNoPairs)
+	{
+		final LaneCardsSequence lane = new LaneCardsSequence(1);
+		for (int i = 0; i < cardIdAndSeqNoPairs.length; i += 2)
+		{
+			lane.addCard(cardIdAndSeqNoPairs[i], cardIdAndSeqNoPairs[i + 1]);
+		}
+		return lane;
+	}
+
+	@Test
+	public void test_emptyLane()
+	{
+		final LaneCardsSequence lane = lane();
+		assertThat(lane.computeSeqNoForPosition(10, 0)).isEqualTo(STEP);
+		assertThat(lane.computeSeqNoForPosition(10, -1)).isEqualTo(STEP);
+	}
+
+	@Test
+	public void test_addNewCard()
+	{
+		final LaneCardsSequence lane = lane(10, STEP, 20, 2 * STEP, 30, 3 * STEP);
+
+		assertThat(lane.computeSeqNoForPosition(40, 0)).isEqualTo(STEP / 2);
+		assertThat(lane.computeSeqNoForPosition(40, 1)).isEqualTo(STEP + STEP / 2);
+		assertThat(lane.computeSeqNoForPosition(40, 2)).isEqualTo(2 * STEP + STEP / 2);
+	}
+
+	@Test
+	public void test_addNewCard_negativeOrOutOfRangePositionMeansLast()
+	{
+		final LaneCardsSequence lane = lane(10, STEP, 20, 2 * STEP, 30, 3 * STEP);
+
+		assertThat(lane.computeSeqNoForPosition(40, -1)).isEqualTo(4 * STEP);
+		assertThat(lane.computeSeqNoForPosition(40, 3)).isEqualTo(4 * STEP);
+		assertThat(lane.computeSeqNoForPosition(40, 100)).isEqualTo(4 * STEP);
+	}
+
+	@Test
+	public void test_moveExistingCard()
+	{
+		final LaneCardsSequence lane = lane(10, STEP, 20, 2 * STEP, 30, 3 * STEP);
+
+		// last card to first position
+		assertThat(lane.computeSeqNoForPosition(30, 0)).isEqualTo(STEP / 2);
+		// first card to last position
+		assertThat(lane.computeSeqNoForPosition(10, 2)).isEqualTo(4 * STEP);
+		// first card between the other two
+		assertThat(lane.computeSeqNoForPosition(10, 1)).isEqualTo(2 * STEP + STEP / 2);
+		// card stays in place
+		assertThat(lane.computeSeqNoForPosition(20, 1)).isEqualTo(2 * STEP);
+	}
+
+	@Test
+	public void test_noGapLeft()
+	{
+		final LaneCardsSequence lane = lane(10, 1, 20, 2);
+
+		assertThat(lane.computeSeqNoForPosition(30, 1)).isEqualTo(-1);
+		assertThat(lane.getGapAround(30, 1)).isEqualTo(1);
+
+		// no gap at the beginning either, but there is always a gap at the end of the lane
+		assertThat(lane.computeSeqNoForPosition(30, 0)).isEqualTo(-1);
+		assertThat(lane.computeSeqNoForPosition(30, 2)).isEqualTo(2 + STEP);
+	}
+
+	@Test
+	public void test_getGapAround()
+	{
+		final LaneCardsSequence lane = lane(10, STEP, 20, STEP + 8, 30, 3 * STEP);
+
+		assertThat(lane.getGapAround(40, 1)).isEqualTo(8);
+		assertThat(lane.getGapAround(40, 2)).isEqualTo(2 * STEP - 8);
+		assertThat(lane.getGapAround(40, 3)).isEqualTo(2 * STEP);
+		// moving card 20 leaves the gap between 10 and 30
+		assertThat(lane.getGapAround(20, 1)).isEqualTo(2 * STEP);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_invalidCardId()
+	{
+		lane().computeSeqNoForPosition(0, 0);
+	}
+}
@@ -0,0 +1,178 @@
+package de.metas.ui.web.handlingunits;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.handlingunits.HuId;
+import de.metas.ui.web.document.filter.DocumentFilter;
+import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverterContext;
+import de.metas.ui.web.handlingunits.HUIdsFilterHelper.HUIdsFilterData;
+import de.metas.ui.web.picking.pickingslot.MockedHUEditorViewRepository;
+import de.metas.ui.web.view.ViewEvaluationCtx;
+import de.metas.ui.web.view.ViewId;
+import de.metas.ui.web.view.ViewRowIdsOrderedSelection;
+import de.metas.ui.web.window.datatypes.WindowId;
+import de.metas.ui.web.window.model.DocumentQueryOrderBy;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class HUEditorViewBuffer_AdaptiveTest
+{
+	/** each top level HU has 100 rows, so with the default max rows (500) up to 5 HUs are fully cached */
+	private static final int ROWS_PER_HU = 100;
+
+	private HUEditorViewRepositoryStub huEditorRepo;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+		huEditorRepo = new HUEditorViewRepositoryStub();
+	}
+
+	private static class HUEditorViewRepositoryStub extends MockedHUEditorViewRepository
+	{
+		@Override
+		public int estimateRowsCount(final Set<HuId> topLevelHUIds)
+		{
+			return topLevelHUIds.size() * ROWS_PER_HU;
+		}
+
+		@Override
+		public Set<HuId> retrieveHUIdsEffective(final HUIdsFilterData huIdsFilter, final List<DocumentFilter> filters, final SqlDocumentFilterConverterContext context)
+		{
+			return huIdsFilter.getInitialHUIds();
+		}
+
+		@Override
+		public ViewRowIdsOrderedSelection createSelection(final ViewEvaluationCtx viewEvalCtx, final ViewId viewId, final List<DocumentFilter> filters, final List<DocumentQueryOrderBy> orderBys, final SqlDocumentFilterConverterContext context)
+		{
+			return ViewRowIdsOrderedSelection.builder()
+					.setViewId(viewId)
+					.setSize(0)
+					.build();
+		}
+	}
+
+	private HUEditorViewBuffer_Adaptive createBuffer(final int... huRepoIds)
+	{
+		final DocumentFilter huIdsFilter = HUIdsFilterHelper.createFilter(huIds(huRepoIds));
+		return new HUEditorViewBuffer_Adaptive(
+				ViewId.random(WindowId.of(540189)),
+				huEditorRepo,
+				ImmutableList.of(huIdsFilter),
+				ImmutableList.of(),
+				ImmutableList.of(),
+				SqlDocumentFilterConverterContext.EMPTY);
+	}
+
+	private static Set<HuId> huIds(final int... huRepoIds)
+	{
+		final ImmutableSet.Builder<HuId> huIds = ImmutableSet.builder();
+		for (final int huRepoId : huRepoIds)
+		{
+			huIds.add(HuId.ofRepoId(huRepoId));
+		}
+		return huIds.build();
+	}
+
+	@Test
+	public void test_fewHUs_fullyCached()
+	{
+		final HUEditorViewBuffer_Adaptive buffer = createBuffer(1, 2, 3);
+
+		assertThat(buffer.isHighVolume()).isFalse();
+		assertThat(buffer.getEstimatedRowsCount()).isEqualTo(300);
+	}
+
+	@Test
+	public void test_manyHUs_highVolume()
+	{
+		final HUEditorViewBuffer_Adaptive buffer = createBuffer(1, 2, 3, 4, 5, 6);
+
+		assertThat(buffer.isHighVolume()).isTrue();
+	}
+
+	@Test
+	public void test_addHUs_switchesToHighVolume()
+	{
+		final HUEditorViewBuffer_Adaptive buffer = createBuffer(1, 2, 3);
+
+		buffer.addHUIds(huIds(4, 5));
+		assertThat(buffer.isHighVolume()).isFalse();
+		assertThat(buffer.getEstimatedRowsCount()).isEqualTo(500);
+
+		buffer.addHUIds(huIds(6));
+		assertThat(buffer.isHighVolume()).isTrue();
+	}
+
+	@Test
+	public void test_addAlreadyContainedHUs_notCountedTwice()
+	{
+		final HUEditorViewBuffer_Adaptive buffer = createBuffer(1, 2, 3);
+
+		buffer.addHUIds(huIds(1, 2, 3));
+		buffer.addHUIds(huIds(3, 4));
+
+		assertThat(buffer.isHighVolume()).isFalse();
+		assertThat(buffer.getEstimatedRowsCount()).isEqualTo(400);
+	}
+
+	@Test
+	public void test_removeHUs_decrementsEstimation()
+	{
+		final HUEditorViewBuffer_Adaptive buffer = createBuffer(1, 2, 3);
+
+		buffer.removeHUIds(huIds(1, 2));
+		assertThat(buffer.getEstimatedRowsCount()).isEqualTo(100);
+
+		// removing HUs which are not in the buffer does not change the estimation
+		buffer.removeHUIds(huIds(7));
+		assertThat(buffer.getEstimatedRowsCount()).isEqualTo(100);
+	}
+
+	@Test
+	public void test_removeAndAddSameHUsRepeatedly_staysFullyCached()
+	{
+		final HUEditorViewBuffer_Adaptive buffer = createBuffer(1, 2, 3, 4, 5);
+
+		for (int i = 0; i < 10; i++)
+		{
+			buffer.removeHUIds(huIds(5));
+			buffer.addHUIds(huIds(5));
+		}
+
+		assertThat(buffer.isHighVolume()).isFalse();
+		assertThat(buffer.getEstimatedRowsCount()).isEqualTo(500);
+	}
+}
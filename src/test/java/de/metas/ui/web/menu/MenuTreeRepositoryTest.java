@@ -0,0 +1,55 @@
+package de.metas.ui.web.menu;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.adempiere.ad.dao.cache.CacheInvalidateMultiRequest;
+import org.compiere.model.I_AD_Menu;
+import org.compiere.model.I_AD_TreeNodeMM;
+import org.compiere.model.I_C_Order;
+import org.junit.Test;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class MenuTreeRepositoryTest
+{
+	@Test
+	public void test_isResetMenuTrees_resetAll()
+	{
+		assertThat(MenuTreeRepository.isResetMenuTrees(CacheInvalidateMultiRequest.all())).isTrue();
+	}
+
+	@Test
+	public void test_isResetMenuTrees_menuTables()
+	{
+		assertThat(MenuTreeRepository.isResetMenuTrees(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_AD_Menu.Table_Name, 1))).isTrue();
+		assertThat(MenuTreeRepository.isResetMenuTrees(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_AD_Menu.Table_Name + "_Trl", 1))).isTrue();
+		assertThat(MenuTreeRepository.isResetMenuTrees(CacheInvalidateMultiRequest.allRecordsForTable(I_AD_TreeNodeMM.Table_Name))).isTrue();
+	}
+
+	@Test
+	public void test_isResetMenuTrees_otherTable()
+	{
+		assertThat(MenuTreeRepository.isResetMenuTrees(CacheInvalidateMultiRequest.fromTableNameAndRecordId(I_C_Order.Table_Name, 1))).isFalse();
+	}
+}
@@ -0,0 +1,133 @@
+package de.metas.ui.web.menu;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.metas.ui.web.menu.MenuNode.MenuNodeType;
+import de.metas.ui.web.window.datatypes.DocumentId;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class MenuTreeSearchIndexTest
+{
+	private MenuTree menuTree;
+
+	@Before
+	public void init()
+	{
+		final MenuNode salesGroup = MenuNode.builder()
+				.setAD_Menu_ID(10)
+				.setTypeGroup()
+				.setCaption("Verkauf")
+				.addChild(window(11, "Kundenauftrag"))
+				.addChild(window(12, "Auftrag"))
+				.addChild(window(13, "Auftragsdisposition"))
+				.build();
+
+		final MenuNode purchaseGroup = MenuNode.builder()
+				.setAD_Menu_ID(20)
+				.setTypeGroup()
+				.setCaption("Einkauf")
+				.addChild(window(21, "Bestellung"))
+				.addChild(window(22, "Preisänderung Bestellung"))
+				.build();
+
+		final MenuNode rootNode = MenuNode.builder()
+				.setAD_Menu_ID(0)
+				.setTypeGroup()
+				.setCaption("root")
+				.addChild(purchaseGroup)
+				.addChild(salesGroup)
+				.build();
+
+		menuTree = MenuTree.of(1, rootNode);
+	}
+
+	private static MenuNode window(final int adMenuId, final String caption)
+	{
+		return MenuNode.builder()
+				.setAD_Menu_ID(adMenuId)
+				.setType(MenuNodeType.Window, DocumentId.of(adMenuId))
+				.setCaption(caption)
+				.build();
+	}
+
+	private static List<String> captions(final List<MenuNode> nodes)
+	{
+		return nodes.stream().map(MenuNode::getCaption).collect(Collectors.toList());
+	}
+
+	@Test
+	public void test_matchesInsideWords()
+	{
+		final MenuNode result = menuTree.filter("auftrag", false);
+
+		assertThat(captions(result.getChildren())).containsExactly("Verkauf");
+		assertThat(captions(result.getChildren().get(0).getChildren()))
+				.containsExactly("Auftrag", "Auftragsdisposition", "Kundenauftrag");
+	}
+
+	@Test
+	public void test_diacriticsAndCaseAreIgnored()
+	{
+		final MenuNode result = menuTree.filter("PREISANDERUNG", false);
+
+		assertThat(captions(result.getChildren())).containsExactly("Einkauf");
+		assertThat(captions(result.getChildren().get(0).getChildren())).containsExactly("Preisänderung Bestellung");
+	}
+
+	@Test
+	public void test_bestMatchesComeFirst()
+	{
+		final MenuNode result = menuTree.filter("bestellung", false);
+		assertThat(captions(result.getChildren())).containsExactly("Einkauf");
+		assertThat(captions(result.getChildren().get(0).getChildren())).containsExactly("Bestellung", "Preisänderung Bestellung");
+	}
+
+	@Test
+	public void test_groupsAreRankedByTheirBestMatch()
+	{
+		// "Einkauf" is matched only inside the word, but "Verkauf" contains "Auftrag" which starts with the query
+		final MenuNode result = menuTree.filter("auf", false);
+		assertThat(captions(result.getChildren())).containsExactly("Verkauf", "Einkauf");
+	}
+
+	@Test
+	public void test_allTokensMustMatchInAnyOrder()
+	{
+		final MenuNode result = menuTree.filter("best preis", false);
+		assertThat(captions(result.getChildren().get(0).getChildren())).containsExactly("Preisänderung Bestellung");
+	}
+
+	@Test
+	public void test_noMatch()
+	{
+		final MenuNode result = menuTree.filter("rechnung", false);
+		assertThat(result.getChildren()).isEmpty();
+	}
+}
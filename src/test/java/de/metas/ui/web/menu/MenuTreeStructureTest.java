@@ -0,0 +1,279 @@
+package de.metas.ui.web.menu;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+import de.metas.ui.web.menu.MenuNode.MenuNodeType;
+import de.metas.ui.web.menu.MenuTreeStructure.StructureNode;
+import de.metas.ui.web.process.ProcessId;
+import de.metas.ui.web.window.datatypes.DocumentId;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class MenuTreeStructureTest
+{
+	private static final String BASE_LANGUAGE = "en_US";
+	private static final String OTHER_LANGUAGE = "de_DE";
+
+	private final AtomicInteger captionsLoadCount = new AtomicInteger();
+
+	private MenuTreeStructure structure;
+	private StructureNode rootNode;
+	private StructureNode salesGroup;
+	private StructureNode orderWindow;
+	private StructureNode orderNewRecord;
+	private StructureNode salesReport;
+	private StructureNode inactiveWindow;
+	private StructureNode purchaseGroup;
+	private StructureNode purchaseOrderWindow;
+	private StructureNode emptyGroup;
+	private StructureNode notAccessibleWindow;
+	private StructureNode boardsGroup;
+	private StructureNode board;
+	private StructureNode windowOnRootLevel;
+
+	@Before
+	public void init()
+	{
+		final MenuTreeStructure.Builder builder = MenuTreeStructure.builder()
+				.setAD_Tree_ID(10)
+				.setBaseLanguageCaptions(MenuTreeCaptions.builder(BASE_LANGUAGE)
+						.add(0, "Menu", null, null, null)
+						.add(10, "Sales", null, null, null)
+						.add(11, "Sales Order", "Sales Orders", "New Sales Order", null)
+						.add(12, "Sales Report", null, null, null)
+						.add(13, "Inactive", null, null, null)
+						.add(20, "Purchase", null, null, null)
+						.add(21, "Purchase Order", null, null, null)
+						.add(30, "Empty", null, null, null)
+						.add(31, "Not accessible", null, null, null)
+						.add(40, "Boards", null, null, null)
+						.add(41, "Board", null, null, null)
+						.add(50, "Window on root level", null, null, null)
+						.build())
+				.setCaptionsLoader((adTreeId, adLanguage) -> {
+					captionsLoadCount.incrementAndGet();
+					// NOTE: not all nodes are translated
+					return MenuTreeCaptions.builder(adLanguage)
+							.add(10, "Verkauf", null, null, null)
+							.add(11, "Auftrag", "Aufträge", "Neuer Auftrag", null)
+							.build();
+				});
+
+		rootNode = builder.newNode(0).setTypeGroup().build();
+
+		salesGroup = builder.newNode(10).setTypeGroup().build();
+		orderWindow = builder.newNode(11).setTypeWindow(MenuNodeType.Window, 100).setMainTableName("C_Order").build();
+		orderNewRecord = builder.newNode(11).setTypeWindow(MenuNodeType.NewRecord, 100).setMainTableName("C_Order").build();
+		salesReport = builder.newNode(12).setTypeProcess(MenuNodeType.Report, 200, ProcessId.ofAD_Process_ID(200).toDocumentId()).build();
+		inactiveWindow = builder.newNode(13).setTypeWindow(MenuNodeType.Window, 104).setActive(false).build();
+		builder.addChild(salesGroup, orderWindow);
+		builder.addChild(salesGroup, orderNewRecord);
+		builder.addChild(salesGroup, salesReport);
+		builder.addChild(salesGroup, inactiveWindow);
+
+		purchaseGroup = builder.newNode(20).setTypeGroup().setActive(false).build();
+		purchaseOrderWindow = builder.newNode(21).setTypeWindow(MenuNodeType.Window, 101).build();
+		builder.addChild(purchaseGroup, purchaseOrderWindow);
+
+		emptyGroup = builder.newNode(30).setTypeGroup().build();
+		notAccessibleWindow = builder.newNode(31).setTypeWindow(MenuNodeType.Window, 102).build();
+		builder.addChild(emptyGroup, notAccessibleWindow);
+
+		boardsGroup = builder.newNode(40).setTypeGroup().build();
+		board = builder.newNode(41).setTypeBoard(DocumentId.of(1)).build();
+		builder.addChild(boardsGroup, board);
+
+		windowOnRootLevel = builder.newNode(50).setTypeWindow(MenuNodeType.Window, 103).build();
+
+		builder.addChild(rootNode, salesGroup);
+		builder.addChild(rootNode, purchaseGroup);
+		builder.addChild(rootNode, emptyGroup);
+		builder.addChild(rootNode, boardsGroup);
+		builder.addChild(rootNode, windowOnRootLevel);
+
+		structure = builder.setRootNode(rootNode).build();
+	}
+
+	/** Windows and processes which can be accessed by the role */
+	private static final Set<Integer> ACCESSIBLE_WINDOW_IDS = ImmutableSet.of(100, 101, 103, 104);
+	private static final Set<Integer> ACCESSIBLE_PROCESS_IDS = ImmutableSet.of(200);
+
+	/**
+	 * Test oracle: accessible menu IDs, as they would be loaded by the role from a not editable {@link org.compiere.model.MTree}:
+	 * the purchase group and menu 13 are not active and window 102 (menu 31) is not accessible.
+	 */
+	private static final Set<Integer> ACCESSIBLE_MENU_IDS = ImmutableSet.of(0, 10, 11, 12, 21, 30, 40, 41, 50);
+
+	private BitSet computeAccessibleNodes()
+	{
+		return structure.computeAccessibleNodes(ACCESSIBLE_WINDOW_IDS::contains, ACCESSIBLE_PROCESS_IDS::contains);
+	}
+
+	private BitSet computeAccessibleNodesUsingOracle()
+	{
+		return structure.computeAccessibleNodes(node -> ACCESSIBLE_MENU_IDS.contains(node.getAD_Menu_ID()));
+	}
+
+	@Test
+	public void test_computeAccessibleNodes_sameAsOracle()
+	{
+		assertThat(computeAccessibleNodes()).isEqualTo(computeAccessibleNodesUsingOracle());
+	}
+
+	@Test
+	public void test_computeAccessibleNodes_inactiveNodes()
+	{
+		final BitSet accessibleNodes = computeAccessibleNodes();
+
+		// window 104 is accessible by the role, but the menu entry is not active
+		assertThat(accessibleNodes.get(inactiveWindow.getOrdinal())).isFalse();
+		// window 101 is accessible by the role, but the group is not active
+		assertThat(accessibleNodes.get(purchaseOrderWindow.getOrdinal())).isFalse();
+	}
+
+	@Test
+	public void test_computeAccessibleNodes_processNotAccessible()
+	{
+		final BitSet accessibleNodes = structure.computeAccessibleNodes(ACCESSIBLE_WINDOW_IDS::contains, adProcessId -> false);
+
+		assertThat(accessibleNodes.get(salesReport.getOrdinal())).isFalse();
+		assertThat(accessibleNodes.get(orderWindow.getOrdinal())).isTrue();
+		assertThat(accessibleNodes.get(orderNewRecord.getOrdinal())).isTrue();
+	}
+
+	@Test
+	public void test_computeAccessibleNodes_windowNotAccessible()
+	{
+		final BitSet accessibleNodes = structure.computeAccessibleNodes(adWindowId -> adWindowId != 100 && ACCESSIBLE_WINDOW_IDS.contains(adWindowId), ACCESSIBLE_PROCESS_IDS::contains);
+
+		// the new record node is checked against the same window
+		assertThat(accessibleNodes.get(orderWindow.getOrdinal())).isFalse();
+		assertThat(accessibleNodes.get(orderNewRecord.getOrdinal())).isFalse();
+		assertThat(accessibleNodes.get(salesReport.getOrdinal())).isTrue();
+	}
+
+	@Test
+	public void test_computeAccessibleNodes()
+	{
+		final BitSet accessibleNodes = computeAccessibleNodes();
+
+		assertThat(accessibleNodes.get(rootNode.getOrdinal())).isTrue();
+		assertThat(accessibleNodes.get(salesGroup.getOrdinal())).isTrue();
+		assertThat(accessibleNodes.get(orderWindow.getOrdinal())).isTrue();
+		assertThat(accessibleNodes.get(orderNewRecord.getOrdinal())).isTrue();
+		assertThat(accessibleNodes.get(salesReport.getOrdinal())).isTrue();
+		assertThat(accessibleNodes.get(boardsGroup.getOrdinal())).isTrue();
+		assertThat(accessibleNodes.get(board.getOrdinal())).isTrue();
+		assertThat(accessibleNodes.get(windowOnRootLevel.getOrdinal())).isTrue();
+
+		// not accessible group => children are not accessible either
+		assertThat(accessibleNodes.get(purchaseGroup.getOrdinal())).isFalse();
+		assertThat(accessibleNodes.get(purchaseOrderWindow.getOrdinal())).isFalse();
+
+		// group without accessible leafs
+		assertThat(accessibleNodes.get(emptyGroup.getOrdinal())).isFalse();
+		assertThat(accessibleNodes.get(notAccessibleWindow.getOrdinal())).isFalse();
+	}
+
+	@Test
+	public void test_computeAccessibleNodes_nothingAccessible()
+	{
+		final BitSet accessibleNodes = structure.computeAccessibleNodes(node -> false);
+
+		// root is always accessible
+		assertThat(accessibleNodes.cardinality()).isEqualTo(1);
+		assertThat(accessibleNodes.get(rootNode.getOrdinal())).isTrue();
+	}
+
+	@Test
+	public void test_createRootMenuNode()
+	{
+		final MenuNode root = structure.createRootMenuNode(-1, computeAccessibleNodes(), BASE_LANGUAGE);
+
+		assertThat(root.getAD_Menu_ID()).isEqualTo(0);
+		// NOTE: leafs are not allowed on root level
+		assertThat(captions(root.getChildren())).containsExactly("Sales", "Boards");
+
+		final MenuNode sales = root.getChildren().get(0);
+		assertThat(captions(sales.getChildren())).containsExactly("New Sales Order", "Sales Orders", "Sales Report");
+		assertThat(sales.getChildren().get(0).getType()).isEqualTo(MenuNodeType.NewRecord);
+		assertThat(sales.getChildren().get(0).getCaptionBreadcrumb()).isEqualTo("Sales Order");
+		assertThat(sales.getChildren().get(1).getType()).isEqualTo(MenuNodeType.Window);
+		assertThat(sales.getChildren().get(1).getElementId()).isEqualTo(DocumentId.of(100));
+		assertThat(sales.getChildren().get(1).getCaptionBreadcrumb()).isEqualTo("Sales Order");
+		assertThat(sales.getChildren().get(2).getType()).isEqualTo(MenuNodeType.Report);
+
+		final MenuNode boards = root.getChildren().get(1);
+		assertThat(boards.getChildren()).hasSize(1);
+		assertThat(boards.getChildren().get(0).getType()).isEqualTo(MenuNodeType.Board);
+	}
+
+	@Test
+	public void test_createRootMenuNode_otherLanguage()
+	{
+		final BitSet accessibleNodes = computeAccessibleNodes();
+		final MenuNode root = structure.createRootMenuNode(-1, accessibleNodes, OTHER_LANGUAGE);
+		structure.createRootMenuNode(-1, accessibleNodes, OTHER_LANGUAGE);
+
+		// the captions are loaded only once per language
+		assertThat(captionsLoadCount.get()).isEqualTo(1);
+
+		// not translated nodes are falling back to base language
+		assertThat(captions(root.getChildren())).containsExactly("Verkauf", "Boards");
+		assertThat(captions(root.getChildren().get(0).getChildren())).containsExactly("Neuer Auftrag", "Aufträge", "Sales Report");
+	}
+
+	@Test
+	public void test_createRootMenuNode_rootMenuId()
+	{
+		final MenuNode root = structure.createRootMenuNode(10, computeAccessibleNodes(), BASE_LANGUAGE);
+
+		assertThat(root.getAD_Menu_ID()).isEqualTo(10);
+		assertThat(root.getChildren()).isEmpty(); // leafs are not allowed on root level
+	}
+
+	@Test
+	public void test_createRootMenuNode_rootMenuIdNotFound()
+	{
+		final MenuNode root = structure.createRootMenuNode(999, computeAccessibleNodes(), BASE_LANGUAGE);
+
+		assertThat(root.getAD_Menu_ID()).isEqualTo(0);
+	}
+
+	private static List<String> captions(final List<MenuNode> nodes)
+	{
+		return nodes.stream().map(MenuNode::getCaption).collect(Collectors.toList());
+	}
+}
@@ -83,6 +83,16 @@ public class MockedHUEditorViewRepository implements HUEditorViewRepository
 		return row;
 	}
 
+	@Override
+	public int estimateRowsCount(final Set<HuId> topLevelHUIds)
+	{
+		return (int)topLevelHUIds.stream()
+				.map(rowsByHUId::get)
+				.filter(Predicates.notNull())
+				.flatMap(HUEditorRow::streamRecursive)
+				.count();
+	}
+
 	@Override
 	public Set<HuId> retrieveHUIdsEffective(final HUIdsFilterData huIdsFilter, final List<DocumentFilter> filters, final SqlDocumentFilterConverterContext context)
 	{
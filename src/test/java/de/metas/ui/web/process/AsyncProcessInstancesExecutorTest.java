@@ -0,0 +1,199 @@
+package de.metas.ui.web.process;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.adempiere.ad.security.IUserRolePermissions;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.util.Env;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+import de.metas.ui.web.exceptions.EntityNotFoundException;
+import de.metas.ui.web.login.exceptions.NotLoggedInException;
+import de.metas.ui.web.process.ProcessInstanceJob.Status;
+import de.metas.ui.web.process.json.JSONProcessInstanceJobStatusEvent;
+import de.metas.ui.web.process.json.JSONProcessInstanceResult;
+import de.metas.ui.web.session.UserSession;
+import de.metas.ui.web.websocket.WebsocketSender;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import mockit.Mocked;
+import mockit.Verifications;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class AsyncProcessInstancesExecutorTest
+{
+	private static final String CTXNAME = "#AsyncProcessTest";
+	private static final ProcessId PROCESS_ID = ProcessId.ofAD_Process_ID(1);
+	private static final int AD_USER_ID = 100;
+
+	@Mocked
+	private WebsocketSender websocketSender;
+	@Mocked
+	private IUserRolePermissions permissions;
+
+	private final FakeTicker ticker = new FakeTicker();
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+	}
+
+	private AsyncProcessInstancesExecutor createExecutor(final Executor executor)
+	{
+		return new AsyncProcessInstancesExecutor(websocketSender, executor, ticker, 2, 4);
+	}
+
+	private static JSONProcessInstanceResult ok(final DocumentId pinstanceId)
+	{
+		return JSONProcessInstanceResult.of(ProcessInstanceResult.ok(pinstanceId));
+	}
+
+	/**
+	 * Simulates a process which is bound to a single document.
+	 * Binding the document checks the current permissions (see DocumentCollection.forRootDocumentReadonly), which failed in the worker thread because it's not bound to a request.
+	 */
+	@Test
+	public void test_documentBoundProcess_isExecutedWithCallerContextAndPermissions() throws Exception
+	{
+		final Properties ctx = Env.getCtx();
+		Env.setContext(ctx, CTXNAME, "value1");
+		final DocumentId pinstanceId = DocumentId.of(1);
+
+		final AtomicReference<String> ctxValueInWorkerThread = new AtomicReference<>();
+		final AtomicReference<IUserRolePermissions> permissionsInWorkerThread = new AtomicReference<>();
+
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+		final ProcessInstanceJob job;
+		try
+		{
+			final AsyncProcessInstancesExecutor executor = createExecutor(executorService);
+			job = executor.submit(PROCESS_ID, pinstanceId, AD_USER_ID, ctx, permissions, () -> {
+				ctxValueInWorkerThread.set(Env.getContext(Env.getCtx(), CTXNAME));
+				permissionsInWorkerThread.set(UserSession.getCurrentPermissions());
+				return ok(pinstanceId);
+			});
+		}
+		finally
+		{
+			executorService.shutdown();
+			executorService.awaitTermination(10, TimeUnit.SECONDS);
+		}
+
+		assertThat(job.getErrorMessage()).isNull();
+		assertThat(job.getStatus()).isEqualTo(Status.DONE);
+		assertThat(ctxValueInWorkerThread.get()).isEqualTo("value1");
+		assertThat(permissionsInWorkerThread.get()).isSameAs(permissions);
+	}
+
+	@Test
+	public void test_permissionsAreNotAvailableAfterTheJobFinished()
+	{
+		final DocumentId pinstanceId = DocumentId.of(1);
+		final AsyncProcessInstancesExecutor executor = createExecutor(Runnable::run);
+		executor.submit(PROCESS_ID, pinstanceId, AD_USER_ID, Env.getCtx(), permissions, () -> ok(pinstanceId));
+
+		assertThatThrownBy(() -> UserSession.getCurrentPermissions()).isInstanceOf(NotLoggedInException.class);
+	}
+
+	@Test
+	public void test_websocketEventsContainOnlyTheStatus()
+	{
+		final DocumentId pinstanceId = DocumentId.of(1);
+		final AsyncProcessInstancesExecutor executor = createExecutor(Runnable::run);
+		executor.submit(PROCESS_ID, pinstanceId, AD_USER_ID, Env.getCtx(), permissions, () -> ok(pinstanceId));
+
+		final List<Object> events = new ArrayList<>();
+		new Verifications()
+		{
+			{
+				websocketSender.convertAndSend(anyString, withCapture(events));
+			}
+		};
+
+		assertThat(events).containsExactly(
+				JSONProcessInstanceJobStatusEvent.of(Status.QUEUED),
+				JSONProcessInstanceJobStatusEvent.of(Status.RUNNING),
+				JSONProcessInstanceJobStatusEvent.of(Status.DONE));
+	}
+
+	@Test
+	public void test_finishedJobIsRetainedCountingFromCompletion()
+	{
+		final DocumentId pinstanceId = DocumentId.of(1);
+		final AsyncProcessInstancesExecutor executor = createExecutor(Runnable::run);
+		executor.submit(PROCESS_ID, pinstanceId, AD_USER_ID, Env.getCtx(), permissions, () -> {
+			// long running process
+			ticker.advance(2, TimeUnit.HOURS);
+			assertThat(executor.getJob(pinstanceId, AD_USER_ID).getStatus()).isEqualTo(Status.RUNNING);
+			return ok(pinstanceId);
+		});
+
+		ticker.advance(59, TimeUnit.MINUTES);
+		assertThat(executor.getJob(pinstanceId, AD_USER_ID).getStatus()).isEqualTo(Status.DONE);
+
+		ticker.advance(2, TimeUnit.MINUTES);
+		assertThatThrownBy(() -> executor.getJob(pinstanceId, AD_USER_ID)).isInstanceOf(EntityNotFoundException.class);
+	}
+
+	@Test
+	public void test_jobOfAnotherUserIsNotFound()
+	{
+		final DocumentId pinstanceId = DocumentId.of(1);
+		final AsyncProcessInstancesExecutor executor = createExecutor(Runnable::run);
+		executor.submit(PROCESS_ID, pinstanceId, AD_USER_ID, Env.getCtx(), permissions, () -> ok(pinstanceId));
+
+		assertThatThrownBy(() -> executor.getJob(pinstanceId, AD_USER_ID + 1)).isInstanceOf(EntityNotFoundException.class);
+	}
+
+	private static final class FakeTicker extends Ticker
+	{
+		private final AtomicLong nanos = new AtomicLong();
+
+		@Override
+		public long read()
+		{
+			return nanos.get();
+		}
+
+		public void advance(final long duration, final TimeUnit unit)
+		{
+			nanos.addAndGet(unit.toNanos(duration));
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package de.metas.ui.web.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.adempiere.util.GuavaCollectors;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.events.SessionExpiredEvent;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class TieredSessionRepositoryTest
+{
+	private static final int TOUCH_INTERVAL_SECONDS = 60;
+	private static final int MEMORY_TIER_EXPIRE_AFTER_SECONDS = 60;
+
+	private InMemoryPersistentSessionStore persistentStore;
+	private FakeTicker ticker;
+	private List<Object> events;
+	private TieredSessionRepository sessionRepository;
+
+	@Before
+	public void init()
+	{
+		persistentStore = new InMemoryPersistentSessionStore();
+		ticker = new FakeTicker();
+		events = new ArrayList<>();
+		sessionRepository = createSessionRepository();
+	}
+
+	private TieredSessionRepository createSessionRepository()
+	{
+		return TieredSessionRepository.builder()
+				.persistentStore(persistentStore)
+				.applicationEventPublisher(new ApplicationEventPublisher()
+				{
+					@Override
+					public void publishEvent(final ApplicationEvent event)
+					{
+						events.add(event);
+					}
+
+					@Override
+					public void publishEvent(final Object event)
+					{
+						events.add(event);
+					}
+				})
+				.defaultMaxInactiveInterval(1800)
+				.memoryTierMaxSize(100)
+				.memoryTierExpireAfterSeconds(MEMORY_TIER_EXPIRE_AFTER_SECONDS)
+				.touchIntervalSeconds(TOUCH_INTERVAL_SECONDS)
+				.ticker(ticker)
+				.build();
+	}
+
+	@Test
+	public void test_sessionSurvivesRestart()
+	{
+		final ExpiringSession session = sessionRepository.createSession();
+		session.setAttribute("attr1", "value1");
+		sessionRepository.save(session);
+
+		// simulate a restart
+		final TieredSessionRepository sessionRepositoryAfterRestart = createSessionRepository();
+		final ExpiringSession sessionLoaded = sessionRepositoryAfterRestart.getSession(session.getId());
+
+		assertThat(sessionLoaded).isNotNull();
+		assertThat((String)sessionLoaded.getAttribute("attr1")).isEqualTo("value1");
+		assertThat(sessionLoaded.getLastAccessedTime()).isEqualTo(session.getLastAccessedTime());
+	}
+
+	@Test
+	public void test_unchangedSessionIsNotSavedAgain()
+	{
+		final ExpiringSession session = sessionRepository.createSession();
+		session.setAttribute("attr1", "value1");
+		sessionRepository.save(session);
+		assertThat(persistentStore.countSave).isEqualTo(1);
+
+		final ExpiringSession session2 = sessionRepository.getSession(session.getId());
+		session2.setLastAccessedTime(session2.getLastAccessedTime() + 1000);
+		sessionRepository.save(session2);
+
+		assertThat(persistentStore.countSave).isEqualTo(1);
+		assertThat(persistentStore.countTouch).isEqualTo(0);
+	}
+
+	@Test
+	public void test_changedAttributeIsSaved()
+	{
+		final ExpiringSession session = sessionRepository.createSession();
+		session.setAttribute("attr1", "value1");
+		sessionRepository.save(session);
+
+		final ExpiringSession session2 = sessionRepository.getSession(session.getId());
+		session2.setAttribute("attr1", "value2");
+		sessionRepository.save(session2);
+
+		assertThat(persistentStore.countSave).isEqualTo(2);
+		assertThat((String)createSessionRepository().getSession(session.getId()).getAttribute("attr1")).isEqualTo("value2");
+	}
+
+	@Test
+	public void test_lastAccessedTimeIsTouchedAfterTouchInterval()
+	{
+		final ExpiringSession session = sessionRepository.createSession();
+		sessionRepository.save(session);
+
+		final ExpiringSession session2 = sessionRepository.getSession(session.getId());
+		final long lastAccessedTime = session2.getLastAccessedTime() + TimeUnit.SECONDS.toMillis(TOUCH_INTERVAL_SECONDS);
+		session2.setLastAccessedTime(lastAccessedTime);
+		sessionRepository.save(session2);
+
+		assertThat(persistentStore.countSave).isEqualTo(1);
+		assertThat(persistentStore.countTouch).isEqualTo(1);
+		assertThat(persistentStore.getByIdOrNull(session.getId()).getLastAccessedTimeMillis()).isEqualTo(lastAccessedTime);
+	}
+
+	@Test
+	public void test_delete()
+	{
+		final ExpiringSession session = sessionRepository.createSession();
+		sessionRepository.save(session);
+
+		sessionRepository.delete(session.getId());
+
+		assertThat(sessionRepository.getSession(session.getId())).isNull();
+		assertThat(persistentStore.getByIdOrNull(session.getId())).isNull();
+	}
+
+	@Test
+	public void test_purgeExpiredSessions()
+	{
+		final ExpiringSession session = sessionRepository.createSession();
+		session.setMaxInactiveIntervalInSeconds(1);
+		session.setLastAccessedTime(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+		sessionRepository.save(session);
+
+		final ExpiringSession sessionNotExpired = sessionRepository.createSession();
+		sessionRepository.save(sessionNotExpired);
+
+		sessionRepository.purgeExpiredSessions();
+
+		assertThat(persistentStore.getSessionIds()).containsOnly(sessionNotExpired.getId());
+		assertThat(sessionRepository.getSession(session.getId())).isNull();
+
+		final Set<String> expiredSessionIds = events.stream()
+				.filter(event -> event instanceof SessionExpiredEvent)
+				.map(event -> ((SessionExpiredEvent)event).getSessionId())
+				.collect(GuavaCollectors.toImmutableSet());
+		assertThat(expiredSessionIds).containsOnly(session.getId());
+	}
+
+	/**
+	 * Two nodes sharing the same persistent store: the node which keeps using and saving the session shall still see the changes done by the other node,
+	 * after the memory tier expiration interval.
+	 */
+	@Test
+	public void test_twoNodes_changesFromOtherNodeArePickedUpEvenIfSessionIsSavedContinuously()
+	{
+		final TieredSessionRepository node1 = sessionRepository;
+		final TieredSessionRepository node2 = createSessionRepository();
+
+		final ExpiringSession session = node1.createSession();
+		session.setAttribute("attr1", "value1");
+		node1.save(session);
+
+		// node2 changes the attribute
+		final ExpiringSession sessionOnNode2 = node2.getSession(session.getId());
+		assertThat((String)sessionOnNode2.getAttribute("attr1")).isEqualTo("value1");
+		sessionOnNode2.setAttribute("attr1", "value2");
+		node2.save(sessionOnNode2);
+
+		// node1 keeps using the session, saving it on each request, more than the memory tier expiration interval
+		for (int i = 1; i <= 3; i++)
+		{
+			ticker.advance(MEMORY_TIER_EXPIRE_AFTER_SECONDS / 2, TimeUnit.SECONDS);
+
+			final ExpiringSession sessionOnNode1 = node1.getSession(session.getId());
+			sessionOnNode1.setLastAccessedTime(sessionOnNode1.getLastAccessedTime() + 1000);
+			node1.save(sessionOnNode1);
+		}
+
+		assertThat((String)node1.getSession(session.getId()).getAttribute("attr1")).isEqualTo("value2");
+	}
+
+	@Test
+	public void test_twoNodes_sessionDeletedOnOtherNode()
+	{
+		final TieredSessionRepository node1 = sessionRepository;
+		final TieredSessionRepository node2 = createSessionRepository();
+
+		final ExpiringSession session = node1.createSession();
+		node1.save(session);
+		assertThat(node2.getSession(session.getId())).isNotNull();
+
+		node2.delete(session.getId());
+		ticker.advance(MEMORY_TIER_EXPIRE_AFTER_SECONDS, TimeUnit.SECONDS);
+
+		assertThat(node1.getSession(session.getId())).isNull();
+	}
+
+	private static final class FakeTicker extends Ticker
+	{
+		private long nanos = 0;
+
+		@Override
+		public long read()
+		{
+			return nanos;
+		}
+
+		public void advance(final long duration, final TimeUnit unit)
+		{
+			nanos += unit.toNanos(duration);
+		}
+	}
+
+	private static final class InMemoryPersistentSessionStore implements PersistentSessionStore
+	{
+		private final Map<String, Record> records = new HashMap<>();
+		private int countSave = 0;
+		private int countTouch = 0;
+
+		@Override
+		public void save(final String sessionId, final long lastAccessedTimeMillis, final long expiresAtMillis, final byte[] sessionData)
+		{
+			records.put(sessionId, new Record(sessionData, lastAccessedTimeMillis, expiresAtMillis));
+			countSave++;
+		}
+
+		@Override
+		public void touch(final String sessionId, final long lastAccessedTimeMillis, final long expiresAtMillis)
+		{
+			final Record record = records.get(sessionId);
+			if (record != null)
+			{
+				records.put(sessionId, new Record(record.getSessionData(), lastAccessedTimeMillis, expiresAtMillis));
+			}
+			countTouch++;
+		}
+
+		@Override
+		public PersistedSession getByIdOrNull(final String sessionId)
+		{
+			final Record record = records.get(sessionId);
+			return record != null ? new PersistedSession(record.getSessionData(), record.getLastAccessedTimeMillis()) : null;
+		}
+
+		@Override
+		public boolean delete(final String sessionId)
+		{
+			return records.remove(sessionId) != null;
+		}
+
+		@Override
+		public Set<String> deleteExpiredSessions(final long nowMillis)
+		{
+			final Set<String> expiredSessionIds = records.entrySet()
+					.stream()
+					.filter(entry -> entry.getValue().getExpiresAtMillis() < nowMillis)
+					.map(Map.Entry::getKey)
+					.collect(Collectors.toSet());
+			records.keySet().removeAll(expiredSessionIds);
+			return expiredSessionIds;
+		}
+
+		public Set<String> getSessionIds()
+		{
+			return ImmutableSet.copyOf(records.keySet());
+		}
+
+		@lombok.Value
+		private static final class Record
+		{
+			private final byte[] sessionData;
+			private final long lastAccessedTimeMillis;
+			private final long expiresAtMillis;
+		}
+	}
+}
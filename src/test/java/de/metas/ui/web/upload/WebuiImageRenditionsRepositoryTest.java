@@ -0,0 +1,117 @@
+package de.metas.ui.web.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class WebuiImageRenditionsRepositoryTest
+{
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private static final int[] SIZES = { 100, 200, 400 };
+
+	@Test
+	public void test_parseAllowedSizes()
+	{
+		assertThat(WebuiImageRenditionsRepository.parseAllowedSizes("400, 100,200,100")).containsExactly(100, 200, 400);
+		assertThat(WebuiImageRenditionsRepository.parseAllowedSizes("100,abc,-5,0")).containsExactly(100);
+		assertThat(WebuiImageRenditionsRepository.parseAllowedSizes("")).isEmpty();
+	}
+
+	@Test
+	public void test_snapSize_notConstrained()
+	{
+		assertThat(WebuiImageRenditionsRepository.snapSize(0, SIZES)).isEqualTo(0);
+		assertThat(WebuiImageRenditionsRepository.snapSize(-1, SIZES)).isEqualTo(0);
+	}
+
+	@Test
+	public void test_snapSize()
+	{
+		assertThat(WebuiImageRenditionsRepository.snapSize(100, SIZES)).isEqualTo(100);
+		assertThat(WebuiImageRenditionsRepository.snapSize(199, SIZES)).isEqualTo(100);
+		assertThat(WebuiImageRenditionsRepository.snapSize(200, SIZES)).isEqualTo(200);
+		assertThat(WebuiImageRenditionsRepository.snapSize(399, SIZES)).isEqualTo(200);
+	}
+
+	@Test
+	public void test_snapSize_outOfRange()
+	{
+		assertThat(WebuiImageRenditionsRepository.snapSize(1, SIZES)).isEqualTo(100);
+		assertThat(WebuiImageRenditionsRepository.snapSize(Integer.MAX_VALUE, SIZES)).isEqualTo(400);
+	}
+
+	@Test
+	public void test_trimDirectory_notFull() throws IOException
+	{
+		createFile("1-1-100x100.img", 100, 1);
+		createFile("2-1-100x100.img", 100, 2);
+
+		assertThat(WebuiImageRenditionsRepository.trimDirectory(tempFolder.getRoot().toPath(), 200, 100)).isEqualTo(200);
+		assertThat(tempFolder.getRoot().list()).hasSize(2);
+	}
+
+	@Test
+	public void test_trimDirectory_deletesLeastRecentlyUsedFiles() throws IOException
+	{
+		createFile("1-1-100x100.img", 100, 3);
+		createFile("2-1-100x100.img", 100, 1); // least recently used
+		createFile("3-1-100x100.img", 100, 2);
+
+		assertThat(WebuiImageRenditionsRepository.trimDirectory(tempFolder.getRoot().toPath(), 250, 200)).isEqualTo(200);
+		assertThat(tempFolder.getRoot().list()).containsExactlyInAnyOrder("1-1-100x100.img", "3-1-100x100.img");
+	}
+
+	@Test
+	public void test_trimDirectory_deletesLeftoverTemporaryFiles() throws IOException
+	{
+		createFile("1-1-100x100.img", 100, 1);
+		final File oldTempFile = createFile("2-1-100x100.img123.tmp", 100, 1);
+		oldTempFile.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+		final File newTempFile = createFile("3-1-100x100.img456.tmp", 100, 1);
+		newTempFile.setLastModified(System.currentTimeMillis());
+
+		assertThat(WebuiImageRenditionsRepository.trimDirectory(tempFolder.getRoot().toPath(), 1000, 1000)).isEqualTo(100);
+		assertThat(oldTempFile).doesNotExist();
+		assertThat(newTempFile).exists(); // might be still written
+	}
+
+	private File createFile(final String name, final int length, final int lastModifiedSeconds) throws IOException
+	{
+		final File file = new File(tempFolder.getRoot(), name);
+		Files.write(file.toPath(), new byte[length]);
+		file.setLastModified(TimeUnit.SECONDS.toMillis(lastModifiedSeconds));
+		return file;
+	}
+}
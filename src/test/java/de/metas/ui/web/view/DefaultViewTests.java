@@ -0,0 +1,211 @@
+package de.metas.ui.web.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.ui.web.cache.ETag;
+import de.metas.ui.web.cache.ETagResponseEntityBuilder;
+import de.metas.ui.web.view.json.JSONViewDataType;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.WindowId;
+import de.metas.ui.web.window.datatypes.json.JSONOptions;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class DefaultViewTests
+{
+	@Test
+	public void test_computeRowsCacheCapacity_SmallView()
+	{
+		assertThat(DefaultView.computeRowsCacheCapacity(10, 50)).isEqualTo(100);
+		assertThat(DefaultView.computeRowsCacheCapacity(0, 50)).isEqualTo(100);
+	}
+
+	@Test
+	public void test_computeRowsCacheCapacity_FewPages()
+	{
+		assertThat(DefaultView.computeRowsCacheCapacity(100000, 200)).isEqualTo(600);
+		assertThat(DefaultView.computeRowsCacheCapacity(450, 200)).isEqualTo(450);
+	}
+
+	@Test
+	public void test_computeRowsCacheCapacity_Capped()
+	{
+		assertThat(DefaultView.computeRowsCacheCapacity(100000, 100000)).isEqualTo(5000);
+		assertThat(DefaultView.computeRowsCacheCapacity(Long.MAX_VALUE, Integer.MAX_VALUE)).isEqualTo(5000);
+	}
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+	}
+
+	private static DefaultView createView(final ViewDataRepositoryStub viewDataRepository)
+	{
+		return DefaultView.builder(viewDataRepository)
+				.setViewId(ViewId.random(WindowId.of(123)))
+				.setViewType(JSONViewDataType.grid)
+				.build();
+	}
+
+	@Test
+	public void test_defaultSelectionMaterialized_changesSizeAndETag()
+	{
+		final ViewDataRepositoryStub viewDataRepository = new ViewDataRepositoryStub();
+		viewDataRepository.materializationFuture = new CompletableFuture<>();
+		viewDataRepository.materializedRowsCount = 10;
+		final DefaultView view = createView(viewDataRepository);
+
+		assertThat(view.size()).isEqualTo(10);
+		assertThat(view.isSizeEstimated()).isTrue();
+		final ETag etagBefore = view.getDataETagOrNull();
+
+		viewDataRepository.materializationFuture.complete(55L);
+
+		assertThat(view.size()).isEqualTo(55);
+		assertThat(view.isSizeEstimated()).isFalse();
+		assertThat(view.getDataETagOrNull()).isNotEqualTo(etagBefore);
+	}
+
+	@Test
+	public void test_defaultSelectionMaterializationFailed_sizeStaysEstimated()
+	{
+		final ViewDataRepositoryStub viewDataRepository = new ViewDataRepositoryStub();
+		viewDataRepository.materializationFuture = new CompletableFuture<>();
+		viewDataRepository.materializedRowsCount = 10;
+		final DefaultView view = createView(viewDataRepository);
+
+		assertThat(view.size()).isEqualTo(10);
+		final ETag etagBefore = view.getDataETagOrNull();
+
+		viewDataRepository.materializationFuture.completeExceptionally(new RuntimeException("test"));
+
+		assertThat(view.size()).isEqualTo(10);
+		assertThat(view.isSizeEstimated()).isTrue();
+		assertThat(view.getDataETagOrNull()).isNotEqualTo(etagBefore);
+	}
+
+	/** Simulates the page request as done by ViewRestController.getViewData */
+	private static ResponseEntity<String> getPage(final DefaultView view, final String ifNoneMatch)
+	{
+		final MockHttpServletRequest httpRequest = new MockHttpServletRequest("GET", "/documentView/123/view1");
+		if (ifNoneMatch != null)
+		{
+			httpRequest.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+
+		final ETag etag = view.getDataETagOrNull();
+		return ETagResponseEntityBuilder.ofETagAware(new ServletWebRequest(httpRequest, new MockHttpServletResponse()), () -> etag)
+				.includeLanguageInETag()
+				.cacheMaxAge(0)
+				.jsonOptions(() -> JSONOptions.builder(null).setAD_LanguageIfNotEmpty("en_US").build())
+				.toJson((ignored, jsonOpts) -> {
+					view.getPage(0, 10, ImmutableList.of());
+					return "page";
+				});
+	}
+
+	@Test
+	public void test_ETag_notModified()
+	{
+		final DefaultView view = createView(new ViewDataRepositoryStub());
+
+		final ResponseEntity<String> response = getPage(view, null);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		final String etag = response.getHeaders().getETag();
+		assertThat(etag).isNotEmpty();
+
+		// serving a page does not change the ETag
+		final ResponseEntity<String> response2 = getPage(view, etag);
+		assertThat(response2.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(response2.getBody()).isNull();
+		assertThat(response2.getHeaders().getETag()).isEqualTo(etag);
+	}
+
+	@Test
+	public void test_ETag_invalidateAll()
+	{
+		final DefaultView view = createView(new ViewDataRepositoryStub());
+		final String etag = getPage(view, null).getHeaders().getETag();
+
+		view.invalidateAll();
+
+		assertModified(getPage(view, etag), etag);
+	}
+
+	@Test
+	public void test_ETag_invalidateRowById()
+	{
+		final DefaultView view = createView(new ViewDataRepositoryStub());
+		final String etag = getPage(view, null).getHeaders().getETag();
+
+		view.invalidateRowById(DocumentId.of(1));
+
+		assertModified(getPage(view, etag), etag);
+	}
+
+	@Test
+	public void test_ETag_invalidateSelection()
+	{
+		final DefaultView view = createView(new ViewDataRepositoryStub());
+		final String etag = getPage(view, null).getHeaders().getETag();
+
+		view.invalidateSelection();
+
+		assertModified(getPage(view, etag), etag);
+	}
+
+	@Test
+	public void test_ETag_defaultSelectionMaterialized()
+	{
+		final ViewDataRepositoryStub viewDataRepository = new ViewDataRepositoryStub();
+		viewDataRepository.materializationFuture = new CompletableFuture<>();
+		final DefaultView view = createView(viewDataRepository);
+		final String etag = getPage(view, null).getHeaders().getETag();
+
+		viewDataRepository.materializationFuture.complete(55L);
+
+		assertModified(getPage(view, etag), etag);
+	}
+
+	private static void assertModified(final ResponseEntity<String> response, final String previousETag)
+	{
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody()).isEqualTo("page");
+		assertThat(response.getHeaders().getETag()).isNotEqualTo(previousETag);
+	}
+}
@@ -0,0 +1,114 @@
+package de.metas.ui.web.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.WindowId;
+import de.metas.ui.web.window.model.DocumentQueryOrderBy;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class InMemoryOrderedViewRowIdsTest
+{
+	private static final DocumentId ROW_Alpha = DocumentId.of(1);
+	private static final DocumentId ROW_beta = DocumentId.of(2);
+	private static final DocumentId ROW_Gamma = DocumentId.of(3);
+	private static final DocumentId ROW_NoBPartner = DocumentId.of(4);
+
+	private InMemoryOrderedViewRowIds inMemoryOrderedRowIds;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		// C_BPartner_ID lookup: Alpha has C_BPartner_ID=30, beta has 10, Gamma has 20.
+		// Database orders by display value using its collation (i.e. Alpha, beta, Gamma, null)
+		// and so the ranks returned by repository (same as SqlViewSelectionQueryBuilder.buildSqlRetrieveFieldOrderingRanksFromSelection) are:
+		final Map<DocumentId, Object> bpartnerRanks = new HashMap<>();
+		bpartnerRanks.put(ROW_Alpha, 1L);
+		bpartnerRanks.put(ROW_beta, 2L);
+		bpartnerRanks.put(ROW_Gamma, 3L);
+		bpartnerRanks.put(ROW_NoBPartner, null);
+
+		final ViewDataRepositoryStub viewDataRepository = new ViewDataRepositoryStub()
+		{
+			@Override
+			public List<DocumentId> retrieveRowIdsByPage(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection orderedSelection, final int firstRow, final int pageLength)
+			{
+				return ImmutableList.of(ROW_NoBPartner, ROW_Gamma, ROW_beta, ROW_Alpha);
+			}
+
+			@Override
+			public Map<DocumentId, Object> retrieveFieldOrderingKeysByRowId(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection selection, final String fieldName)
+			{
+				assertThat(fieldName).isEqualTo("C_BPartner_ID");
+				return bpartnerRanks;
+			}
+		};
+
+		final ViewRowIdsOrderedSelection defaultSelection = ViewRowIdsOrderedSelection.builder()
+				.setViewId(ViewId.random(WindowId.of(123)))
+				.setSize(4)
+				.setOrderBys(ImmutableList.of())
+				.build();
+
+		inMemoryOrderedRowIds = new InMemoryOrderedViewRowIds(viewDataRepository, ViewEvaluationCtx.newInstanceFromCurrentContext(), defaultSelection);
+	}
+
+	@Test
+	public void lookupField_Ascending_SameOrderAsDatabase()
+	{
+		// SQL: ORDER BY (bpartnerName) ASC NULLS LAST
+		final List<DocumentQueryOrderBy> orderBys = ImmutableList.of(DocumentQueryOrderBy.byFieldName("C_BPartner_ID", true));
+		assertThat(inMemoryOrderedRowIds.getRowIds(orderBys, 0, 10))
+				.containsExactly(ROW_Alpha, ROW_beta, ROW_Gamma, ROW_NoBPartner);
+	}
+
+	@Test
+	public void lookupField_Descending_SameOrderAsDatabase()
+	{
+		// SQL: ORDER BY (bpartnerName) DESC NULLS LAST
+		final List<DocumentQueryOrderBy> orderBys = ImmutableList.of(DocumentQueryOrderBy.byFieldName("C_BPartner_ID", false));
+		assertThat(inMemoryOrderedRowIds.getRowIds(orderBys, 0, 10))
+				.containsExactly(ROW_Gamma, ROW_beta, ROW_Alpha, ROW_NoBPartner);
+	}
+
+	@Test
+	public void noOrderBys_DefaultSelectionOrder()
+	{
+		assertThat(inMemoryOrderedRowIds.getRowIds(ImmutableList.of(), 1, 2))
+				.containsExactly(ROW_Gamma, ROW_beta);
+	}
+}
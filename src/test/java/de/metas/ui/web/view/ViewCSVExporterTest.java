@@ -0,0 +1,215 @@
+package de.metas.ui.web.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+import de.metas.ui.web.view.descriptor.ViewLayout;
+import de.metas.ui.web.view.json.JSONViewDataType;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
+import de.metas.ui.web.window.datatypes.WindowId;
+import de.metas.ui.web.window.descriptor.DocumentFieldWidgetType;
+import de.metas.ui.web.window.descriptor.DocumentLayoutElementDescriptor;
+import de.metas.ui.web.window.descriptor.DocumentLayoutElementFieldDescriptor;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ViewCSVExporterTest
+{
+	private static final WindowId WINDOW_ID = WindowId.of(123);
+
+	private ViewDataRepositoryStub viewDataRepository;
+	private DefaultView view;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		viewDataRepository = new ViewDataRepositoryStub();
+		view = DefaultView.builder(viewDataRepository)
+				.setViewId(ViewId.random(WINDOW_ID))
+				.setViewType(JSONViewDataType.grid)
+				.build();
+	}
+
+	private static ViewLayout createLayout()
+	{
+		return ViewLayout.builder()
+				.setWindowId(WINDOW_ID)
+				.setCaption("Test window")
+				.addElement(DocumentLayoutElementDescriptor.builder()
+						.setCaption("Name")
+						.setWidgetType(DocumentFieldWidgetType.Text)
+						.addField(DocumentLayoutElementFieldDescriptor.builder("Name").setPublicField(true)))
+				.build();
+	}
+
+	private static IViewRow row(final int id, final String name)
+	{
+		return ViewRow.builder(WINDOW_ID)
+				.setRowId(DocumentId.of(id))
+				.putFieldValue("Name", name)
+				.build();
+	}
+
+	private List<String> export(final DocumentIdsSelection rowIds) throws Exception
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ViewCSVExporter.builder()
+				.view(view)
+				.rowIds(rowIds)
+				.layout(createLayout())
+				.adLanguage("en_US")
+				.build()
+				.export(out);
+
+		final String csv = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertThat(csv).startsWith("\uFEFF");
+		return Splitter.on("\r\n").omitEmptyStrings().splitToList(csv.substring(1));
+	}
+
+	@Test
+	public void test_exportAll_usesCursorAndKeepsOrder() throws Exception
+	{
+		final ImmutableList.Builder<IViewRow> rows = ImmutableList.builder();
+		final int rowsCount = 1201; // more than two chunks
+		for (int id = rowsCount; id >= 1; id--)
+		{
+			rows.add(row(id, "name" + id));
+		}
+		viewDataRepository.rows = rows.build();
+
+		final List<String> lines = export(DocumentIdsSelection.ALL);
+
+		assertThat(lines).hasSize(rowsCount + 1);
+		assertThat(lines.get(0)).isEqualTo("Name");
+		assertThat(lines.get(1)).isEqualTo("name1201");
+		assertThat(lines.get(rowsCount)).isEqualTo("name1");
+		assertThat(viewDataRepository.retrieveRowIdsByPageCalls).isEqualTo(0);
+	}
+
+	@Test
+	public void test_exportSelected() throws Exception
+	{
+		viewDataRepository.rows = ImmutableList.of(row(1, "name1"), row(2, "name2"), row(3, "name3"));
+
+		final List<String> lines = export(DocumentIdsSelection.of(ImmutableList.of(DocumentId.of(3), DocumentId.of(1))));
+
+		assertThat(lines).containsExactly("Name", "name3", "name1");
+	}
+
+	@Test
+	public void test_exportValuesAreQuoted() throws Exception
+	{
+		viewDataRepository.rows = ImmutableList.of(row(1, "a;b"), row(2, "say \"hi\""));
+
+		final List<String> lines = export(DocumentIdsSelection.ALL);
+
+		assertThat(lines).containsExactly("Name", "\"a;b\"", "\"say \"\"hi\"\"\"");
+	}
+
+	@Test
+	public void test_buildExportFilename()
+	{
+		final ViewLayout layout = createLayout();
+		assertThat(ViewRestController.buildExportFilename(view, layout, "en_US", "csv")).isEqualTo("Test window.csv");
+
+		final ViewLayout layoutWithSpecialChars = ViewLayout.builder()
+				.setWindowId(WINDOW_ID)
+				.setCaption("Orders: in/out \"2018\"")
+				.build();
+		assertThat(ViewRestController.buildExportFilename(view, layoutWithSpecialChars, "en_US", "xls")).isEqualTo("Orders_ in_out _2018_.xls");
+
+		final ViewLayout layoutWithoutCaption = ViewLayout.builder()
+				.setWindowId(WINDOW_ID)
+				.build();
+		assertThat(ViewRestController.buildExportFilename(view, layoutWithoutCaption, "en_US", "csv")).isEqualTo("report.csv");
+	}
+
+	@Test
+	public void test_exportFormulaLikeValuesAreEscaped() throws Exception
+	{
+		viewDataRepository.rows = ImmutableList.of(
+				row(1, "=HYPERLINK(\"http://example.com\")"),
+				row(2, "+1+2"),
+				row(3, "-2+3"),
+				row(4, "@SUM(A1)"),
+				row(5, "\tcmd"),
+				row(6, "-12.50"), // negative number, not a formula
+				row(7, "a=b"));
+
+		final List<String> lines = export(DocumentIdsSelection.ALL);
+
+		assertThat(lines).containsExactly(
+				"Name",
+				"\"'=HYPERLINK(\"\"http://example.com\"\")\"",
+				"\"'+1+2\"",
+				"\"'-2+3\"",
+				"\"'@SUM(A1)\"",
+				"\"'\tcmd\"",
+				"-12.50",
+				"a=b");
+	}
+
+	@Test
+	public void test_exportValueStartingWithCarriageReturnIsEscaped() throws Exception
+	{
+		viewDataRepository.rows = ImmutableList.of(row(1, "\r=1+1"));
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ViewCSVExporter.builder()
+				.view(view)
+				.rowIds(DocumentIdsSelection.ALL)
+				.layout(createLayout())
+				.adLanguage("en_US")
+				.build()
+				.export(out);
+
+		final String csv = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertThat(csv).isEqualTo("\uFEFFName\r\n\"'\r=1+1\"\r\n");
+	}
+
+	@Test
+	public void test_buildContentDisposition()
+	{
+		assertThat(ViewRestController.buildContentDisposition("attachment", "report.csv"))
+				.isEqualTo("attachment; filename=\"report.csv\"; filename*=UTF-8''report.csv");
+
+		assertThat(ViewRestController.buildContentDisposition("attachment", "Aufträge 2018.csv"))
+				.isEqualTo("attachment; filename=\"Auftr_ge 2018.csv\"; filename*=UTF-8''Auftr%C3%A4ge%202018.csv");
+
+		assertThat(ViewRestController.buildContentDisposition("inline", "Orders;(1).xls"))
+				.isEqualTo("inline; filename=\"Orders;(1).xls\"; filename*=UTF-8''Orders%3B%281%29.xls");
+	}
+}
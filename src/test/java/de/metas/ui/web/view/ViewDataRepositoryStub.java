@@ -0,0 +1,189 @@
+package de.metas.ui.web.view;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.adempiere.util.GuavaCollectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import de.metas.ui.web.document.filter.DocumentFilter;
+import de.metas.ui.web.document.filter.DocumentFilterDescriptorsProvider;
+import de.metas.ui.web.document.filter.NullDocumentFilterDescriptorsProvider;
+import de.metas.ui.web.document.filter.sql.SqlDocumentFilterConverterContext;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.DocumentIdsSelection;
+import de.metas.ui.web.window.descriptor.DocumentFieldWidgetType;
+import de.metas.ui.web.window.model.DocumentQueryOrderBy;
+import de.metas.ui.web.window.model.sql.SqlOptions;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+/**
+ * {@link IViewDataRepository} which does not access the database. The default selection is created progressively if {@link #materializationFuture} is set.
+ */
+class ViewDataRepositoryStub implements IViewDataRepository
+{
+	long selectionSize = 100;
+	/** if set, the default selection is created with {@link #materializedRowsCount} rows and it's materialized when this future is completed */
+	CompletableFuture<Long> materializationFuture;
+	long materializedRowsCount = 10;
+	/** rows of the default selection, in selection's order */
+	List<IViewRow> rows = ImmutableList.of();
+	int retrieveRowIdsByPageCalls = 0;
+
+	@Override
+	public String getTableName()
+	{
+		return "Test";
+	}
+
+	@Override
+	public String getSqlWhereClause(final ViewId viewId, final List<DocumentFilter> filters, final DocumentIdsSelection rowIds, final SqlOptions sqlOpts)
+	{
+		return "1=1";
+	}
+
+	@Override
+	public Map<String, DocumentFieldWidgetType> getWidgetTypesByFieldName()
+	{
+		return ImmutableMap.of();
+	}
+
+	@Override
+	public DocumentFilterDescriptorsProvider getViewFilterDescriptors()
+	{
+		return NullDocumentFilterDescriptorsProvider.instance;
+	}
+
+	@Override
+	public IViewRow retrieveById(final ViewEvaluationCtx viewEvalCtx, final ViewId viewId, final DocumentId rowId)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<IViewRow> retrieveByIds(final ViewEvaluationCtx viewEvalCtx, final ViewId viewId, final DocumentIdsSelection rowIds)
+	{
+		return rows.stream()
+				.filter(row -> rowIds.contains(row.getId()))
+				.collect(GuavaCollectors.toImmutableList());
+	}
+
+	@Override
+	public List<IViewRow> retrievePage(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection orderedSelection, final int firstRow, final int pageLength)
+	{
+		return ImmutableList.of();
+	}
+
+	@Override
+	public List<DocumentId> retrieveRowIdsByPage(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection orderedSelection, final int firstRow, final int pageLength)
+	{
+		retrieveRowIdsByPageCalls++;
+		return ImmutableList.of();
+	}
+
+	@Override
+	public void forEachRowId(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection orderedSelection, final int fetchSize, final Consumer<DocumentId> rowIdConsumer)
+	{
+		rows.stream().map(IViewRow::getId).forEach(rowIdConsumer);
+	}
+
+	@Override
+	public <T> List<T> retrieveModelsByIds(final ViewId viewId, final DocumentIdsSelection rowIds, final Class<T> modelClass)
+	{
+		return ImmutableList.of();
+	}
+
+	@Override
+	public boolean isInMemoryOrderingSupported()
+	{
+		return false;
+	}
+
+	@Override
+	public List<DocumentQueryOrderBy> getEffectiveOrderBys(final List<DocumentQueryOrderBy> orderBys)
+	{
+		return orderBys;
+	}
+
+	@Override
+	public Map<DocumentId, Object> retrieveFieldOrderingKeysByRowId(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection selection, final String fieldName)
+	{
+		return ImmutableMap.of();
+	}
+
+	@Override
+	public ViewRowIdsOrderedSelection createOrderedSelectionFromSelection(final ViewEvaluationCtx viewEvalCtx, final ViewRowIdsOrderedSelection fromSelection, final List<DocumentQueryOrderBy> orderBys)
+	{
+		return ViewRowIdsOrderedSelection.builder()
+				.setViewId(ViewId.random(fromSelection.getWindowId()))
+				.setSize(fromSelection.getSize())
+				.setOrderBys(orderBys)
+				.build();
+	}
+
+	@Override
+	public void deleteSelection(final ViewId viewId)
+	{
+	}
+
+	@Override
+	public void scheduleDeleteSelections(final Set<String> viewIds)
+	{
+	}
+
+	@Override
+	public void invalidateSharedSelections()
+	{
+	}
+
+	@Override
+	public ViewRowIdsOrderedSelection createOrderedSelection(
+			final ViewEvaluationCtx viewEvalCtx,
+			final ViewId viewId,
+			final List<DocumentFilter> filters,
+			final boolean applySecurityRestrictions,
+			final SqlDocumentFilterConverterContext context)
+	{
+		final ViewRowIdsOrderedSelection.Builder selectionBuilder = ViewRowIdsOrderedSelection.builder()
+				.setViewId(viewId)
+				.setOrderBys(ImmutableList.of());
+		if (materializationFuture != null)
+		{
+			selectionBuilder
+					.setSize(materializedRowsCount)
+					.setMaterialization(ViewRowIdsOrderedSelectionMaterialization.of(materializedRowsCount, materializationFuture));
+		}
+		else
+		{
+			selectionBuilder.setSize(selectionSize);
+		}
+		return selectionBuilder.build();
+	}
+}
@@ -0,0 +1,156 @@
+package de.metas.ui.web.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.util.Env;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.ui.web.view.ViewPagePrefetcher.PageKey;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ViewPagePrefetcherTest
+{
+	private static final int ROWS_COUNT = 100;
+
+	private final AtomicInteger cacheGeneration = new AtomicInteger(0);
+	private final List<PageKey> loadedPageKeys = new ArrayList<>();
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+	}
+
+	private List<IViewRow> loadPage(final PageKey pageKey)
+	{
+		loadedPageKeys.add(pageKey);
+		return ImmutableList.of();
+	}
+
+	private static PageKey page(final int firstRow)
+	{
+		return PageKey.of("selection1", firstRow, 10);
+	}
+
+	@Test
+	public void test_sequentialPaging_prefetchesNextPage()
+	{
+		final ViewPagePrefetcher prefetcher = new ViewPagePrefetcher(Runnable::run);
+
+		prefetcher.onPageServed(page(0), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+		assertThat(loadedPageKeys).isEmpty();
+
+		prefetcher.onPageServed(page(10), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+		assertThat(loadedPageKeys).containsExactly(page(20));
+
+		assertThat(prefetcher.getPrefetchedPageOrNull(page(20), cacheGeneration.get())).isNotNull();
+		// a prefetched page is used only once
+		assertThat(prefetcher.getPrefetchedPageOrNull(page(20), cacheGeneration.get())).isNull();
+	}
+
+	@Test
+	public void test_randomPaging_doesNotPrefetch()
+	{
+		final ViewPagePrefetcher prefetcher = new ViewPagePrefetcher(Runnable::run);
+
+		prefetcher.onPageServed(page(0), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+		prefetcher.onPageServed(page(50), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+		prefetcher.onPageServed(page(20), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+
+		assertThat(loadedPageKeys).isEmpty();
+	}
+
+	@Test
+	public void test_lastPage_doesNotPrefetch()
+	{
+		final ViewPagePrefetcher prefetcher = new ViewPagePrefetcher(Runnable::run);
+
+		prefetcher.onPageServed(page(80), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+		prefetcher.onPageServed(page(90), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+
+		assertThat(loadedPageKeys).isEmpty();
+	}
+
+	@Test
+	public void test_invalidatedView_prefetchedPageIsDiscarded()
+	{
+		final ViewPagePrefetcher prefetcher = new ViewPagePrefetcher(Runnable::run);
+		prefetcher.onPageServed(page(0), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+		prefetcher.onPageServed(page(10), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+		assertThat(loadedPageKeys).containsExactly(page(20));
+
+		cacheGeneration.incrementAndGet();
+
+		assertThat(prefetcher.getPrefetchedPageOrNull(page(20), cacheGeneration.get())).isNull();
+	}
+
+	@Test
+	public void test_otherPageRequested_prefetchedPageIsNotUsed()
+	{
+		final ViewPagePrefetcher prefetcher = new ViewPagePrefetcher(Runnable::run);
+		prefetcher.onPageServed(page(0), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+		prefetcher.onPageServed(page(10), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+
+		assertThat(prefetcher.getPrefetchedPageOrNull(page(30), cacheGeneration.get())).isNull();
+	}
+
+	@Test
+	public void test_pageIsLoadedWithCallerContext() throws Exception
+	{
+		final Properties ctx = Env.getCtx();
+		Env.setContext(ctx, "#PrefetchTest", "value1");
+
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final AtomicReference<String> valueInPrefetchThread = new AtomicReference<>();
+		try
+		{
+			final ViewPagePrefetcher prefetcher = new ViewPagePrefetcher(executor);
+			prefetcher.onPageServed(page(0), ROWS_COUNT, cacheGeneration::get, this::loadPage);
+			prefetcher.onPageServed(page(10), ROWS_COUNT, cacheGeneration::get, pageKey -> {
+				valueInPrefetchThread.set(Env.getContext(Env.getCtx(), "#PrefetchTest"));
+				return ImmutableList.of();
+			});
+		}
+		finally
+		{
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+
+		assertThat(valueInPrefetchThread.get()).isEqualTo("value1");
+	}
+}
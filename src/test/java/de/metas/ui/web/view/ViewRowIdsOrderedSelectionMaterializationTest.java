@@ -0,0 +1,133 @@
+package de.metas.ui.web.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.junit.Test;
+
+import de.metas.ui.web.window.datatypes.WindowId;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class ViewRowIdsOrderedSelectionMaterializationTest
+{
+	@Test
+	public void test_pending()
+	{
+		final ViewRowIdsOrderedSelectionMaterialization materialization = ViewRowIdsOrderedSelectionMaterialization.of(10, new CompletableFuture<>());
+
+		assertThat(materialization.isDone()).isFalse();
+		assertThat(materialization.isSizeEstimated()).isTrue();
+		assertThat(materialization.getSize()).isEqualTo(10);
+
+		// rows which were already materialized can be accessed without waiting
+		materialization.awaitRows(10);
+	}
+
+	@Test
+	public void test_done()
+	{
+		final CompletableFuture<Long> sizeFuture = new CompletableFuture<>();
+		final ViewRowIdsOrderedSelectionMaterialization materialization = ViewRowIdsOrderedSelectionMaterialization.of(10, sizeFuture);
+		final AtomicBoolean onDoneCalled = new AtomicBoolean(false);
+		materialization.onDone(() -> onDoneCalled.set(true));
+
+		sizeFuture.complete(55L);
+
+		assertThat(onDoneCalled.get()).isTrue();
+		assertThat(materialization.isDone()).isTrue();
+		assertThat(materialization.isFailed()).isFalse();
+		assertThat(materialization.isSizeEstimated()).isFalse();
+		assertThat(materialization.getSize()).isEqualTo(55);
+		materialization.awaitRows(55);
+	}
+
+	@Test
+	public void test_failed()
+	{
+		final CompletableFuture<Long> sizeFuture = new CompletableFuture<>();
+		final ViewRowIdsOrderedSelectionMaterialization materialization = ViewRowIdsOrderedSelectionMaterialization.of(10, sizeFuture);
+		final AtomicBoolean onDoneCalled = new AtomicBoolean(false);
+		materialization.onDone(() -> onDoneCalled.set(true));
+
+		sizeFuture.completeExceptionally(new RuntimeException("test"));
+
+		assertThat(onDoneCalled.get()).isTrue();
+		assertThat(materialization.isDone()).isTrue();
+		assertThat(materialization.isFailed()).isTrue();
+		assertThat(materialization.getSize()).isEqualTo(10);
+		// the real size is not known, so it's not reported as exact
+		assertThat(materialization.isSizeEstimated()).isTrue();
+
+		// the first rows are still available...
+		materialization.awaitRows(10);
+
+		// ...but the remaining ones are not
+		try
+		{
+			materialization.awaitRows(11);
+			fail("Exception was expected");
+		}
+		catch (final AdempiereException ex)
+		{
+			assertThat(ex.getMessage()).contains("truncated");
+		}
+	}
+
+	@Test
+	public void test_failed_selectionSizeStaysEstimated()
+	{
+		final CompletableFuture<Long> sizeFuture = new CompletableFuture<>();
+		final ViewRowIdsOrderedSelection selection = ViewRowIdsOrderedSelection.builder()
+				.setViewId(ViewId.random(WindowId.of(123)))
+				.setSize(10)
+				.setMaterialization(ViewRowIdsOrderedSelectionMaterialization.of(10, sizeFuture))
+				.build();
+
+		sizeFuture.completeExceptionally(new RuntimeException("test"));
+
+		assertThat(selection.getSize()).isEqualTo(10);
+		assertThat(selection.isSizeEstimated()).isTrue();
+
+		// selections derived from it are still flagged as estimated
+		final ViewRowIdsOrderedSelection selectionCopy = selection.toBuilder().build();
+		assertThat(selectionCopy.getSize()).isEqualTo(10);
+		assertThat(selectionCopy.isSizeEstimated()).isTrue();
+
+		// queries which need all rows are failing
+		try
+		{
+			selection.awaitMaterialized();
+			fail("Exception was expected");
+		}
+		catch (final AdempiereException ex)
+		{
+			assertThat(ex.getMessage()).contains("truncated");
+		}
+	}
+}
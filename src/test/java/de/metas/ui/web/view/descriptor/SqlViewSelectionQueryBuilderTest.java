@@ -0,0 +1,115 @@
+package de.metas.ui.web.view.descriptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.adempiere.ad.expression.api.IExpressionEvaluator.OnVariableNotFound;
+import org.adempiere.ad.expression.api.impl.ConstantStringExpression;
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import de.metas.ui.web.view.ViewEvaluationCtx;
+import de.metas.ui.web.window.descriptor.DocumentFieldWidgetType;
+import de.metas.ui.web.window.model.DocumentQueryOrderBy;
+import de.metas.ui.web.window.model.sql.SqlDocumentOrderByBuilder;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class SqlViewSelectionQueryBuilderTest
+{
+	private static final String SQL_BPartnerName = "(SELECT bp.Name FROM C_BPartner bp WHERE bp.C_BPartner_ID=C_Order.C_BPartner_ID)";
+
+	private SqlViewBinding viewBinding;
+	private ViewEvaluationCtx viewEvalCtx;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		viewBinding = SqlViewBinding.builder()
+				.tableName("C_Order")
+				.tableAlias("master")
+				.field(SqlViewRowFieldBinding.builder()
+						.fieldName("C_Order_ID")
+						.widgetType(DocumentFieldWidgetType.Integer)
+						.keyColumn(true)
+						.fieldLoader((rs, adLanguage) -> null)
+						.build())
+				.field(SqlViewRowFieldBinding.builder()
+						.fieldName("C_BPartner_ID")
+						.widgetType(DocumentFieldWidgetType.Lookup)
+						.usingDisplayColumn(true)
+						.sqlOrderBy(ConstantStringExpression.of(SQL_BPartnerName))
+						.fieldLoader((rs, adLanguage) -> null)
+						.build())
+				.field(SqlViewRowFieldBinding.builder()
+						.fieldName("DocumentNo")
+						.widgetType(DocumentFieldWidgetType.Text)
+						.fieldLoader((rs, adLanguage) -> null)
+						.build())
+				.displayFieldNames("C_BPartner_ID", "DocumentNo")
+				.build();
+
+		viewEvalCtx = ViewEvaluationCtx.newInstanceFromCurrentContext();
+	}
+
+	/**
+	 * @return the ORDER BY which is used when the selection is ordered in database
+	 */
+	private String buildDatabaseOrderBy(final String fieldName)
+	{
+		final String sqlOrderBy = SqlDocumentOrderByBuilder.newInstance(viewBinding::getFieldOrderBy)
+				.buildSqlOrderBy(ImmutableList.of(DocumentQueryOrderBy.byFieldName(fieldName, true)))
+				.evaluate(viewEvalCtx.toEvaluatee(), OnVariableNotFound.Fail);
+		return viewBinding.replaceTableNameWithTableAlias(sqlOrderBy);
+	}
+
+	@Test
+	public void buildSqlRetrieveFieldOrderingRanksFromSelection_LookupField_RanksByDisplayValue()
+	{
+		final String sql = SqlViewSelectionQueryBuilder.newInstance(viewBinding)
+				.buildSqlRetrieveFieldOrderingRanksFromSelection(viewEvalCtx, "selectionUUID", "C_BPartner_ID")
+				.getSql();
+
+		// same ORDER BY as in database, so lookups are ranked by their display value and not by ID
+		assertThat(buildDatabaseOrderBy("C_BPartner_ID"))
+				.isEqualTo("((SELECT bp.Name FROM C_BPartner bp WHERE bp.C_BPartner_ID=master.C_BPartner_ID)) ASC NULLS LAST");
+		assertThat(sql).contains("dense_rank() OVER (ORDER BY " + buildDatabaseOrderBy("C_BPartner_ID") + ")");
+		assertThat(sql).doesNotContain("master.C_BPartner_ID\n");
+		assertThat(sql).contains("LEFT OUTER JOIN C_Order master ON (");
+	}
+
+	@Test
+	public void buildSqlRetrieveFieldOrderingRanksFromSelection_PlainField()
+	{
+		final String sql = SqlViewSelectionQueryBuilder.newInstance(viewBinding)
+				.buildSqlRetrieveFieldOrderingRanksFromSelection(viewEvalCtx, "selectionUUID", "DocumentNo")
+				.getSql();
+
+		assertThat(sql).contains("CASE WHEN (DocumentNo) IS NULL THEN NULL ELSE dense_rank() OVER (ORDER BY " + buildDatabaseOrderBy("DocumentNo") + ") END");
+	}
+}
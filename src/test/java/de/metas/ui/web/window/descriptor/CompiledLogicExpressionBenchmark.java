@@ -0,0 +1,124 @@
+package de.metas.ui.web.window.descriptor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.adempiere.ad.expression.api.IExpressionEvaluator.OnVariableNotFound;
+import org.adempiere.ad.expression.api.ILogicExpression;
+import org.adempiere.ad.expression.api.LogicExpressionResult;
+import org.adempiere.ad.expression.api.impl.LogicExpressionCompiler;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.util.Evaluatee;
+import org.compiere.util.Evaluatees;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+/**
+ * Compares the interpreted evaluation of a field's logic expression with the evaluation of the {@link CompiledLogicExpression}.
+ * <p>
+ * It's not a unit test, run it using {@link #main(String[])}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledLogicExpressionBenchmark
+{
+	public static void main(final String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder()
+				.include(CompiledLogicExpressionBenchmark.class.getSimpleName())
+				.build())
+						.run();
+	}
+
+	private static final String EXPRESSION = "@IsActive@=Y & @Processed@=N & @DocStatus@=DR | @DocStatus@=IP";
+
+	private ILogicExpression expression;
+	private CompiledLogicExpression compiledExpression;
+	private CompiledLogicExpression.Memo memo;
+
+	private Evaluatee evaluatee;
+	private Object[] fieldValues;
+	private Object[] alternateFieldValues;
+	private boolean alternate;
+
+	@Setup
+	public void setup()
+	{
+		AdempiereTestHelper.get().init();
+
+		expression = LogicExpressionCompiler.instance.compile(EXPRESSION);
+
+		final CompiledLogicExpression.Compiler compiler = CompiledLogicExpression.compiler(ImmutableList.of("IsActive", "Processed", "DocStatus"));
+		compiledExpression = compiler.compile(expression);
+		memo = new CompiledLogicExpression.Memo(compiler.getMemoSlotsCount());
+
+		evaluatee = Evaluatees.mapBuilder()
+				.put("IsActive", "Y")
+				.put("Processed", "N")
+				.put("DocStatus", "DR")
+				.build();
+		fieldValues = new Object[] { "Y", "N", "DR" };
+		alternateFieldValues = new Object[] { "Y", "N", "IP" };
+	}
+
+	@Benchmark
+	public LogicExpressionResult interpreted()
+	{
+		return expression.evaluateToResult(evaluatee, OnVariableNotFound.Fail);
+	}
+
+	/** Field values are not changed between evaluations, which is the usual case when dependencies are propagated */
+	@Benchmark
+	public LogicExpressionResult compiled_sameValues()
+	{
+		final Object[] values = fieldValues;
+		return compiledExpression.evaluate(evaluatee, fieldIndex -> values[fieldIndex], memo);
+	}
+
+	/** Field values are changed on each evaluation, i.e. the memorized result is never used */
+	@Benchmark
+	public LogicExpressionResult compiled_changedValues()
+	{
+		alternate = !alternate;
+		final Object[] values = alternate ? alternateFieldValues : fieldValues;
+		return compiledExpression.evaluate(evaluatee, fieldIndex -> values[fieldIndex], memo);
+	}
+}
@@ -0,0 +1,197 @@
+package de.metas.ui.web.window.descriptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.adempiere.ad.expression.api.ConstantLogicExpression;
+import org.adempiere.ad.expression.api.ILogicExpression;
+import org.adempiere.ad.expression.api.LogicExpressionResult;
+import org.adempiere.ad.expression.api.impl.LogicExpressionCompiler;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.util.Evaluatee;
+import org.compiere.util.Evaluatees;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class CompiledLogicExpressionTest
+{
+	private static final ImmutableList<String> FIELD_NAMES = ImmutableList.of("IsActive", "Processed", "Qty");
+
+	private CompiledLogicExpression.Compiler compiler;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+		compiler = CompiledLogicExpression.compiler(FIELD_NAMES);
+	}
+
+	private static ILogicExpression logic(final String expressionStr)
+	{
+		return LogicExpressionCompiler.instance.compile(expressionStr);
+	}
+
+	private static Evaluatee evaluatee(final String isActive, final String processed)
+	{
+		return Evaluatees.mapBuilder()
+				.put("IsActive", isActive)
+				.put("Processed", processed)
+				.build();
+	}
+
+	/** @return field values, indexed like {@link #FIELD_NAMES} */
+	private static Object[] fieldValues(final String isActive, final String processed)
+	{
+		return new Object[] { isActive, processed, null };
+	}
+
+	private static boolean evaluate(final CompiledLogicExpression compiled, final Evaluatee evaluatee, final Object[] fieldValues, final CompiledLogicExpression.Memo memo)
+	{
+		final LogicExpressionResult result = compiled.evaluate(evaluatee, fieldIndex -> fieldValues[fieldIndex], memo);
+		return result.booleanValue();
+	}
+
+	private CompiledLogicExpression.Memo newMemo()
+	{
+		return new CompiledLogicExpression.Memo(compiler.getMemoSlotsCount());
+	}
+
+	@Test
+	public void test_constant()
+	{
+		final CompiledLogicExpression compiled = compiler.compile(ConstantLogicExpression.TRUE);
+		final CompiledLogicExpression.Memo memo = newMemo();
+
+		assertThat(compiler.getMemoSlotsCount()).isEqualTo(0);
+		assertThat(compiled.evaluate(Evaluatees.empty(), fieldIndex -> {
+			throw new AssertionError("no field value shall be fetched");
+		}, memo).booleanValue()).isTrue();
+	}
+
+	@Test
+	public void test_fieldParameters_resultIsMemorizedWhileValuesAreNotChanged()
+	{
+		final CompiledLogicExpression compiled = compiler.compile(logic("@IsActive@=Y & @Processed@=N"));
+		assertThat(compiler.getMemoSlotsCount()).isEqualTo(1);
+		final CompiledLogicExpression.Memo memo = newMemo();
+
+		assertThat(evaluate(compiled, evaluatee("Y", "N"), fieldValues("Y", "N"), memo)).isTrue();
+
+		// same field values => the memorized result is returned, the evaluatee is not used at all
+		assertThat(evaluate(compiled, evaluatee("N", "N"), fieldValues("Y", "N"), memo)).isTrue();
+
+		// changed field values => the expression is evaluated again
+		assertThat(evaluate(compiled, evaluatee("Y", "Y"), fieldValues("Y", "Y"), memo)).isFalse();
+		assertThat(evaluate(compiled, evaluatee("Y", "N"), fieldValues("Y", "N"), memo)).isTrue();
+	}
+
+	@Test
+	public void test_memoIsPerDocument()
+	{
+		final CompiledLogicExpression compiled = compiler.compile(logic("@IsActive@=Y"));
+		final CompiledLogicExpression.Memo memo1 = newMemo();
+		final CompiledLogicExpression.Memo memo2 = newMemo();
+
+		assertThat(evaluate(compiled, evaluatee("Y", "N"), fieldValues("Y", "N"), memo1)).isTrue();
+		assertThat(evaluate(compiled, evaluatee("N", "N"), fieldValues("N", "N"), memo2)).isFalse();
+		assertThat(evaluate(compiled, evaluatee("N", "N"), fieldValues("Y", "N"), memo1)).isTrue();
+	}
+
+	@Test
+	public void test_nullFieldValue_isAlwaysInterpreted()
+	{
+		final CompiledLogicExpression compiled = compiler.compile(logic("@Qty/0@=0"));
+		final CompiledLogicExpression.Memo memo = newMemo();
+
+		// Qty field value is null, so the evaluatee decides
+		final Evaluatee evaluateeWithQty = Evaluatees.mapBuilder().put("Qty", "0").build();
+		assertThat(evaluate(compiled, evaluateeWithQty, fieldValues("Y", "N"), memo)).isTrue();
+
+		final Evaluatee evaluateeWithOtherQty = Evaluatees.mapBuilder().put("Qty", "5").build();
+		assertThat(evaluate(compiled, evaluateeWithOtherQty, fieldValues("Y", "N"), memo)).isFalse();
+	}
+
+	@Test
+	public void test_notAFieldParameter_isAlwaysInterpreted()
+	{
+		final CompiledLogicExpression compiled = compiler.compile(logic("@IsActive@=Y & @#AD_Client_ID/0@>0"));
+		assertThat(compiler.getMemoSlotsCount()).isEqualTo(0);
+		final CompiledLogicExpression.Memo memo = newMemo();
+
+		final Evaluatee evaluatee = Evaluatees.mapBuilder().put("IsActive", "Y").put("#AD_Client_ID", "1").build();
+		assertThat(compiled.evaluate(evaluatee, fieldIndex -> {
+			throw new AssertionError("no field value shall be fetched");
+		}, memo).booleanValue()).isTrue();
+	}
+
+	/**
+	 * A document snapshot might be evaluated by more threads at the same time: each evaluation shall get the result for its own values.
+	 */
+	@Test
+	public void test_sharedMemo_concurrentEvaluations() throws Exception
+	{
+		final CompiledLogicExpression compiled = compiler.compile(logic("@IsActive@=Y"));
+		final CompiledLogicExpression.Memo memo = newMemo();
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			final List<Callable<Integer>> tasks = new ArrayList<>();
+			for (int taskNo = 0; taskNo < 4; taskNo++)
+			{
+				final String isActive = taskNo % 2 == 0 ? "Y" : "N";
+				final boolean expectedResult = "Y".equals(isActive);
+				tasks.add(() -> {
+					int wrongResults = 0;
+					for (int i = 0; i < 10000; i++)
+					{
+						if (evaluate(compiled, evaluatee(isActive, "N"), fieldValues(isActive, "N"), memo) != expectedResult)
+						{
+							wrongResults++;
+						}
+					}
+					return wrongResults;
+				});
+			}
+
+			for (final Future<Integer> future : executor.invokeAll(tasks))
+			{
+				assertThat(future.get()).isEqualTo(0);
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+}
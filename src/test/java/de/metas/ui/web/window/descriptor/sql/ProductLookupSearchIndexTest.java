@@ -0,0 +1,144 @@
+package de.metas.ui.web.window.descriptor.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.metas.ui.web.document.filter.sql.SqlParamsCollector;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class ProductLookupSearchIndexTest
+{
+	private ProductLookupSearchIndex searchIndex;
+
+	@Before
+	public void init()
+	{
+		searchIndex = ProductLookupSearchIndex.builder()
+				.add(1, "P001_Milch 3.5%", "4006381333931", null, null)
+				.add(2, "P002_Milchreis", null, "BP-7788", "Rice pudding")
+				.add(3, "P003_Apfelsaft", null, null, null)
+				.build();
+	}
+
+	@Test
+	public void test_findByNamePrefix()
+	{
+		assertThat(searchIndex.findProductIds("milch", 100)).containsOnly(1, 2);
+		assertThat(searchIndex.findProductIds("Milchr", 100)).containsOnly(2);
+		assertThat(searchIndex.findProductIds("apf", 100)).containsOnly(3);
+	}
+
+	@Test
+	public void test_findByValueUPCAndBPartnerProductNo()
+	{
+		assertThat(searchIndex.findProductIds("p003", 100)).containsOnly(3);
+		assertThat(searchIndex.findProductIds("400638", 100)).containsOnly(1);
+		assertThat(searchIndex.findProductIds("bp-77", 100)).containsOnly(2);
+		assertThat(searchIndex.findProductIds("rice", 100)).containsOnly(2);
+	}
+
+	@Test
+	public void test_allSearchTokensMustMatch()
+	{
+		assertThat(searchIndex.findProductIds("milch 3", 100)).containsOnly(1);
+		assertThat(searchIndex.findProductIds("milch apf", 100)).isEmpty();
+	}
+
+	@Test
+	public void test_notSelectiveTokensAreCheckedAgainstCandidates()
+	{
+		// "p" matches all 3 products, which is more than maxResults
+		assertThat(searchIndex.findProductIds("p milchr", 2)).containsOnly(2);
+		assertThat(searchIndex.findProductIds("p", 2)).isNull();
+	}
+
+	@Test
+	public void test_noTokens()
+	{
+		assertThat(searchIndex.findProductIds(" - ", 100)).isNull();
+	}
+
+	@Test
+	public void test_notAvailable()
+	{
+		assertThat(ProductLookupSearchIndex.NOT_AVAILABLE.findProductIds("milch", 100)).isNull();
+	}
+
+	@Test
+	public void test_sqlFilter_indexWarmWithHits_filtersOnlyByProductIds()
+	{
+		final Set<Integer> productIds = searchIndex.findProductIds("milch", 100);
+
+		final StringBuilder sqlWhereClause = new StringBuilder();
+		final SqlParamsCollector sqlParams = SqlParamsCollector.newInstance();
+		ProductLookupDescriptor.appendFilterBySearchString(sqlWhereClause, sqlParams, "milch", productIds);
+
+		assertThat(sqlWhereClause.toString()).contains("p.M_Product_ID IN (?,?)");
+		assertThat(sqlWhereClause.toString()).doesNotContain("ILIKE");
+		assertThat(sqlParams.toList()).containsOnly(1, 2);
+	}
+
+	@Test
+	public void test_sqlFilter_indexWarmWithoutHits_fallbackToILIKE()
+	{
+		// matching in the middle of a word, which is not supported by the index
+		final Set<Integer> productIds = searchIndex.findProductIds("reis", 100);
+		assertThat(productIds).isEmpty();
+
+		final StringBuilder sqlWhereClause = new StringBuilder();
+		final SqlParamsCollector sqlParams = SqlParamsCollector.newInstance();
+		ProductLookupDescriptor.appendFilterBySearchString(sqlWhereClause, sqlParams, "reis", productIds);
+
+		assertThat(sqlWhereClause.toString()).contains("ILIKE").doesNotContain("M_Product_ID IN");
+		assertThat(sqlParams.toList()).containsOnly("%reis%");
+	}
+
+	@Test
+	public void test_sqlFilter_indexCold_fallbackToILIKE()
+	{
+		final StringBuilder sqlWhereClause = new StringBuilder();
+		final SqlParamsCollector sqlParams = SqlParamsCollector.newInstance();
+		ProductLookupDescriptor.appendFilterBySearchString(sqlWhereClause, sqlParams, "milch", null);
+
+		assertThat(sqlWhereClause.toString()).contains("ILIKE").doesNotContain("M_Product_ID IN");
+		assertThat(sqlParams.toList()).containsOnly("%milch%");
+	}
+
+	@Test
+	public void test_sqlFilter_indexNotAvailable_fallbackToILIKE()
+	{
+		final Set<Integer> productIds = ProductLookupSearchIndex.NOT_AVAILABLE.findProductIds("milch", 100);
+
+		final StringBuilder sqlWhereClause = new StringBuilder();
+		final SqlParamsCollector sqlParams = SqlParamsCollector.newInstance();
+		ProductLookupDescriptor.appendFilterBySearchString(sqlWhereClause, sqlParams, "milch", productIds);
+
+		assertThat(sqlWhereClause.toString()).contains("ILIKE").doesNotContain("M_Product_ID IN");
+		assertThat(sqlParams.toList()).containsOnly("%milch%");
+	}
+}
@@ -0,0 +1,167 @@
+package de.metas.ui.web.window.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import de.metas.ui.web.cache.ETagResponseEntityBuilder;
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.DocumentType;
+import de.metas.ui.web.window.datatypes.json.JSONOptions;
+import de.metas.ui.web.window.descriptor.DocumentEntityDataBindingDescriptor;
+import de.metas.ui.web.window.descriptor.DocumentEntityDescriptor;
+import de.metas.ui.web.window.descriptor.DocumentFieldDescriptor;
+import de.metas.ui.web.window.model.Document.CopyMode;
+import de.metas.ui.web.window.model.Document.DocumentValuesSupplier;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class DocumentETagTest
+{
+	private DocumentEntityDescriptor entityDescriptor;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		final DocumentEntityDataBindingDescriptor dataBinding = () -> {
+			throw new IllegalStateException("No repository available");
+		};
+		entityDescriptor = DocumentEntityDescriptor.builder()
+				.setDocumentType(DocumentType.Window, 123)
+				.setDataBinding(() -> dataBinding)
+				.disableCallouts()
+				.disableDefaultTableCallouts()
+				.build();
+	}
+
+	private Document loadDocument(final String version)
+	{
+		return Document.builder(entityDescriptor)
+				.initializeAsExistingRecord(new DocumentValuesSupplier()
+				{
+					@Override
+					public DocumentId getDocumentId()
+					{
+						return DocumentId.of(1);
+					}
+
+					@Override
+					public String getVersion()
+					{
+						return version;
+					}
+
+					@Override
+					public Object getValue(final DocumentFieldDescriptor fieldDescriptor)
+					{
+						return NO_VALUE;
+					}
+				});
+	}
+
+	/** Simulates the document data request as done by WindowRestController.getData */
+	private static ResponseEntity<String> getData(final Document document, final String ifNoneMatch)
+	{
+		final MockHttpServletRequest httpRequest = new MockHttpServletRequest("GET", "/window/123/1");
+		if (ifNoneMatch != null)
+		{
+			httpRequest.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+
+		return ETagResponseEntityBuilder.ofETagAware(new ServletWebRequest(httpRequest, new MockHttpServletResponse()), document)
+				.includeLanguageInETag()
+				.cacheMaxAge(0)
+				.jsonOptions(() -> JSONOptions.builder(null).setAD_LanguageIfNotEmpty("en_US").build())
+				.toJson((doc, jsonOpts) -> "document");
+	}
+
+	private static void assertModified(final ResponseEntity<String> response, final String previousETag)
+	{
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody()).isEqualTo("document");
+		assertThat(response.getHeaders().getETag()).isNotEqualTo(previousETag);
+	}
+
+	@Test
+	public void test_sameSnapshot_notModified()
+	{
+		final Document document = loadDocument("v1");
+
+		final ResponseEntity<String> response = getData(document, null);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		final String etag = response.getHeaders().getETag();
+		assertThat(etag).isNotEmpty();
+
+		final ResponseEntity<String> response2 = getData(document, etag);
+		assertThat(response2.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(response2.getBody()).isNull();
+		assertThat(response2.getHeaders().getETag()).isEqualTo(etag);
+	}
+
+	@Test
+	public void test_newSnapshotPublished()
+	{
+		final Document document = loadDocument("v1");
+		final String etag = getData(document, null).getHeaders().getETag();
+
+		// e.g. the document was saved and the readonly snapshot was published again
+		final Document documentCopy = document.copy(CopyMode.CheckInReadonly, NullDocumentChangesCollector.instance);
+
+		assertModified(getData(documentCopy, etag), etag);
+	}
+
+	@Test
+	public void test_changedInPlace()
+	{
+		final Document document = loadDocument("v1");
+		final String etag = getData(document, null).getHeaders().getETag();
+
+		// e.g. included documents were marked as stale
+		document.changeSnapshotVersion();
+
+		assertModified(getData(document, etag), etag);
+	}
+
+	@Test
+	public void test_recordReloaded()
+	{
+		final Document document = loadDocument("v1");
+		final String etag = getData(document, null).getHeaders().getETag();
+
+		final Document reloadedDocument = loadDocument("v2");
+
+		assertModified(getData(reloadedDocument, etag), etag);
+		assertThat(reloadedDocument.getETag().toETagString()).contains("dataVersion=v2");
+	}
+}
@@ -0,0 +1,134 @@
+package de.metas.ui.web.window.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.adempiere.test.AdempiereTestHelper;
+import org.compiere.util.Env;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+public class DocumentReferencesServiceTest
+{
+	private static final String CTXNAME = "#DocumentReferencesServiceTest";
+
+	private ForkJoinPool pool;
+	private Properties ctx;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+		pool = new ForkJoinPool(4);
+
+		ctx = Env.copyCtx(Env.getCtx());
+		Env.setContext(ctx, CTXNAME, "value1");
+	}
+
+	@After
+	public void shutdownPool()
+	{
+		pool.shutdownNow();
+	}
+
+	private static String getContextValue()
+	{
+		return Env.getContext(Env.getCtx(), CTXNAME);
+	}
+
+	@Test
+	public void test_mapInParallel_eachMappingHasTheGivenContext()
+	{
+		final List<String> contextValues = DocumentReferencesService.mapInParallel(
+				pool,
+				ctx,
+				() -> IntStream.range(0, 200).boxed(),
+				element -> getContextValue());
+
+		assertThat(contextValues).hasSize(200).containsOnly("value1");
+	}
+
+	@Test
+	public void test_mapInParallel_calledFromPoolThread() throws Exception
+	{
+		final List<String> contextValues = pool.submit(() -> DocumentReferencesService.mapInParallel(
+				pool,
+				ctx,
+				() -> IntStream.range(0, 200).boxed(),
+				element -> getContextValue()))
+				.get();
+
+		assertThat(contextValues).hasSize(200).containsOnly("value1");
+	}
+
+	@Test
+	public void test_mapInParallel_keepsTheOrder()
+	{
+		final List<Integer> result = DocumentReferencesService.mapInParallel(
+				pool,
+				ctx,
+				() -> IntStream.range(0, 200).boxed(),
+				element -> element * 2);
+
+		assertThat(result).hasSize(200);
+		for (int i = 0; i < 200; i++)
+		{
+			assertThat(result.get(i)).isEqualTo(i * 2);
+		}
+	}
+
+	@Test
+	public void test_mapInParallel_failure()
+	{
+		try
+		{
+			DocumentReferencesService.mapInParallel(
+					pool,
+					ctx,
+					() -> IntStream.range(0, 10).boxed(),
+					element -> {
+						if (element == 5)
+						{
+							throw new AdempiereException("failed on 5");
+						}
+						return element;
+					});
+		}
+		catch (final AdempiereException ex)
+		{
+			assertThat(ex.getMessage()).contains("failed on 5");
+			return;
+		}
+
+		fail("exception expected");
+	}
+}
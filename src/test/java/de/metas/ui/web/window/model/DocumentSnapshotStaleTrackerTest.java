@@ -0,0 +1,173 @@
+package de.metas.ui.web.window.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.adempiere.test.AdempiereTestHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.metas.ui.web.window.datatypes.DocumentId;
+import de.metas.ui.web.window.datatypes.DocumentType;
+import de.metas.ui.web.window.descriptor.DetailId;
+import de.metas.ui.web.window.descriptor.DocumentEntityDataBindingDescriptor;
+import de.metas.ui.web.window.descriptor.DocumentEntityDescriptor;
+import de.metas.ui.web.window.descriptor.DocumentFieldDescriptor;
+import de.metas.ui.web.window.model.Document.CopyMode;
+import de.metas.ui.web.window.model.Document.DocumentValuesSupplier;
+
+/*
+ * #%L
+ * metasfresh-webui-api
+ * %%
+ * Copyright (C) 2018 metas GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+public class DocumentSnapshotStaleTrackerTest
+{
+	private static final DetailId DETAIL_ID = DetailId.fromAD_Tab_ID(1);
+	private static final String READER1 = "reader1";
+	private static final String READER2 = "reader2";
+
+	private DocumentEntityDescriptor entityDescriptor;
+	private DocumentSnapshotStaleTracker tracker;
+
+	@Before
+	public void init()
+	{
+		AdempiereTestHelper.get().init();
+
+		final DocumentEntityDataBindingDescriptor dataBinding = () -> {
+			throw new IllegalStateException("No repository available");
+		};
+		final DocumentEntityDescriptor includedEntityDescriptor = DocumentEntityDescriptor.builder()
+				.setDocumentType(DocumentType.Window, 123)
+				.setDetailId(DETAIL_ID)
+				.setDataBinding(() -> dataBinding)
+				.disableCallouts()
+				.disableDefaultTableCallouts()
+				.build();
+		entityDescriptor = DocumentEntityDescriptor.builder()
+				.setDocumentType(DocumentType.Window, 123)
+				.setDataBinding(() -> dataBinding)
+				.addIncludedEntity(includedEntityDescriptor)
+				.disableCallouts()
+				.disableDefaultTableCallouts()
+				.build();
+
+		tracker = new DocumentSnapshotStaleTracker();
+	}
+
+	/** @return the readonly snapshot, as published by DocumentCollection */
+	private Document loadSnapshot()
+	{
+		final Document document = Document.builder(entityDescriptor)
+				.initializeAsExistingRecord(new DocumentValuesSupplier()
+				{
+					@Override
+					public DocumentId getDocumentId()
+					{
+						return DocumentId.of(1);
+					}
+
+					@Override
+					public String getVersion()
+					{
+						return "v1";
+					}
+
+					@Override
+					public Object getValue(final DocumentFieldDescriptor fieldDescriptor)
+					{
+						return NO_VALUE;
+					}
+				});
+		return document.copy(CopyMode.CheckInReadonly, NullDocumentChangesCollector.instance);
+	}
+
+	/** Simulates DocumentCollection.invalidateIncludedDocuments */
+	private static void markIncludedDocumentsStale(final Document snapshot)
+	{
+		snapshot.getIncludedDocumentsCollection(DETAIL_ID).markStale(DocumentId.of(10));
+		snapshot.changeSnapshotVersion();
+	}
+
+	private static boolean isStale(final Document document)
+	{
+		return document.getIncludedDocumentsCollection(DETAIL_ID).isStale();
+	}
+
+	@Test
+	public void test_notStale()
+	{
+		final Document snapshot = loadSnapshot();
+
+		assertThat(tracker.getSnapshotForReader(READER1, snapshot)).isSameAs(snapshot);
+		assertThat(tracker.getSnapshotForReader(READER1, snapshot)).isSameAs(snapshot);
+	}
+
+	@Test
+	public void test_twoReaders_eachOneIsToldOnce()
+	{
+		final Document snapshot = loadSnapshot();
+		markIncludedDocumentsStale(snapshot);
+
+		// first reader: told that the included documents are stale
+		final Document reader1First = tracker.getSnapshotForReader(READER1, snapshot);
+		assertThat(reader1First).isSameAs(snapshot);
+		assertThat(isStale(reader1First)).isTrue();
+
+		// first reader, again: not told again
+		final Document reader1Second = tracker.getSnapshotForReader(READER1, snapshot);
+		assertThat(isStale(reader1Second)).isFalse();
+
+		// second reader: still told, even if the first reader was already served
+		final Document reader2First = tracker.getSnapshotForReader(READER2, snapshot);
+		assertThat(reader2First).isSameAs(snapshot);
+		assertThat(isStale(reader2First)).isTrue();
+
+		final Document reader2Second = tracker.getSnapshotForReader(READER2, snapshot);
+		assertThat(isStale(reader2Second)).isFalse();
+		// the copy without stale flags is shared too
+		assertThat(reader2Second).isSameAs(reader1Second);
+
+		// the shared snapshot is never changed
+		assertThat(isStale(snapshot)).isTrue();
+	}
+
+	@Test
+	public void test_staleAgain_readersAreToldAgain()
+	{
+		final Document snapshot = loadSnapshot();
+		markIncludedDocumentsStale(snapshot);
+		tracker.getSnapshotForReader(READER1, snapshot);
+		final Document notStaleCopy = tracker.getSnapshotForReader(READER1, snapshot);
+		assertThat(isStale(notStaleCopy)).isFalse();
+
+		// the included documents were changed again => new snapshot version
+		markIncludedDocumentsStale(snapshot);
+
+		final Document reader1 = tracker.getSnapshotForReader(READER1, snapshot);
+		assertThat(reader1).isSameAs(snapshot);
+		assertThat(isStale(reader1)).isTrue();
+
+		final Document reader1Again = tracker.getSnapshotForReader(READER1, snapshot);
+		assertThat(isStale(reader1Again)).isFalse();
+		assertThat(reader1Again).isNotSameAs(notStaleCopy);
+	}
+}